@@ -0,0 +1,64 @@
+package nl.liacs.subdisc;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks {@link CandidateQueue#add(Candidate)}, followed by
+ * {@link CandidateQueue#removeFirst()} until the CandidateQueue is empty.
+ * Each invocation adds {@link #NR_CANDIDATES} Candidates with random
+ * priorities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CandidateQueueBenchmark
+{
+	static final int NR_CANDIDATES = 10000;
+
+	@Param({ "BEAM", "BEST_FIRST", "DEPTH_FIRST", "BREADTH_FIRST" })
+	public SearchStrategy itsSearchStrategy;
+
+	// only used by BEAM
+	@Param({ "100" })
+	public int itsSearchStrategyWidth;
+
+	private SearchParameters itsSearchParameters;
+	private Candidate itsRoot;
+	private Candidate[] itsCandidates;
+
+	@Setup
+	public void setup()
+	{
+		Log.COMMANDLINELOG = false;
+
+		Subgroup[] aSubgroups = SyntheticSubgroups.createSubgroups(NR_CANDIDATES, new SubgroupSet(-1, null, NR_CANDIDATES + 1));
+		itsCandidates = new Candidate[NR_CANDIDATES];
+		for (int i = 0; i < NR_CANDIDATES; ++i)
+			itsCandidates[i] = new Candidate(aSubgroups[i]);
+		itsRoot = new Candidate(aSubgroups[NR_CANDIDATES]);
+
+		itsSearchParameters = new SearchParameters();
+		itsSearchParameters.setSearchStrategy(itsSearchStrategy);
+		itsSearchParameters.setSearchStrategyWidth(itsSearchStrategyWidth);
+		itsSearchParameters.setSearchDepth(2);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NR_CANDIDATES)
+	public int addAndRemoveFirst()
+	{
+		CandidateQueue aQueue = new CandidateQueue(itsSearchParameters, itsRoot);
+		for (Candidate c : itsCandidates)
+			aQueue.add(c);
+
+		int aCount = 0;
+		while (aQueue.removeFirst() != null)
+			++aCount;
+		return aCount;
+	}
+}
@@ -0,0 +1,93 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the {@link Column} methods used for every refinement of a
+ * Candidate: {@link Column#evaluate(BitSet, Condition)} for NUMERIC and
+ * NOMINAL Columns, and the per-value counts used by the NUMERIC strategies.
+ * The parent BitSet selects half of the rows.
+ * <p>
+ * Like SubgroupDiscovery, getUniqueNumericDomainMap() uses a Column that is
+ * sorted for a SINGLE_NOMINAL target, getValueCount() a Column that is sorted
+ * without a target (SINGLE_NUMERIC).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnBenchmark
+{
+	@Param({ "10000", "100000" })
+	public int itsNrRows;
+
+	@Param({ "2", "16", "1024" })
+	public int itsCardinality;
+
+	private Column itsNumeric;
+	private Column itsNominal;
+	private Column itsUnmasked;
+	private BitSet itsParent;
+	private Condition itsNumericCondition;
+	private Condition itsNominalCondition;
+
+	@Setup
+	public void setup()
+	{
+		Log.COMMANDLINELOG = false;
+
+		Table aTable = SyntheticTable.create(itsNrRows, 2, itsCardinality, TargetType.SINGLE_NOMINAL);
+		itsNumeric = aTable.getColumn(0);
+		itsNominal = aTable.getColumn(1);
+
+		Random aRandom = new Random(SyntheticTable.SEED);
+		itsParent = new BitSet(itsNrRows);
+		for (int i = 0; i < itsNrRows; ++i)
+			if (aRandom.nextBoolean())
+				itsParent.set(i);
+
+		Column aTarget = aTable.getColumn(2);
+		BitSet aBinaryTarget = new BitSet(itsNrRows);
+		for (int i = 0; i < itsNrRows; ++i)
+			if (SyntheticTable.POSITIVE.equals(aTarget.getNominal(i)))
+				aBinaryTarget.set(i);
+		itsNumeric.buildSorted(aBinaryTarget);
+
+		itsUnmasked = SyntheticTable.create(itsNrRows, 1, itsCardinality, TargetType.SINGLE_NUMERIC).getColumn(0);
+		itsUnmasked.buildSorted(null);
+
+		// median value, such that about half of the parent is selected
+		int aSortIndex = itsNumeric.getSortedIndex(itsCardinality / 2);
+		itsNumericCondition = new Condition(new ConditionBase(itsNumeric, Operator.LESS_THAN_OR_EQUAL), itsNumeric.getSortedValue(aSortIndex), aSortIndex);
+		itsNominalCondition = new Condition(new ConditionBase(itsNominal, Operator.EQUALS), "v0");
+	}
+
+	@Benchmark
+	public BitSet evaluateNumeric()
+	{
+		return itsNumeric.evaluate(itsParent, itsNumericCondition);
+	}
+
+	@Benchmark
+	public BitSet evaluateNominal()
+	{
+		return itsNominal.evaluate(itsParent, itsNominalCondition);
+	}
+
+	@Benchmark
+	public Column.ValueCount getValueCount()
+	{
+		return itsUnmasked.getValueCount(itsParent);
+	}
+
+	@Benchmark
+	public Column.ValueCountTP getUniqueNumericDomainMap()
+	{
+		return itsNumeric.getUniqueNumericDomainMap(itsParent);
+	}
+}
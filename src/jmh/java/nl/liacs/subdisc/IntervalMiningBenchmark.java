@@ -0,0 +1,62 @@
+package nl.liacs.subdisc;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * End-to-end benchmark of {@link SubgroupDiscovery#mine(long, int)} with
+ * {@link NumericStrategy#NUMERIC_INTERVALS}, like {@link MiningBenchmark}.
+ * <p>
+ * BestInterval is only implemented for {@link TargetType#SINGLE_NOMINAL},
+ * so this benchmark only uses that TargetType.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntervalMiningBenchmark
+{
+	@Param({ "10000" })
+	public int itsNrRows;
+
+	@Param({ "10" })
+	public int itsNrColumns;
+
+	@Param({ "16" })
+	public int itsCardinality;
+
+	@Param({ "BEAM", "ROC_BEAM", "COVER_BASED_BEAM_SELECTION", "BEST_FIRST", "DEPTH_FIRST", "BREADTH_FIRST" })
+	public SearchStrategy itsSearchStrategy;
+
+	@Param({ "2" })
+	public int itsSearchDepth;
+
+	@Param({ "1" })
+	public int itsNrThreads;
+
+	private Table itsTable;
+
+	@Setup
+	public void setup()
+	{
+		Log.COMMANDLINELOG = false;
+
+		itsTable = SyntheticTable.create(itsNrRows, itsNrColumns, itsCardinality, TargetType.SINGLE_NOMINAL);
+	}
+
+	@Benchmark
+	public int mine(MiningBenchmark.Counters theCounters)
+	{
+		SearchParameters anSP = SyntheticTable.getSearchParameters(itsTable, TargetType.SINGLE_NOMINAL, itsSearchStrategy, NumericStrategy.NUMERIC_INTERVALS, itsSearchDepth);
+		anSP.setNrThreads(itsNrThreads);
+		int aPositiveCount = anSP.getTargetConcept().getPrimaryTarget().countValues(SyntheticTable.POSITIVE, null);
+		SubgroupDiscovery anSD = new SubgroupDiscovery(anSP, itsTable, null, aPositiveCount, null);
+
+		anSD.mine(System.currentTimeMillis(), itsNrThreads);
+		theCounters.candidates += anSD.getNumberOfCandidates();
+		return anSD.getNumberOfSubgroups();
+	}
+}
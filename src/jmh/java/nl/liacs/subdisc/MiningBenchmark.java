@@ -0,0 +1,104 @@
+package nl.liacs.subdisc;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * End-to-end benchmark of {@link SubgroupDiscovery#mine(long, int)} on a
+ * {@link SyntheticTable}, for each combination of {@link TargetType},
+ * {@link SearchStrategy} and {@link NumericStrategy}.
+ * <p>
+ * Besides the number of runs per second, the secondary result
+ * 'candidates' reports the number of evaluated Candidates per second, this
+ * is the number to track across releases.
+ * Select a subset of the parameters using the JMH '-p' option, for example
+ * '-p itsSearchStrategy=BEAM'.
+ * NUMERIC_INTERVALS is only available for SINGLE_NOMINAL, it is benchmarked
+ * by {@link IntervalMiningBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MiningBenchmark
+{
+	@Param({ "10000" })
+	public int itsNrRows;
+
+	@Param({ "10" })
+	public int itsNrColumns;
+
+	@Param({ "16" })
+	public int itsCardinality;
+
+	@Param({ "SINGLE_NOMINAL", "SINGLE_NUMERIC" })
+	public TargetType itsTargetType;
+
+	@Param({ "BEAM", "ROC_BEAM", "COVER_BASED_BEAM_SELECTION", "BEST_FIRST", "DEPTH_FIRST", "BREADTH_FIRST" })
+	public SearchStrategy itsSearchStrategy;
+
+	@Param({ "NUMERIC_BEST", "NUMERIC_ALL", "NUMERIC_BINS", "NUMERIC_BEST_BINS" })
+	public NumericStrategy itsNumericStrategy;
+
+	@Param({ "2" })
+	public int itsSearchDepth;
+
+	@Param({ "1" })
+	public int itsNrThreads;
+
+	private Table itsTable;
+
+	/*
+	 * JMH reports the total of each public field divided by the measurement
+	 * time, reset by JMH before each iteration
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters
+	{
+		public long candidates;
+	}
+
+	@Setup
+	public void setup()
+	{
+		Log.COMMANDLINELOG = false;
+
+		itsTable = SyntheticTable.create(itsNrRows, itsNrColumns, itsCardinality, itsTargetType);
+	}
+
+	@Benchmark
+	public int mine(Counters theCounters)
+	{
+		SearchParameters anSP = SyntheticTable.getSearchParameters(itsTable, itsTargetType, itsSearchStrategy, itsNumericStrategy, itsSearchDepth);
+		anSP.setNrThreads(itsNrThreads);
+		SubgroupDiscovery anSD = createSubgroupDiscovery(anSP);
+		anSD.mine(System.currentTimeMillis(), itsNrThreads);
+		theCounters.candidates += anSD.getNumberOfCandidates();
+		return anSD.getNumberOfSubgroups();
+	}
+
+	// as Process.runSubgroupDiscovery(), without windows and post-processing
+	private SubgroupDiscovery createSubgroupDiscovery(SearchParameters theSearchParameters)
+	{
+		Column aTarget = theSearchParameters.getTargetConcept().getPrimaryTarget();
+
+		switch (itsTargetType)
+		{
+			case SINGLE_NOMINAL :
+			{
+				int aPositiveCount = aTarget.countValues(SyntheticTable.POSITIVE, null);
+				return new SubgroupDiscovery(theSearchParameters, itsTable, null, aPositiveCount, null);
+			}
+			case SINGLE_NUMERIC :
+			{
+				return new SubgroupDiscovery(theSearchParameters, itsTable, null, aTarget.getAverage(null), null);
+			}
+			default :
+				throw new AssertionError(itsTargetType);
+		}
+	}
+}
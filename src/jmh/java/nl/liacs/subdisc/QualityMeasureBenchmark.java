@@ -0,0 +1,58 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks {@link QualityMeasure#calculate(int, int)}, the quality
+ * computation used for each SINGLE_NOMINAL Candidate. Each invocation
+ * evaluates {@link #NR_PAIRS} precomputed (true positives, coverage) pairs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QualityMeasureBenchmark
+{
+	static final int NR_PAIRS = 1024;
+	static final int NR_ROWS = 100000;
+	static final int NR_POSITIVES = 20000;
+
+	@Param({ "WRACC", "CORTANA_QUALITY", "CHI_SQUARED", "INFORMATION_GAIN", "BINOMIAL", "JACCARD", "LIFT" })
+	public QM itsQM;
+
+	private QualityMeasure itsQualityMeasure;
+	private final int[] itsTruePositives = new int[NR_PAIRS];
+	private final int[] itsCoverages = new int[NR_PAIRS];
+
+	@Setup
+	public void setup()
+	{
+		Log.COMMANDLINELOG = false;
+
+		itsQualityMeasure = new QualityMeasure(itsQM, NR_ROWS, NR_POSITIVES);
+
+		Random aRandom = new Random(SyntheticTable.SEED);
+		for (int i = 0; i < NR_PAIRS; ++i)
+		{
+			itsCoverages[i] = 1 + aRandom.nextInt(NR_ROWS - 1);
+			int aMin = Math.max(0, itsCoverages[i] - (NR_ROWS - NR_POSITIVES));
+			int aMax = Math.min(itsCoverages[i], NR_POSITIVES);
+			itsTruePositives[i] = aMin + aRandom.nextInt(aMax - aMin + 1);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NR_PAIRS)
+	public double calculate()
+	{
+		double aSum = 0.0;
+		for (int i = 0; i < NR_PAIRS; ++i)
+			aSum += itsQualityMeasure.calculate(itsTruePositives[i], itsCoverages[i]);
+		return aSum;
+	}
+}
@@ -0,0 +1,46 @@
+package nl.liacs.subdisc;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks {@link SubgroupSet#add(Subgroup)}, and the update of the
+ * SubgroupSet that is forced by {@link SubgroupSet#size()}. Each invocation
+ * adds {@link #NR_SUBGROUPS} Subgroups with random qualities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubgroupSetBenchmark
+{
+	static final int NR_SUBGROUPS = 10000;
+
+	// <= 0 means no maximum
+	@Param({ "100", "0" })
+	public int itsMaximumSubgroups;
+
+	private Subgroup[] itsSubgroups;
+
+	@Setup
+	public void setup()
+	{
+		Log.COMMANDLINELOG = false;
+
+		SubgroupSet aSet = new SubgroupSet(-1, null, NR_SUBGROUPS + 1);
+		itsSubgroups = SyntheticSubgroups.createSubgroups(NR_SUBGROUPS, aSet);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NR_SUBGROUPS)
+	public int addAndUpdate()
+	{
+		SubgroupSet aSet = new SubgroupSet(itsMaximumSubgroups, null, NR_SUBGROUPS + 1);
+		for (int i = 0; i < NR_SUBGROUPS; ++i)
+			aSet.add(itsSubgroups[i]);
+		return aSet.size();
+	}
+}
@@ -0,0 +1,101 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Creates synthetic {@link Table}s for the benchmarks.
+ * <p>
+ * Descriptive Columns alternate between NUMERIC and NOMINAL, each with the
+ * requested cardinality. The last Column is the target, which depends on the
+ * first two descriptive Columns, so there are Subgroups to be found.
+ * For {@link TargetType#SINGLE_NOMINAL} the target is NOMINAL with values
+ * {@link #POSITIVE} and 'neg', for {@link TargetType#SINGLE_NUMERIC} it is
+ * NUMERIC.
+ * <p>
+ * The Subgroups for the result set and candidate set benchmarks are created
+ * by {@link SyntheticSubgroups}, that the tests use as well.
+ */
+final class SyntheticTable
+{
+	static final String POSITIVE = "pos";
+	static final long SEED = 10L;
+
+	// uninstantiable
+	private SyntheticTable() {}
+
+	static Table create(int theNrRows, int theNrColumns, int theCardinality, TargetType theTargetType)
+	{
+		if (theTargetType != TargetType.SINGLE_NOMINAL && theTargetType != TargetType.SINGLE_NUMERIC)
+			throw new IllegalArgumentException("unsupported TargetType: " + theTargetType);
+
+		Random aRandom = new Random(SEED);
+		Table aTable = new Table(new File("synthetic"), "synthetic", theNrRows, theNrColumns + 1);
+		List<Column> aColumns = aTable.getColumns();
+
+		for (int i = 0; i < theNrColumns; ++i)
+		{
+			AttributeType aType = ((i % 2) == 0) ? AttributeType.NUMERIC : AttributeType.NOMINAL;
+			Column aColumn = new Column("c" + i, "c" + i, aType, i, theNrRows);
+			for (int j = 0; j < theNrRows; ++j)
+			{
+				int aValue = aRandom.nextInt(theCardinality);
+				if (aType == AttributeType.NUMERIC)
+					aColumn.add((float) aValue);
+				else
+					aColumn.add("v" + aValue);
+			}
+			aColumns.add(aColumn);
+		}
+
+		boolean isNominal = (theTargetType == TargetType.SINGLE_NOMINAL);
+		AttributeType aType = isNominal ? AttributeType.NOMINAL : AttributeType.NUMERIC;
+		Column aTarget = new Column("target", "target", aType, theNrColumns, theNrRows);
+		for (int j = 0; j < theNrRows; ++j)
+		{
+			// higher values in c0 and v0 in c1 increase the target
+			double aSignal = aRandom.nextGaussian();
+			if (theNrColumns > 0)
+				aSignal += (2.0 * aColumns.get(0).getFloat(j)) / theCardinality;
+			if (theNrColumns > 1 && "v0".equals(aColumns.get(1).getNominal(j)))
+				aSignal += 1.0;
+
+			if (isNominal)
+				aTarget.add(aSignal > 1.5 ? POSITIVE : "neg");
+			else
+				aTarget.add((float) aSignal);
+		}
+		aColumns.add(aTarget);
+
+		aTable.update();
+		return aTable;
+	}
+
+	static SearchParameters getSearchParameters(Table theTable, TargetType theTargetType, SearchStrategy theSearchStrategy, NumericStrategy theNumericStrategy, int theSearchDepth)
+	{
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(theTargetType);
+		aTC.setPrimaryTarget(theTable.getColumn(theTable.getNrColumns() - 1));
+		if (theTargetType == TargetType.SINGLE_NOMINAL)
+			aTC.setTargetValue(POSITIVE);
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(theTargetType == TargetType.SINGLE_NOMINAL ? QM.CORTANA_QUALITY : QM.Z_SCORE);
+		anSP.setQualityMeasureMinimum(Float.NEGATIVE_INFINITY);
+		anSP.setSearchDepth(theSearchDepth);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1.0f);
+		anSP.setMaximumSubgroups(100);
+		anSP.setMaximumTime(1000.0f);
+		anSP.setSearchStrategy(theSearchStrategy);
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators(NumericOperatorSetting.NORMAL);
+		anSP.setNumericStrategy(theNumericStrategy);
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+
+		return anSP;
+	}
+}
@@ -0,0 +1,360 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.text.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.xml.parsers.*;
+
+import org.w3c.dom.*;
+
+/**
+ * The BatchRunner runs all experiments in an {@link XMLAutoRun} file without
+ * a GUI, like {@link XMLAutoRun#autoRunSetting(String[])} does, but
+ * experiments are run concurrently, within a global budget of Threads.
+ * <p>
+ * Experiments with the same table in the file share a single loaded
+ * {@link Table}, every experiment mines a
+ * {@link Table#sharedView() shared view} of it. So the data is loaded and
+ * held in memory only once, whatever the number of experiments that use it.
+ * A Table is released once all experiments that use it are done.
+ * <p>
+ * The result of every experiment is written as soon as it completes, using
+ * {@link XMLAutoRun#save(SubgroupSet, String, TargetType)}. An experiment
+ * that fails is logged, and does not stop the others.
+ *
+ * @see CrossValidationRunner
+ */
+public class BatchRunner
+{
+	private final File itsFile;
+	private final String itsDirectory;
+	private final List<Node> itsExperiments;
+	private final AtomicInteger itsNrTablesLoaded = new AtomicInteger(0);
+
+	/**
+	 * Creates a BatchRunner for the experiments in theFile.
+	 *
+	 * @param theFile the {@link XMLAutoRun} file.
+	 */
+	public BatchRunner(File theFile)
+	{
+		itsFile = theFile;
+		itsDirectory = (theFile.getParent() == null) ? "." : theFile.getParent();
+
+		NodeList aNodes = XMLDocument.parseXMLFile(theFile).getLastChild().getChildNodes();
+		itsExperiments = new ArrayList<Node>(aNodes.getLength());
+		for (int i = 0, j = aNodes.getLength(); i < j; ++i)
+			itsExperiments.add(aNodes.item(i));
+	}
+
+	/**
+	 * Runs all experiments, at most theThreadBudget Threads are used for
+	 * mining at any time.
+	 * <p>
+	 * An experiment waits until the Threads it uses are available, so
+	 * experiments run concurrently as long as their numbers of Threads sum to
+	 * at most theThreadBudget. For {@link TargetType#MULTI_LABEL} and
+	 * {@link TargetType#SCAPE}, the {@link QualityMeasure} stores the base
+	 * model in static fields, so these experiments use the whole budget, and
+	 * run alone.
+	 *
+	 * @param theThreadBudget the maximum number of Threads used at any
+	 * time, use <code>theThreadBudget <= 0</code> to use all available
+	 * processors.
+	 * @param theNrThreadsPerExperiment the number of Threads used to mine a
+	 * single experiment, use <code>Integer.MIN_VALUE</code> to use the
+	 * number of Threads defined for the experiment in the file.
+	 * @param showWindows whether to show the result windows.
+	 *
+	 * @return the number of experiments that failed.
+	 */
+	public int run(int theThreadBudget, int theNrThreadsPerExperiment, boolean showWindows)
+	{
+		if (theThreadBudget <= 0)
+			theThreadBudget = Runtime.getRuntime().availableProcessors();
+
+		// experiments with an equal table Node use the same SharedTable
+		List<SharedTable> aTables = new ArrayList<SharedTable>();
+		List<Experiment> aTasks = new ArrayList<Experiment>(itsExperiments.size());
+		for (int i = 0, j = itsExperiments.size(); i < j; ++i)
+		{
+			Node anExperimentNode = copy(itsExperiments.get(i));
+			Node aTableNode = anExperimentNode.getChildNodes().item(2);
+			SharedTable aTable = null;
+			for (SharedTable t : aTables)
+				if (t.itsNode.isEqualNode(aTableNode))
+					aTable = t;
+			if (aTable == null)
+			{
+				aTable = new SharedTable(copy(aTableNode));
+				aTables.add(aTable);
+			}
+			++aTable.itsNrUsers;
+
+			aTasks.add(new Experiment(i, anExperimentNode, aTable, theNrThreadsPerExperiment, showWindows));
+		}
+		Log.logCommandLine(String.format("BatchRunner: %d experiments, %d tables, thread budget %d", aTasks.size(), aTables.size(), theThreadBudget));
+
+		Semaphore aBudget = new Semaphore(theThreadBudget, true);
+		AtomicInteger aNrFailed = new AtomicInteger(0);
+		ExecutorService es = Executors.newFixedThreadPool(theThreadBudget);
+		try
+		{
+			for (Experiment e : aTasks)
+				es.execute(new Scheduled(e, aBudget, theThreadBudget, aNrFailed));
+			es.shutdown();
+			while (!es.awaitTermination(1L, TimeUnit.MINUTES)) {};
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		finally
+		{
+			es.shutdownNow();
+		}
+
+		Log.logCommandLine(String.format("BatchRunner: %d of %d experiments failed", aNrFailed.get(), aTasks.size()));
+		return aNrFailed.get();
+	}
+
+	// number of times a Table was loaded by run(), once per distinct table
+	int getNrTablesLoaded() { return itsNrTablesLoaded.get(); }
+
+	/**
+	 * Returns the exit status for a batch in which theNrFailed experiments
+	 * failed, 0 when all experiments succeed, and 1 otherwise.
+	 *
+	 * @param theNrFailed the number of experiments that failed, as returned
+	 * by {@link #run(int, int, boolean)}.
+	 *
+	 * @return the exit status.
+	 */
+	public static int getExitStatus(int theNrFailed)
+	{
+		return (theNrFailed == 0) ? 0 : 1;
+	}
+
+	/**
+	 * Runs all experiments in an {@link XMLAutoRun} file, as
+	 * {@link #main(String[])} does, but returns the exit status, rather
+	 * than exiting.
+	 *
+	 * @param args the command-line parameters.
+	 *
+	 * @return 2 for invalid parameters, otherwise see
+	 * {@link #getExitStatus(int)}.
+	 */
+	public static int execute(String[] args)
+	{
+		if (args.length < 1 || args.length > 3 || !args[0].endsWith(".xml"))
+		{
+			Log.logCommandLine("Usage: BatchRunner experiments.xml [thread_budget] [threads_per_experiment]");
+			return 2;
+		}
+
+		int aThreadBudget;
+		int aNrThreadsPerExperiment;
+		try
+		{
+			aThreadBudget = (args.length >= 2) ? Integer.parseInt(args[1]) : 0;
+			aNrThreadsPerExperiment = (args.length == 3) ? Integer.parseInt(args[2]) : Integer.MIN_VALUE;
+		}
+		catch (NumberFormatException e)
+		{
+			Log.logCommandLine("Usage: BatchRunner experiments.xml [thread_budget] [threads_per_experiment]");
+			return 2;
+		}
+
+		int aNrFailed = new BatchRunner(new File(args[0])).run(aThreadBudget, aNrThreadsPerExperiment, false);
+		return getExitStatus(aNrFailed);
+	}
+
+	/*
+	 * DOM implementations are not thread safe, not even for reading, so
+	 * every experiment, and every SharedTable, gets its own copy of its Nodes
+	 */
+	private static final Node copy(Node theNode)
+	{
+		try
+		{
+			Document aDocument = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+			return aDocument.appendChild(aDocument.importNode(theNode, true));
+		}
+		catch (ParserConfigurationException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	// loaded when first used, released after the last experiment using it
+	private final class SharedTable
+	{
+		private final Node itsNode;
+		private int itsNrUsers = 0;
+		private Table itsTable = null;
+
+		SharedTable(Node theTableNode)
+		{
+			itsNode = theTableNode;
+		}
+
+		// as XMLAutoRun.runSubgroupDiscovery()
+		synchronized Table acquire(boolean showWindows)
+		{
+			if (itsTable == null)
+			{
+				itsTable = new Table(itsNode, itsDirectory, showWindows);
+				itsTable.update();
+				itsNrTablesLoaded.getAndIncrement();
+			}
+
+			return itsTable.sharedView();
+		}
+
+		synchronized void release()
+		{
+			if (--itsNrUsers == 0)
+				itsTable = null;
+		}
+	}
+
+	// single experiment in the file
+	private final class Experiment
+	{
+		private final int itsIndex;
+		private final Node itsNode;
+		private final SharedTable itsTable;
+		private final int itsNrThreads;
+		private final boolean showWindows;
+		private SearchParameters itsSearchParameters;
+
+		Experiment(int theIndex, Node theExperimentNode, SharedTable theTable, int theNrThreads, boolean showWindows)
+		{
+			itsIndex = theIndex;
+			itsNode = theExperimentNode;
+			itsTable = theTable;
+			itsNrThreads = theNrThreads;
+			this.showWindows = showWindows;
+		}
+
+		// number of Threads, within theThreadBudget
+		int getNrThreads(int theThreadBudget)
+		{
+			itsSearchParameters = new SearchParameters(itsNode.getChildNodes().item(1));
+
+			// the TargetConcept is only set once the Table is loaded
+			TargetType aTargetType = itsSearchParameters.getQualityMeasure().TARGET_TYPE;
+			if (aTargetType == TargetType.MULTI_LABEL || aTargetType == TargetType.SCAPE)
+				return theThreadBudget;
+
+			int aNrThreads = (itsNrThreads == Integer.MIN_VALUE) ? itsSearchParameters.getNrThreads() : itsNrThreads;
+			if (aNrThreads <= 0)
+				aNrThreads = Runtime.getRuntime().availableProcessors();
+
+			return Math.min(aNrThreads, theThreadBudget);
+		}
+
+		void run(int theNrThreads)
+		{
+			try
+			{
+				Table aTable = itsTable.acquire(showWindows);
+				itsSearchParameters.setTargetConcept(new TargetConcept(itsNode.getChildNodes().item(0), aTable));
+
+				long aBegin = System.currentTimeMillis();
+				SubgroupDiscovery anSD = Process.runSubgroupDiscovery(aTable, 0, null, itsSearchParameters, showWindows, theNrThreads, null);
+				if (anSD == null)
+					throw new IllegalStateException("BatchRunner: TargetType not implemented: " + itsSearchParameters.getTargetType());
+
+				// experiments may start in the same millisecond
+				String aTimeStamp = new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date(aBegin));
+				String aFileName = itsFile.getAbsolutePath().replace(".xml", String.format("_%s_%d.txt", aTimeStamp, itsIndex));
+				XMLAutoRun.save(anSD.getResult(), aFileName, itsSearchParameters.getTargetType());
+
+				Log.logCommandLine(String.format("BatchRunner: experiment %d done in %d ms, %s", itsIndex, (System.currentTimeMillis() - aBegin), aFileName));
+			}
+			finally
+			{
+				itsTable.release();
+			}
+		}
+	}
+
+	// runs an Experiment once the Threads it uses are available
+	private static final class Scheduled implements Runnable
+	{
+		private final Experiment itsExperiment;
+		private final Semaphore itsBudget;
+		private final int itsThreadBudget;
+		private final AtomicInteger itsNrFailed;
+
+		Scheduled(Experiment theExperiment, Semaphore theBudget, int theThreadBudget, AtomicInteger theNrFailed)
+		{
+			itsExperiment = theExperiment;
+			itsBudget = theBudget;
+			itsThreadBudget = theThreadBudget;
+			itsNrFailed = theNrFailed;
+		}
+
+		@Override
+		public void run()
+		{
+			boolean isStarted = false;
+			try
+			{
+				int aNrThreads = itsExperiment.getNrThreads(itsThreadBudget);
+				itsBudget.acquire(aNrThreads);
+				try
+				{
+					// releases the SharedTable, also on failure
+					isStarted = true;
+					itsExperiment.run(aNrThreads);
+				}
+				finally
+				{
+					itsBudget.release(aNrThreads);
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				itsNrFailed.getAndIncrement();
+			}
+			catch (Throwable t)
+			{
+				// log and continue with the other experiments
+				Log.logCommandLine(String.format("BatchRunner: experiment %d failed: %s", itsExperiment.itsIndex, t));
+				t.printStackTrace();
+				itsNrFailed.getAndIncrement();
+			}
+			finally
+			{
+				if (!isStarted)
+					itsExperiment.itsTable.release();
+			}
+		}
+	}
+
+	/**
+	 * Runs all experiments in an {@link XMLAutoRun} file, the results are
+	 * written to the directory of that file.
+	 * <p>
+	 * Usage: <code>BatchRunner experiments.xml [thread_budget]
+	 * [threads_per_experiment]</code>
+	 * <p>
+	 * The exit status is 0 when all experiments succeed, 1 when an
+	 * experiment fails, and 2 for invalid parameters, see
+	 * {@link #execute(String[])}.
+	 *
+	 * @param args the command-line parameters.
+	 */
+	public static void main(String[] args)
+	{
+		System.exit(execute(args));
+	}
+}
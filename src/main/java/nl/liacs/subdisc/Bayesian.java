@@ -5,23 +5,59 @@ import java.util.*;
 public class Bayesian
 {
 	private DAG itsDAG;
-	private BinaryTable itsTable;
-	private static Random itsRandom;
+	private FamilyScores itsScores;
+	private Random itsRandom;
 
 	public Bayesian(BinaryTable theTable, List<Column> theTargets)
 	{
-		itsDAG = new DAG(theTargets);
-		itsTable = theTable;
+		this(new FamilyScores(theTable, null), theTargets, null);
+	}
+
+	public Bayesian(BinaryTable theTable)
+	{
+		this(new FamilyScores(theTable, null));
+	}
+
+	/*
+	 * theScores can be shared by successive Bayesians on the same records,
+	 * such that families are scored only once
+	 */
+	Bayesian(FamilyScores theScores)
+	{
+		itsDAG = new DAG(theScores.getNrColumns());
+		itsScores = theScores;
 		itsRandom = new Random(System.currentTimeMillis()); // truly random
 //		itsRandom = new Random(12345); // random, but always the same
 	}
 
-	public Bayesian(BinaryTable theTable)
+	/*
+	 * when theStart is not null, climb() starts from a copy of its arcs,
+	 * typically theStart is the DAG of the parent of a Subgroup, that is
+	 * induced on a superset of its records, and is a good starting point
+	 * the nodes are scored on theScores, so climb() compares actual
+	 * qualities, instead of starting from the initial NetworkNode quality
+	 */
+	Bayesian(FamilyScores theScores, List<Column> theTargets, DAG theStart)
 	{
-		itsDAG = new DAG(theTable.getNrColumns());
-		itsTable = theTable;
+		itsDAG = new DAG(theTargets);
+		itsScores = theScores;
 		itsRandom = new Random(System.currentTimeMillis()); // truly random
 //		itsRandom = new Random(12345); // random, but always the same
+
+		if (theStart != null)
+		{
+			for (int i = 0; i < itsDAG.getSize(); i++)
+			{
+				ItemSet aParents = theStart.getNode(i).getParents();
+				for (int j = aParents.nextSetBit(0); j >= 0; j = aParents.nextSetBit(j+1))
+					itsDAG.addArc(j, i, true);
+			}
+			for (int i = 0; i < itsDAG.getSize(); i++)
+			{
+				itsDAG.fixDimensions(i);
+				itsDAG.setQuality(i, computeQuality(i));
+			}
+		}
 	}
 
 	public DAG getDAG() { return itsDAG; }
@@ -194,10 +230,7 @@ public class Bayesian
 
 	private double computeQuality(int theChild)
 	{
-		BinaryTable aTable = itsTable.selectColumns(itsDAG.getNode(theChild).getParents());
-		aTable.addColumn(itsTable.getColumn(theChild)); //make sure the child is the last column
-
-		return aTable.computeBDeuFaster();
+		return itsScores.getBDeu(theChild, itsDAG.getNode(theChild).getParents());
 	}
 
 	public void climb()
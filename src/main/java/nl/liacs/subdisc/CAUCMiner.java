@@ -0,0 +1,643 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import nl.liacs.subdisc.Column.*;
+import nl.liacs.subdisc.ConditionListBuilder.ConditionList;
+
+/**
+ * The CAUCMiner searches Subgroups for a SINGLE_NUMERIC target, for every
+ * threshold of the CAUC(Heavy) setting of {@link Process} at once.
+ * <p>
+ * For a threshold <i>t</i>, the records with a target value of at most
+ * <i>t</i> form the positives of a binary target. Instead of creating a
+ * new binary target {@link Column}, and running a complete
+ * {@link SubgroupDiscovery} for every threshold, the target values are
+ * ranked once, and the Conditions and their extents are created once for
+ * all thresholds. For every Subgroup, the number of members per rank is
+ * counted, the cumulative counts then give the true positive count for
+ * every threshold, so a single Subgroup is evaluated for all thresholds in
+ * <i>O(coverage + number of thresholds)</i>. Subgroups are evaluated by
+ * multiple Threads in parallel.
+ * <p>
+ * For a beam {@link SearchStrategy}, every threshold has its own beam, of
+ * the search strategy width. Its beam is selected from the refinements of
+ * the union of all beams, so the beam of a threshold may contain
+ * refinements that independent runs would not have generated for it. For
+ * the other SearchStrategies, the search is exhaustive, up to the search
+ * depth.
+ * <p>
+ * Numeric split points are computed once, on the selection, rather than on
+ * the members of each refined Subgroup. For the discretising
+ * {@link NumericStrategy NumericStrategies}, the split points divide the
+ * selection into equal-height bins, for all others, every value is used.
+ */
+final class CAUCMiner
+{
+	private final Table itsTable;
+	private final BitSet itsSelection;
+	private final SearchParameters itsSearchParameters;
+	private final QM itsQM;
+	private final float itsQualityMeasureMinimum;
+
+	private final int itsNrRows;
+	private final int itsTotalCoverage;
+	private final int itsMinimumCoverage;
+	private final int itsMaximumCoverage;
+	private final int itsMinimumSupport;
+	private final int itsMaximumSubgroups;
+
+	// thresholds are the target values, except the highest
+	private float[] itsThresholds;
+	// rank of the target value of each record, positive for threshold i if rank <= i
+	private int[] itsRanks;
+	private QualityMeasure[] itsQualityMeasures;
+
+	// all Conditions, ordered by ConditionBase, and the ConditionBase of each
+	private Condition[] itsConditions;
+	private int[] itsConditionBases;
+
+	private Ranking[] itsResults;
+	private long itsEndTime;
+
+	/**
+	 * Creates a CAUCMiner for the SINGLE_NUMERIC target of theSearchParameters.
+	 *
+	 * @param theTable the Table to mine.
+	 * @param theSelection the records to use, or <code>null</code> to use all records.
+	 * @param theSearchParameters the SearchParameters, the QM and its minimum are not used.
+	 * @param theQM the QM to use for the binary target of every threshold.
+	 * @param theQualityMeasureMinimum the minimum quality of a result.
+	 */
+	CAUCMiner(Table theTable, BitSet theSelection, SearchParameters theSearchParameters, QM theQM, float theQualityMeasureMinimum)
+	{
+		if (theSearchParameters.getTargetConcept().getTargetType() != TargetType.SINGLE_NUMERIC)
+			throw new IllegalArgumentException("CAUCMiner: TargetType must be " + TargetType.SINGLE_NUMERIC);
+
+		itsTable = theTable;
+		itsNrRows = theTable.getNrRows();
+		if (theSelection == null)
+		{
+			itsSelection = new BitSet(itsNrRows);
+			itsSelection.set(0, itsNrRows);
+		}
+		else
+			itsSelection = (BitSet) theSelection.clone();
+		itsSearchParameters = theSearchParameters;
+		itsQM = theQM;
+		itsQualityMeasureMinimum = theQualityMeasureMinimum;
+
+		itsTotalCoverage = itsSelection.cardinality();
+		itsMinimumCoverage = theSearchParameters.getMinimumCoverage();
+		itsMaximumCoverage = (int) (itsNrRows * theSearchParameters.getMaximumCoverageFraction());
+		itsMinimumSupport = theSearchParameters.getMinimumSupport();
+		itsMaximumSubgroups = theSearchParameters.getMaximumSubgroups() <= 0 ? Integer.MAX_VALUE : theSearchParameters.getMaximumSubgroups();
+	}
+
+	/**
+	 * Mines the Subgroups for all thresholds.
+	 *
+	 * @param theNrThreads the number of Threads to use, use
+	 * <code>theNrThreads <= 0</code> to use all available processors.
+	 */
+	void mine(int theNrThreads)
+	{
+		long aBegin = System.currentTimeMillis();
+		long anEndTime = aBegin + (long) (((double) itsSearchParameters.getMaximumTime()) * 60.0 * 1000.0);
+		itsEndTime = (anEndTime <= aBegin) ? Long.MAX_VALUE : anEndTime;
+
+		if (theNrThreads <= 0)
+			theNrThreads = Runtime.getRuntime().availableProcessors();
+
+		List<Column> aColumns = itsTable.getColumns();
+		SubgroupDiscovery.prepareData(null, aColumns);
+		ExecutorService es = Executors.newFixedThreadPool(theNrThreads);
+		try
+		{
+			rankTarget();
+			buildConditions();
+
+			int aNrThresholds = itsThresholds.length;
+			itsResults = new Ranking[aNrThresholds];
+			for (int i = 0; i < aNrThresholds; ++i)
+				itsResults[i] = new Ranking(itsMaximumSubgroups);
+
+			SearchStrategy aStrategy = itsSearchParameters.getSearchStrategy();
+			boolean isBeam = aStrategy.isBeam();
+			int aWidth = itsSearchParameters.getSearchStrategyWidth();
+			int aDepth = itsSearchParameters.getSearchDepth();
+
+			List<Node> aLevel = Collections.singletonList(new Node(new int[0], -1, itsSelection, itsTotalCoverage));
+			for (int d = 1; d <= aDepth && !aLevel.isEmpty() && !isTimeToStop(); ++d)
+			{
+				boolean isLast = (d == aDepth);
+				Ranking[] aBeams = null;
+				if (isBeam && !isLast)
+				{
+					aBeams = new Ranking[aNrThresholds];
+					for (int i = 0; i < aNrThresholds; ++i)
+						aBeams[i] = new Ranking(aWidth);
+				}
+				Set<Node> aSeen = isBeam ? Collections.newSetFromMap(new ConcurrentHashMap<Node, Boolean>()) : null;
+
+				List<Callable<List<Node>>> aTasks = new ArrayList<Callable<List<Node>>>(aLevel.size());
+				for (Node n : aLevel)
+					aTasks.add(new Refine(n, isBeam, !isBeam && !isLast, aBeams, aSeen));
+				List<Node> aNext = invokeAll(es, aTasks);
+
+				if (aBeams != null)
+				{
+					// the union of all beams, in a fixed order
+					Set<Node> aUnion = new TreeSet<Node>();
+					for (Ranking r : aBeams)
+						for (Scored s : r.get())
+							aUnion.add(s.itsNode);
+					aNext = new ArrayList<Node>(aUnion);
+				}
+				// Nodes of this level are refined, members are no longer needed
+				for (Node n : aLevel)
+					n.itsMembers = null;
+				aLevel = aNext;
+			}
+		}
+		finally
+		{
+			es.shutdownNow();
+			SubgroupDiscovery.deleteSortData(aColumns);
+		}
+
+		Log.logCommandLine(String.format("CAUCMiner: %d thresholds, %d Conditions, %d ms",
+							itsThresholds.length, itsConditions.length, (System.currentTimeMillis() - aBegin)));
+	}
+
+	/** Returns the number of thresholds, available after {@link #mine(int)}. */
+	int getNrThresholds() { return itsThresholds.length; }
+
+	/** Returns the value of threshold theIndex, thresholds are ascending. */
+	float getThreshold(int theIndex) { return itsThresholds[theIndex]; }
+
+	/** Returns the QualityMeasure for the binary target of threshold theIndex. */
+	QualityMeasure getQualityMeasure(int theIndex) { return itsQualityMeasures[theIndex]; }
+
+	/**
+	 * Returns the binary target of threshold theIndex, the selected records
+	 * with a target value of at most the threshold.
+	 *
+	 * @param theIndex the index of the threshold.
+	 *
+	 * @return a new BitSet.
+	 */
+	BitSet getBinaryTarget(int theIndex)
+	{
+		BitSet aResult = new BitSet(itsNrRows);
+		for (int i = itsSelection.nextSetBit(0); i >= 0; i = itsSelection.nextSetBit(i + 1))
+			if (itsRanks[i] <= theIndex)
+				aResult.set(i);
+		return aResult;
+	}
+
+	/**
+	 * Returns the result for threshold theIndex. The SubgroupSet is created
+	 * by this call, with the binary target of the threshold, and the members
+	 * of its Subgroups are evaluated anew.
+	 *
+	 * @param theIndex the index of the threshold.
+	 *
+	 * @return a new SubgroupSet.
+	 */
+	SubgroupSet getResult(int theIndex)
+	{
+		SubgroupSet aResult = new SubgroupSet(itsSearchParameters.getMaximumSubgroups(), (BitSet) itsSelection.clone(), itsNrRows, getBinaryTarget(theIndex));
+
+		for (Scored s : itsResults[theIndex].get())
+		{
+			ConditionList aConditionList = ConditionListBuilder.emptyList();
+			BitSet aMembers = itsSelection;
+			for (int c : s.itsNode.itsConditions)
+			{
+				aConditionList = ConditionListBuilder.createList(aConditionList, itsConditions[c]);
+				aMembers = itsConditions[c].getColumn().evaluate(aMembers, itsConditions[c]);
+			}
+
+			// as SubgroupDiscovery.directComputation()
+			Subgroup aSubgroup = new Subgroup(aConditionList, aMembers, aResult);
+			aSubgroup.setMeasureValue(s.itsQuality);
+			aSubgroup.setSecondaryStatistic(((double) s.itsNrTruePositives) / s.itsNode.itsCoverage);
+			aSubgroup.setTertiaryStatistic(s.itsNrTruePositives);
+			aResult.add(aSubgroup);
+		}
+
+		return aResult;
+	}
+
+	private final boolean isTimeToStop()
+	{
+		return System.currentTimeMillis() > itsEndTime;
+	}
+
+	/*
+	 * ranks the target values of the selection, and creates the thresholds
+	 * as Process.caucMembers(), a missing target value is never greater than
+	 * a threshold, so it has rank 0, and is a positive for every threshold
+	 */
+	private final void rankTarget()
+	{
+		Column aTarget = itsSearchParameters.getTargetConcept().getPrimaryTarget();
+		DomainMapNumeric dm = aTarget.getUniqueNumericDomainMap(itsSelection, itsTotalCoverage);
+		int aSize = dm.itsSize;
+		while ((aSize > 0) && Float.isNaN(dm.itsDomain[aSize-1]))
+			--aSize;
+
+		itsRanks = new int[itsNrRows];
+		for (int i = itsSelection.nextSetBit(0); i >= 0; i = itsSelection.nextSetBit(i + 1))
+		{
+			float f = aTarget.getFloat(i);
+			itsRanks[i] = Float.isNaN(f) ? 0 : Arrays.binarySearch(dm.itsDomain, 0, aSize, f);
+		}
+
+		int aNrThresholds = Math.max(0, aSize-1);
+		itsThresholds = Arrays.copyOf(dm.itsDomain, aNrThresholds);
+
+		int[] aCounts = new int[aNrThresholds + 1];
+		for (int i = itsSelection.nextSetBit(0); i >= 0; i = itsSelection.nextSetBit(i + 1))
+			++aCounts[itsRanks[i]];
+		itsQualityMeasures = new QualityMeasure[aNrThresholds];
+		for (int i = 0, aNrPositives = 0; i < aNrThresholds; ++i)
+		{
+			aNrPositives += aCounts[i];
+			itsQualityMeasures[i] = new QualityMeasure(itsQM, itsTotalCoverage, aNrPositives);
+		}
+	}
+
+	// the descriptor side, created once for all thresholds
+	private final void buildConditions()
+	{
+		NumericStrategy aStrategy = itsSearchParameters.getNumericStrategy();
+		List<ConditionBase> aBases = new ConditionBaseSet(itsTable, itsSearchParameters).getConditionBases();
+
+		List<Condition> aConditions = new ArrayList<Condition>();
+		List<Integer> aConditionBases = new ArrayList<Integer>();
+		for (int i = 0; i < aBases.size(); ++i)
+		{
+			ConditionBase aBase = aBases.get(i);
+			Column aColumn = aBase.getColumn();
+			int aSize = aConditions.size();
+
+			switch (aColumn.getType())
+			{
+				case NOMINAL :
+				{
+					// value sets are only used for a SINGLE_NOMINAL target
+					for (String aValue : aColumn.getDomain())
+						aConditions.add(new Condition(aBase, aValue));
+					break;
+				}
+				case NUMERIC :
+				{
+					buildNumericConditions(aBase, aStrategy, aConditions);
+					break;
+				}
+				case BINARY :
+				{
+					aConditions.add(new Condition(aBase, false));
+					aConditions.add(new Condition(aBase, true));
+					break;
+				}
+				default :
+					throw new AssertionError("CAUCMiner.buildConditions(): " + aColumn.getType());
+			}
+
+			for (int j = aSize; j < aConditions.size(); ++j)
+				aConditionBases.add(i);
+		}
+
+		itsConditions = aConditions.toArray(new Condition[0]);
+		itsConditionBases = new int[aConditionBases.size()];
+		for (int i = 0; i < itsConditionBases.length; ++i)
+			itsConditionBases[i] = aConditionBases.get(i);
+	}
+
+	private final void buildNumericConditions(ConditionBase theBase, NumericStrategy theStrategy, List<Condition> theConditions)
+	{
+		Column aColumn = theBase.getColumn();
+		DomainMapNumeric dm = aColumn.getUniqueNumericDomainMap(itsSelection, itsTotalCoverage);
+		int aSize = dm.itsSize;
+		int aCoverage = dm.itsCountsSum;
+		while ((aSize > 0) && Float.isNaN(dm.itsDomain[aSize-1]))
+			aCoverage -= dm.itsCounts[--aSize];
+		if (aSize <= 1)
+			return;
+
+		// indexes of the values that end a bin, the last value is not used
+		int[] aSplits = new int[aSize-1];
+		int aNrSplits = 0;
+		long aNrBins = itsSearchParameters.getNrBins();
+		if (!theStrategy.isDiscretiser() || (aSize <= aNrBins))
+			for (int i = 0; i < aSize-1; ++i)
+				aSplits[aNrSplits++] = i;
+		else if (aNrBins > 1L)
+		{
+			// as SubgroupDiscovery.evaluateNumericRegularSingleBinaryCoarse()
+			long b = 1L;
+			int next = SubgroupDiscovery.getNextBinBoundary(aCoverage, b, aNrBins);
+			for (int i = 0, cover = 0; (i < aSize-1) && (b < aNrBins); ++i)
+			{
+				cover += dm.itsCounts[i];
+				if (cover <= next)
+					continue;
+				aSplits[aNrSplits++] = i;
+				while ((next = SubgroupDiscovery.getNextBinBoundary(aCoverage, ++b, aNrBins)) <= cover-1)
+					; // deliberately empty
+			}
+		}
+
+		Operator anOperator = theBase.getOperator();
+		if ((anOperator == Operator.EQUALS) && !theStrategy.isDiscretiser())
+		{
+			for (int i = 0; i < aSize; ++i)
+				theConditions.add(new Condition(theBase, dm.itsDomain[i], aColumn.getSortedIndex(dm.itsDomain[i])));
+		}
+		else if (anOperator == Operator.LESS_THAN_OR_EQUAL)
+		{
+			for (int i = 0; i < aNrSplits; ++i)
+			{
+				float f = dm.itsDomain[aSplits[i]];
+				theConditions.add(new Condition(theBase, f, aColumn.getSortedIndex(f)));
+			}
+		}
+		else if (anOperator == Operator.GREATER_THAN_OR_EQUAL)
+		{
+			// complements of <= at the split points
+			for (int i = 0; i < aNrSplits; ++i)
+			{
+				float f = dm.itsDomain[aSplits[i] + 1];
+				theConditions.add(new Condition(theBase, f, aColumn.getSortedIndex(f)));
+			}
+		}
+		else
+		{
+			// as ColumnConditionBasesBuilder, EQUALS is BETWEEN for (BEST_)BINS
+			ConditionBase aBase = (anOperator == Operator.BETWEEN) ? theBase : new ConditionBase(aColumn, Operator.BETWEEN);
+			float f = Float.NEGATIVE_INFINITY;
+			for (int i = 0; i < aNrSplits; ++i)
+			{
+				float n = dm.itsDomain[aSplits[i]];
+				theConditions.add(new Condition(aBase, new Interval(f, n)));
+				f = n;
+			}
+			theConditions.add(new Condition(aBase, new Interval(f, Float.POSITIVE_INFINITY)));
+		}
+	}
+
+	// refines a single Node, and evaluates its refinements for all thresholds
+	private final class Refine implements Callable<List<Node>>
+	{
+		private final Node itsParent;
+		private final boolean isBeam;
+		private final boolean isExpanded;
+		private final Ranking[] itsBeams;
+		private final Set<Node> itsSeen;
+
+		Refine(Node theParent, boolean isBeam, boolean isExpanded, Ranking[] theBeams, Set<Node> theSeen)
+		{
+			itsParent = theParent;
+			this.isBeam = isBeam;
+			this.isExpanded = isExpanded;
+			itsBeams = theBeams;
+			itsSeen = theSeen;
+		}
+
+		@Override
+		public List<Node> call()
+		{
+			List<Node> aResult = new ArrayList<Node>();
+			int aNrThresholds = itsThresholds.length;
+			int[] aCounts = new int[aNrThresholds + 1];
+			int[] aParentConditions = itsParent.itsConditions;
+
+			// the exhaustive search only adds Conditions of later ConditionBases
+			int aFirst = 0;
+			if (!isBeam)
+				while ((aFirst < itsConditions.length) && (itsConditionBases[aFirst] <= itsParent.itsLastBase))
+					++aFirst;
+
+			for (int c = aFirst; c < itsConditions.length && !isTimeToStop(); ++c)
+			{
+				int aBase = itsConditionBases[c];
+				if (isBeam && itsParent.hasBase(aBase))
+					continue;
+
+				int[] aConditions = insert(aParentConditions, c);
+				int aLastBase = Math.max(aBase, itsParent.itsLastBase);
+
+				Condition aCondition = itsConditions[c];
+				BitSet aMembers = aCondition.getColumn().evaluate(itsParent.itsMembers, aCondition);
+				int aCoverage = aMembers.cardinality();
+				if ((aCoverage < itsMinimumCoverage) || (aCoverage == 0) || (aCoverage == itsParent.itsCoverage))
+					continue;
+
+				// in a beam, a refinement may be generated from multiple parents
+				// checked after the coverage, so the outcome is independent of
+				// which parent is refined first
+				if (isBeam && !itsSeen.add(new Node(aConditions, aLastBase, null, aCoverage)))
+					continue;
+
+				// cumulative counts over the ranks are the true positive counts
+				Arrays.fill(aCounts, 0);
+				for (int i = aMembers.nextSetBit(0); i >= 0; i = aMembers.nextSetBit(i + 1))
+					++aCounts[itsRanks[i]];
+
+				Node aChild = new Node(aConditions, aLastBase, aMembers, aCoverage);
+				Node aDescription = null;
+				boolean isResult = (aCoverage <= itsMaximumCoverage);
+				for (int i = 0, aNrTruePositives = 0; i < aNrThresholds; ++i)
+				{
+					aNrTruePositives += aCounts[i];
+
+					// as checkAndLogDirect(), the quality is compared as
+					// float, and must exceed the minimum
+					float aQuality = (float) itsQualityMeasures[i].calculate(aNrTruePositives, aCoverage);
+					if (itsBeams != null)
+						itsBeams[i].add(aChild, aQuality, aNrTruePositives);
+
+					if (isResult && (aQuality > itsQualityMeasureMinimum) && (aNrTruePositives >= itsMinimumSupport) && itsResults[i].hasPotential(aChild, aQuality))
+					{
+						// results do not hold on to the members
+						if (aDescription == null)
+							aDescription = new Node(aConditions, aLastBase, null, aCoverage);
+						itsResults[i].add(aDescription, aQuality, aNrTruePositives);
+					}
+				}
+
+				if (isExpanded)
+					aResult.add(aChild);
+			}
+
+			return aResult;
+		}
+	}
+
+	private static final int[] insert(int[] theConditions, int theCondition)
+	{
+		int[] aResult = new int[theConditions.length + 1];
+		int i = 0;
+		for ( ; (i < theConditions.length) && (theConditions[i] < theCondition); ++i)
+			aResult[i] = theConditions[i];
+		aResult[i] = theCondition;
+		for ( ; i < theConditions.length; ++i)
+			aResult[i+1] = theConditions[i];
+		return aResult;
+	}
+
+	private static final List<Node> invokeAll(ExecutorService theExecutorService, List<Callable<List<Node>>> theTasks)
+	{
+		try
+		{
+			List<Node> aResult = new ArrayList<Node>();
+			for (Future<List<Node>> f : theExecutorService.invokeAll(theTasks))
+				aResult.addAll(f.get());
+			return aResult;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/*
+	 * a conjunction of Conditions, by their (ascending) indexes in
+	 * itsConditions, equal when the Conditions are equal, members are set
+	 * only as long as the Node may be refined
+	 */
+	private final class Node implements Comparable<Node>
+	{
+		private final int[] itsConditions;
+		private final int itsLastBase;
+		private final int itsCoverage;
+		private BitSet itsMembers;
+
+		Node(int[] theConditions, int theLastBase, BitSet theMembers, int theCoverage)
+		{
+			itsConditions = theConditions;
+			itsLastBase = theLastBase;
+			itsMembers = theMembers;
+			itsCoverage = theCoverage;
+		}
+
+		boolean hasBase(int theBase)
+		{
+			for (int c : itsConditions)
+				if (itsConditionBases[c] == theBase)
+					return true;
+			return false;
+		}
+
+		@Override
+		public int compareTo(Node theNode)
+		{
+			int[] a = itsConditions;
+			int[] b = theNode.itsConditions;
+			for (int i = 0, j = Math.min(a.length, b.length); i < j; ++i)
+				if (a[i] != b[i])
+					return (a[i] < b[i]) ? -1 : 1;
+			return a.length - b.length;
+		}
+
+		@Override
+		public boolean equals(Object theObject)
+		{
+			return (theObject instanceof Node) && Arrays.equals(itsConditions, ((Node) theObject).itsConditions);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Arrays.hashCode(itsConditions);
+		}
+	}
+
+	// a Node with its quality for a single threshold
+	private static final class Scored implements Comparable<Scored>
+	{
+		private final Node itsNode;
+		private final float itsQuality;
+		private final int itsNrTruePositives;
+
+		Scored(Node theNode, float theQuality, int theNrTruePositives)
+		{
+			itsNode = theNode;
+			itsQuality = theQuality;
+			itsNrTruePositives = theNrTruePositives;
+		}
+
+		// as Subgroup.compareTo(), better first, then larger first
+		@Override
+		public int compareTo(Scored theScored)
+		{
+			int cmp = Float.compare(theScored.itsQuality, itsQuality);
+			if (cmp != 0)
+				return cmp;
+			cmp = theScored.itsNode.itsCoverage - itsNode.itsCoverage;
+			if (cmp != 0)
+				return cmp;
+			return itsNode.compareTo(theScored.itsNode);
+		}
+	}
+
+	/*
+	 * the best Nodes for a single threshold, of at most a maximum size,
+	 * the order is total, so the content does not depend on the order of
+	 * the additions by concurrent Threads
+	 */
+	private static final class Ranking
+	{
+		private final int itsMaximumSize;
+		private final TreeSet<Scored> itsScored = new TreeSet<Scored>();
+		// the last Scored once the Ranking is full, a single volatile read
+		private volatile Scored itsLast = null;
+
+		Ranking(int theMaximumSize)
+		{
+			itsMaximumSize = Math.max(1, theMaximumSize);
+		}
+
+		boolean hasPotential(Node theNode, float theQuality)
+		{
+			Scored aLast = itsLast;
+			if (aLast == null)
+				return true;
+			if (theQuality != aLast.itsQuality)
+				return theQuality > aLast.itsQuality;
+			return (theNode.itsCoverage >= aLast.itsNode.itsCoverage);
+		}
+
+		void add(Node theNode, float theQuality, int theNrTruePositives)
+		{
+			if (!hasPotential(theNode, theQuality))
+				return;
+
+			synchronized (itsScored)
+			{
+				itsScored.add(new Scored(theNode, theQuality, theNrTruePositives));
+				if (itsScored.size() > itsMaximumSize)
+					itsScored.pollLast();
+				if (itsScored.size() == itsMaximumSize)
+					itsLast = itsScored.last();
+			}
+		}
+
+		List<Scored> get()
+		{
+			synchronized (itsScored)
+			{
+				return new ArrayList<Scored>(itsScored);
+			}
+		}
+	}
+}
@@ -8,12 +8,20 @@ public class Candidate implements Comparable<Candidate>
 	// TODO not having this final is a very bad design, will change this, and
 	// remove setPriority() method
 	private double itsPriority;
+	// upper bound on the quality of the refinements of itsSubgroup
+	private final double itsOptimisticEstimate;
 
 	// FIXME MM disallow Candidates of size 0 and 1, they can not be refined
 	public Candidate(Subgroup theSubgroup)
+	{
+		this(theSubgroup, Double.POSITIVE_INFINITY);
+	}
+
+	public Candidate(Subgroup theSubgroup, double theOptimisticEstimate)
 	{
 		itsSubgroup = theSubgroup;
 		itsPriority = theSubgroup.getMeasureValue();
+		itsOptimisticEstimate = theOptimisticEstimate;
 	}
 
 	// throws NullPointerException if theCandidate is null.
@@ -77,6 +85,7 @@ public class Candidate implements Comparable<Candidate>
 
 	public double getPriority() { return itsPriority; }
 	public void setPriority(double thePriority) { itsPriority = thePriority; }
+	public double getOptimisticEstimate() { return itsOptimisticEstimate; }
 	public Subgroup getSubgroup() { return itsSubgroup; }
 
 	@Override
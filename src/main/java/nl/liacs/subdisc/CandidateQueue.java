@@ -1,10 +1,12 @@
 package nl.liacs.subdisc;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /*
  * NOTE As it stands, this class has deadlock potential.
- * Always obtain lock in fixed order: itsQueue -> itsNextQueue -> itsTempQueue.
+ * Always obtain lock in fixed order: itsQueue -> itsNextQueue -> itsTempQueue
+ * -> Shard.
  * 
  * TODO Queue classes in Concurrency framework allow for better concurrency. Eg.
  * Higher concurrency through non-locking algorithms and compareAndSwap methods.
@@ -15,6 +17,13 @@ import java.util.*;
  * Candidates. It allows for faster modification of the hull. Consequently,
  * itsNextQueue is not a TreeSet, however, when moving to a next level the,
  * itsNextQueue is 'transformed' into TreeSet itsQueue.
+ *
+ * NOTE for BEAM and COVER_BASED_BEAM_SELECTION, each Thread adds Candidates
+ * for the next level to its own Shard, so add() does not contend for a lock.
+ * For BEAM a Shard holds at most itsMaximumQueueSize Candidates, as only the
+ * best of those could end up in the next level. Shards are merged into
+ * itsNextQueue (BEAM) or itsTempQueue (COVER_BASED_BEAM_SELECTION) by size(),
+ * when the current level is depleted, and by moveToNextLevel().
  */
 /**
  * A CandidateQueue holds a collection of {@link Candidate Candidate}s for
@@ -27,9 +36,6 @@ import java.util.*;
  */
 public class CandidateQueue
 {
-	// the method is fundamentally flawed (in paper), and the code has a bug
-	private static final boolean USE_OLD_COVER_BASED_SUBGROUP_SELECTION = false;
-
 	private final SearchStrategy itsSearchStrategy;
 	private final boolean isBeamSearchStrategy;
 	private final int itsMaxDepth;
@@ -40,6 +46,18 @@ public class CandidateQueue
 //	private ConvexHullROC itsNextQueueROCBeam;	// debug only
 	private TreeSet<Candidate> itsTempQueue;
 	private final int itsMaximumQueueSize;
+	// COVER_BASED_BEAM_SELECTION only, for CoverBasedSubgroupSelection
+	private final int itsNrThreads;
+	private final long itsMemoryBudget;
+	// BEAM and COVER_BASED_BEAM_SELECTION only
+	private final ThreadLocal<Shard> itsShard = new ThreadLocal<Shard>();
+	private final Queue<Shard> itsShards = new ConcurrentLinkedQueue<Shard>();
+
+	// the next level Candidates added by a single Thread
+	private static final class Shard
+	{
+		private final TreeSet<Candidate> itsCandidates = new TreeSet<Candidate>();
+	}
 
 	public CandidateQueue(SearchParameters theSearchParameters, Candidate theRootCandidate)
 	{
@@ -59,6 +77,8 @@ public class CandidateQueue
 			itsMaximumQueueSize = theSearchParameters.getSearchStrategyWidth();
 		else
 			itsMaximumQueueSize = Integer.MAX_VALUE;
+		itsNrThreads = theSearchParameters.getNrThreads();
+		itsMemoryBudget = theSearchParameters.getCoverBasedMemoryBudget();
 
 		// all SearchStrategies use itsQueue
 		// most use Candidate's natural ordering (no Comparator)
@@ -148,8 +168,8 @@ public class CandidateQueue
 			return false;
 
 		// kill members in all settings for now
-		// COVER_BASED_BEAM_SELECTION actually still needs the members
-		// but that code needs revisions anyway
+		// COVER_BASED_BEAM_SELECTION still needs the members, but
+		// CoverBasedSubgroupSelection re-creates them within its budget
 		// ROC_BEAM kills members AFTER the SubgroupROCPoint is created
 		if (itsSearchStrategy != SearchStrategy.ROC_BEAM)
 			aSubgroup.killMembers();
@@ -157,12 +177,13 @@ public class CandidateQueue
 		switch (itsSearchStrategy)
 		{
 			case BEAM :
-				return addToQueue(itsNextQueue, theCandidate);
+				return addToShard(theCandidate, itsMaximumQueueSize);
 			case ROC_BEAM :
 			{
 				final SubgroupROCPoint p =
 					new SubgroupROCPoint(theCandidate.getSubgroup());
-				boolean isAdded = itsNextQueueConvexHullROC.add(p);
+				boolean isAdded;
+				synchronized (itsNextQueueConvexHullROC) { isAdded = itsNextQueueConvexHullROC.add(p); }
 //				itsNextQueueROCList.add(p);
 //				itsNextQueueROCBeam.add(new CandidateROCPoint(theCandidate));
 
@@ -181,7 +202,7 @@ if (Process.ROC_BEAM_TEST)
 			case COVER_BASED_BEAM_SELECTION :
 			{
 				//simply add candidate, regardless of the current size of itsTempQueue
-				synchronized (itsTempQueue) { return itsTempQueue.add(theCandidate); }
+				return addToShard(theCandidate, Integer.MAX_VALUE);
 			}
 			case BEST_FIRST :
 				return addToQueue(itsQueue, theCandidate);
@@ -209,6 +230,50 @@ if (Process.ROC_BEAM_TEST)
 		}
 	}
 
+	// add candidate to the Shard of the calling Thread, trim to theMaximumSize
+	private boolean addToShard(Candidate theCandidate, int theMaximumSize)
+	{
+		Shard aShard = itsShard.get();
+		if (aShard == null)
+		{
+			aShard = new Shard();
+			itsShard.set(aShard);
+			itsShards.add(aShard);
+		}
+
+		// uncontended, except during a merge
+		synchronized (aShard)
+		{
+			boolean isAdded = aShard.itsCandidates.add(theCandidate);
+
+			if (isAdded && (aShard.itsCandidates.size() > theMaximumSize))
+				aShard.itsCandidates.pollLast();
+
+			return isAdded;
+		}
+	}
+
+	/*
+	 * moves the Candidates of all Shards to theQueue, trimming it to
+	 * theMaximumSize, the caller must hold the lock on theQueue
+	 * the result does not depend on the order of the additions, and the
+	 * Shards remove the duplicates that Threads add independently
+	 */
+	private void mergeShards(TreeSet<Candidate> theQueue, int theMaximumSize)
+	{
+		for (Shard s : itsShards)
+		{
+			synchronized (s)
+			{
+				theQueue.addAll(s.itsCandidates);
+				s.itsCandidates.clear();
+			}
+		}
+
+		while (theQueue.size() > theMaximumSize)
+			theQueue.pollLast();
+	}
+
 	/**
 	 * Retrieves first {@link Candidate Candidate} from this CandidateQueue,
 	 * and moves to next level if required.
@@ -247,9 +312,10 @@ if (Process.ROC_BEAM_TEST)
 			{
 				// make next level current
 				// synchronized (itsQueue) done by removeFirst()
-				itsQueue = itsNextQueue;
 				synchronized (itsNextQueue)
 				{
+					mergeShards(itsNextQueue, itsMaximumQueueSize);
+					itsQueue = itsNextQueue;
 					itsNextQueue = new TreeSet<Candidate>();
 				}
 				break;
@@ -282,55 +348,10 @@ itsNextQueueConvexHullROC.debug();
 				// synchronized (itsQueue) done by removeFirst()
 				synchronized (itsNextQueue) {
 				synchronized (itsTempQueue) {
-					if (!USE_OLD_COVER_BASED_SUBGROUP_SELECTION)
-					{
-						itsQueue     = (TreeSet<Candidate>) CoverBasedSubgroupSelection.postProcessCandidateSet(itsTempQueue, itsMaximumQueueSize);
-						itsNextQueue = new TreeSet<Candidate>();
-						itsTempQueue = new TreeSet<Candidate>();
-						// old optimised code - used up till Cortana.3138.jar
-						// postProcessCBBS();
-					}
-					else
-					{
-						Log.logCommandLine("candidates: " + itsTempQueue.size());
-						int aLoopSize = Math.min(itsMaximumQueueSize, itsTempQueue.size());
-						BitSet aUsed = new BitSet(itsTempQueue.size());
-						for (int i=0; i<aLoopSize; i++) //copy candidates into itsNextQueue
-						{
-							Log.logCommandLine("loop " + i);
-							Candidate aBestCandidate = null;
-							double aMaxQuality = Float.NEGATIVE_INFINITY;
-							int aCount = 0;
-							int aChosen = 0;
-							for (Candidate aCandidate : itsTempQueue)
-							{
-								if (!aUsed.get(aCount)) //is this one still available
-								{
-									double aQuality = computeMultiplicativeWeight(aCandidate) * aCandidate.getPriority();
-									if (aQuality > aMaxQuality)
-									{
-										aMaxQuality = aQuality;
-										aBestCandidate = aCandidate;
-										aChosen = aCount;
-									}
-								}
-								aCount++;
-							}
-							Log.logCommandLine("best (" + aChosen + "): " + aBestCandidate.getPriority() + ", " + computeMultiplicativeWeight(aBestCandidate) + ", " + aMaxQuality);
-							aUsed.set(aChosen, true);
-							aBestCandidate.setPriority(aMaxQuality);
-							addToQueue(itsNextQueue, aBestCandidate);
-						}
-						itsQueue = itsNextQueue;
-
-						Log.logCommandLine("========================================================");
-						Log.logCommandLine("used: " + aUsed.toString());
-						for (Candidate aCandidate : itsQueue)
-							Log.logCommandLine("priority: " + aCandidate.getPriority());
-
-						itsNextQueue = new TreeSet<Candidate>();
-						itsTempQueue = new TreeSet<Candidate>();
-					}
+					mergeShards(itsTempQueue, Integer.MAX_VALUE);
+					itsQueue     = (TreeSet<Candidate>) CoverBasedSubgroupSelection.postProcessCandidateSet(itsTempQueue, itsMaximumQueueSize, itsNrThreads, itsMemoryBudget);
+					itsNextQueue = new TreeSet<Candidate>();
+					itsTempQueue = new TreeSet<Candidate>();
 				}
 				}
 				break;
@@ -345,6 +366,9 @@ itsNextQueueConvexHullROC.debug();
 	 * Returns the total number of {@link Candidate Candidate}s in this
 	 * CandidateQueue.
 	 * Thread save with respect to add() and removeFirst().
+	 * For BEAM and COVER_BASED_BEAM_SELECTION this merges the Candidates
+	 * that are added for the next level, so call it sparingly, for example
+	 * only when {@link #currentLevelQueueSize()} returns 0.
 	 * 
 	 * @return the size of the current queue level.
 	 * 
@@ -365,6 +389,7 @@ itsNextQueueConvexHullROC.debug();
 					int qs = itsQueue.size();
 					synchronized (itsNextQueue)
 					{
+						mergeShards(itsNextQueue, itsMaximumQueueSize);
 						return qs + itsNextQueue.size();
 					}
 				}
@@ -387,6 +412,7 @@ itsNextQueueConvexHullROC.debug();
 					int qs = itsQueue.size();
 					synchronized (itsTempQueue)
 					{
+						mergeShards(itsTempQueue, Integer.MAX_VALUE);
 						return qs + itsTempQueue.size();
 					}
 				}
@@ -419,219 +445,4 @@ itsNextQueueConvexHullROC.debug();
 	{
 		synchronized (itsQueue) { return itsQueue.size(); }
 	}
-
-	////////////////////////////////////////////////////////////////////////////
-	////////////////////////////////////////////////////////////////////////////
-	///// start of obsolete code - replaced by CoverBasedSubgroupSelection /////
-	/////                                                                  /////
-	///// the CBSS technique, as presented in the papers, is fundamentally /////
-	///// flawed                                                           /////
-	///// it can not properly handle quality measures that might yield a   /////
-	///// negative quality                                                 /////
-	///// among these are the WRAcc and Numeric WRAcc measures as offered  /////
-	///// in the papers                                                    /////
-	///// for negative qualities the technique does the exact opposite of  /////
-	///// what it claims to do: selecting Subgroups with HIGH cover counts /////
-	///// and for a quality of 0, the cover counts are ignored completely  /////
-	/////                                                                  /////
-	///// the original implementation by Arno called the two methods below /////
-	///// from the (now) unused code in moveToNextLevel()                  /////
-	/////   computeCoverCount(int)                                         /////
-	/////   computeMultiplicativeWeight(Candidate)                         /////
-	///// it is extremely slow, and flawed as in the paper                 /////
-	///// it also contains a bug                                           /////
-	/////                                                                  /////
-	///// the optimised implementation consists of                         /////
-	/////   postProcessCBBS()                                              /////
-	/////   updateCoverCounts(int[], Candidate)                            /////
-	/////   computeMultiplicativeWeight(Candidate, int[])                  /////
-	///// it is based on the original code                                 /////
-	///// it is much faster, flawed as in the paper, contains the same bug /////
-	/////                                                                  /////
-	///// the correct, bug-free CoverBasedSubgroupSelection is based on it /////
-	/////                                                                  /////
-	////////////////////////////////////////////////////////////////////////////
-	////////////////////////////////////////////////////////////////////////////
-
-	/**
-	* Computes the cover count of a particular example: the number of times this example is a member of a subgroup. \n
-	* See van Leeuwen & Knobbe, ECML PKDD 2011. \n
-	*/
-	@Deprecated
-	private int computeCoverCount(int theRow)
-	{
-		int aResult = 0;
-
-		synchronized (itsNextQueue)
-		{
-			for (Candidate aCandidate: itsNextQueue)
-				if (aCandidate.getSubgroup().covers(theRow))
-					++aResult;
-		}
-
-		return aResult;
-	}
-
-	/**
-	* Computes the multiplicative weight of a subgroup \n
-	* See van Leeuwen & Knobbe, ECML PKDD 2011. \n
-	*/
-	@Deprecated
-	private double computeMultiplicativeWeight(Candidate theCandidate)
-	{
-		double aResult = 0;
-		double anAlpha = 0.9;
-		Subgroup aSubgroup = theCandidate.getSubgroup();
-		/*
-		 * FIXME MM
-		 *
-		 * this is one of the things that makes cbbs extremely slow
-		 * getMembers() returns a clone of the members
-		 * for large dataset this is costly
-		 */
-		BitSet aMember = aSubgroup.getMembers();
-
-		for(int i=aMember.nextSetBit(0); i>=0; i=aMember.nextSetBit(i+1))
-			aResult += Math.pow(anAlpha, computeCoverCount(i));
-
-		return aResult/aSubgroup.getCoverage();
-	}
-
-	/*
-	 * TODO MM
-	 * from here on itsTempQueue is not needed as Tree structure anymore
-	 * creating a linear access linear access data view of its items may be
-	 * faster to access, as it can be better predicted by the cpu
-	 * and avoids the use of extra positioning variables
-	 */
-	@Deprecated
-	private final void postProcessCBBS()
-	{
-		int aSize = itsTempQueue.size();
-
-		if (aSize == 0)
-		{
-			Log.logCommandLine("========================================================");
-			itsQueue = itsNextQueue;
-			itsNextQueue = new TreeSet<Candidate>();
-			itsTempQueue = new TreeSet<Candidate>();
-			return;
-		}
-
-		// first() is safe when itsTempQueue is not empty
-		int aNrRows = itsTempQueue.first().getSubgroup().getParentSet().getTotalCoverage();
-		int[] aCoverCounts = new int[aNrRows];
-
-		// in each execution of the loop, a Candidate will be added to
-		// itsNextQueue, and the cover counts go up
-		// as cover counts go up, multiplicative weights go down
-		// so for each round, the maximum score a Candidate can attain
-		// is upper bounded by the score attained in the previous round
-		// this is useful for pruning, see main loop below
-		// the scores are initiates to c.getPriority()
-		// see the comment on the first loop below
-		double[] aLastQuality = new double[aSize];
-		int idx = -1;
-		for (Candidate c : itsTempQueue)
-			aLastQuality[++idx] = c.getPriority();
-
-		int aLoopSize = Math.min(itsMaximumQueueSize, aSize);
-		BitSet aUsed = new BitSet(aSize);
-
-		Log.logCommandLine("candidates: " + aSize);
-		// the first loop is special, as there are no Candidates in itsNextQueue
-		// yet, the multiplicative weight for each Candidate is equal to 1.0
-		// so the Candidate with the highest priority wins
-		// and its new quality = 1.0 * c.getPriority()
-		// therefore the first execution of the loop is taken out
-		Log.logCommandLine("loop 0");
-		Log.logCommandLine(String.format("best (0): %f, 1.0, %1$f", aLastQuality[0]));
-		Candidate aFirst = itsTempQueue.first();
-		aUsed.set(0);
-		addToQueue(itsNextQueue, aFirst);
-		updateCoverCounts(aCoverCounts, aFirst);
-
-		// copy candidates into itsNextQueue
-		for (int i = 1; i < aLoopSize; ++i)
-		{
-			Log.logCommandLine("loop " + i);
-
-			// TODO MM - check the following suspicion
-			// all qualities can be NEGATIVE_INFINITY, it is a possible result
-			// for some quality measures (whether it is valid is something else)
-			// then <= aMaxQuality would always be true, and the loop does not
-			// select any Candidate, causing NullPointerExceptions below
-			double aMaxQuality          = Double.NEGATIVE_INFINITY;
-			Candidate aBestCandidate    = null;
-			double aBestCandidateWeight = Double.NaN;
-			int aCount                  = -1;
-			int aChosen                 = -1;
-
-			// it might be faster to copy Candidates to array or List first
-			// and then use index-based access using first clear Bit of used
-			for (Candidate aCandidate : itsTempQueue)
-			{
-				if (aUsed.get(++aCount))
-					continue;
-
-				// score can not get better than last time, so if that would not
-				// have been good enough there is no use in checking Candidate
-				if (aLastQuality[aCount] <= aMaxQuality)
-					continue;
-
-				// could get members here and reuse for update()
-				double aWeight       = computeMultiplicativeWeight(aCandidate, aCoverCounts);
-				double aQuality      = (aWeight * aCandidate.getPriority());
-				aLastQuality[aCount] = aQuality;
-
-				if (aQuality > aMaxQuality)
-				{
-					aMaxQuality          = aQuality;
-					aBestCandidate       = aCandidate;
-					aBestCandidateWeight = aWeight;
-					aChosen              = aCount;
-				}
-			}
-
-			Log.logCommandLine(String.format("best (%d): %f, %f, %f", aChosen, aBestCandidate.getPriority(), aBestCandidateWeight, aMaxQuality));
-			aUsed.set(aChosen);
-			aBestCandidate.setPriority(aMaxQuality);
-			addToQueue(itsNextQueue, aBestCandidate);
-			updateCoverCounts(aCoverCounts, aBestCandidate);
-		}
-		itsQueue = itsNextQueue;
-
-		Log.logCommandLine("========================================================");
-		Log.logCommandLine("used: " + aUsed.toString());
-		for (Candidate aCandidate : itsQueue)
-			Log.logCommandLine("priority: " + aCandidate.getPriority());
-
-		itsNextQueue = new TreeSet<Candidate>();
-		itsTempQueue = new TreeSet<Candidate>();
-	}
-
-	@Deprecated
-	private static final void updateCoverCounts(int[] theCoverCounts, Candidate theCandidate)
-	{
-		BitSet b = theCandidate.getSubgroup().getMembers();
-
-		for (int i = b.nextSetBit(0); i >= 0; i = b.nextSetBit(i+1))
-			++theCoverCounts[i];
-	}
-
-	private static final double ALPHA = 0.9;
-	@Deprecated
-	private static final double computeMultiplicativeWeight(Candidate theCandidate, int[] theCoverCounts)
-	{
-		Subgroup aSubgroup = theCandidate.getSubgroup();
-		// this creates a clone of the members BitSet every time in the loop
-		// the BitSet should be cached
-		BitSet b = aSubgroup.getMembers();
-
-		double aResult = 0.0;
-		for (int i = b.nextSetBit(0); i >= 0; i = b.nextSetBit(i+1))
-			aResult += Math.pow(ALPHA, theCoverCounts[i]);
-
-		return aResult / aSubgroup.getCoverage();
-	}
 }
@@ -1,6 +1,9 @@
 package nl.liacs.subdisc;
 
+import java.nio.*;
+import java.nio.charset.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import nl.liacs.subdisc.gui.*;
 
@@ -57,6 +60,9 @@ public class Column implements XMLNodeInterface
 	private static final int MASK_OFF = 0x7fffffff;
 	private float[] itsSortedFloats;
 	private int[] itsSortIndex;
+	// set by Column(ByteBuffer), the sort data remains valid as long as
+	// itsFloatz is this array, see isPresorted()
+	private float[] itsPresortedFloatz;
 
 //	private static final String falseFloat = "[-+]?0*(\\.0+)?"; // DO NOT REMOVE
 	private static final String trueFloat = "\\+?0*1(\\.0+)?";
@@ -209,6 +215,272 @@ public class Column implements XMLNodeInterface
 		setupColumn(DEFAULT_INIT_SIZE);
 	}
 
+	/**
+	 * Creates a Column from a snapshot written by {@link #toSnapshot()}.
+	 * The data is copied from theSnapshot using bulk transfers, so no
+	 * parsing, type inference or lookups in itsDistinctValuesMap are
+	 * required. For NUMERIC Columns, the sort data is also restored, so
+	 * {@link #buildSorted(BitSet)} does not need to sort the data again.
+	 * <p>
+	 * NOTE the data is not read lazily. Even if theSnapshot is a memory
+	 * mapped buffer, it is copied onto the heap, as all methods of Column
+	 * work on its arrays, and some modify them. So a Column loaded from a
+	 * snapshot needs as much heap memory as one loaded from text, only
+	 * the loading is faster. theSnapshot is not referenced after return.
+	 * <p>
+	 * On return, the position of theSnapshot is right after this Column.
+	 *
+	 * @param theSnapshot a ByteBuffer with ByteOrder.LITTLE_ENDIAN.
+	 *
+	 * @see FileLoaderSnapshot
+	 */
+	Column(ByteBuffer theSnapshot)
+	{
+		itsName = getSnapshotString(theSnapshot);
+		itsShort = getSnapshotString(theSnapshot);
+		itsType = AttributeType.valueOf(getSnapshotString(theSnapshot));
+		itsIndex = theSnapshot.getInt();
+		isEnabled = (theSnapshot.get() != 0);
+		itsTargetStatus = theSnapshot.getInt();
+		itsSize = theSnapshot.getInt();
+		itsCardinality = theSnapshot.getInt();
+		itsMin = theSnapshot.getFloat();
+		itsMax = theSnapshot.getFloat();
+		itsMissingValueIsUnique = (theSnapshot.get() != 0);
+		itsMissing = getSnapshotBitSet(theSnapshot);
+
+		switch (itsType)
+		{
+			case NOMINAL :
+			{
+				int aNrDistinct = theSnapshot.getInt();
+				itsDistinctValues = new ArrayList<String>(aNrDistinct);
+				itsDistinctValuesMap = new HashMap<String, Integer>(Math.max(MAP_DEFAULT_INIT_SIZE, 2 * aNrDistinct));
+				for (int i = 0; i < aNrDistinct; ++i)
+				{
+					String aValue = getSnapshotString(theSnapshot);
+					itsDistinctValues.add(aValue);
+					itsDistinctValuesMap.put(aValue, i);
+				}
+
+				itsNominalz = new int[itsSize];
+				theSnapshot.asIntBuffer().get(itsNominalz);
+				theSnapshot.position(theSnapshot.position() + (Integer.BYTES * itsSize));
+				break;
+			}
+			case NUMERIC :
+			{
+				itsFloatz = new float[itsSize];
+				theSnapshot.asFloatBuffer().get(itsFloatz);
+				theSnapshot.position(theSnapshot.position() + (Float.BYTES * itsSize));
+
+				itsSortedFloats = new float[theSnapshot.getInt()];
+				theSnapshot.asFloatBuffer().get(itsSortedFloats);
+				theSnapshot.position(theSnapshot.position() + (Float.BYTES * itsSortedFloats.length));
+
+				itsSortIndex = new int[itsSize];
+				theSnapshot.asIntBuffer().get(itsSortIndex);
+				theSnapshot.position(theSnapshot.position() + (Integer.BYTES * itsSize));
+
+				itsPresortedFloatz = itsFloatz;
+				break;
+			}
+			case ORDINAL :
+			{
+				throw new AssertionError(itsType);
+			}
+			case BINARY :
+			{
+				itsBinaries = getSnapshotBitSet(theSnapshot);
+				break;
+			}
+			default :
+			{
+				logTypeError("Column<init>");
+				throw new AssertionError(itsType);
+			}
+		}
+	}
+
+	/**
+	 * Creates a snapshot of this Column, that can be read by
+	 * {@link #Column(ByteBuffer)}.
+	 * The data members are written as is, for NUMERIC Columns the sort
+	 * data is written as well, without target mask.
+	 * <p>
+	 * NOTE as it is a single ByteBuffer, a snapshot is limited to 2GB, that
+	 * is about 268M rows for a NUMERIC Column.
+	 *
+	 * @return a ByteBuffer with ByteOrder.LITTLE_ENDIAN, positioned at 0.
+	 *
+	 * @see FileLoaderSnapshot
+	 */
+	ByteBuffer toSnapshot()
+	{
+		byte[] aName = getSnapshotBytes(itsName);
+		byte[] aShort = getSnapshotBytes(itsShort);
+		byte[] aType = getSnapshotBytes(itsType.name());
+		long[] aMissing = itsMissing.toLongArray();
+
+		// name, short, type, index, enabled, target status, size,
+		// cardinality, min, max, unique, missing
+		long aSize = (3 * Integer.BYTES) + aName.length + (aShort == null ? 0 : aShort.length) + aType.length
+				+ (6 * Integer.BYTES) + 2
+				+ Integer.BYTES + (Long.BYTES * (long) aMissing.length);
+
+		byte[][] aDistinctValues = null;
+		long[] aBinaries = null;
+		float[] aSortedFloats = null;
+		int[] aSortIndex = null;
+		switch (itsType)
+		{
+			case NOMINAL :
+			{
+				aDistinctValues = new byte[itsDistinctValues.size()][];
+				aSize += Integer.BYTES;
+				for (int i = 0; i < aDistinctValues.length; ++i)
+				{
+					aDistinctValues[i] = getSnapshotBytes(itsDistinctValues.get(i));
+					aSize += Integer.BYTES + aDistinctValues[i].length;
+				}
+				aSize += (Integer.BYTES * (long) itsSize);
+				break;
+			}
+			case NUMERIC :
+			{
+				aSortIndex = new int[itsSize];
+				if (isPresorted())
+				{
+					aSortedFloats = itsSortedFloats;
+					for (int i = 0; i < itsSize; ++i)
+						aSortIndex[i] = (MASK_OFF & itsSortIndex[i]);
+				}
+				else
+				{
+					aSortedFloats = Function.getUniqueValues(Arrays.copyOf(itsFloatz, itsSize));
+					for (int i = 0; i < itsSize; ++i)
+						aSortIndex[i] = Arrays.binarySearch(aSortedFloats, itsFloatz[i]);
+				}
+				aSize += (Float.BYTES * (long) itsSize)
+						+ Integer.BYTES + (Float.BYTES * (long) aSortedFloats.length)
+						+ (Integer.BYTES * (long) itsSize);
+				break;
+			}
+			case ORDINAL :
+			{
+				throw new AssertionError(itsType);
+			}
+			case BINARY :
+			{
+				aBinaries = itsBinaries.toLongArray();
+				aSize += Integer.BYTES + (Long.BYTES * (long) aBinaries.length);
+				break;
+			}
+			default :
+			{
+				logTypeError("toSnapshot");
+				throw new AssertionError(itsType);
+			}
+		}
+
+		if (aSize > Integer.MAX_VALUE)
+			throw new IllegalStateException(String.format("Column '%s' is too large for a snapshot: %d bytes", itsName, aSize));
+
+		ByteBuffer aBuffer = ByteBuffer.allocate((int) aSize).order(ByteOrder.LITTLE_ENDIAN);
+		putSnapshotBytes(aBuffer, aName);
+		putSnapshotBytes(aBuffer, aShort);
+		putSnapshotBytes(aBuffer, aType);
+		aBuffer.putInt(itsIndex);
+		aBuffer.put((byte) (isEnabled ? 1 : 0));
+		aBuffer.putInt(itsTargetStatus);
+		aBuffer.putInt(itsSize);
+		aBuffer.putInt(itsCardinality);
+		aBuffer.putFloat(itsMin);
+		aBuffer.putFloat(itsMax);
+		aBuffer.put((byte) (itsMissingValueIsUnique ? 1 : 0));
+		putSnapshotLongs(aBuffer, aMissing);
+
+		switch (itsType)
+		{
+			case NOMINAL :
+			{
+				aBuffer.putInt(aDistinctValues.length);
+				for (byte[] b : aDistinctValues)
+					putSnapshotBytes(aBuffer, b);
+				aBuffer.asIntBuffer().put(itsNominalz, 0, itsSize);
+				aBuffer.position(aBuffer.position() + (Integer.BYTES * itsSize));
+				break;
+			}
+			case NUMERIC :
+			{
+				aBuffer.asFloatBuffer().put(itsFloatz, 0, itsSize);
+				aBuffer.position(aBuffer.position() + (Float.BYTES * itsSize));
+				aBuffer.putInt(aSortedFloats.length);
+				aBuffer.asFloatBuffer().put(aSortedFloats);
+				aBuffer.position(aBuffer.position() + (Float.BYTES * aSortedFloats.length));
+				aBuffer.asIntBuffer().put(aSortIndex);
+				aBuffer.position(aBuffer.position() + (Integer.BYTES * itsSize));
+				break;
+			}
+			case BINARY :
+			{
+				putSnapshotLongs(aBuffer, aBinaries);
+				break;
+			}
+			default :
+				throw new AssertionError(itsType);
+		}
+
+		assert (!aBuffer.hasRemaining());
+		aBuffer.flip();
+		return aBuffer;
+	}
+
+	// Strings are written as length + UTF-8 bytes, length -1 means null
+	// also used for the header written by Table.toSnapshot()
+	static byte[] getSnapshotBytes(String theString)
+	{
+		return (theString == null) ? null : theString.getBytes(StandardCharsets.UTF_8);
+	}
+
+	static void putSnapshotBytes(ByteBuffer theBuffer, byte[] theBytes)
+	{
+		if (theBytes == null)
+			theBuffer.putInt(-1);
+		else
+		{
+			theBuffer.putInt(theBytes.length);
+			theBuffer.put(theBytes);
+		}
+	}
+
+	static String getSnapshotString(ByteBuffer theBuffer)
+	{
+		int aLength = theBuffer.getInt();
+		if (aLength < 0)
+			return null;
+
+		byte[] aBytes = new byte[aLength];
+		theBuffer.get(aBytes);
+		return new String(aBytes, StandardCharsets.UTF_8);
+	}
+
+	private static void putSnapshotLongs(ByteBuffer theBuffer, long[] theLongs)
+	{
+		theBuffer.putInt(theLongs.length);
+		theBuffer.asLongBuffer().put(theLongs);
+		theBuffer.position(theBuffer.position() + (Long.BYTES * theLongs.length));
+	}
+
+	private static BitSet getSnapshotBitSet(ByteBuffer theBuffer)
+	{
+		int aLength = theBuffer.getInt();
+		LongBuffer aLongs = theBuffer.asLongBuffer();
+		aLongs.limit(aLength);
+		theBuffer.position(theBuffer.position() + (Long.BYTES * aLength));
+		return BitSet.valueOf(aLongs);
+	}
+
 	/**
 	 * Creates an {@link XMLNode XMLNode} representation of this Column.
 	 * Note: the value for missing values is included as missing_value. When
@@ -230,7 +502,8 @@ public class Column implements XMLNodeInterface
 
 	public Column copy()
 	{
-		Column aCopy = new Column(itsName, itsShort, itsType, itsIndex, itsSize);
+		// all data members are overwritten below, do not allocate itsSize
+		Column aCopy = new Column(itsName, itsShort, itsType, itsIndex, 0);
 		aCopy.itsFloatz = itsFloatz;
 		aCopy.itsNominalz = itsNominalz;
 		aCopy.itsBinaries = itsBinaries;
@@ -480,7 +753,10 @@ public class Column implements XMLNodeInterface
 	void set(int theIndex, float theValue)
 	{
 		if (!isOutOfBounds(theIndex))
+		{
 			itsFloatz[theIndex] = theValue;
+			itsPresortedFloatz = null;
+		}
 	}
 
 	public int size() { return itsSize; }
@@ -1257,7 +1533,8 @@ public class Column implements XMLNodeInterface
 		{
 			case NOMINAL :
 			{
-				aResult = new BitSet(itsSize);
+				// aResult is a subset of theBitSet, do not allocate itsSize
+				aResult = new BitSet(theBitSet.length());
 
 				switch (anOperator)
 				{
@@ -1265,8 +1542,13 @@ public class Column implements XMLNodeInterface
 						nominalElementOf(theBitSet, theCondition.getNominalValueSet(), aResult);
 						break;
 					case EQUALS :
+					{
+						BitSet anExtent = getNominalExtent(theCondition.getNominalValue());
+						if (anExtent != null)
+							return intersect(theBitSet, anExtent);
 						nominalEquals(theBitSet, theCondition.getNominalValue(), aResult);
 						break;
+					}
 					default :
 						throw new AssertionError(itsType + " incompatible with " + anOperator);
 				}
@@ -1274,7 +1556,11 @@ public class Column implements XMLNodeInterface
 			}
 			case NUMERIC :
 			{
-				aResult = new BitSet(itsSize);
+				BitSet anExtent = getNumericExtent(anOperator, theCondition.getSortIndex());
+				if (anExtent != null)
+					return intersect(theBitSet, anExtent);
+
+				aResult = new BitSet(theBitSet.length());
 
 				// the Condition constructor with float always sets sort index
 				// the Condition constructor with Interval does not
@@ -1355,6 +1641,180 @@ public class Column implements XMLNodeInterface
 		}
 	}
 
+	// word-wise alternative for evaluateBinary() for the SINGLE_NOMINAL
+	// special case, no BitSets are created, theMembers and theTarget are the
+	// words of the BitSets, theTarget holds at least theNrWords words
+	// theCounts[0] is set to the number of members that are true, [1] to the
+	// number of those that are also set in theTarget, and [2] to the number of
+	// members that are set in theTarget
+	// NOTE buildBinaryWords() should be called before mining, as for the sorted
+	// data of NUMERIC Columns, see SubgroupDiscovery.prepareData()
+	private long[] itsBinaryWords = null;
+	void buildBinaryWords() { itsBinaryWords = Arrays.copyOf(itsBinaries.toLongArray(), (itsSize + 63) >>> 6); }
+	final void countBinary(long[] theMembers, int theNrWords, long[] theTarget, int[] theCounts)
+	{
+		assert (itsType == AttributeType.BINARY);
+		assert (itsBinaryWords != null);
+
+		long[] aBinaries = itsBinaryWords;
+		int aCount = 0;
+		int aPositives = 0;
+		int aMembersPositives = 0;
+		for (int i = 0, j = Math.min(theNrWords, aBinaries.length); i < j; ++i)
+		{
+			long m = theMembers[i] & theTarget[i];
+			aCount += Long.bitCount(theMembers[i] & aBinaries[i]);
+			aPositives += Long.bitCount(m & aBinaries[i]);
+			aMembersPositives += Long.bitCount(m);
+		}
+		for (int i = aBinaries.length; i < theNrWords; ++i)
+			aMembersPositives += Long.bitCount(theMembers[i] & theTarget[i]);
+
+		theCounts[0] = aCount;
+		theCounts[1] = aPositives;
+		theCounts[2] = aMembersPositives;
+	}
+
+	/*
+	 * Vertical (tid-list) layout: the extent of a Condition over all records
+	 * does not change during mining, so evaluate() intersects the members
+	 * with the cached extent, instead of testing the value of every member.
+	 * The extents of all values of a NOMINAL Column are built at once, in a
+	 * single pass over the data. The EQUALS, LEQ and GEQ extents of a NUMERIC
+	 * Column are built when first used, as there can be many split points,
+	 * and they are indexed by sort index, so buildSorted() is called first.
+	 * All Columns of a mining run share theBudget, the number of bytes the
+	 * extents may still use. When it is exhausted no more extents are built,
+	 * and evaluate() tests the members as before.
+	 * NOTE buildExtents() should be called before mining, and removeExtents()
+	 * after it, see SubgroupDiscovery.prepareData()
+	 */
+	private volatile Extents itsExtents = null;
+
+	private static final class Extents
+	{
+		private final AtomicReferenceArray<BitSet> itsBitSets;
+		private final AtomicLong itsBudget;
+		private final long itsBytes; // of a single extent
+
+		private Extents(int theNrExtents, int theNrRecords, AtomicLong theBudget)
+		{
+			itsBitSets = new AtomicReferenceArray<BitSet>(theNrExtents);
+			itsBudget = theBudget;
+			// the long[] of a BitSet, plus the objects overhead
+			itsBytes = (((theNrRecords + 63L) >>> 6) << 3) + 64L;
+		}
+
+		private boolean reserve(long theBytes)
+		{
+			for (long aBudget = itsBudget.get(); aBudget >= theBytes; aBudget = itsBudget.get())
+				if (itsBudget.compareAndSet(aBudget, aBudget - theBytes))
+					return true;
+
+			return false;
+		}
+	}
+
+	void buildExtents(AtomicLong theBudget)
+	{
+		switch (itsType)
+		{
+			case NOMINAL :
+			{
+				// itsCardinality is only set by close()
+				int aNrValues = itsDistinctValues.size();
+				Extents anExtents = new Extents(aNrValues, itsSize, theBudget);
+				if (!anExtents.reserve(aNrValues * anExtents.itsBytes))
+					return;
+
+				BitSet[] aBitSets = new BitSet[aNrValues];
+				for (int i = 0; i < aNrValues; ++i)
+					aBitSets[i] = new BitSet(itsSize);
+				// note that this removes X = '?', as nominalEquals()
+				for (int i = 0; i < itsSize; ++i)
+					if (!itsMissing.get(i))
+						aBitSets[itsNominalz[i]].set(i);
+				for (int i = 0; i < aNrValues; ++i)
+					anExtents.itsBitSets.set(i, aBitSets[i]);
+
+				itsExtents = anExtents;
+				break;
+			}
+			case NUMERIC :
+			{
+				// EQUALS, LEQ and GEQ for every sort index
+				if (itsSortIndex != null)
+					itsExtents = new Extents(3 * itsSortedFloats.length, itsSize, theBudget);
+				break;
+			}
+			default :
+				break;
+		}
+	}
+
+	void removeExtents() { itsExtents = null; }
+
+	private BitSet getNominalExtent(String theValue)
+	{
+		Extents anExtents = itsExtents;
+		if (anExtents == null)
+			return null;
+
+		// if the eager build went over budget, itsExtents is not set
+		return anExtents.itsBitSets.get(itsDistinctValuesMap.get(theValue));
+	}
+
+	private BitSet getNumericExtent(Operator theOperator, int theSortIndex)
+	{
+		Extents anExtents = itsExtents;
+		int aNrSorted = anExtents == null ? 0 : anExtents.itsBitSets.length() / 3;
+		if ((theSortIndex < 0) || (theSortIndex >= aNrSorted))
+			return null;
+
+		final int anIndex;
+		switch (theOperator)
+		{
+			case EQUALS :                anIndex = theSortIndex; break;
+			case LESS_THAN_OR_EQUAL :    anIndex = aNrSorted + theSortIndex; break;
+			case GREATER_THAN_OR_EQUAL : anIndex = (2 * aNrSorted) + theSortIndex; break;
+			default :                    return null;
+		}
+
+		BitSet anExtent = anExtents.itsBitSets.get(anIndex);
+		if ((anExtent != null) || !anExtents.reserve(anExtents.itsBytes))
+			return anExtent;
+
+		// same tests as numericEquals(), numericLEQ() and numericGEQ()
+		int[] aSortIndex = itsSortIndex;
+		if (aSortIndex == null)
+		{
+			anExtents.itsBudget.addAndGet(anExtents.itsBytes);
+			return null;
+		}
+		anExtent = new BitSet(itsSize);
+		for (int i = 0; i < itsSize; ++i)
+		{
+			int s = (MASK_OFF & aSortIndex[i]);
+			boolean isIn = (theOperator == Operator.EQUALS) ? (s == theSortIndex) : (theOperator == Operator.LESS_THAN_OR_EQUAL) ? (s <= theSortIndex) : (s >= theSortIndex);
+			if (isIn && !itsMissing.get(i))
+				anExtent.set(i);
+		}
+
+		// another Thread may have built it in the meantime
+		if (anExtents.itsBitSets.compareAndSet(anIndex, null, anExtent))
+			return anExtent;
+		anExtents.itsBudget.addAndGet(anExtents.itsBytes);
+		return anExtents.itsBitSets.get(anIndex);
+	}
+
+	// theMembers is not modified, the result is a subset of it
+	private static final BitSet intersect(BitSet theMembers, BitSet theExtent)
+	{
+		BitSet aResult = (BitSet) theMembers.clone();
+		aResult.and(theExtent);
+		return aResult;
+	}
+
 	// account for d>1, where _new will not be the same as old
 	// every bit set in new, must also be set in old, and no more
 	@SuppressWarnings("unused") // keep, evaluate() will change, and be tested
@@ -1768,7 +2228,43 @@ public class Column implements XMLNodeInterface
 	// corresponding value from column.itsDistinctValuesU(non_zero_count_index) this uses aCollection.unmodifiableList<String> for the domain to avoid
 	// creating Objects, sharing is safe, and the JVM knows it will not change
 	List<String> itsDistinctValuesU = null;
-	void buildSharedDomain() { itsDistinctValuesU = Collections.unmodifiableList(itsDistinctValues); }
+	void buildSharedDomain() { itsDistinctValuesU = Collections.unmodifiableList(itsDistinctValues); itsDomainOrder = null; }
+
+	// indexes of itsDistinctValues in String order, see getDomainOrder()
+	private volatile int[] itsDomainOrder = null;
+
+	// the NominalCrossTable lists values in String order, as it did when it
+	// sorted the values of the members, now this order is established once,
+	// and reset by buildSharedDomain() as the domain may have changed
+	final int[] getDomainOrder()
+	{
+		int[] anOrder = itsDomainOrder;
+		if ((anOrder != null) && (anOrder.length == itsDistinctValues.size()))
+			return anOrder;
+
+		final List<String> aDomain = itsDistinctValues;
+		Integer[] anIndexes = new Integer[aDomain.size()];
+		for (int i = 0; i < anIndexes.length; ++i)
+			anIndexes[i] = i;
+		Arrays.sort(anIndexes, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer x, Integer y)
+			{
+				return aDomain.get(x).compareTo(aDomain.get(y));
+			}
+		});
+
+		anOrder = new int[anIndexes.length];
+		for (int i = 0; i < anOrder.length; ++i)
+			anOrder[i] = anIndexes[i];
+		itsDomainOrder = anOrder;
+		return anOrder;
+	}
+
+	// the value for an index in itsDistinctValues, as used by getDomainOrder()
+	final String getDistinctValue(int theIndex) { return itsDistinctValues.get(theIndex); }
+
 	int[] getUniqueNominalDomainCounts(BitSet theBitSet, int theBitSetCardinality)
 	{
 		// not a public method, caller should ensure (theBitSetCardinality > 1)
@@ -1803,6 +2299,78 @@ public class Column implements XMLNodeInterface
 		return aCounts;
 	}
 
+	// as getUniqueNominalDomainCounts(), but for the SINGLE_NOMINAL special
+	// case, no int[] is created, theMembers and theTarget are the words of the
+	// BitSets, theTarget holds at least theNrWords words
+	// theCounts is set to the number of members for each value, theCoverages
+	// to the number of those that are not missing, as nominalEquals() does,
+	// and thePositives to the number of those that are also set in theTarget
+	// all should hold at least getCardinality() values, the number of distinct
+	// values in theCounts is returned
+	int countUniqueNominalDomain(long[] theMembers, int theNrWords, long[] theTarget, int[] theCounts, int[] theCoverages, int[] thePositives)
+	{
+		assert (itsType == AttributeType.NOMINAL);
+
+		Arrays.fill(theCounts, 0, itsCardinality, 0);
+		Arrays.fill(theCoverages, 0, itsCardinality, 0);
+		Arrays.fill(thePositives, 0, itsCardinality, 0);
+
+		boolean hasMissing = !itsMissing.isEmpty();
+		int aNrDistinct = 0;
+		for (int i = 0; i < theNrWords; ++i)
+		{
+			long t = theTarget[i];
+			for (long w = theMembers[i]; w != 0L; w &= (w - 1))
+			{
+				int aBit = Long.numberOfTrailingZeros(w);
+				int anIndex = (i << 6) + aBit;
+				int aValue = itsNominalz[anIndex];
+				if ((++theCounts[aValue]) == 1)
+					++aNrDistinct;
+				if (hasMissing && itsMissing.get(anIndex))
+					continue;
+				++theCoverages[aValue];
+				thePositives[aValue] += (int) ((t >>> aBit) & 1L);
+			}
+		}
+
+		return aNrDistinct;
+	}
+
+	// as countUniqueNominalDomain(), but for the NominalCrossTable, missing
+	// values are counted like any other value, as nominalElementOf() does
+	// theCounts should hold at least getCrossTableSize() values, for each
+	// value v, the members that are set in theTarget are counted at [2v], the
+	// others at [2v + 1], the number of distinct values is returned
+	int countNominalCrossTable(long[] theMembers, int theNrWords, long[] theTarget, int[] theCounts)
+	{
+		assert (itsType == AttributeType.NOMINAL);
+
+		Arrays.fill(theCounts, 0, getCrossTableSize(), 0);
+
+		int aNrDistinct = 0;
+		for (int i = 0; i < theNrWords; ++i)
+		{
+			long t = (i < theTarget.length) ? theTarget[i] : 0L;
+			for (long w = theMembers[i]; w != 0L; w &= (w - 1))
+			{
+				int aBit = Long.numberOfTrailingZeros(w);
+				int anIndex = (itsNominalz[(i << 6) + aBit] << 1) + (int) ((~t >>> aBit) & 1L);
+				if (((theCounts[anIndex]++) == 0) && (theCounts[anIndex ^ 1] == 0))
+					++aNrDistinct;
+			}
+		}
+
+		return aNrDistinct;
+	}
+
+	// the number of counts countNominalCrossTable() uses, a positive and a
+	// negative count for each value in the domain
+	int getCrossTableSize()
+	{
+		return 2 * itsDistinctValues.size();
+	}
+
 	static final class DomainMapNumeric
 	{
 		final int itsSize;       // itsSize indicates end-of-valid-input
@@ -1857,6 +2425,17 @@ public class Column implements XMLNodeInterface
 	{
 		boolean isTargetNull = (theTarget == null);
 
+		// sort data from a snapshot is kept, only the target mask is reset
+		if (isPresorted())
+		{
+			for (int i = 0; i < itsSortIndex.length; ++i)
+			{
+				int idx = (MASK_OFF & itsSortIndex[i]);
+				itsSortIndex[i] = (isTargetNull || theTarget.get(i)) ? idx : (MASK_ON | idx);
+			}
+			return;
+		}
+
 		itsSortedFloats = Function.getUniqueValues(itsFloatz);	//this might include a NaN at the end in case of missing values
 //		if (Float.isNaN(aSortedFloats[aSortedFloats.length-1]))		//are there missing values (placed at the end by getUniqueValues)?
 //		{
@@ -1876,7 +2455,18 @@ public class Column implements XMLNodeInterface
 		}
 	}
 
-	final void removeSorted() { itsSortedFloats = null; itsSortIndex = null; }
+	final void removeSorted()
+	{
+		// keep sort data from a snapshot, it is expensive to recreate
+		if (isPresorted())
+			return;
+
+		itsSortedFloats = null;
+		itsSortIndex = null;
+	}
+
+	// itsFloatz is replaced, not modified, by all methods but set(int, float)
+	private final boolean isPresorted() { return (itsPresortedFloatz != null) && (itsPresortedFloatz == itsFloatz); }
 
 	public final float getSortedValue(int index) { return itsSortedFloats[index]; }
 
@@ -1911,6 +2501,63 @@ public class Column implements XMLNodeInterface
 		}
 	}
 
+	static final class ValueCountStatistics
+	{
+		final ValueCount itsValueCount;     // of size column.cardinality
+		private final int[] itsCoverages;   // cumulative, of size column.cardinality + 1
+		private final int[] itsCounts;      // cumulative, of size column.cardinality + 1
+		private final double[] itsSums;     // cumulative, of size column.cardinality + 1
+		private final double[] itsSquares;  // cumulative, of size column.cardinality + 1
+
+		private ValueCountStatistics(int[] theCounts, int[] theTargetCounts, double[] theTargetSums, double[] theTargetSquares)
+		{
+			itsValueCount = new ValueCount(theCounts);
+			itsCoverages = new int[theCounts.length + 1];
+			for (int i = 0; i < theCounts.length; ++i)
+				itsCoverages[i + 1] = itsCoverages[i] + theCounts[i];
+			itsCounts = theTargetCounts;
+			itsSums = theTargetSums;
+			itsSquares = theTargetSquares;
+		}
+
+		// number of members for sort indexes theFrom up to and including theTo
+		int getCoverage(int theFrom, int theTo)
+		{
+			return itsCoverages[theTo + 1] - itsCoverages[theFrom];
+		}
+
+		/*
+		 * target Statistics for sort indexes theFrom up to and including theTo
+		 * if theTotalCount is not 0, the complement with respect to the totals
+		 * is added, like Column.getStatistics() does for the entire data
+		 */
+		Statistics getStatistics(int theFrom, int theTo, int theTotalCount, double theTotalSum, double theTotalSquares)
+		{
+			int aCount = itsCounts[theTo + 1] - itsCounts[theFrom];
+			double aSum = itsSums[theTo + 1] - itsSums[theFrom];
+			double aSquares = itsSquares[theTo + 1] - itsSquares[theFrom];
+			Statistics aResult = new Statistics(aCount, (float) aSum, getSumSquaredDeviations(aCount, aSum, aSquares));
+
+			if (theTotalCount != 0)
+			{
+				int aComplementCount = theTotalCount - aCount;
+				double aComplementSum = theTotalSum - aSum;
+				aResult.addComplement(aComplementCount, (float) aComplementSum, getSumSquaredDeviations(aComplementCount, aComplementSum, theTotalSquares - aSquares));
+			}
+
+			return aResult;
+		}
+
+		static float getSumSquaredDeviations(int theCount, double theSum, double theSquares)
+		{
+			if (theCount == 0)
+				return 0.0f;
+
+			// guard against cancellation, deviations are never negative
+			return (float) Math.max(0.0, theSquares - ((theSum * theSum) / theCount));
+		}
+	}
+
 	//TODO keep track of missing values (like above)
 	static final class ValueCountSum
 	{
@@ -2000,6 +2647,52 @@ public class Column implements XMLNodeInterface
 
 		return new ValueCountTP(aCnt, aPos, aMissingCount, aMissingPositiveCount);
 	}
+
+	/*
+	 * SINGLE_NUMERIC counterpart of getUniqueNumericDomainMap(), in a single
+	 * pass over theBitSet it counts the members for each sort index of this
+	 * Column, and the count, sum and sum of squares of the non-missing
+	 * values of theTarget for those members
+	 * the target statistics are stored cumulatively, such that they can be
+	 * obtained for any range of consecutive sort indexes in constant time,
+	 * this covers all Conditions created by evaluateNumericRegular()
+	 */
+	ValueCountStatistics getValueCountStatistics(BitSet theBitSet, Column theTarget)
+	{
+		if (!isValidCall("getValueCountStatistics", theBitSet))
+			return new ValueCountStatistics(new int[0], new int[1], new double[1], new double[1]);
+
+		int aSize = itsSortedFloats.length;
+		int[] aCnt = new int[aSize];
+		// cumulative, index 0 is the empty range
+		int[] aTargetCnt = new int[aSize + 1];
+		double[] aSum = new double[aSize + 1];
+		double[] aSquares = new double[aSize + 1];
+		float[] aTarget = theTarget.itsFloatz;
+
+		for (int i = theBitSet.nextSetBit(0); i >= 0; i = theBitSet.nextSetBit(i + 1))
+		{
+			int idx = (MASK_OFF & itsSortIndex[i]);
+			++aCnt[idx];
+
+			float f = aTarget[i];
+			if (!Float.isNaN(f))
+			{
+				++aTargetCnt[idx + 1];
+				aSum[idx + 1] += f;
+				aSquares[idx + 1] += ((double) f * f);
+			}
+		}
+
+		for (int i = 1; i <= aSize; ++i)
+		{
+			aTargetCnt[i] += aTargetCnt[i - 1];
+			aSum[i] += aSum[i - 1];
+			aSquares[i] += aSquares[i - 1];
+		}
+
+		return new ValueCountStatistics(aCnt, aTargetCnt, aSum, aSquares);
+	}
 
 	//TODO fix this for missing values
 	ValueCountSum getUniqueNumericDomainMap(BitSet theBitSet, Column theTarget)
@@ -2250,6 +2943,68 @@ public class Column implements XMLNodeInterface
 		}
 	}
 
+	/*
+	 * the LabelRanking and LabelRankingMatrix of each distinct value, indexed
+	 * as itsDistinctValues, built once instead of parsing the value of every
+	 * member for every evaluated Subgroup
+	 * rebuilt when itsDistinctValues is replaced or extended
+	 */
+	private static final class LabelRankings
+	{
+		private final List<String> itsSource;
+		private final LabelRanking[] itsRankings;
+		private final LabelRankingMatrix[] itsMatrices;
+
+		private LabelRankings(List<String> theDistinctValues)
+		{
+			int aNrDistinct = theDistinctValues.size();
+			itsSource = theDistinctValues;
+			itsRankings = new LabelRanking[aNrDistinct];
+			itsMatrices = new LabelRankingMatrix[aNrDistinct];
+			for (int i = 0; i < aNrDistinct; ++i)
+			{
+				itsRankings[i] = new LabelRanking(theDistinctValues.get(i));
+				itsMatrices[i] = new LabelRankingMatrix(itsRankings[i]);
+			}
+		}
+	}
+	private volatile LabelRankings itsLabelRankings = null;
+
+	private LabelRankings getLabelRankings()
+	{
+		LabelRankings aLabelRankings = itsLabelRankings;
+		if ((aLabelRankings != null) && (aLabelRankings.itsSource == itsDistinctValues) && (aLabelRankings.itsRankings.length == itsDistinctValues.size()))
+			return aLabelRankings;
+
+		synchronized (this)
+		{
+			aLabelRankings = itsLabelRankings;
+			if ((aLabelRankings == null) || (aLabelRankings.itsSource != itsDistinctValues) || (aLabelRankings.itsRankings.length != itsDistinctValues.size()))
+				itsLabelRankings = aLabelRankings = new LabelRankings(itsDistinctValues);
+			return aLabelRankings;
+		}
+	}
+
+	/*
+	 * returns the number of occurrences of each distinct value for the
+	 * members, or for all rows if (theMembers == null)
+	 * the result is used by getAverageRanking(int[]) and
+	 * getAverageRankingMatrix(int[]), so a Subgroup is only traversed once
+	 */
+	int[] getRankingCounts(MemberSet theMembers)
+	{
+		int[] aCounts = new int[itsDistinctValues.size()];
+
+		if (theMembers == null)
+			for (int i = 0; i < itsSize; ++i)
+				++aCounts[itsNominalz[i]];
+		else
+			for (int i = theMembers.nextSetBit(0); (i >= 0) && (i < itsSize); i = theMembers.nextSetBit(i + 1))
+				++aCounts[itsNominalz[i]];
+
+		return aCounts;
+	}
+
 	/**
 	 * Returns the average label ranking
 	 */
@@ -2261,21 +3016,26 @@ public class Column implements XMLNodeInterface
 			return null;
 		}
 
+		return getAverageRankingFromCounts(getRankingCounts((theSubgroup == null) ? null : theSubgroup.getMemberSet()));
+	}
+
+	// theCounts as returned by getRankingCounts(MemberSet)
+	LabelRanking getAverageRankingFromCounts(int[] theCounts)
+	{
 		LabelRanking aResult = new LabelRanking(itsDistinctValues.get(itsNominalz[0]));
 		int aSize = aResult.getSize(); //number of labels
 		int[] aTotalRanks = new int[aSize];
 
-		BitSet aMembers = (theSubgroup == null) ? null : theSubgroup.getMembers();
+		LabelRanking[] aRankings = getLabelRankings().itsRankings;
 		//summation of rankings (not necessary to divide by aSize, when you just look at the order)
-		for (int i=0; i<itsSize; ++i)
+		for (int i = 0; i < theCounts.length; ++i)
 		{
-			if (aMembers == null || aMembers.get(i)) //part of the subgroup?
-			{
-				String aValue = itsDistinctValues.get(itsNominalz[i]);
-				LabelRanking aRanking = new LabelRanking(aValue);
-				for (int j=0; j<aSize; j++)
-					aTotalRanks[j] += aRanking.getRank(j);
-			}
+			int aCount = theCounts[i];
+			if (aCount == 0)
+				continue;
+			LabelRanking aRanking = aRankings[i];
+			for (int j=0; j<aSize; j++)
+				aTotalRanks[j] += aCount * aRanking.getRank(j);
 		}
 
 		//make copy that can be sorted
@@ -2320,24 +3080,32 @@ public class Column implements XMLNodeInterface
 			return null;
 		}
 
+		return getAverageRankingMatrixFromCounts(getRankingCounts((theSubgroup == null) ? null : theSubgroup.getMemberSet()));
+	}
+
+	// theCounts as returned by getRankingCounts(MemberSet)
+	LabelRankingMatrix getAverageRankingMatrixFromCounts(int[] theCounts)
+	{
 		//take the size of the first example as the total number of labels
 		LabelRankingMatrix aResult = new LabelRankingMatrix(itsDistinctValues.get(itsNominalz[0]).replace(">","").length());
 		// equivalent to below, as itsNominalz[0] should always be 0
 		//LabelRankingMatrix aResult = new LabelRankingMatrix(itsDistinctValues.get(0).length());
+		int aSize = aResult.getSize();
 		int aCount = 0;
 
-		BitSet aMembers = (theSubgroup == null) ? null : theSubgroup.getMembers();
-		//summation of rankings
-		for (int i=0; i<itsSize; ++i)
+		LabelRankingMatrix[] aMatrices = getLabelRankings().itsMatrices;
+		//summation of rankings, weighted by the number of occurrences
+		//matrix entries are -1, 0 or 1, so sums are exact up to 2^24 rows
+		for (int v = 0; v < theCounts.length; ++v)
 		{
-			if (aMembers == null || aMembers.get(i)) //part of the subgroup?
-			{
-				String aValue = itsDistinctValues.get(itsNominalz[i]);
-				LabelRanking aRanking = new LabelRanking(aValue);
-				LabelRankingMatrix aRankingMatrix = new LabelRankingMatrix(aRanking); //translate to LRM
-				aResult.add(aRankingMatrix);
-				aCount++;
-			}
+			int aCountV = theCounts[v];
+			if (aCountV == 0)
+				continue;
+			float[][] aMatrix = aMatrices[v].itsMatrix;
+			for (int i = 0; i < aSize; ++i)
+				for (int j = 0; j < aSize; ++j)
+					aResult.itsMatrix[i][j] += aCountV * aMatrix[i][j];
+			aCount += aCountV;
 		}
 		//divide by zero is not possible, subgroups always have members
 		aResult.divide(aCount);
@@ -2,32 +2,90 @@ package nl.liacs.subdisc;
 
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 
+/**
+ * CoverBasedSubgroupSelection selects a diverse subset of Candidates, as in
+ * the cover-based subgroup selection (CBSS) of van Leeuwen &amp; Knobbe, ECML
+ * PKDD 2011. It is used by {@link CandidateQueue} for every level of a
+ * {@link SearchStrategy#COVER_BASED_BEAM_SELECTION}, and by
+ * {@link SubgroupSet#postProcess(SearchStrategy, int)} for the final result.
+ * <p>
+ * The selection is greedy, in each iteration the Candidate with the highest
+ * score is added to the result. The score is the priority of a Candidate
+ * multiplied by its multiplicative weight, the average of
+ * <code>ALPHA^cover count</code> over its members, where the cover count of
+ * a row is the number of selected Candidates that cover it.
+ * <p>
+ * As cover counts only go up, the score of a Candidate with a non-negative
+ * priority only goes down, so its last score is an upper bound. Such
+ * Candidates are kept in a priority queue on their last score, and only the
+ * ones at the head of the queue are re-evaluated (lazy greedy), the others
+ * can not be selected in the current iteration. The score of a Candidate
+ * with a negative priority goes up instead, these are all re-evaluated, but
+ * only when they can be selected, after all others.
+ * When multiple Threads are used, batches of Candidates from the head of the
+ * queue are evaluated concurrently.
+ * <p>
+ * The members of the Candidates are cached as {@link MemberSet}s, in order of
+ * priority, until the memory budget is used, see
+ * {@link SearchParameters#getCoverBasedMemoryBudget()}. The members of the
+ * other Candidates are
+ * re-created when they are needed, see {@link Subgroup#getMemberSet()}.
+ * <p>
+ * The selection is deterministic, Candidates with equal scores are selected
+ * in the order of the SortedSet they come from, independent of the number of
+ * Threads.
+ */
 public class CoverBasedSubgroupSelection
 {
 	private static final boolean USE_CORRECTED_MEASURE = true;  // true in git
 	private static final boolean DEBUG_PRINTS          = false; // false in git
 	private static final double  ALPHA                 = 0.9;   // as in papers
+	// Candidates in a batch, per Thread, more means less synchronisation but
+	// more evaluations of Candidates that do not need it
+	private static final int NR_CANDIDATES_PER_THREAD = 4;
+	// smaller sets are not worth starting Threads for
+	private static final int MINIMUM_PARALLEL_SIZE = 1024;
 
-	static final SortedSet<Candidate> postProcessCandidateSet(SortedSet<Candidate> theCandidates, int theTopK)
+	// for a negative budget, a quarter of the maximum heap size
+	private static final long DEFAULT_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+
+	private final Candidate[] itsCandidates;
+	private final boolean isForCandidateSet;
+	private final int itsNrThreads;
+	// null for the Candidates for which the budget did not suffice
+	private final MemberSet[] itsMembers;
+	private final int[] itsCoverCounts;
+	// itsPowers[i] = ALPHA^i, for all possible cover counts
+	private final double[] itsPowers;
+	// of the last evaluation of each Candidate, and the iteration it was in
+	private final double[] itsScores;
+	private final double[] itsWeights;
+	private final int[] itsIterations;
+	// null when a single Thread is used
+	private ExecutorService itsExecutor = null;
+
+	// theMemoryBudget is the maximum number of bytes used for caching the
+	// members of the Candidates, use a negative value for the default
+	static final SortedSet<Candidate> postProcessCandidateSet(SortedSet<Candidate> theCandidates, int theTopK, int theNrThreads, long theMemoryBudget)
 	{
-		return postProcess(theCandidates, theTopK, true);
+		return postProcess(theCandidates, theTopK, true, theNrThreads, theMemoryBudget);
 	}
 
-	static final SortedSet<Candidate> postProcessResultSet(SortedSet<Subgroup> theSubgroups, int theTopK)
+	static final SortedSet<Candidate> postProcessResultSet(SortedSet<Subgroup> theSubgroups, int theTopK, int theNrThreads, long theMemoryBudget)
 	{
 		// lazy, do not write the whole method twice
 		// assumption is that ResultSet is (much) smaller than CandidateSet
 		// also, multiple CandidateSets might need to be processed during run
-		// assumes theTopK is small also
 		SortedSet<Candidate> aCandidates = new TreeSet<>();
 		for (Subgroup s : theSubgroups)
 			aCandidates.add(new Candidate(s));
 
-		return postProcess(aCandidates, theTopK, false);
+		return postProcess(aCandidates, theTopK, false, theNrThreads, theMemoryBudget);
 	}
 
-	private static final SortedSet<Candidate> postProcess(SortedSet<Candidate> theCandidates, int theTopK, boolean isForCandidateSet)
+	private static final SortedSet<Candidate> postProcess(SortedSet<Candidate> theCandidates, int theTopK, boolean isForCandidateSet, int theNrThreads, long theMemoryBudget)
 	{
 		// technically a Tree could hold more nodes than Integer.MAX_VALUE
 		// but a lot of code would crash everywhere, so assume aSize is in range
@@ -41,29 +99,45 @@ public class CoverBasedSubgroupSelection
 		if (aSize <= theTopK)
 			return theCandidates;
 
-		BitSet aUsed = new BitSet(aSize);
-		// make copy to allow index-based access, making the loop more efficient
-		Candidate[] aCandidates = theCandidates.toArray(new Candidate[0]);
-		// in each iteration of the loop, a Candidate will be added to aResult
-		// and the cover counts go up, so the multiplicative weights go down
-		// thus for each iteration the maximum score a Candidate can attain is
-		// upper bounded by the score attained in a previous iteration
-		// this allows for a useful optimisation, see main loop below
-		double[] aLastScores = new double[aSize];
-		// cache BitSets, as each call to Subgroup.getMembers() creates a clone
-		// TODO
-		// when aSize or aNrRows is very high, this uses a lot of memory
-		// Runtime.maxMemory/totalMemory/freeMemory can be used to estimate
-		// how many of the BitSets can be cached without OutOfMemory errors
-		BitSet[] aMembers = new BitSet[aSize];
-		int idx = -1;
-		for (Candidate c : theCandidates)
+		CoverBasedSubgroupSelection aSelection = new CoverBasedSubgroupSelection(theCandidates, Math.min(aSize, theTopK), isForCandidateSet, theNrThreads, theMemoryBudget);
+		if (aSelection.itsNrThreads > 1 && aSize >= MINIMUM_PARALLEL_SIZE)
+			aSelection.itsExecutor = Executors.newFixedThreadPool(aSelection.itsNrThreads);
+
+		try
+		{
+			return aSelection.select();
+		}
+		finally
 		{
-			++idx;
-			aCandidates[idx] = c;
-			aLastScores[idx] = c.getPriority();
-			Subgroup s       = c.getSubgroup();
-			aMembers[idx]    = s.getMembers();
+			if (aSelection.itsExecutor != null)
+				aSelection.itsExecutor.shutdownNow();
+		}
+	}
+
+	private CoverBasedSubgroupSelection(SortedSet<Candidate> theCandidates, int theNrSelected, boolean isForCandidateSet, int theNrThreads, long theMemoryBudget)
+	{
+		int aSize = theCandidates.size();
+		// make copy to allow index-based access
+		itsCandidates = theCandidates.toArray(new Candidate[0]);
+		this.isForCandidateSet = isForCandidateSet;
+		itsNrThreads = (theNrThreads <= 0) ? Runtime.getRuntime().availableProcessors() : theNrThreads;
+
+		itsMembers = new MemberSet[aSize];
+		long aBudget = (theMemoryBudget < 0L) ? DEFAULT_MEMORY_BUDGET : theMemoryBudget;
+		int aNrRecreated = 0;
+		for (int i = 0; i < aSize; ++i)
+		{
+			Subgroup s = itsCandidates[i].getSubgroup();
+			MemberSet aMembers = s.getMemberSet();
+			long aBytes = aMembers.getMemoryUsage();
+			if (aBytes <= aBudget)
+			{
+				itsMembers[i] = aMembers;
+				aBudget -= aBytes;
+			}
+			else
+				++aNrRecreated;
+
 			// NOTE when called from ResultWindow, members are set because a
 			// Table modification would make it impossible to evaluate the
 			// Subgroups (due to changed missing value, AttributeType, ...)
@@ -71,9 +145,32 @@ public class CoverBasedSubgroupSelection
 			if (isForCandidateSet)
 				s.killMembers();
 		}
+		if (aNrRecreated > 0)
+			Log.logCommandLine("cbss members re-created on demand: " + aNrRecreated);
 
-		int aNrRows = theCandidates.first().getSubgroup().getParentSet().getTotalCoverage();
-		int[] aCoverCounts = new int[aNrRows];
+		int aNrRows = itsCandidates[0].getSubgroup().getParentSet().getTotalCoverage();
+		itsCoverCounts = new int[aNrRows];
+
+		// a cover count is at most the number of selected Candidates
+		itsPowers = new double[theNrSelected + 1];
+		for (int i = 0; i < itsPowers.length; ++i)
+			itsPowers[i] = Math.pow(ALPHA, i);
+
+		itsScores = new double[aSize];
+		itsWeights = new double[aSize];
+		itsIterations = new int[aSize];
+		// the weights are at most 1.0, so the priorities are upper bounds
+		for (int i = 0; i < aSize; ++i)
+		{
+			itsScores[i] = itsCandidates[i].getPriority();
+			itsWeights[i] = 1.0;
+		}
+	}
+
+	private SortedSet<Candidate> select()
+	{
+		int aSize = itsCandidates.length;
+		int aNrSelected = itsPowers.length - 1;
 
 		// Subgroups are added based on highest score, so an array would do, but
 		// CandidateQueue/ResultSet would then take the Subgroups from the array
@@ -89,71 +186,74 @@ public class CoverBasedSubgroupSelection
 		// and its new priority = 1.0 * c.getPriority()
 		// therefore the first iteration is taken out of the loop
 		print("loop 0");
-		update(isForCandidateSet, aUsed, aCandidates, aMembers, aCoverCounts, aResult, 0, 1.0, aLastScores[0]);
+		update(aResult, 0);
+
+		// all priorities are possible, including NEGATIVE_INFINITY and NaN,
+		// as some model classes do not check them, see isBetter()
+		PriorityQueue<Integer> aQueue = new PriorityQueue<Integer>(aSize, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer x, Integer y)
+			{
+				return x.equals(y) ? 0 : (isBetter(x, y) ? -1 : 1);
+			}
+		});
+		int[] aNegatives = new int[aSize];
+		int aNrNegatives = 0;
+		for (int i = 1; i < aSize; ++i)
+		{
+			if (itsCandidates[i].getPriority() < 0.0)
+				aNegatives[aNrNegatives++] = i;
+			else
+				aQueue.add(i);
+		}
 
-		// keep unset outside of the valid range of indexes (so not 0)
-		for (int i = 1, min = Math.min(aSize, theTopK), unset = -1; i < min; ++i)
+		int[] aBatch = new int[(itsExecutor == null) ? 1 : (itsNrThreads * NR_CANDIDATES_PER_THREAD)];
+		for (int i = 1; i < aNrSelected; ++i)
 		{
 			print("loop " + i);
 
-			// always use unset, both NEGATIVE_INFINITY and NaN are possible
-			// priorities/qualities, as some model classes do not check them
-			// and NEGATIVE_INFINITY might be a valid result for some
-			//
-			// the use of (aQuality > aMaxScore) would ignore all values
-			// that are equal to Double.NEGATIVE_INFINITY, which is incorrect
-			// behaviour, and would lead to too few Candidates in aResult
-			//
-			// the values below could be set using the first clear index, such
-			// that the unset-checks can be removed from loop, but this is fine
-			int    aBestIndex           = unset;
-			double aMaxScore            = Double.NaN;
-			double aBestCandidateWeight = Double.NaN;
-
-			// a minor optimisation would keep track of the smallest clear index
-			// and start at that index, instead of 1 (index 0 is always set)
-			for (int j = aUsed.nextClearBit(1); j < aSize; j = aUsed.nextClearBit(j+1))
+			// re-evaluate the head of aQueue, until it was evaluated in this
+			// iteration, its score is then at least the upper bound of
+			// all others in aQueue
+			while (!aQueue.isEmpty() && itsIterations[aQueue.peek()] != i)
 			{
-				// score can not get better than last time, so if that would not
-				// have been good enough there is no use in checking Candidate
-				//
-				// do not use <= here
-				// a Candidate (value) might be skipped for a number of
-				// loop-iterations, by the time it is used, multiple (remaining)
-				// values in aLastQualities might be equal, but not all based on
-				// the last state of the cover counts, and need to be updated
-				if ((aBestIndex != unset) && (aLastScores[j] < aMaxScore))
-					continue;
-
-				Candidate aCandidate = aCandidates[j];
-				double aPriority     = aCandidate.getPriority();
-				double aWeight       = computeMultiplicativeWeight(aMembers[j], aCandidate.getSubgroup().getCoverage(), aCoverCounts);
-				double aScore        = (USE_CORRECTED_MEASURE ? (aPriority - ((1.0 - aWeight) * aPriority)) : (aWeight * aPriority));
-				aLastScores[j]       = aScore;
-
-				// the use of > causes the first (encountered) of multiple
-				// equal-scoring (remaining) Candidates to be selected
-				// single-thread experiment results are invocation-invariant
-				// for multi-threaded experiments this was not true for the old
-				// implementation, as either [x AND y] or [y AND x] might arrive
-				// first, based on Operating System-controlled scheduling of
-				// Thread execution and time-slicing
-				// these are out of the control of the algorithm/SubDisc/JVM
-				// TODO check: the new algorithm should be invocation-invariant
-				if ((aBestIndex == unset) || (aScore > aMaxScore))
-				{
-					aBestIndex           = j;
-					aMaxScore            = aScore;
-					aBestCandidateWeight = aWeight;
-				}
+				int n = 0;
+				do
+					aBatch[n++] = aQueue.poll();
+				while (n < aBatch.length && !aQueue.isEmpty() && itsIterations[aQueue.peek()] != i);
+
+				evaluate(aBatch, n, i);
+				for (int j = 0; j < n; ++j)
+					aQueue.add(aBatch[j]);
 			}
 
-			update(isForCandidateSet, aUsed, aCandidates, aMembers, aCoverCounts, aResult, aBestIndex, aBestCandidateWeight, aMaxScore);
+			// a score of a Candidate with a negative priority is negative
+			// so it can only be selected when no other score is >= 0.0
+			Integer aHead = aQueue.peek();
+			if (aNrNegatives == 0 || (aHead != null && itsScores[aHead] >= 0.0))
+			{
+				update(aResult, aQueue.poll());
+				continue;
+			}
+
+			evaluate(aNegatives, aNrNegatives, i);
+			int aBest = 0;
+			for (int j = 1; j < aNrNegatives; ++j)
+				if (isBetter(aNegatives[j], aNegatives[aBest]))
+					aBest = j;
+
+			if (aHead != null && isBetter(aHead, aNegatives[aBest]))
+				update(aResult, aQueue.poll());
+			else
+			{
+				update(aResult, aNegatives[aBest]);
+				System.arraycopy(aNegatives, aBest + 1, aNegatives, aBest, --aNrNegatives - aBest);
+			}
 		}
 
 		if (DEBUG_PRINTS)
 		{
-			print(String.format("used: %s%n", aUsed));
 			String s = (isForCandidateSet ? "priority: " : "result: ");
 			for (Candidate aCandidate : aResult)
 				print(s + (isForCandidateSet ? aCandidate.getPriority() : aCandidate.getSubgroup().getMeasureValue()));
@@ -162,36 +262,123 @@ public class CoverBasedSubgroupSelection
 		return aResult;
 	}
 
-	// hope JVM inlines this
-	private static final void update(boolean isForCandidateSet, BitSet theUsed, Candidate[] theCandidates, BitSet[] theMembers, int[] theCoverCounts, SortedSet<Candidate> theResult, int theBestIndex, double theBestCandidateWeight, double theMaxScore)
+	/*
+	 * higher scores first, equal scores in the order of itsCandidates
+	 * NaN scores last, instead of never being better than any score
+	 */
+	private boolean isBetter(int theIndex, int theOtherIndex)
 	{
-		DecimalFormat df = new DecimalFormat("0", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
-		df.setMaximumFractionDigits(340); // 340 = DecimalFormat.DOUBLE_FRACTION_DIGITS
+		double x = itsScores[theIndex];
+		double y = itsScores[theOtherIndex];
 
-		theUsed.set(theBestIndex);
-		Candidate c = theCandidates[theBestIndex];
-		print(c.getSubgroup().toString());
-		print(String.format("best (%d): %s, %s, %s%n", theBestIndex, df.format(c.getPriority()), df.format(theBestCandidateWeight), df.format(theMaxScore)));
-		if (isForCandidateSet) // could be unconditional, ResultSet ignores it
-			c.setPriority(theMaxScore);
-		theResult.add(c);
-		updateCoverCounts(theMembers[theBestIndex], theCoverCounts);
+		if (x > y)
+			return true;
+		if (x < y)
+			return false;
+
+		boolean isNaN = Double.isNaN(x);
+		if (isNaN != Double.isNaN(y))
+			return !isNaN;
+
+		return (theIndex < theOtherIndex);
+	}
+
+	// evaluates the first theNrIndexes of theIndexes, for theIteration
+	private void evaluate(final int[] theIndexes, int theNrIndexes, final int theIteration)
+	{
+		if (itsExecutor == null || theNrIndexes == 1)
+		{
+			for (int i = 0; i < theNrIndexes; ++i)
+				evaluate(theIndexes[i], theIteration);
+			return;
+		}
+
+		int aNrTasks = Math.min(theNrIndexes, itsNrThreads);
+		List<Callable<Void>> aTasks = new ArrayList<Callable<Void>>(aNrTasks);
+		for (int t = 0; t < aNrTasks; ++t)
+		{
+			final int aFrom = (int) (((long) theNrIndexes * t) / aNrTasks);
+			final int aTo = (int) (((long) theNrIndexes * (t + 1)) / aNrTasks);
+			aTasks.add(new Callable<Void>()
+			{
+				@Override
+				public Void call()
+				{
+					for (int i = aFrom; i < aTo; ++i)
+						evaluate(theIndexes[i], theIteration);
+					return null;
+				}
+			});
+		}
+
+		try
+		{
+			for (Future<Void> f : itsExecutor.invokeAll(aTasks))
+				f.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
 	}
 
-	private static final void updateCoverCounts(BitSet theMembers, int[] theCoverCounts)
+	// called concurrently for different indexes, itsCoverCounts is not
+	// modified during evaluation
+	private void evaluate(int theIndex, int theIteration)
 	{
-		for (int i = theMembers.nextSetBit(0); i >= 0; i = theMembers.nextSetBit(i+1))
-			++theCoverCounts[i];
+		double aPriority = itsCandidates[theIndex].getPriority();
+		double aWeight   = computeMultiplicativeWeight(theIndex);
+
+		itsWeights[theIndex]    = aWeight;
+		itsScores[theIndex]     = (USE_CORRECTED_MEASURE ? (aPriority - ((1.0 - aWeight) * aPriority)) : (aWeight * aPriority));
+		itsIterations[theIndex] = theIteration;
+	}
+
+	private void update(SortedSet<Candidate> theResult, int theBestIndex)
+	{
+		Candidate c = itsCandidates[theBestIndex];
+		if (DEBUG_PRINTS)
+		{
+			DecimalFormat df = new DecimalFormat("0", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			df.setMaximumFractionDigits(340); // 340 = DecimalFormat.DOUBLE_FRACTION_DIGITS
+			print(c.getSubgroup().toString());
+			print(String.format("best (%d): %s, %s, %s%n", theBestIndex, df.format(c.getPriority()), df.format(itsWeights[theBestIndex]), df.format(itsScores[theBestIndex])));
+		}
+		if (isForCandidateSet) // could be unconditional, ResultSet ignores it
+			c.setPriority(itsScores[theBestIndex]);
+		theResult.add(c);
+
+		for (int i : getMembers(theBestIndex).toArray())
+			++itsCoverCounts[i];
 	}
 
-	private static final double computeMultiplicativeWeight(BitSet theMembers, int theCoverage, int[] theCoverCounts)
+	private double computeMultiplicativeWeight(int theIndex)
 	{
 		double aResult = 0.0;
 
-		for (int i = theMembers.nextSetBit(0); i >= 0; i = theMembers.nextSetBit(i+1))
-			aResult += Math.pow(ALPHA, theCoverCounts[i]);
+		for (int i : getMembers(theIndex).toArray())
+			aResult += itsPowers[itsCoverCounts[i]];
+
+		return aResult / itsCandidates[theIndex].getSubgroup().getCoverage();
+	}
+
+	// cached members, or re-created ones that are not kept
+	private MemberSet getMembers(int theIndex)
+	{
+		MemberSet aMembers = itsMembers[theIndex];
+		if (aMembers != null)
+			return aMembers;
 
-		return aResult / theCoverage;
+		Subgroup s = itsCandidates[theIndex].getSubgroup();
+		aMembers = s.getMemberSet();
+		if (isForCandidateSet)
+			s.killMembers();
+		return aMembers;
 	}
 
 	private static final void print(String theMessage)
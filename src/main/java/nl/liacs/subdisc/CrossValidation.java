@@ -6,14 +6,23 @@ public class CrossValidation
 {
 	private int itsSize;
 	private int itsK;
-	private static Random itsRandom;
+	private final Random itsRandom;
 	private int[] itsSets;
 
 	public CrossValidation(int theSize, int theK)
+	{
+		this(theSize, theK, new Random(System.currentTimeMillis()));
+	}
+
+	/**
+	 * As {@link #CrossValidation(int, int)}, but the test sets are drawn
+	 * using theRandom, so they are reproducible for a seeded Random.
+	 */
+	public CrossValidation(int theSize, int theK, Random theRandom)
 	{
 		itsSize = theSize;
 		itsK = theK;
-		itsRandom = new Random(System.currentTimeMillis());
+		itsRandom = theRandom;
 		createTestSets();
 	}
 
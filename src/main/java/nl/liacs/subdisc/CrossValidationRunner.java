@@ -0,0 +1,361 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.w3c.dom.*;
+
+/**
+ * The CrossValidationRunner runs a repeated k-fold cross-validation without
+ * a GUI. The folds are mined concurrently, and the mining of each fold may
+ * use multiple Threads itself, so the total number of Threads used is
+ * <code>theNrParallelFolds * theNrThreadsPerFold</code>.
+ * <p>
+ * Folds do not copy the {@link Table}, as
+ * {@link Table#select(BitSet)} would. Every fold mines a
+ * {@link Table#sharedView() shared view} of the Table, with the training
+ * set as selection. So the data is held in memory only once, whatever the
+ * number of folds that run concurrently.
+ * <p>
+ * The test sets of repetition <code>r</code> are drawn using a Random
+ * that is seeded from theSeed and <code>r</code> only, so results are
+ * reproducible, and do not depend on the number of Threads.
+ * <p>
+ * The result of every fold is written to its own file, in the format of
+ * {@link XMLAutoRun#save(SubgroupSet, String, TargetType)}, and a summary
+ * of all folds is written to a separate file.
+ *
+ * @see CrossValidation
+ */
+public class CrossValidationRunner
+{
+	private static final String DELIMITER = XMLAutoRun.RESULT_SET_DELIMITER;
+
+	private final Table itsTable;
+	private final SearchParameters itsSearchParameters;
+	private final int itsK;
+	private final int itsNrRepetitions;
+	private final long itsSeed;
+
+	/**
+	 * Creates a CrossValidationRunner for theTable, theSearchParameters
+	 * are not modified.
+	 *
+	 * @param theTable the Table to mine.
+	 * @param theSearchParameters the SearchParameters, including the
+	 * TargetConcept, used for every fold.
+	 * @param theK the number of folds, must be >= 2.
+	 * @param theNrRepetitions the number of times the k-fold
+	 * cross-validation is repeated, must be >= 1.
+	 * @param theSeed the seed from which the test sets are drawn.
+	 *
+	 * @throws IllegalArgumentException if theK or theNrRepetitions is
+	 * invalid.
+	 */
+	public CrossValidationRunner(Table theTable, SearchParameters theSearchParameters, int theK, int theNrRepetitions, long theSeed)
+	{
+		if (theK < 2 || theK > theTable.getNrRows())
+			throw new IllegalArgumentException("CrossValidationRunner: theK must be in [2, " + theTable.getNrRows() + "]: " + theK);
+		if (theNrRepetitions < 1)
+			throw new IllegalArgumentException("CrossValidationRunner: theNrRepetitions must be >= 1: " + theNrRepetitions);
+
+		itsTable = theTable;
+		itsSearchParameters = theSearchParameters;
+		itsK = theK;
+		itsNrRepetitions = theNrRepetitions;
+		itsSeed = theSeed;
+	}
+
+	/**
+	 * Runs all folds of all repetitions, writes the result of each fold,
+	 * and the summary, to theDirectory.
+	 * <p>
+	 * For {@link TargetType#MULTI_LABEL} and {@link TargetType#SCAPE}, the
+	 * {@link QualityMeasure} stores the base model of the training set in
+	 * static fields, so for these TargetTypes the folds are run one after
+	 * the other, each using theNrParallelFolds * theNrThreadsPerFold
+	 * Threads.
+	 *
+	 * @param theNrParallelFolds the number of folds that are mined
+	 * concurrently, use <code>theNrParallelFolds <= 0</code> to use all
+	 * available processors.
+	 * @param theNrThreadsPerFold the number of Threads used to mine a
+	 * single fold, see {@link SubgroupDiscovery#mine(long, int)}.
+	 * @param theDirectory the directory to write the files to.
+	 *
+	 * @return the FoldResults, ordered by repetition, then by fold.
+	 */
+	public List<FoldResult> run(int theNrParallelFolds, int theNrThreadsPerFold, File theDirectory)
+	{
+		if (theNrParallelFolds <= 0)
+			theNrParallelFolds = Runtime.getRuntime().availableProcessors();
+
+		TargetType aTargetType = itsSearchParameters.getTargetType();
+		if (aTargetType == TargetType.MULTI_LABEL || aTargetType == TargetType.SCAPE)
+		{
+			theNrThreadsPerFold = Math.max(1, theNrThreadsPerFold) * theNrParallelFolds;
+			theNrParallelFolds = 1;
+		}
+
+		List<Callable<FoldResult>> aTasks = new ArrayList<Callable<FoldResult>>(itsNrRepetitions * itsK);
+		Random aSeeds = new Random(itsSeed);
+		for (int r = 0; r < itsNrRepetitions; ++r)
+		{
+			CrossValidation aCV = new CrossValidation(itsTable.getNrRows(), itsK, new Random(aSeeds.nextLong()));
+			for (int f = 0; f < itsK; ++f)
+				aTasks.add(new Fold(r, f, aCV.getSet(f, true), theNrThreadsPerFold, theDirectory));
+		}
+
+		List<FoldResult> aResults = invokeAll(aTasks, theNrParallelFolds);
+		writeSummary(aResults, new File(theDirectory, getFileName("summary")));
+
+		return aResults;
+	}
+
+	private final String getFileName(String theSuffix)
+	{
+		return String.format("%s_cv%d_%s.txt", itsTable.getName(), itsK, theSuffix);
+	}
+
+	// single fold of a repetition, mines a shared view of itsTable
+	private final class Fold implements Callable<FoldResult>
+	{
+		private final int itsRepetition;
+		private final int itsFold;
+		private final BitSet itsTrainingSet;
+		private final int itsNrThreads;
+		private final File itsDirectory;
+
+		Fold(int theRepetition, int theFold, BitSet theTrainingSet, int theNrThreads, File theDirectory)
+		{
+			itsRepetition = theRepetition;
+			itsFold = theFold;
+			itsTrainingSet = theTrainingSet;
+			itsNrThreads = theNrThreads;
+			itsDirectory = theDirectory;
+		}
+
+		@Override
+		public FoldResult call()
+		{
+			Table aTable = itsTable.sharedView();
+			TargetConcept aTargetConcept = itsSearchParameters.getTargetConcept().copy();
+			aTargetConcept.updateToNewTable(aTable);
+			SearchParameters aSearchParameters = itsSearchParameters.copy();
+			aSearchParameters.setTargetConcept(aTargetConcept);
+
+			int aNrTraining = itsTrainingSet.cardinality();
+			long aBegin = System.currentTimeMillis();
+			// SubgroupSet may modify the BitSet, do not share it
+			SubgroupDiscovery anSD = Process.runSubgroupDiscovery(aTable, (itsFold + 1), (BitSet) itsTrainingSet.clone(), aSearchParameters, false, itsNrThreads, null);
+			long aTime = System.currentTimeMillis() - aBegin;
+			if (anSD == null)
+				throw new IllegalStateException("CrossValidationRunner: TargetType not implemented: " + aSearchParameters.getTargetType());
+
+			SubgroupSet aResult = anSD.getResult();
+			String aFileName = new File(itsDirectory, getFileName(String.format("r%d_f%d", (itsRepetition + 1), (itsFold + 1)))).getPath();
+			XMLAutoRun.save(aResult, aFileName, aSearchParameters.getTargetType());
+
+			double aSum = 0.0;
+			for (Subgroup s : aResult)
+				aSum += s.getMeasureValue();
+
+			return new FoldResult(itsRepetition, itsFold, aNrTraining, itsTable.getNrRows() - aNrTraining,
+						aResult.size(), aResult.getBestScore(), aResult.isEmpty() ? Double.NaN : (aSum / aResult.size()),
+						aTime);
+		}
+	}
+
+	private static final List<FoldResult> invokeAll(List<Callable<FoldResult>> theTasks, int theNrThreads)
+	{
+		ExecutorService es = Executors.newFixedThreadPool(theNrThreads);
+		try
+		{
+			List<Future<FoldResult>> aFutures = es.invokeAll(theTasks);
+			List<FoldResult> aResults = new ArrayList<FoldResult>(aFutures.size());
+			for (Future<FoldResult> f : aFutures)
+				aResults.add(f.get());
+			return aResults;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			// rethrow the Exception that occurred in the fold
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			es.shutdownNow();
+		}
+	}
+
+	/*
+	 * one line per fold, followed by the mean and standard deviation over
+	 * all folds, folds without Subgroups are left out of the quality
+	 * statistics
+	 */
+	private static final void writeSummary(List<FoldResult> theResults, File theFile)
+	{
+		BufferedWriter aWriter = null;
+		try
+		{
+			aWriter = new BufferedWriter(new FileWriter(theFile));
+			aWriter.write(String.join(DELIMITER, "repetition", "fold", "training", "test", "subgroups", "best", "average", "time (ms)"));
+			aWriter.write("\n");
+
+			for (FoldResult r : theResults)
+			{
+				aWriter.write(String.join(DELIMITER,
+								Integer.toString(r.getRepetition() + 1),
+								Integer.toString(r.getFold() + 1),
+								Integer.toString(r.getNrTraining()),
+								Integer.toString(r.getNrTest()),
+								Integer.toString(r.getNrSubgroups()),
+								Double.toString(r.getBestQuality()),
+								Double.toString(r.getAverageQuality()),
+								Long.toString(r.getTime())));
+				aWriter.write("\n");
+			}
+
+			double[][] aColumns = new double[4][theResults.size()];
+			for (int i = 0, j = theResults.size(); i < j; ++i)
+			{
+				FoldResult r = theResults.get(i);
+				aColumns[0][i] = r.getNrSubgroups();
+				aColumns[1][i] = r.getBestQuality();
+				aColumns[2][i] = r.getAverageQuality();
+				aColumns[3][i] = r.getTime();
+			}
+
+			StringBuilder aMean = new StringBuilder("mean").append(DELIMITER).append(DELIMITER).append(DELIMITER);
+			StringBuilder aDeviation = new StringBuilder("sd").append(DELIMITER).append(DELIMITER).append(DELIMITER);
+			for (double[] c : aColumns)
+			{
+				double[] aStatistics = getMeanAndStandardDeviation(c);
+				aMean.append(DELIMITER).append(aStatistics[0]);
+				aDeviation.append(DELIMITER).append(aStatistics[1]);
+			}
+			aWriter.write(aMean.append("\n").toString());
+			aWriter.write(aDeviation.append("\n").toString());
+		}
+		catch (IOException e)
+		{
+			Log.logCommandLine("Error on file: " + theFile);
+		}
+		finally
+		{
+			try
+			{
+				if (aWriter != null)
+					aWriter.close();
+			}
+			catch (IOException e)
+			{
+				Log.logCommandLine("File writer error: " + e.getMessage());
+			}
+		}
+	}
+
+	// NaN values are ignored, sample standard deviation
+	private static final double[] getMeanAndStandardDeviation(double[] theValues)
+	{
+		int n = 0;
+		double aSum = 0.0;
+		for (double d : theValues)
+		{
+			if (!Double.isNaN(d))
+			{
+				++n;
+				aSum += d;
+			}
+		}
+		double aMean = aSum / n;
+
+		double aSSD = 0.0;
+		for (double d : theValues)
+			if (!Double.isNaN(d))
+				aSSD += (d - aMean) * (d - aMean);
+
+		return new double[] { aMean, (n > 1) ? Math.sqrt(aSSD / (n - 1)) : Double.NaN };
+	}
+
+	/** The statistics of the result of a single fold. */
+	public static final class FoldResult
+	{
+		private final int itsRepetition;
+		private final int itsFold;
+		private final int itsNrTraining;
+		private final int itsNrTest;
+		private final int itsNrSubgroups;
+		private final double itsBestQuality;
+		private final double itsAverageQuality;
+		private final long itsTime;
+
+		FoldResult(int theRepetition, int theFold, int theNrTraining, int theNrTest, int theNrSubgroups, double theBestQuality, double theAverageQuality, long theTime)
+		{
+			itsRepetition = theRepetition;
+			itsFold = theFold;
+			itsNrTraining = theNrTraining;
+			itsNrTest = theNrTest;
+			itsNrSubgroups = theNrSubgroups;
+			itsBestQuality = theBestQuality;
+			itsAverageQuality = theAverageQuality;
+			itsTime = theTime;
+		}
+
+		/** Returns the index of the repetition, starting at 0. */
+		public int getRepetition() { return itsRepetition; }
+		/** Returns the index of the fold, starting at 0. */
+		public int getFold() { return itsFold; }
+		public int getNrTraining() { return itsNrTraining; }
+		public int getNrTest() { return itsNrTest; }
+		public int getNrSubgroups() { return itsNrSubgroups; }
+		/** Returns the quality of the best Subgroup, NaN if there is none. */
+		public double getBestQuality() { return itsBestQuality; }
+		/** Returns the average quality of the Subgroups, NaN if there are none. */
+		public double getAverageQuality() { return itsAverageQuality; }
+		/** Returns the time it took to mine the fold, in milliseconds. */
+		public long getTime() { return itsTime; }
+	}
+
+	/**
+	 * Runs a cross-validation for the first experiment in an
+	 * {@link XMLAutoRun} file, the files are written to the directory of
+	 * that file.
+	 * <p>
+	 * Usage: <code>CrossValidationRunner experiment.xml k repetitions
+	 * parallel_folds threads_per_fold [seed]</code>
+	 *
+	 * @param args the command-line parameters.
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length < 5 || args.length > 6 || !args[0].endsWith(".xml"))
+		{
+			Log.logCommandLine("Usage: CrossValidationRunner experiment.xml k repetitions parallel_folds threads_per_fold [seed]");
+			return;
+		}
+
+		File aFile = new File(args[0]);
+		int aK = Integer.parseInt(args[1]);
+		int aNrRepetitions = Integer.parseInt(args[2]);
+		int aNrParallelFolds = Integer.parseInt(args[3]);
+		int aNrThreadsPerFold = Integer.parseInt(args[4]);
+		long aSeed = (args.length == 6) ? Long.parseLong(args[5]) : System.currentTimeMillis();
+
+		// as XMLAutoRun.runSubgroupDiscovery()
+		String aDirectory = (aFile.getParent() == null) ? "." : aFile.getParent();
+		NodeList aSettings = XMLDocument.parseXMLFile(aFile).getLastChild().getFirstChild().getChildNodes();
+		Table aTable = new Table(aSettings.item(2), aDirectory, false);
+		aTable.update();
+		SearchParameters aSearchParameters = new SearchParameters(aSettings.item(1));
+		aSearchParameters.setTargetConcept(new TargetConcept(aSettings.item(0), aTable));
+
+		new CrossValidationRunner(aTable, aSearchParameters, aK, aNrRepetitions, aSeed).run(aNrParallelFolds, aNrThreadsPerFold, new File(aDirectory));
+	}
+}
@@ -5,7 +5,7 @@ import java.util.*;
 
 public class DataLoaderTXT implements FileLoaderInterface
 {
-	private static final char[] DELIMITERS = { '\t', ',', ';' };
+	static final char[] DELIMITERS = { '\t', ',', ';' };
 
 	private Table itsTable = null;
 	private int itsDelimiter = 0;
@@ -58,10 +58,10 @@ public class DataLoaderTXT implements FileLoaderInterface
 		loadFile(theFile);
 	}
 
-	private void message(String theMethod, String theMessage)
+	private static void message(String theMethod, String theMessage)
 	{
 		Log.logCommandLine(String.format("%s.%s(): %s",
-							this.getClass().getSimpleName(),
+							DataLoaderTXT.class.getSimpleName(),
 							theMethod,
 							theMessage));
 	}
@@ -318,7 +318,7 @@ public class DataLoaderTXT implements FileLoaderInterface
 				if (!aLine.isEmpty())
 				{
 					++aNrDataLines;
-					establishDelimiter(aHeaderLine, aLine);
+					itsDelimiter = establishDelimiter(aHeaderLine, aLine);
 					break;
 				}
 			}
@@ -353,8 +353,10 @@ public class DataLoaderTXT implements FileLoaderInterface
 		return aSuccess;
 	}
 
-	private void establishDelimiter(String theFirstLine, String theSecondLine)
+	// returns the index of the delimiter in DELIMITERS
+	static int establishDelimiter(String theFirstLine, String theSecondLine)
 	{
+		int aDelimiter = 0;
 		int aNrDelimiters = DELIMITERS.length;
 		int[] aCounts = new int[aNrDelimiters];
 		int aNrOptions = 0;
@@ -374,7 +376,7 @@ public class DataLoaderTXT implements FileLoaderInterface
 			for (int i = 0, j = aNrDelimiters; i < j; ++i)
 				if (aCounts[i] > 1)
 				{
-					itsDelimiter = i;
+					aDelimiter = i;
 					aMessage = "successfully established delimiter, using \'" + DELIMITERS[i] + "\'";
 				}
 		}
@@ -387,7 +389,7 @@ public class DataLoaderTXT implements FileLoaderInterface
 					// just pick the first one
 					if (aCounts[i] == theSecondLine.split(Character.toString(DELIMITERS[i]), -1).length)
 					{
-						itsDelimiter = i;
+						aDelimiter = i;
 						aMessage = "unsure about delimiter, using \'" + DELIMITERS[i] + "\'";
 						break;
 					}
@@ -397,22 +399,29 @@ public class DataLoaderTXT implements FileLoaderInterface
 			aMessage = "unable to determine delimiter, using \'" + DELIMITERS[0] + "\'";
 		}
 		message("establishDelimiter", aMessage);
+
+		return aDelimiter;
 	}
 
 	// check the XML declared Table ColumnNames against the HeaderLine
 	// the returned array contains the ColumnTypes as declared in XML
 	private AttributeType[] checkXMLTable(String theHeaderLine, File theFile)
 	{
-		final String[] aHeaders = theHeaderLine.split(getDelimiterString(), -1);
+		return checkXMLTable(itsTable, theHeaderLine, getDelimiterString(), theFile);
+	}
+
+	static AttributeType[] checkXMLTable(Table theTable, String theHeaderLine, String theDelimiter, File theFile)
+	{
+		final String[] aHeaders = theHeaderLine.split(theDelimiter, -1);
 		final int aNrColumns = aHeaders.length;
 		boolean returnNull = false;
 
 		// check if number of columns is equal in XML and File
-		if (aNrColumns != itsTable.getColumns().size())
+		if (aNrColumns != theTable.getColumns().size())
 		{
 			message("checkXMLTable",
 					String.format("ERROR%nNumber of Columns declared in XML: %d%nNumber of Columns retrieved from File %s: %d",
-							itsTable.getColumns().size(),
+							theTable.getColumns().size(),
 							theFile.getName(),
 							aNrColumns));
 			returnNull = true;
@@ -421,12 +430,12 @@ public class DataLoaderTXT implements FileLoaderInterface
 		// check whether ColumnNames are equal in XML and File
 		for (int i = 0; i < aNrColumns; ++i)
 		{
-			if (!aHeaders[i].equals(itsTable.getColumn(i).getName()))
+			if (!aHeaders[i].equals(theTable.getColumn(i).getName()))
 			{
 				message("checkXMLTable",
 					String.format("ERROR on index %d%nColumn '%s' from XML does not match Column '%s' from File '%s'",
 							(i+1),
-							itsTable.getColumn(i).getName(),
+							theTable.getColumn(i).getName(),
 							aHeaders[i].trim(),
 							theFile.getName()));
 				returnNull = true;
@@ -440,7 +449,7 @@ public class DataLoaderTXT implements FileLoaderInterface
 		{
 			final AttributeType[] theOriginalTypes = new AttributeType[aNrColumns];
 			for (int i = 0, j = aNrColumns; i < j; ++i)
-				theOriginalTypes[i] = itsTable.getColumn(i).getType();
+				theOriginalTypes[i] = theTable.getColumn(i).getType();
 			return theOriginalTypes;
 		}
 	}
@@ -495,7 +504,7 @@ public class DataLoaderTXT implements FileLoaderInterface
 	}
 
 	//remove quotes under the assumption that they appear at the start and end of theString. Works best in combination with trim()
-	private String removeQuotes(String theString)
+	static String removeQuotes(String theString)
 	{
 		// fail fast
 		if (theString.isEmpty() || (theString.charAt(0) != '\"' && theString.charAt(0) != '\''))
@@ -507,7 +516,7 @@ public class DataLoaderTXT implements FileLoaderInterface
 		return theString;
 	}
 
-	private boolean opensQuotes(String theString) //only opens it, without closing?
+	static boolean opensQuotes(String theString) //only opens it, without closing?
 	{
 		if (theString.isEmpty())
 			return false;
@@ -523,7 +532,7 @@ public class DataLoaderTXT implements FileLoaderInterface
 		return true;				//only opens with a quote
 	}
 
-	private boolean closesQuotes(String theString) //only closes it, without opening?
+	static boolean closesQuotes(String theString) //only closes it, without opening?
 	{
 		if (theString.isEmpty())
 			return false;
@@ -538,21 +547,37 @@ public class DataLoaderTXT implements FileLoaderInterface
 	}
 
 	// NOTE null is never passed as input parameter
-	private boolean isEmptyString(String s)
+	// same as s.matches("\\s*"), without compiling a Pattern for every call
+	static boolean isEmptyString(String s)
 	{
-		return (s.matches("\\s*"));
+		for (int i = 0, j = s.length(); i < j; ++i)
+		{
+			switch (s.charAt(i))
+			{
+				case ' ' : case '\t' : case '\n' : case '\u000B' : case '\f' : case '\r' :
+					continue;
+				default :
+					return false;
+			}
+		}
+		return true;
 	}
 
 	private void evaluateXMLLoading(AttributeType[] theOriginalTypes, File theFile)
+	{
+		evaluateXMLLoading(itsTable, theOriginalTypes, theFile);
+	}
+
+	static void evaluateXMLLoading(Table theTable, AttributeType[] theOriginalTypes, File theFile)
 	{
 		for (int i = 0, j = theOriginalTypes.length; i < j; ++i)
-			if (itsTable.getColumn(i).getType() != theOriginalTypes[i])
+			if (theTable.getColumn(i).getType() != theOriginalTypes[i])
 				message("evaluateXMLLoading",
 					String.format("WARNING Column '%s'%n\tXML declared AttributeType: '%s'%n\tAttributeType after parsing File '%s': '%s'",
-							itsTable.getColumn(i).getName(),
+							theTable.getColumn(i).getName(),
 							theOriginalTypes[i].toString(),
 							theFile.getAbsolutePath(),
-							itsTable.getColumn(i).getType()));
+							theTable.getColumn(i).getType()));
 	}
 
 	@Override
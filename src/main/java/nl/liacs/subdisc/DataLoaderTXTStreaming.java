@@ -0,0 +1,806 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Loads a delimited text file into a {@link Table}, yielding the same Table as
+ * {@link DataLoaderTXT}, in a single pass over the file.
+ * <p>
+ * The data lines are read in chunks of about {@link #CHUNK_SIZE} bytes, that
+ * end at a line end. Chunks are parsed in parallel, each Column of a chunk is
+ * parsed into a primitive buffer. The AttributeType of a Column is inferred
+ * while parsing, and only moves from BINARY to NUMERIC to NOMINAL. A chunk
+ * starts parsing a Column with the AttributeType inferred from the first data
+ * line, and records at which line the AttributeType changed.
+ * <p>
+ * Then the Columns are filled in parallel, by replaying the buffers of the
+ * chunks in file order, changing the AttributeType of the Column at the same
+ * lines as DataLoaderTXT does. In the rare case that a chunk started parsing a
+ * Column with an AttributeType that an earlier chunk already changed, that
+ * Column of the chunk is parsed again with the correct AttributeType.
+ *
+ * @see DataLoaderTXT
+ */
+public class DataLoaderTXTStreaming implements FileLoaderInterface
+{
+	static final int CHUNK_SIZE = 8 << 20;
+
+	// the AttributeTypes a Column can move through while parsing, in order
+	private static final int BINARY = 0;
+	private static final int NUMERIC = 1;
+	private static final int NOMINAL = 2;
+
+	private final int itsChunkSize;
+	private Table itsTable = null;
+	private int itsDelimiter = 0;
+	private int itsNrLines = 0;
+
+	// default file loader
+	public DataLoaderTXTStreaming(File theFile)
+	{
+		this(theFile, null, CHUNK_SIZE, false);
+	}
+
+	// XML-loader, Table is created based on XML, data is loaded here
+	public DataLoaderTXTStreaming(File theFile, Table theTable)
+	{
+		this(theFile, theTable, CHUNK_SIZE, true);
+	}
+
+	// allows small chunks for testing
+	DataLoaderTXTStreaming(File theFile, Table theTable, int theChunkSize, boolean isXMLLoader)
+	{
+		itsChunkSize = theChunkSize;
+
+		String aWarning = null;
+
+		if (theFile == null)
+			aWarning = "file can not be null";
+		else if (!theFile.exists())
+			aWarning = theFile.getAbsolutePath() + ", file does not exist";
+		else if (!theFile.canRead())
+			aWarning = theFile.getAbsolutePath() + ", file not readable";
+
+		if (aWarning != null)
+		{
+			message("<init>", aWarning);
+			return;
+		}
+
+		itsTable = theTable;
+		if (isXMLLoader && (itsTable == null))
+			message("<init>", "Table is null, attempting regular file-load.");
+		loadFile(theFile);
+	}
+
+	private static void message(String theMethod, String theMessage)
+	{
+		Log.logCommandLine(String.format("%s.%s(): %s",
+							DataLoaderTXTStreaming.class.getSimpleName(),
+							theMethod,
+							theMessage));
+	}
+
+	private void loadFile(File theFile)
+	{
+		message("loadFile", "loading " + theFile.getAbsolutePath());
+
+		FileChannel aChannel = null;
+		ExecutorService anExecutor = null;
+		try
+		{
+			aChannel = new FileInputStream(theFile).getChannel();
+			final Charset aCharset = Charset.defaultCharset();
+
+			// header line and first data line, read sequentially
+			LineReader aReader = new LineReader(aChannel, aCharset);
+			String aHeaderLine = aReader.readNonEmptyLine();
+			if (aHeaderLine == null)
+			{
+				message("loadFile", "no header line found");
+				return;
+			}
+			long aDataStart = aReader.itsPosition;
+			int aNrLinesBefore = aReader.itsLineNr;
+			String aFirstLine = aReader.readNonEmptyLine();
+			if (aFirstLine != null)
+				itsDelimiter = DataLoaderTXT.establishDelimiter(aHeaderLine, aFirstLine);
+
+			final char aDelimiter = DataLoaderTXT.DELIMITERS[itsDelimiter];
+			final String aDelimiterString = Character.toString(aDelimiter);
+
+			// used for XML sanity check later
+			AttributeType[] anOriginalTypes = null;
+			// the line used to initialise the binary values
+			String aLine = aHeaderLine;
+			if (itsTable != null)
+			{
+				anOriginalTypes = DataLoaderTXT.checkXMLTable(itsTable, aHeaderLine, aDelimiterString, theFile);
+				// something is seriously wrong
+				if (anOriginalTypes == null)
+					return;
+			}
+			else
+			{
+				if (aFirstLine == null)
+				{
+					message("loadFile", "no data line found");
+					return;
+				}
+				// first data line is parsed by createTable()
+				aDataStart = aReader.itsPosition;
+				aNrLinesBefore = aReader.itsLineNr;
+				aLine = aFirstLine;
+			}
+
+			final int aNrColumns = (itsTable != null) ? itsTable.getColumns().size() : aHeaderLine.split(aDelimiterString, -1).length;
+			final int[] aStates = new int[aNrColumns];
+			final String[] aTrueBinaryValues = new String[aNrColumns];
+			final String[] aFalseBinaryValues = new String[aNrColumns];
+
+			// parse all chunks in parallel, the initial AttributeTypes
+			// only depend on the header line and first data line
+			String[] aData = (itsTable == null) ? aFirstLine.split(aDelimiterString, -1) : null;
+			for (int i = 0; i < aNrColumns; ++i)
+				aStates[i] = (itsTable != null) ? getState(itsTable.getColumn(i).getType()) : getState(DataLoaderTXT.removeQuotes(aData[i]));
+			initialiseBinaryValues(aLine, aDelimiterString, aStates, aTrueBinaryValues, aFalseBinaryValues);
+
+			int aNrThreads = Runtime.getRuntime().availableProcessors();
+			anExecutor = Executors.newFixedThreadPool(aNrThreads);
+			List<Chunk> aChunks = new ArrayList<Chunk>();
+			List<Future<Chunk>> aFutures = new ArrayList<Future<Chunk>>();
+			message("loadFile", "loading data");
+			for (long aStart = aDataStart, aSize = aChannel.size(); aStart < aSize; )
+			{
+				long anEnd = findChunkEnd(aChannel, aStart + itsChunkSize, aSize);
+				final Chunk aChunk = new Chunk(aChannel, aStart, (int) (anEnd - aStart), aDelimiter, aCharset, aNrColumns);
+				aChunks.add(aChunk);
+				aFutures.add(anExecutor.submit(new Callable<Chunk>()
+				{
+					@Override
+					public Chunk call() throws IOException
+					{
+						aChunk.parse(aStates, -1);
+						return aChunk;
+					}
+				}));
+				aStart = anEnd;
+			}
+
+			// number of data lines and field count warnings, in order
+			int aNrDataLines = (itsTable == null) ? 1 : 0;
+			int aLineNr = aNrLinesBefore;
+			for (int i = 0, j = aChunks.size(); i < j; ++i)
+			{
+				Chunk aChunk = get(aFutures.get(i));
+				aChunk.itsLineNr = aLineNr;
+				for (int[] aFault : aChunk.itsFaults)
+					message("loadFile", "incorrect number of fields on line " + (aLineNr + aFault[0]) +". " + aNrColumns + " expected, " + aFault[1] + " found.");
+				aChunk.itsFaults = null;
+				aNrDataLines += aChunk.itsNrDataLines;
+				aLineNr += aChunk.itsNrLines;
+			}
+			itsNrLines = aNrDataLines;
+			message("loadFile", itsNrLines + " lines of data found");
+
+			if (itsTable == null)
+				createTable(theFile, aHeaderLine, aData, aStates);
+
+			// fill all Columns in parallel
+			final List<Chunk> aParsed = aChunks;
+			List<Future<Column>> aColumnFutures = new ArrayList<Future<Column>>(aNrColumns);
+			for (int i = 0; i < aNrColumns; ++i)
+			{
+				final int aColumn = i;
+				aColumnFutures.add(anExecutor.submit(new Callable<Column>()
+				{
+					@Override
+					public Column call() throws IOException
+					{
+						Column c = itsTable.getColumn(aColumn);
+						int aState = aStates[aColumn];
+						String[] aBinaryValues = { aTrueBinaryValues[aColumn], aFalseBinaryValues[aColumn] };
+						for (Chunk aChunk : aParsed)
+							aState = aChunk.replay(c, aColumn, aState, aBinaryValues);
+						return c;
+					}
+				}));
+			}
+			for (Future<Column> f : aColumnFutures)
+				get(f);
+
+			for (Column c : itsTable.getColumns())
+				System.out.println("Column " + c.getName() + " (" + c.getType() + ")");
+
+			// one final check about the validity of the XML file
+			if (anOriginalTypes != null)
+				DataLoaderTXT.evaluateXMLLoading(itsTable, anOriginalTypes, theFile);
+		}
+		catch (IOException e)
+		{
+			message("loadFile", "IOException caused by file: " + theFile.getAbsolutePath());
+			e.printStackTrace();
+		}
+		finally
+		{
+			if (anExecutor != null)
+				anExecutor.shutdownNow();
+			try
+			{
+				if (aChannel != null)
+					aChannel.close();
+			}
+			catch (IOException e)
+			{
+				message("loadFile", "IOException caused by file: " + theFile.getAbsolutePath());
+				e.printStackTrace();
+			}
+		}
+	}
+
+	// rethrows the Exception of a task as is
+	private static <T> T get(Future<T> theFuture) throws IOException
+	{
+		try
+		{
+			return theFuture.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		}
+		catch (ExecutionException e)
+		{
+			Throwable t = e.getCause();
+			if (t instanceof IOException)
+				throw (IOException) t;
+			if (t instanceof RuntimeException)
+				throw (RuntimeException) t;
+			if (t instanceof Error)
+				throw (Error) t;
+			throw new AssertionError(t);
+		}
+	}
+
+	// as DataLoaderTXT.createTable(), first data line is known to exist
+	private void createTable(File theFile, String aHeaderLine, String[] aData, int[] theStates)
+	{
+		message("createTable", "creating Table");
+		String[] aHeaders = aHeaderLine.split(Character.toString(DataLoaderTXT.DELIMITERS[itsDelimiter]), -1);
+
+		for (int i=0; i<aHeaders.length; i++)
+			aHeaders[i] = DataLoaderTXT.removeQuotes(aHeaders[i].trim());
+
+		// create Table and Columns
+		itsTable = new Table(theFile, itsNrLines, aHeaders.length);
+		List<Column> aColumns = itsTable.getColumns();
+
+		for (int i = 0, j = aHeaders.length; i < j; ++i)
+		{
+			String s = DataLoaderTXT.removeQuotes(aData[i]);
+
+			switch (theStates[i])
+			{
+				case BINARY :
+				{
+					aColumns.add(new Column(aHeaders[i], null, AttributeType.BINARY, i, itsNrLines));
+					if (DataLoaderTXT.isEmptyString(s))
+						aColumns.get(i).addMissing();
+					else
+						aColumns.get(i).add(AttributeType.isValidBinaryTrueValue(s));
+					break;
+				}
+				case NUMERIC :
+				{
+					aColumns.add(new Column(aHeaders[i], null, AttributeType.NUMERIC, i, itsNrLines));
+					aColumns.get(i).add(Float.parseFloat(s));
+					break;
+				}
+				default :
+				{
+					aColumns.add(new Column(aHeaders[i], null, AttributeType.NOMINAL, i, itsNrLines));
+					aColumns.get(i).add(s);
+				}
+			}
+		}
+	}
+
+	// AttributeType of a Column created by DataLoaderTXT.createTable()
+	private static int getState(String theValue)
+	{
+		if (AttributeType.isValidBinaryValue(theValue) || DataLoaderTXT.isEmptyString(theValue))
+			return BINARY;
+		try
+		{
+			Float.parseFloat(theValue);
+			return NUMERIC;
+		}
+		catch (NumberFormatException e)
+		{
+			return NOMINAL;
+		}
+	}
+
+	// code ignores AttributeType.ORDINAL, as DataLoaderTXT does
+	private static int getState(AttributeType theType)
+	{
+		switch (theType)
+		{
+			case BINARY : return BINARY;
+			case NUMERIC : return NUMERIC;
+			default : return NOMINAL;
+		}
+	}
+
+	/*
+	 * as DataLoaderTXT.loadFile(), that only consumes a field from the Scanner
+	 * for Columns that appear to be binary, this yields the same values
+	 */
+	private static void initialiseBinaryValues(String theLine, String theDelimiter, int[] theStates, String[] theTrueBinaryValues, String[] theFalseBinaryValues)
+	{
+		Scanner aScanner = new Scanner(theLine).useDelimiter(theDelimiter);
+		int aColumn = 0;
+		while (aScanner.hasNext() && aColumn < theStates.length)
+		{
+			if (theStates[aColumn] == BINARY)
+			{
+				String s = DataLoaderTXT.removeQuotes(aScanner.next());
+				if (AttributeType.isValidBinaryValue(s))
+				{
+					if (AttributeType.isValidBinaryTrueValue(s))
+						theTrueBinaryValues[aColumn] = s;
+					else
+						theFalseBinaryValues[aColumn] = s;
+				}
+			}
+			aColumn++;
+		}
+		aScanner.close();
+	}
+
+	// returns the position after the first line end at or after thePosition
+	private static long findChunkEnd(FileChannel theChannel, long thePosition, long theSize) throws IOException
+	{
+		ByteBuffer aBuffer = ByteBuffer.allocate(1 << 16);
+		for (long aPosition = thePosition; aPosition < theSize; )
+		{
+			aBuffer.clear();
+			int aNrBytes = theChannel.read(aBuffer, aPosition);
+			if (aNrBytes <= 0)
+				break;
+			for (int i = 0; i < aNrBytes; ++i)
+			{
+				byte b = aBuffer.get(i);
+				if (b == '\n')
+					return aPosition + i + 1;
+				if (b == '\r')
+				{
+					// keep \r\n together, lone \r ends a line too
+					if (i + 1 < aNrBytes)
+						return aPosition + i + ((aBuffer.get(i + 1) == '\n') ? 2 : 1);
+					if (aPosition + i + 1 >= theSize)
+						return theSize;
+					ByteBuffer aNext = ByteBuffer.allocate(1);
+					theChannel.read(aNext, aPosition + i + 1);
+					return aPosition + i + ((aNext.get(0) == '\n') ? 2 : 1);
+				}
+			}
+			aPosition += aNrBytes;
+		}
+		return theSize;
+	}
+
+	/*
+	 * reads lines sequentially from the start of a FileChannel, using the
+	 * line ends of BufferedReader.readLine(), keeping track of the position
+	 */
+	private static final class LineReader
+	{
+		private final FileChannel itsChannel;
+		private final Charset itsCharset;
+		private final ByteBuffer itsBuffer = ByteBuffer.allocate(1 << 16);
+		private long itsBufferPosition = 0L;
+		private long itsPosition = 0L;
+		private int itsLineNr = 0;
+
+		private LineReader(FileChannel theChannel, Charset theCharset)
+		{
+			itsChannel = theChannel;
+			itsCharset = theCharset;
+			itsBuffer.limit(0);
+		}
+
+		// returns -1 at the end of the file
+		private int read(long thePosition) throws IOException
+		{
+			long anOffset = thePosition - itsBufferPosition;
+			if ((anOffset < 0) || (anOffset >= itsBuffer.limit()))
+			{
+				itsBuffer.clear();
+				if (itsChannel.read(itsBuffer, thePosition) <= 0)
+				{
+					itsBuffer.limit(0);
+					return -1;
+				}
+				itsBuffer.flip();
+				itsBufferPosition = thePosition;
+				anOffset = 0;
+			}
+			return itsBuffer.get((int) anOffset) & 0xFF;
+		}
+
+		private String readNonEmptyLine() throws IOException
+		{
+			ByteArrayOutputStream aLine = new ByteArrayOutputStream();
+			while (true)
+			{
+				aLine.reset();
+				int b = read(itsPosition);
+				if (b < 0)
+					return null;
+				while ((b >= 0) && (b != '\n') && (b != '\r'))
+				{
+					aLine.write(b);
+					b = read(++itsPosition);
+				}
+				if (b >= 0)
+				{
+					++itsPosition;
+					if ((b == '\r') && (read(itsPosition) == '\n'))
+						++itsPosition;
+				}
+				++itsLineNr;
+				if (aLine.size() > 0)
+					return new String(aLine.toByteArray(), itsCharset);
+			}
+		}
+	}
+
+	// the fields of a line, as the padded Scanner of DataLoaderTXT.loadFile()
+	private static final class Fields
+	{
+		private final String itsLine;
+		private final char itsDelimiter;
+		private int itsPosition = 0;
+
+		private Fields(String theLine, char theDelimiter)
+		{
+			itsLine = theLine;
+			itsDelimiter = theDelimiter;
+		}
+
+		private boolean hasNext() { return itsPosition <= itsLine.length(); }
+
+		private String next()
+		{
+			int anEnd = itsLine.indexOf(itsDelimiter, itsPosition);
+			if (anEnd < 0)
+				anEnd = itsLine.length();
+			String s = itsLine.substring(itsPosition, anEnd);
+			itsPosition = anEnd + 1;
+			return s;
+		}
+	}
+
+	/*
+	 * the values of one Column in one Chunk, the values after the change to
+	 * NUMERIC and NOMINAL are kept in separate buffers
+	 */
+	private static final class Values
+	{
+		private final int itsStartState;
+		private int itsState;
+		private int itsSize = 0;
+		private final BitSet itsMissing = new BitSet();
+		private final BitSet itsBinaries = new BitSet();
+		private float[] itsFloats = null;
+		private String[] itsNominals = null;
+		// index of the first value after the change, and its line number
+		private int itsNumericFrom = -1;
+		private int itsNumericLine;
+		private int itsNominalFrom = -1;
+		private int itsNominalLine;
+		// last binary values before any change
+		private String itsTrue = null;
+		private String itsFalse = null;
+
+		private Values(int theState)
+		{
+			itsStartState = theState;
+			itsState = theState;
+		}
+
+		private void add(String s, int theLineNr)
+		{
+			switch (itsState)
+			{
+				case BINARY :
+				{
+					// check if it is a missing value or a known binary value
+					if (DataLoaderTXT.isEmptyString(s))
+					{
+						itsMissing.set(itsSize++);
+						return;
+					}
+					else if (AttributeType.isValidBinaryValue(s))
+					{
+						boolean aValue = AttributeType.isValidBinaryTrueValue(s);
+						if (aValue)
+						{
+							itsBinaries.set(itsSize);
+							itsTrue = s;
+						}
+						else
+							itsFalse = s;
+						++itsSize;
+						return;
+					}
+
+					// if neither missing nor binary, then it shouldn't be binary
+					try
+					{
+						float f = Float.parseFloat(s);
+						itsState = NUMERIC;
+						itsNumericFrom = itsSize;
+						itsNumericLine = theLineNr;
+						addFloat(f);
+					}
+					catch (NumberFormatException e)
+					{
+						toNominal(s, theLineNr);
+					}
+					return;
+				}
+				case NUMERIC :
+				{
+					if (DataLoaderTXT.isEmptyString(s))
+					{
+						itsMissing.set(itsSize);
+						addFloat(Float.NaN);
+						return;
+					}
+					try
+					{
+						addFloat(Float.parseFloat(s));
+					}
+					catch (NumberFormatException e)
+					{
+						toNominal(s, theLineNr);
+					}
+					return;
+				}
+				case NOMINAL :
+				{
+					if (DataLoaderTXT.isEmptyString(s))
+					{
+						itsMissing.set(itsSize);
+						addNominal(null);
+					}
+					else
+						addNominal(s);
+					return;
+				}
+				default :
+					throw new AssertionError(itsState);
+			}
+		}
+
+		private void toNominal(String s, int theLineNr)
+		{
+			itsState = NOMINAL;
+			itsNominalFrom = itsSize;
+			itsNominalLine = theLineNr;
+			addNominal(s);
+		}
+
+		private void addFloat(float f)
+		{
+			int i = itsSize - itsNumericFrom;
+			if (itsFloats == null)
+				itsFloats = new float[1024];
+			else if (i == itsFloats.length)
+				itsFloats = Arrays.copyOf(itsFloats, 2 * i);
+			itsFloats[i] = f;
+			++itsSize;
+		}
+
+		private void addNominal(String s)
+		{
+			int i = itsSize - itsNominalFrom;
+			if (itsNominals == null)
+				itsNominals = new String[1024];
+			else if (i == itsNominals.length)
+				itsNominals = Arrays.copyOf(itsNominals, 2 * i);
+			itsNominals[i] = s;
+			++itsSize;
+		}
+	}
+
+	// a range of complete lines of the file
+	private static final class Chunk
+	{
+		private final FileChannel itsChannel;
+		private final long itsOffset;
+		private final int itsLength;
+		private final char itsDelimiter;
+		private final Charset itsCharset;
+		private final Values[] itsValues;
+		// set by parse()
+		private int itsNrLines;
+		private int itsNrDataLines;
+		// {line number, number of fields}
+		private List<int[]> itsFaults;
+		// number of lines in the file before this Chunk, set after parse()
+		private int itsLineNr;
+
+		private Chunk(FileChannel theChannel, long theOffset, int theLength, char theDelimiter, Charset theCharset, int theNrColumns)
+		{
+			itsChannel = theChannel;
+			itsOffset = theOffset;
+			itsLength = theLength;
+			itsDelimiter = theDelimiter;
+			itsCharset = theCharset;
+			itsValues = new Values[theNrColumns];
+		}
+
+		// FileChannel allows concurrent positional reads
+		private byte[] read() throws IOException
+		{
+			byte[] aBytes = new byte[itsLength];
+			ByteBuffer aBuffer = ByteBuffer.wrap(aBytes);
+			while (aBuffer.hasRemaining())
+				if (itsChannel.read(aBuffer, itsOffset + aBuffer.position()) < 0)
+					throw new EOFException("file changed while loading");
+			return aBytes;
+		}
+
+		/*
+		 * parses all Columns (theColumn < 0), or only theColumn, starting
+		 * in theStates, line numbers are relative to the start of the Chunk
+		 */
+		private Values[] parse(int[] theStates, int theColumn) throws IOException
+		{
+			final int aNrColumns = itsValues.length;
+			Values[] aValues = new Values[aNrColumns];
+			for (int i = 0; i < aNrColumns; ++i)
+				if ((theColumn < 0) || (i == theColumn))
+					aValues[i] = new Values(theStates[i]);
+			List<int[]> aFaults = new ArrayList<int[]>();
+
+			byte[] aBytes = read();
+			int aNrLines = 0;
+			int aNrDataLines = 0;
+			for (int i = 0, n = aBytes.length; i < n; )
+			{
+				int aStart = i;
+				while ((i < n) && (aBytes[i] != '\n') && (aBytes[i] != '\r'))
+					++i;
+				int anEnd = i;
+				if (i < n)
+					i += ((aBytes[i] == '\r') && (i + 1 < n) && (aBytes[i + 1] == '\n')) ? 2 : 1;
+				++aNrLines;
+				if (anEnd == aStart)
+					continue;
+				++aNrDataLines;
+
+				Fields aFields = new Fields(new String(aBytes, aStart, anEnd - aStart, itsCharset), itsDelimiter);
+				int aColumn = 0;
+				while (aFields.hasNext())
+				{
+					String s = aFields.next();
+					if (DataLoaderTXT.opensQuotes(s)) //the delimiter came before the quote was closed
+					{
+						while (aFields.hasNext())
+						{
+							String aNext = aFields.next();
+							s = s + itsDelimiter + aNext;
+							if (DataLoaderTXT.closesQuotes(aNext))
+								break;
+						}
+					}
+					// extra fields are ignored
+					if ((aColumn < aNrColumns) && (aValues[aColumn] != null))
+						aValues[aColumn].add(DataLoaderTXT.removeQuotes(s.trim()), aNrLines);
+					++aColumn;
+				}
+				if (aColumn != aNrColumns)
+					aFaults.add(new int[] { aNrLines, aColumn });
+			}
+
+			if (theColumn < 0)
+			{
+				System.arraycopy(aValues, 0, itsValues, 0, aNrColumns);
+				itsNrLines = aNrLines;
+				itsNrDataLines = aNrDataLines;
+				itsFaults = aFaults;
+			}
+			return aValues;
+		}
+
+		/*
+		 * adds the values of theColumn to theColumn, starting in theState,
+		 * theBinaryValues holds the last true and false binary values
+		 * returns the state after the last value
+		 */
+		private int replay(Column theColumn, int theIndex, int theState, String[] theBinaryValues) throws IOException
+		{
+			Values v = itsValues[theIndex];
+			// an earlier Chunk changed the AttributeType, parse again
+			if (v.itsStartState != theState)
+			{
+				int[] aStates = new int[itsValues.length];
+				aStates[theIndex] = theState;
+				v = parse(aStates, theIndex)[theIndex];
+			}
+			// release buffers
+			itsValues[theIndex] = null;
+
+			if (v.itsTrue != null)
+				theBinaryValues[0] = v.itsTrue;
+			if (v.itsFalse != null)
+				theBinaryValues[1] = v.itsFalse;
+
+			int aState = v.itsStartState;
+			for (int i = 0, j = v.itsSize; i < j; ++i)
+			{
+				if (i == v.itsNumericFrom)
+				{
+					aState = NUMERIC;
+					theColumn.setType(AttributeType.NUMERIC);
+					Log.logCommandLine(theColumn.getName() + " was binary, is numeric (line " + (itsLineNr + v.itsNumericLine) + ")");
+				}
+				if (i == v.itsNominalFrom)
+				{
+					if (aState == BINARY)
+					{
+						theColumn.toNominalType(theBinaryValues[0], theBinaryValues[1]);
+						Log.logCommandLine(theColumn.getName() + " was binary, is nominal (line " + (itsLineNr + v.itsNominalLine) + ")");
+					}
+					else
+					{
+						theColumn.setType(AttributeType.NOMINAL);
+						Log.logCommandLine(theColumn.getName() + " was float, is nominal (line " + (itsLineNr + v.itsNominalLine) + ")");
+					}
+					aState = NOMINAL;
+				}
+
+				if (v.itsMissing.get(i))
+				{
+					theColumn.addMissing();
+					continue;
+				}
+				switch (aState)
+				{
+					case BINARY : theColumn.add(v.itsBinaries.get(i)); break;
+					case NUMERIC : theColumn.add(v.itsFloats[i - v.itsNumericFrom]); break;
+					case NOMINAL : theColumn.add(v.itsNominals[i - v.itsNominalFrom]); break;
+					default : throw new AssertionError(aState);
+				}
+			}
+
+			return aState;
+		}
+	}
+
+	@Override
+	public Table getTable()
+	{
+		return itsTable;
+	}
+
+	public char getDelimiter()
+	{
+		return DataLoaderTXT.DELIMITERS[itsDelimiter];
+	}
+
+	public String getDelimiterString()
+	{
+		return Character.toString(DataLoaderTXT.DELIMITERS[itsDelimiter]);
+	}
+}
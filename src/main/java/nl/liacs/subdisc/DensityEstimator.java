@@ -0,0 +1,80 @@
+package nl.liacs.subdisc;
+
+/**
+ * DensityEstimator contains all available ways in which
+ * {@link ProbabilityDensityFunction_ND} computes the kernel density estimates
+ * on its grid, as used by the 2D density difference quality measures.
+ */
+public enum DensityEstimator implements EnumInterface
+{
+	/*
+	 * for every grid point, sum the kernel over every record
+	 * O(grid * n), this is the original algorithm
+	 */
+	DIRECT("direct"),
+	/*
+	 * linear binning of the records onto the grid, followed by a convolution
+	 * of the bin counts with the kernel using a 2D FFT
+	 * O(n + grid * log(grid)), an approximation of DIRECT
+	 */
+	BINNED("binned");
+
+	/**
+	 * For each DensityEstimator, this is the text that will be used in the
+	 * GUI. This is also the <code>String</code> that will be returned by
+	 * the {@link #toString()} method.
+	 */
+	public final String GUI_TEXT;
+
+	private DensityEstimator(String theGuiText)
+	{
+		GUI_TEXT = theGuiText;
+	}
+
+	/**
+	 * Returns the DensityEstimator corresponding to the
+	 * <code>String</code> parameter. This method is case insensitive.
+	 *
+	 * @param theText the <code>String</code>
+	 * ({@link DensityEstimator#GUI_TEXT}) corresponding to a
+	 * DensityEstimator.
+	 *
+	 * @return the DensityEstimator corresponding to the
+	 * <code>String</code> parameter, or the default DensityEstimator
+	 * (as per {@link DensityEstimator#getDefault()}) if no corresponding
+	 * DensityEstimator can be found.
+	 */
+	public static DensityEstimator fromString(String theText)
+	{
+		for (DensityEstimator d : DensityEstimator.values())
+			if (d.GUI_TEXT.equalsIgnoreCase(theText))
+				return d;
+
+		/*
+		 * theText cannot be resolved to a DensityEstimator. Log error
+		 * and return default.
+		 */
+		Log.logCommandLine(
+			String.format("'%s' is not a valid DensityEstimator. Returning '%s'.",
+					theText,
+					DensityEstimator.getDefault().GUI_TEXT));
+		return DensityEstimator.getDefault();
+	}
+
+	/**
+	 * Returns the default DensityEstimator {@link DensityEstimator#DIRECT}.
+	 *
+	 * @return the default DensityEstimator.
+	 */
+	public static DensityEstimator getDefault()
+	{
+		return DensityEstimator.DIRECT;
+	}
+
+	// uses Javadoc from EnumInterface
+	@Override
+	public String toString()
+	{
+		return GUI_TEXT;
+	}
+}
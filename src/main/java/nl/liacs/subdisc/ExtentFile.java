@@ -0,0 +1,316 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.*;
+
+/**
+ * An ExtentFile holds the extents of the Subgroups in a {@link SubgroupSet}
+ * in a compact binary format, it is the binary alternative to
+ * {@link SubgroupSet#saveExtent(BufferedWriter, Table, BitSet, TargetConcept)},
+ * which writes a text row of 0/1 values per record.
+ * <p>
+ * The File is column-oriented: after a header, every Subgroup has one
+ * block, holding its members as a {@link MemberSet}, with the same
+ * compressed containers it uses in memory. The header holds
+ * {@link #MAGIC}, the number of rows and Subgroups, and for every Subgroup
+ * its ID, coverage, quality and Conditions, and the offset and length of its
+ * block. A first block holds the training rows, the rows that were used for
+ * mining, all rows are training rows when no subset is used.
+ * The extents are stored as row indices of the full {@link Table}, also when
+ * the Subgroups were mined on a subset of it.
+ * All values are written using ByteOrder.LITTLE_ENDIAN.
+ * <p>
+ * The blocks are written through a buffered FileChannel. An ExtentFile
+ * that is opened for reading reads only the header, the extent of a
+ * Subgroup is read from its block when it is requested, so extents can be
+ * loaded without re-mining, and without reading the whole File.
+ *
+ * @see Table#toSnapshot(File)
+ */
+public final class ExtentFile implements Closeable
+{
+	// "SDEXT" followed by the version of the format
+	static final long MAGIC = 0x5344455854000001L;
+	// for the blocks, larger blocks are written using their own buffer
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final RandomAccessFile itsFile;
+	private final FileChannel itsChannel;
+	private final int itsNrRows;
+	private final int[] itsIDs;
+	private final int[] itsCoverages;
+	private final double[] itsMeasureValues;
+	private final String[] itsConditions;
+	// the training rows first, then the Subgroups
+	private final long[] itsOffsets;
+	private final int[] itsLengths;
+
+	/**
+	 * Opens theFile, written by
+	 * {@link #write(File, SubgroupSet, int, BitSet)}, for reading, only the
+	 * header is read.
+	 *
+	 * @param theFile the File to read.
+	 *
+	 * @throws IOException if theFile can not be read, or is not an
+	 * ExtentFile.
+	 */
+	public ExtentFile(File theFile) throws IOException
+	{
+		itsFile = new RandomAccessFile(theFile, "r");
+		try
+		{
+			itsChannel = itsFile.getChannel();
+
+			ByteBuffer aStart = map(0, Math.min(itsChannel.size(), Long.BYTES + Integer.BYTES));
+			if (aStart.remaining() < Long.BYTES + Integer.BYTES || aStart.getLong() != MAGIC)
+				throw new IOException(String.format("'%s' is not a valid ExtentFile", theFile.getAbsolutePath()));
+
+			ByteBuffer aHeader = map(0, aStart.getInt());
+			aHeader.position(Long.BYTES + Integer.BYTES);
+			itsNrRows = aHeader.getInt();
+			int aNrSubgroups = aHeader.getInt();
+
+			itsIDs = new int[aNrSubgroups];
+			itsCoverages = new int[aNrSubgroups];
+			itsMeasureValues = new double[aNrSubgroups];
+			itsConditions = new String[aNrSubgroups];
+			itsOffsets = new long[aNrSubgroups + 1];
+			itsLengths = new int[aNrSubgroups + 1];
+
+			itsOffsets[0] = aHeader.getLong();
+			itsLengths[0] = aHeader.getInt();
+			for (int i = 0; i < aNrSubgroups; ++i)
+			{
+				itsIDs[i] = aHeader.getInt();
+				itsCoverages[i] = aHeader.getInt();
+				itsMeasureValues[i] = aHeader.getDouble();
+				itsConditions[i] = Column.getSnapshotString(aHeader);
+				itsOffsets[i + 1] = aHeader.getLong();
+				itsLengths[i + 1] = aHeader.getInt();
+			}
+		}
+		catch (IOException | BufferUnderflowException | IllegalArgumentException e)
+		{
+			itsFile.close();
+			throw (e instanceof IOException) ? (IOException) e : new IOException(e);
+		}
+	}
+
+	private ByteBuffer map(long theOffset, long theLength) throws IOException
+	{
+		return itsChannel.map(MapMode.READ_ONLY, theOffset, theLength).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/** Returns the number of rows of the Table the Subgroups were mined on. */
+	public int getNrRows() { return itsNrRows; }
+
+	/** Returns the number of Subgroups, in the order of the SubgroupSet. */
+	public int getNrSubgroups() { return itsIDs.length; }
+
+	/** Returns the ID of Subgroup theIndex, as set by {@link SubgroupSet#setIDs()}. */
+	public int getID(int theIndex) { return itsIDs[theIndex]; }
+
+	/** Returns the coverage of Subgroup theIndex. */
+	public int getCoverage(int theIndex) { return itsCoverages[theIndex]; }
+
+	/** Returns the quality of Subgroup theIndex. */
+	public double getMeasureValue(int theIndex) { return itsMeasureValues[theIndex]; }
+
+	/** Returns the Conditions of Subgroup theIndex, as a String. */
+	public String getConditions(int theIndex) { return itsConditions[theIndex]; }
+
+	/**
+	 * Returns the rows that were used for mining, as row indices of the
+	 * Table.
+	 *
+	 * @return a MemberSet of the training rows.
+	 *
+	 * @throws IOException if the block can not be read.
+	 */
+	public MemberSet getTrainingRows() throws IOException
+	{
+		return read(0);
+	}
+
+	/**
+	 * Returns the extent of Subgroup theIndex, as row indices of the Table.
+	 *
+	 * @param theIndex the index of the Subgroup.
+	 *
+	 * @return a MemberSet of the members of the Subgroup.
+	 *
+	 * @throws IOException if the block can not be read.
+	 */
+	public MemberSet getExtent(int theIndex) throws IOException
+	{
+		if (theIndex < 0 || theIndex >= itsIDs.length)
+			throw new IndexOutOfBoundsException("theIndex: " + theIndex);
+		return read(theIndex + 1);
+	}
+
+	private MemberSet read(int theBlock) throws IOException
+	{
+		try
+		{
+			return MemberSet.valueOf(map(itsOffsets[theBlock], itsLengths[theBlock]));
+		}
+		catch (BufferUnderflowException | IllegalArgumentException e)
+		{
+			throw new IOException("invalid block " + theBlock, e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		itsFile.close();
+	}
+
+	/**
+	 * Writes the extents of the Subgroups of theSubgroupSet to theFile.
+	 * <p>
+	 * When the Subgroups were mined on a subset of the Table, as for
+	 * cross-validation, theSubset gives the rows of the subset, and the
+	 * members of the Subgroups, which are indices into the subset, are
+	 * written as the rows of the Table they refer to.
+	 *
+	 * @param theFile the File to write to, it is overwritten if it exists.
+	 * @param theSubgroupSet the Subgroups to write.
+	 * @param theNrRows the number of rows of the Table.
+	 * @param theSubset the rows the Subgroups were mined on, use
+	 * <code>null</code> when all rows were used.
+	 *
+	 * @return <code>true</code> if theFile was written successfully,
+	 * <code>false</code> otherwise.
+	 */
+	public static boolean write(File theFile, SubgroupSet theSubgroupSet, int theNrRows, BitSet theSubset)
+	{
+		List<Subgroup> aSubgroups = new ArrayList<Subgroup>(theSubgroupSet);
+		int aNrSubgroups = aSubgroups.size();
+
+		BitSet aTraining = theSubset;
+		if (aTraining == null)
+		{
+			aTraining = new BitSet(theNrRows);
+			aTraining.set(0, theNrRows);
+		}
+
+		// row of the k-th training row, only needed for a proper subset
+		int[] aRows = null;
+		if (aTraining.cardinality() < theNrRows)
+		{
+			aRows = new int[aTraining.cardinality()];
+			for (int i = aTraining.nextSetBit(0), k = 0; i >= 0; i = aTraining.nextSetBit(i + 1))
+				aRows[k++] = i;
+		}
+
+		byte[][] aConditions = new byte[aNrSubgroups][];
+		int aHeaderSize = Long.BYTES + (3 * Integer.BYTES) + Long.BYTES + Integer.BYTES;
+		for (int i = 0; i < aNrSubgroups; ++i)
+		{
+			aConditions[i] = Column.getSnapshotBytes(aSubgroups.get(i).getConditions().toString());
+			aHeaderSize += (2 * Integer.BYTES) + Double.BYTES + Integer.BYTES + aConditions[i].length + Long.BYTES + Integer.BYTES;
+		}
+
+		RandomAccessFile aFile = null;
+		try
+		{
+			aFile = new RandomAccessFile(theFile, "rw");
+			aFile.setLength(0);
+			FileChannel aChannel = aFile.getChannel();
+
+			// blocks are written first, then the header with the directory
+			long[] anOffsets = new long[aNrSubgroups + 1];
+			int[] aLengths = new int[aNrSubgroups + 1];
+			aChannel.position(aHeaderSize);
+			ByteBuffer aBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			long anOffset = aHeaderSize;
+			for (int i = 0; i <= aNrSubgroups; ++i)
+			{
+				MemberSet aMembers = (i == 0) ? MemberSet.valueOf(aTraining) : getExtent(aSubgroups.get(i - 1), theNrRows, aRows);
+				int aLength = aMembers.getSnapshotSize();
+				anOffsets[i] = anOffset;
+				aLengths[i] = aLength;
+				anOffset += aLength;
+
+				if (aLength > aBuffer.remaining())
+					flush(aChannel, aBuffer);
+				if (aLength <= aBuffer.remaining())
+					aMembers.toSnapshot(aBuffer);
+				else
+				{
+					ByteBuffer aBlock = ByteBuffer.allocate(aLength).order(ByteOrder.LITTLE_ENDIAN);
+					aMembers.toSnapshot(aBlock);
+					flush(aChannel, aBlock);
+				}
+			}
+			flush(aChannel, aBuffer);
+
+			ByteBuffer aHeader = ByteBuffer.allocate(aHeaderSize).order(ByteOrder.LITTLE_ENDIAN);
+			aHeader.putLong(MAGIC);
+			aHeader.putInt(aHeaderSize);
+			aHeader.putInt(theNrRows);
+			aHeader.putInt(aNrSubgroups);
+			aHeader.putLong(anOffsets[0]);
+			aHeader.putInt(aLengths[0]);
+			for (int i = 0; i < aNrSubgroups; ++i)
+			{
+				Subgroup s = aSubgroups.get(i);
+				aHeader.putInt(s.getID());
+				aHeader.putInt(s.getCoverage());
+				aHeader.putDouble(s.getMeasureValue());
+				Column.putSnapshotBytes(aHeader, aConditions[i]);
+				aHeader.putLong(anOffsets[i + 1]);
+				aHeader.putInt(aLengths[i + 1]);
+			}
+			aHeader.flip();
+			for (long aPosition = 0; aHeader.hasRemaining(); )
+				aPosition += aChannel.write(aHeader, aPosition);
+
+			return true;
+		}
+		catch (IOException e)
+		{
+			Log.logCommandLine("Error while writing extents: " + theFile);
+			return false;
+		}
+		finally
+		{
+			try
+			{
+				if (aFile != null)
+					aFile.close();
+			}
+			catch (IOException e)
+			{
+				Log.logCommandLine("Error while writing extents: " + theFile);
+			}
+		}
+	}
+
+	// members as rows of the Table, theRows is null if no subset is used
+	private static MemberSet getExtent(Subgroup theSubgroup, int theNrRows, int[] theRows)
+	{
+		MemberSet aMembers = theSubgroup.getMemberSet();
+		if (theRows == null)
+			return aMembers;
+
+		BitSet aBitSet = new BitSet(theNrRows);
+		for (int k = aMembers.nextSetBit(0); k >= 0; k = aMembers.nextSetBit(k + 1))
+			aBitSet.set(theRows[k]);
+		return MemberSet.valueOf(aBitSet);
+	}
+
+	// writes what was put in theBuffer at the position of theChannel, and clears it
+	private static void flush(FileChannel theChannel, ByteBuffer theBuffer) throws IOException
+	{
+		theBuffer.flip();
+		while (theBuffer.hasRemaining())
+			theChannel.write(theBuffer);
+		theBuffer.clear();
+	}
+}
@@ -0,0 +1,231 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+/**
+ * FamilyScores computes the BDeu scores of the families (a node and its
+ * parents) of a {@link DAG} over the columns of a {@link BinaryTable}, as
+ * used by the hill-climbing of {@link Bayesian}.
+ * <p>
+ * The sufficient statistics are computed once: the records, optionally
+ * restricted to the members of a {@link Subgroup}, are aggregated into the
+ * distinct combinations of column values (patterns) that occur, with their
+ * number of records. The counts for any family are then obtained from these
+ * patterns, instead of from the records, and no copy of the BinaryTable is
+ * made for the members.
+ * <p>
+ * The score of a family does not depend on the rest of the DAG, so every
+ * family is scored only once, during a hill-climb only the families changed
+ * by the last arc change need to be scored again. The scores are identical
+ * to those of {@link BinaryTable#computeBDeuFaster()}.
+ * <p>
+ * A FamilyScores is not thread safe, it is meant to be used by a single
+ * {@link Bayesian} at a time.
+ */
+final class FamilyScores
+{
+	// patterns are stored as a long, one bit per column
+	private static final int MAX_NR_COLUMNS = Long.SIZE - 1;
+	// families up to this size are counted in an array of size 2^size
+	private static final int MAX_DENSE_SIZE = 12;
+
+	private final BinaryTable itsTable;
+	private final BitSet itsMembers;
+	private final int itsNrColumns;
+	private final List<Map<BitSet, Double>> itsScores;
+
+	// the distinct patterns, the bit for column i is (1L << i)
+	private long[] itsPatterns;
+	private int[] itsCounts;
+	// only for more than MAX_NR_COLUMNS columns
+	private BinaryTable itsRows;
+
+	/**
+	 * Creates the FamilyScores for theTable, restricted to theMembers.
+	 *
+	 * @param theTable the BinaryTable, this is never modified.
+	 * @param theMembers the records to use, <code>null</code> for all.
+	 */
+	FamilyScores(BinaryTable theTable, BitSet theMembers)
+	{
+		itsTable = theTable;
+		itsMembers = theMembers;
+		itsNrColumns = theTable.getNrColumns();
+		itsScores = new ArrayList<Map<BitSet, Double>>(itsNrColumns);
+		for (int i = 0; i < itsNrColumns; ++i)
+			itsScores.add(new HashMap<BitSet, Double>());
+
+		if (itsNrColumns <= MAX_NR_COLUMNS)
+			aggregate();
+	}
+
+	int getNrColumns() { return itsNrColumns; }
+
+	private void aggregate()
+	{
+		BitSet[] aColumns = new BitSet[itsNrColumns];
+		for (int i = 0; i < itsNrColumns; ++i)
+			aColumns[i] = itsTable.getColumn(i);
+
+		int aNrRecords = itsTable.getNrRecords();
+		int aNrMembers = (itsMembers == null) ? aNrRecords : itsMembers.get(0, aNrRecords).cardinality();
+		long[] aRows = new long[aNrMembers];
+		for (int r = nextMember(0, aNrRecords), k = 0; r >= 0; r = nextMember(r+1, aNrRecords), ++k)
+		{
+			long aPattern = 0L;
+			for (int i = 0; i < itsNrColumns; ++i)
+				if (aColumns[i].get(r))
+					aPattern |= (1L << i);
+			aRows[k] = aPattern;
+		}
+
+		// equal patterns become consecutive
+		Arrays.sort(aRows);
+		int aNrPatterns = 0;
+		for (int k = 0; k < aRows.length; ++k)
+			if ((k == 0) || (aRows[k] != aRows[k-1]))
+				++aNrPatterns;
+
+		itsPatterns = new long[aNrPatterns];
+		itsCounts = new int[aNrPatterns];
+		for (int k = 0, p = -1; k < aRows.length; ++k)
+		{
+			if ((k == 0) || (aRows[k] != aRows[k-1]))
+				itsPatterns[++p] = aRows[k];
+			++itsCounts[p];
+		}
+	}
+
+	private int nextMember(int theFrom, int theNrRecords)
+	{
+		int r = (itsMembers == null) ? theFrom : itsMembers.nextSetBit(theFrom);
+		return (r < theNrRecords) ? r : -1;
+	}
+
+	/**
+	 * Returns the BDeu score of the family of theChild and theParents.
+	 *
+	 * @param theChild the index of the child column.
+	 * @param theParents the indices of the parent columns, this is never
+	 * modified.
+	 *
+	 * @return the BDeu score of the family.
+	 */
+	double getBDeu(int theChild, ItemSet theParents)
+	{
+		Map<BitSet, Double> aScores = itsScores.get(theChild);
+		Double aScore = aScores.get(theParents);
+		if (aScore == null)
+		{
+			aScore = (itsPatterns == null) ? computeFromRows(theChild, theParents) : compute(theChild, theParents);
+			aScores.put((BitSet) theParents.clone(), aScore);
+		}
+
+		return aScore.doubleValue();
+	}
+
+	/*
+	 * the index of a pattern in the cross table is the same as that used by
+	 * BinaryTable.computeBDeuFaster(): the parents in order, the first being
+	 * the most significant bit, followed by the child as the least significant
+	 * bit
+	 * configurations of the parents without records add exactly 0.0 to the
+	 * score, so only those that occur are visited, in increasing order, such
+	 * that the sum is also identical
+	 */
+	private double compute(int theChild, ItemSet theParents)
+	{
+		if (itsPatterns.length == 0)
+			return 0;
+
+		int aNrParents = theParents.cardinality();
+		int[] aParents = new int[aNrParents];
+		for (int i = theParents.nextSetBit(0), j = 0; i >= 0; i = theParents.nextSetBit(i+1))
+			aParents[j++] = i;
+
+		long[] anIndices = new long[itsPatterns.length];
+		for (int p = 0; p < itsPatterns.length; ++p)
+		{
+			long aPattern = itsPatterns[p];
+			long anIndex = 0L;
+			for (int j : aParents)
+				anIndex = (anIndex << 1) | ((aPattern >>> j) & 1L);
+			anIndices[p] = (anIndex << 1) | ((aPattern >>> theChild) & 1L);
+		}
+
+		int aDimensions = aNrParents + 1;
+		double aSize = Math.pow(2, aDimensions);
+		double alpha_ijk = 1.0 / aSize;
+		double alpha_ij  = 1.0 / (aSize / 2);
+		double LogGam_alpha_ijk = Function.logGamma(alpha_ijk); //uniform prior BDeu metric
+		double LogGam_alpha_ij = Function.logGamma(alpha_ij);
+
+		if (aDimensions <= MAX_DENSE_SIZE)
+		{
+			int[] aCounts = new int[1 << aDimensions];
+			for (int p = 0; p < itsPatterns.length; ++p)
+				aCounts[(int) anIndices[p]] += itsCounts[p];
+
+			double aQuality = 0.0;
+			for (int j = 0; j < aCounts.length; j += 2)
+				if ((aCounts[j] | aCounts[j+1]) != 0)
+					aQuality += getTerm(aCounts[j], aCounts[j+1], alpha_ijk, alpha_ij, LogGam_alpha_ijk, LogGam_alpha_ij);
+			return aQuality;
+		}
+
+		// sparse, count per parent configuration
+		Map<Long, int[]> aCounts = new HashMap<Long, int[]>();
+		for (int p = 0; p < itsPatterns.length; ++p)
+		{
+			Long aKey = Long.valueOf(anIndices[p] >>> 1);
+			int[] aCount = aCounts.get(aKey);
+			if (aCount == null)
+			{
+				aCount = new int[2];
+				aCounts.put(aKey, aCount);
+			}
+			aCount[(int) (anIndices[p] & 1L)] += itsCounts[p];
+		}
+
+		long[] aKeys = new long[aCounts.size()];
+		int k = 0;
+		for (Long aKey : aCounts.keySet())
+			aKeys[k++] = aKey.longValue();
+		Arrays.sort(aKeys);
+
+		double aQuality = 0.0;
+		for (long aKey : aKeys)
+		{
+			int[] aCount = aCounts.get(Long.valueOf(aKey));
+			aQuality += getTerm(aCount[0], aCount[1], alpha_ijk, alpha_ij, LogGam_alpha_ijk, LogGam_alpha_ij);
+		}
+		return aQuality;
+	}
+
+	private static double getTerm(int theCount0, int theCount1, double alpha_ijk, double alpha_ij, double LogGam_alpha_ijk, double LogGam_alpha_ij)
+	{
+		double aSum = 0.0;
+		double aPost = 0.0;
+
+		//child = 0;
+		aPost += Function.logGamma(alpha_ijk + theCount0) - LogGam_alpha_ijk;
+		aSum += theCount0;
+		//child = 1;
+		aPost += Function.logGamma(alpha_ijk + theCount1) - LogGam_alpha_ijk;
+		aSum += theCount1;
+
+		return LogGam_alpha_ij - Function.logGamma(alpha_ij + aSum) + aPost;
+	}
+
+	// too many columns for a pattern to fit in a long, use the records
+	private double computeFromRows(int theChild, ItemSet theParents)
+	{
+		if (itsRows == null)
+			itsRows = (itsMembers == null) ? itsTable : itsTable.selectRows(itsMembers);
+
+		BinaryTable aTable = itsRows.selectColumns(theParents);
+		aTable.addColumn(itsRows.getColumn(theChild)); //make sure the child is the last column
+
+		return aTable.computeBDeuFaster();
+	}
+}
@@ -108,13 +108,13 @@ public class FileHandler
 				// regular loading
 				if (itsTable == null )
 				{
-					itsTable = new DataLoaderTXT(itsFile).getTable();
-					//itsTable = new FileLoaderTXT(itsFile).getTable();
+					itsTable = new DataLoaderTXTStreaming(itsFile).getTable();
+					//itsTable = new DataLoaderTXT(itsFile).getTable();
 				}
 				// load from XML, see Table(XMLNode, pathToXML)
 				else
-					new DataLoaderTXT(itsFile, itsTable);
-					//new FileLoaderTXT(itsFile, itsTable);
+					new DataLoaderTXTStreaming(itsFile, itsTable);
+					//new DataLoaderTXT(itsFile, itsTable);
 				break;
 			}
 			case ARFF :
@@ -127,6 +127,16 @@ public class FileHandler
 					new FileLoaderARFF(itsFile, itsTable);
 				break;
 			}
+			case SNAPSHOT :
+			{
+				// regular loading
+				if (itsTable == null )
+					itsTable = new FileLoaderSnapshot(itsFile).getTable();
+				// load from XML, see Table(XMLNode, pathToXML)
+				else
+					new FileLoaderSnapshot(itsFile, itsTable);
+				break;
+			}
 			case XML :
 			{
 				FileLoaderXML aLoader = new FileLoaderXML(itsFile, showWindows);
@@ -222,6 +232,7 @@ public class FileHandler
 		aChooser.addChoosableFileFilter(new FileTypeFilter(FileType.TXT));
 		aChooser.addChoosableFileFilter(new FileTypeFilter(FileType.ARFF));
 		aChooser.addChoosableFileFilter(new FileTypeFilter(FileType.XML));
+		aChooser.addChoosableFileFilter(new FileTypeFilter(FileType.SNAPSHOT));
 		aChooser.setFileFilter(new FileTypeFilter(FileType.ALL_DATA_FILES));
 
 		int theOption = -1;
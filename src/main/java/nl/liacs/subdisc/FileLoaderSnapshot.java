@@ -0,0 +1,167 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.*;
+
+/**
+ * Loads a {@link Table} from a columnar binary snapshot, as written by
+ * {@link Table#toSnapshot(File)}.
+ * <p>
+ * Unlike the text based loaders, no parsing or type inference is done. The
+ * header is read first, after which each {@link Column} block is mapped into
+ * memory and copied into its Column using bulk transfers. For NUMERIC
+ * Columns the sort data is included in the snapshot, such that
+ * {@link Column#buildSorted(BitSet)} does not need to sort them again.
+ * <p>
+ * Each Column is mapped separately, so the snapshot may be larger than 2GB,
+ * but a single Column may not.
+ * <p>
+ * NOTE the mappings are only used to read the Columns, the data is copied
+ * onto the heap, see {@link Column#Column(ByteBuffer)}. So the
+ * heap must be large enough to hold the whole Table.
+ */
+public class FileLoaderSnapshot implements FileLoaderInterface
+{
+	// "SDSNAP" followed by the version of the format
+	static final long MAGIC = 0x5344534E41500001L;
+
+	private Table itsTable = null;
+
+	public FileLoaderSnapshot(File theFile)
+	{
+		if (theFile == null || !theFile.exists())
+		{
+			message("<init>", String.format("can not open File '%s'", theFile == null ? null : theFile.getAbsolutePath()));
+			return;
+		}
+
+		itsTable = loadFile(theFile);
+	}
+
+	// load from XML, see Table(XMLNode, pathToXML)
+	public FileLoaderSnapshot(File theFile, Table theTable)
+	{
+		this(theFile);
+
+		if (itsTable == null || theTable == null)
+			return;
+
+		Table aSnapshot = itsTable;
+		itsTable = theTable;
+		List<Column> aColumns = theTable.getColumns();
+		List<Column> aData = aSnapshot.getColumns();
+
+		if (aColumns.size() != aData.size())
+		{
+			message("<init>", String.format("number of columns in XML (%d) and snapshot (%d) differ, using snapshot",
+							aColumns.size(),
+							aData.size()));
+			aColumns.clear();
+			aColumns.addAll(aData);
+		}
+		else
+		{
+			// keep the settings from the XML, replace the data
+			for (int i = 0, j = aData.size(); i < j; ++i)
+			{
+				Column anOld = aColumns.get(i);
+				Column aNew = aData.get(i);
+				if (!anOld.getName().equals(aNew.getName()) || anOld.getType() != aNew.getType())
+					message("<init>", String.format("column %d is '%s' (%s) in XML, but '%s' (%s) in snapshot",
+									i,
+									anOld.getName(),
+									anOld.getType(),
+									aNew.getName(),
+									aNew.getType()));
+				aNew.setIsEnabled(anOld.getIsEnabled());
+				aColumns.set(i, aNew);
+			}
+		}
+
+		theTable.update();
+	}
+
+	private void message(String theMethod, String theMessage)
+	{
+		Log.logCommandLine(String.format("%s.%s(): %s",
+							this.getClass().getSimpleName(),
+							theMethod,
+							theMessage));
+	}
+
+	private Table loadFile(File theFile)
+	{
+		RandomAccessFile aFile = null;
+
+		try
+		{
+			aFile = new RandomAccessFile(theFile, "r");
+			FileChannel aChannel = aFile.getChannel();
+
+			// the header is small, but its size is not known in advance
+			long aHeaderSize = Math.min(aChannel.size(), 1L << 20);
+			ByteBuffer aHeader = aChannel.map(MapMode.READ_ONLY, 0, aHeaderSize).order(ByteOrder.LITTLE_ENDIAN);
+
+			if (aHeaderSize < Long.BYTES || aHeader.getLong() != MAGIC)
+			{
+				message("loadFile", String.format("'%s' is not a valid snapshot", theFile.getAbsolutePath()));
+				return null;
+			}
+
+			int aNrRows = aHeader.getInt();
+			int aNrColumns = aHeader.getInt();
+			String aName = Column.getSnapshotString(aHeader);
+			Column.getSnapshotString(aHeader); // source, is theFile now
+
+			// directory does not fit in the first mapping, for huge headers
+			long aDirectorySize = aNrColumns * (long) (Long.BYTES + Integer.BYTES);
+			if (aHeader.remaining() < aDirectorySize)
+			{
+				int aPosition = aHeader.position();
+				aHeader = aChannel.map(MapMode.READ_ONLY, 0, aPosition + aDirectorySize).order(ByteOrder.LITTLE_ENDIAN);
+				aHeader.position(aPosition);
+			}
+
+			long[] anOffsets = new long[aNrColumns];
+			int[] aLengths = new int[aNrColumns];
+			for (int i = 0; i < aNrColumns; ++i)
+			{
+				anOffsets[i] = aHeader.getLong();
+				aLengths[i] = aHeader.getInt();
+			}
+
+			Table aTable = new Table(theFile, aName, aNrRows, aNrColumns);
+			List<Column> aColumns = aTable.getColumns();
+			for (int i = 0; i < aNrColumns; ++i)
+			{
+				ByteBuffer aBuffer = aChannel.map(MapMode.READ_ONLY, anOffsets[i], aLengths[i]).order(ByteOrder.LITTLE_ENDIAN);
+				aColumns.add(new Column(aBuffer));
+			}
+
+			return aTable;
+		}
+		catch (IOException | BufferUnderflowException | IllegalArgumentException e)
+		{
+			message("loadFile", String.format("error while reading '%s': %s", theFile.getAbsolutePath(), e));
+			return null;
+		}
+		finally
+		{
+			try
+			{
+				if (aFile != null)
+					aFile.close();
+			}
+			catch (IOException e)
+			{
+				message("loadFile", "error while closing " + theFile.getAbsolutePath());
+			}
+		}
+	}
+
+	@Override
+	public Table getTable() { return itsTable; }
+}
@@ -32,6 +32,14 @@ public enum FileType
 			return Collections.singletonList(".xml");
 		}
 	},
+	SNAPSHOT("SubDisc Snapshot Files")
+	{
+		@Override
+		public List<String> getExtensions()
+		{
+			return Collections.singletonList(".sds");
+		}
+	},
 	PLT("GnuPlot Files")
 	{
 		@Override
@@ -49,6 +57,7 @@ public enum FileType
 			returnList.addAll(TXT.getExtensions());
 			returnList.addAll(ARFF.getExtensions());
 			returnList.addAll(XML.getExtensions());
+			returnList.addAll(SNAPSHOT.getExtensions());
 			return returnList;
 		}
 	};
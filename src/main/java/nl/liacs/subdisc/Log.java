@@ -104,9 +104,26 @@ public class Log
 			} catch (Exception ex) { log(s);}
 	}
 
+	// per Thread, and inherited by the Threads it creates, see setQuiet()
+	private static final ThreadLocal<Boolean> IS_QUIET = new InheritableThreadLocal<Boolean>()
+	{
+		@Override
+		protected Boolean initialValue() { return Boolean.FALSE; }
+	};
+
+	/*
+	 * suppresses logCommandLine() for the calling Thread, and the Threads it
+	 * creates from now on, COMMANDLINELOG is not changed, so other Threads
+	 * keep logging
+	 */
+	public static void setQuiet(boolean isQuiet)
+	{
+		IS_QUIET.set(isQuiet);
+	}
+
 	public static void logCommandLine(String s)
 	{
-		if (COMMANDLINELOG)
+		if (COMMANDLINELOG && !IS_QUIET.get())
 			System.out.println(s);
 	}
 
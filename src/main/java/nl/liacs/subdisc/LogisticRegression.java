@@ -0,0 +1,385 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+/**
+ * LogisticRegression fits an (unregularised) logistic regression model with
+ * an intercept, for a binary target on binary explanatory variables, as used
+ * by the {@link PropensityScore}.
+ * <p>
+ * All explanatory variables are binary, so records with the same values for
+ * all variables have the same fitted probability. The records are therefore
+ * aggregated into the distinct value combinations (patterns) that occur,
+ * with their number of records and positives. The model is fitted on these
+ * patterns using Newton-Raphson, with step halving. After the aggregation,
+ * which is a single pass over the data, the cost of the fit no longer
+ * depends on the number of records.
+ * <p>
+ * A fit can be warm-started from another LogisticRegression, typically that
+ * of the parent {@link Subgroup}, as its explanatory variables are a subset
+ * of those of the child. The coefficients of the variables the two have in
+ * common are the starting point for the fit, other coefficients start at
+ * 0.0.
+ * <p>
+ * The explanatory variables are identified by their <code>BitSet</code>s,
+ * these are never modified.
+ */
+final class LogisticRegression
+{
+	private static final int MAX_ITERATIONS = 100;
+	private static final int MAX_STEP_HALVINGS = 30;
+	// convergence on the largest change of a coefficient
+	private static final double EPSILON = 1e-10;
+
+	private final BitSet[] itsVariables;
+	// itsCoefficients[0] is the intercept, [i+1] is that of itsVariables[i]
+	private final double[] itsCoefficients;
+	private final double itsProbabilitySum;
+
+	/**
+	 * Fits a logistic regression model of theTarget on theVariables, using
+	 * the first theNrRecords records.
+	 *
+	 * @param theVariables the explanatory variables.
+	 * @param theTarget the binary target.
+	 * @param theNrRecords the number of records.
+	 * @param theStart the fit to warm-start from, may be <code>null</code>.
+	 */
+	LogisticRegression(BitSet[] theVariables, BitSet theTarget, int theNrRecords, LogisticRegression theStart)
+	{
+		itsVariables = theVariables.clone();
+		int k = itsVariables.length;
+
+		Patterns aPatterns = new Patterns(itsVariables, theTarget, theNrRecords);
+		int aNrPositives = theTarget.get(0, theNrRecords).cardinality();
+
+		// all records positive or negative: the intercept is +/-Infinity
+		boolean isDegenerate = (aNrPositives == 0) || (aNrPositives == theNrRecords);
+
+		double[] b = new double[k+1];
+		if ((theStart == null) || isDegenerate || (k == 0))
+		{
+			// intercept only model, exact if there are no variables
+			b[0] = logit(aNrPositives, theNrRecords);
+		}
+		else
+		{
+			b[0] = theStart.itsCoefficients[0];
+			for (int i = 0; i < k; ++i)
+				b[i+1] = theStart.getCoefficient(itsVariables[i]);
+		}
+
+		if (!isDegenerate && (k > 0))
+			newtonRaphson(aPatterns, b);
+
+		itsCoefficients = b;
+		itsProbabilitySum = aPatterns.getProbabilitySum(b);
+	}
+
+	/**
+	 * Returns the sum of the fitted probabilities over all records.
+	 *
+	 * @return the sum of the probabilities.
+	 */
+	double getProbabilitySum() { return itsProbabilitySum; }
+
+	/**
+	 * Returns the fitted probability for every record.
+	 *
+	 * @param theNrRecords the number of records.
+	 *
+	 * @return the probabilities.
+	 */
+	double[] getProbabilities(int theNrRecords)
+	{
+		double[] aResult = new double[theNrRecords];
+		for (int r = 0; r < theNrRecords; ++r)
+		{
+			double z = itsCoefficients[0];
+			for (int i = 0; i < itsVariables.length; ++i)
+				if (itsVariables[i].get(r))
+					z += itsCoefficients[i+1];
+			aResult[r] = sigmoid(z);
+		}
+		return aResult;
+	}
+
+	// 0.0 for a variable that is not in this model
+	private double getCoefficient(BitSet theVariable)
+	{
+		for (int i = 0; i < itsVariables.length; ++i)
+			if (itsVariables[i] == theVariable)
+				return itsCoefficients[i+1];
+		return 0.0;
+	}
+
+	/*
+	 * maximises the log-likelihood, starting at theCoefficients, which are
+	 * updated in place
+	 * for (quasi-)separated data the maximum likelihood estimate does not
+	 * exist, some coefficients diverge, and the loop ends after
+	 * MAX_ITERATIONS, with fitted probabilities close to 0.0 and 1.0, as for
+	 * other solvers without a ridge
+	 */
+	private static void newtonRaphson(Patterns thePatterns, double[] theCoefficients)
+	{
+		int p = theCoefficients.length;
+		double[] g = new double[p];
+		double[][] H = new double[p][p];
+		double[] aTrial = new double[p];
+
+		double aLogLikelihood = thePatterns.getLogLikelihood(theCoefficients);
+		for (int it = 0; it < MAX_ITERATIONS; ++it)
+		{
+			thePatterns.getGradientAndHessian(theCoefficients, g, H);
+			double[] aStep = solve(H, g);
+			if (aStep == null)
+				return;
+
+			double aStepSize = 1.0;
+			double aNewLogLikelihood = Double.NEGATIVE_INFINITY;
+			for (int h = 0; h <= MAX_STEP_HALVINGS; ++h, aStepSize *= 0.5)
+			{
+				for (int i = 0; i < p; ++i)
+					aTrial[i] = theCoefficients[i] + (aStepSize * aStep[i]);
+				aNewLogLikelihood = thePatterns.getLogLikelihood(aTrial);
+				if (aNewLogLikelihood >= aLogLikelihood)
+					break;
+			}
+			// no improvement in any direction, at the maximum up to rounding
+			if (aNewLogLikelihood < aLogLikelihood)
+				return;
+
+			double aMaxChange = 0.0;
+			for (int i = 0; i < p; ++i)
+			{
+				aMaxChange = Math.max(aMaxChange, Math.abs(aTrial[i] - theCoefficients[i]));
+				theCoefficients[i] = aTrial[i];
+			}
+			aLogLikelihood = aNewLogLikelihood;
+
+			if (aMaxChange < EPSILON)
+				return;
+		}
+	}
+
+	/*
+	 * solves H*x = g using a Cholesky decomposition of H, which is positive
+	 * semi-definite
+	 * collinear variables (for example a variable and its complement) make
+	 * H singular, then a small multiple of the identity is added to H, this
+	 * selects one of the equivalent solutions, all of which yield the same
+	 * probabilities
+	 * returns null if H is not usable at all
+	 */
+	private static double[] solve(double[][] H, double[] g)
+	{
+		int p = g.length;
+		double aMax = 0.0;
+		for (int i = 0; i < p; ++i)
+			aMax = Math.max(aMax, H[i][i]);
+		if (!(aMax > 0.0))
+			return null;
+
+		for (double aJitter = 0.0; aJitter <= aMax; aJitter = (aJitter == 0.0) ? (1e-12 * aMax) : (aJitter * 100.0))
+		{
+			double[][] L = cholesky(H, aJitter);
+			if (L == null)
+				continue;
+
+			// forward then backward substitution
+			double[] y = new double[p];
+			for (int i = 0; i < p; ++i)
+			{
+				double s = g[i];
+				for (int j = 0; j < i; ++j)
+					s -= L[i][j] * y[j];
+				y[i] = s / L[i][i];
+			}
+			double[] x = new double[p];
+			for (int i = p-1; i >= 0; --i)
+			{
+				double s = y[i];
+				for (int j = i+1; j < p; ++j)
+					s -= L[j][i] * x[j];
+				x[i] = s / L[i][i];
+			}
+			return x;
+		}
+
+		return null;
+	}
+
+	// lower triangular L, L*L' = H + theJitter*I, null if not positive definite
+	private static double[][] cholesky(double[][] H, double theJitter)
+	{
+		int p = H.length;
+		double[][] L = new double[p][p];
+		for (int i = 0; i < p; ++i)
+		{
+			for (int j = 0; j <= i; ++j)
+			{
+				double s = H[i][j] + ((i == j) ? theJitter : 0.0);
+				for (int k = 0; k < j; ++k)
+					s -= L[i][k] * L[j][k];
+
+				if (i == j)
+				{
+					// relative to the diagonal, rounding makes small
+					// positive values meaningless
+					if (!(s > (1e-14 * (H[i][i] + theJitter))))
+						return null;
+					L[i][i] = Math.sqrt(s);
+				}
+				else
+					L[i][j] = s / L[j][j];
+			}
+		}
+		return L;
+	}
+
+	private static double logit(int thePositives, int theTotal)
+	{
+		return Math.log(thePositives / (double) (theTotal - thePositives));
+	}
+
+	private static double sigmoid(double z)
+	{
+		return 1.0 / (1.0 + Math.exp(-z));
+	}
+
+	/*
+	 * the distinct combinations of variable values that occur in the data,
+	 * with their number of records and positives
+	 * a combination of at most 63 variables is encoded in a long, for more
+	 * variables every record is a pattern of its own
+	 */
+	private static final class Patterns
+	{
+		// itsValues[q][i] is the value of variable i in pattern q
+		private final boolean[][] itsValues;
+		private final int[] itsCounts;
+		private final int[] itsPositives;
+
+		Patterns(BitSet[] theVariables, BitSet theTarget, int theNrRecords)
+		{
+			int k = theVariables.length;
+
+			if (k >= Long.SIZE)
+			{
+				itsValues = new boolean[theNrRecords][k];
+				itsCounts = new int[theNrRecords];
+				itsPositives = new int[theNrRecords];
+				for (int r = 0; r < theNrRecords; ++r)
+				{
+					for (int i = 0; i < k; ++i)
+						itsValues[r][i] = theVariables[i].get(r);
+					itsCounts[r] = 1;
+					itsPositives[r] = theTarget.get(r) ? 1 : 0;
+				}
+				return;
+			}
+
+			// pattern of every record, one variable at a time
+			long[] aKeys = new long[theNrRecords];
+			for (int i = 0; i < k; ++i)
+			{
+				BitSet v = theVariables[i];
+				for (int r = v.nextSetBit(0); (r >= 0) && (r < theNrRecords); r = v.nextSetBit(r+1))
+					aKeys[r] |= (1L << i);
+			}
+
+			Map<Long, int[]> aMap = new HashMap<Long, int[]>();
+			for (int r = 0; r < theNrRecords; ++r)
+			{
+				int[] c = aMap.get(aKeys[r]);
+				if (c == null)
+					aMap.put(aKeys[r], c = new int[2]);
+				++c[0];
+				if (theTarget.get(r))
+					++c[1];
+			}
+
+			int n = aMap.size();
+			itsValues = new boolean[n][k];
+			itsCounts = new int[n];
+			itsPositives = new int[n];
+			int q = 0;
+			for (Map.Entry<Long, int[]> e : aMap.entrySet())
+			{
+				long aKey = e.getKey();
+				for (int i = 0; i < k; ++i)
+					itsValues[q][i] = ((aKey >>> i) & 1L) != 0L;
+				itsCounts[q] = e.getValue()[0];
+				itsPositives[q] = e.getValue()[1];
+				++q;
+			}
+		}
+
+		private double getLinearPredictor(int q, double[] b)
+		{
+			double z = b[0];
+			boolean[] x = itsValues[q];
+			for (int i = 0; i < x.length; ++i)
+				if (x[i])
+					z += b[i+1];
+			return z;
+		}
+
+		// sum of y*log(p) + (n-y)*log(1-p), computed stable in z
+		double getLogLikelihood(double[] b)
+		{
+			double aResult = 0.0;
+			for (int q = 0; q < itsCounts.length; ++q)
+			{
+				double z = getLinearPredictor(q, b);
+				// log(1+exp(z))
+				double aSoftPlus = (z > 0.0) ? (z + Math.log1p(Math.exp(-z))) : Math.log1p(Math.exp(z));
+				aResult += (itsPositives[q] * z) - (itsCounts[q] * aSoftPlus);
+			}
+			return aResult;
+		}
+
+		void getGradientAndHessian(double[] b, double[] g, double[][] H)
+		{
+			int p = b.length;
+			Arrays.fill(g, 0.0);
+			for (double[] h : H)
+				Arrays.fill(h, 0.0);
+
+			for (int q = 0; q < itsCounts.length; ++q)
+			{
+				double mu = sigmoid(getLinearPredictor(q, b));
+				double r = itsPositives[q] - (itsCounts[q] * mu);
+				double w = itsCounts[q] * mu * (1.0 - mu);
+				boolean[] x = itsValues[q];
+
+				g[0] += r;
+				H[0][0] += w;
+				for (int i = 0; i < x.length; ++i)
+				{
+					if (!x[i])
+						continue;
+					g[i+1] += r;
+					H[i+1][0] += w;
+					for (int j = 0; j <= i; ++j)
+						if (x[j])
+							H[i+1][j+1] += w;
+				}
+			}
+
+			// symmetric, only the lower triangle was computed
+			for (int i = 0; i < p; ++i)
+				for (int j = i+1; j < p; ++j)
+					H[i][j] = H[j][i];
+		}
+
+		double getProbabilitySum(double[] b)
+		{
+			double aSum = 0.0;
+			for (int q = 0; q < itsCounts.length; ++q)
+				aSum += itsCounts[q] * sigmoid(getLinearPredictor(q, b));
+			return aSum;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package nl.liacs.subdisc;
+
+import java.lang.ref.*;
+import java.util.*;
+
+/**
+ * The MemberCache bounds the memory used by the {@link MemberSet}s that
+ * {@link Subgroup}s re-create after their members were killed, for example
+ * when a result set is shown, post-processed or written to file.
+ * <p>
+ * Re-created members are registered with their estimated size
+ * ({@link MemberSet#getMemoryUsage()}). When the total size exceeds the
+ * budget, the members of the least recently used Subgroups are evicted.
+ * Recency is approximated using a second chance (CLOCK) policy, that only
+ * requires a Subgroup to set a flag on access, instead of taking a lock.
+ * Evicted members are re-created on demand, starting from the members of the
+ * closest ancestor of the Subgroup that still has them.
+ * <p>
+ * Members that are set by a Subgroup constructor are not registered, they are
+ * killed during mining. Registered members that are killed are removed from
+ * the MemberCache. Subgroups are referenced weakly, so the MemberCache does
+ * not keep discarded result sets alive.
+ * <p>
+ * This class is thread safe. It never holds its lock while evicting, so it
+ * can be called by a Subgroup that holds its own members lock.
+ *
+ * @see Subgroup
+ * @see MemberSet
+ */
+final class MemberCache
+{
+	// default budget is a quarter of the maximum heap size
+	private static long itsBudget = Runtime.getRuntime().maxMemory() / 4;
+	private static long itsSize = 0L;
+	// in CLOCK order, the head is the next eviction candidate
+	private static final ArrayDeque<Entry> itsEntries = new ArrayDeque<Entry>();
+	private static final ReferenceQueue<Subgroup> itsCollected = new ReferenceQueue<Subgroup>();
+	private static int itsNrCollected = 0;
+
+	// held by the Subgroup, so it can remove() its own members
+	static final class Entry extends WeakReference<Subgroup>
+	{
+		// set to 0 once the bytes are subtracted from itsSize
+		private long itsBytes;
+
+		Entry(Subgroup theSubgroup, long theBytes)
+		{
+			super(theSubgroup, itsCollected);
+			itsBytes = theBytes;
+		}
+	}
+
+	// uninstantiable
+	private MemberCache() {}
+
+	/**
+	 * Returns the maximum number of bytes used by re-created members.
+	 *
+	 * @return the budget in bytes.
+	 */
+	static synchronized long getBudget() { return itsBudget; }
+
+	/**
+	 * Returns the estimated number of bytes used by the registered members.
+	 *
+	 * @return the size in bytes.
+	 */
+	static synchronized long getSize() { return itsSize; }
+
+	/**
+	 * Sets the maximum number of bytes used by re-created members, and
+	 * evicts members if the current size exceeds it.
+	 *
+	 * @param theBudget the budget in bytes, must be >= 0.
+	 *
+	 * @throws IllegalArgumentException if theBudget < 0.
+	 */
+	static void setBudget(long theBudget)
+	{
+		if (theBudget < 0L)
+			throw new IllegalArgumentException("budget must be >= 0: " + theBudget);
+
+		List<Entry> aVictims;
+		synchronized (MemberCache.class)
+		{
+			itsBudget = theBudget;
+			aVictims = evict(0);
+		}
+		evictMembers(aVictims);
+	}
+
+	/*
+	 * called by Subgroup after it re-created its members, not while holding
+	 * its members lock, as evicting the members of other Subgroups takes
+	 * their locks
+	 * the last registered Subgroup is never evicted by its own registration
+	 */
+	static void add(Entry theEntry)
+	{
+		List<Entry> aVictims;
+		synchronized (MemberCache.class)
+		{
+			purge();
+			itsEntries.addLast(theEntry);
+			itsSize += theEntry.itsBytes;
+			aVictims = evict(1);
+		}
+		evictMembers(aVictims);
+	}
+
+	/*
+	 * called by Subgroup when it kills registered members, while holding its
+	 * members lock, this is safe as no Subgroup lock is taken here
+	 * the cleared Entry is skipped by evict(), and removed by purge()
+	 */
+	static synchronized void remove(Entry theEntry)
+	{
+		itsSize -= theEntry.itsBytes;
+		theEntry.itsBytes = 0L;
+		theEntry.clear();
+		++itsNrCollected;
+	}
+
+	/*
+	 * NOTE must hold the lock on MemberCache.class
+	 * theNrKept Entries at the tail are not evicted
+	 * each Entry gets a second chance, so at most two passes are needed
+	 */
+	private static List<Entry> evict(int theNrKept)
+	{
+		List<Entry> aVictims = Collections.emptyList();
+		for (int i = 2 * itsEntries.size(); (i > 0) && (itsSize > itsBudget) && (itsEntries.size() > theNrKept); --i)
+		{
+			Entry e = itsEntries.pollFirst();
+			Subgroup s = e.get();
+			if ((s != null) && s.clearMembersReferenced())
+			{
+				itsEntries.addLast(e);
+				continue;
+			}
+
+			itsSize -= e.itsBytes;
+			e.itsBytes = 0L;
+			if (s != null)
+			{
+				if (aVictims.isEmpty())
+					aVictims = new ArrayList<Entry>();
+				aVictims.add(e);
+			}
+		}
+
+		return aVictims;
+	}
+
+	/*
+	 * NOTE must hold the lock on MemberCache.class
+	 * subtracts the bytes of garbage collected Subgroups, and removes their
+	 * Entries when they make up more than half of all Entries
+	 */
+	private static void purge()
+	{
+		for (Reference<? extends Subgroup> r; (r = itsCollected.poll()) != null; )
+		{
+			Entry e = (Entry) r;
+			itsSize -= e.itsBytes;
+			e.itsBytes = 0L;
+			++itsNrCollected;
+		}
+
+		if (itsNrCollected > (itsEntries.size() / 2))
+		{
+			for (Iterator<Entry> i = itsEntries.iterator(); i.hasNext(); )
+			{
+				Entry e = i.next();
+				if ((e.itsBytes == 0L) && (e.get() == null))
+					i.remove();
+			}
+			itsNrCollected = 0;
+		}
+	}
+
+	// the Subgroup only evicts its members if theEntry is still its Entry
+	private static void evictMembers(List<Entry> theVictims)
+	{
+		for (Entry e : theVictims)
+		{
+			Subgroup s = e.get();
+			if (s != null)
+				s.evictMembers(e);
+		}
+	}
+}
@@ -0,0 +1,657 @@
+package nl.liacs.subdisc;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * A MemberSet is an immutable, compressed set of row indices, it is used to
+ * store the members of a {@link Subgroup}.
+ * <p>
+ * The row indices are divided into chunks of 2^16 consecutive rows. Only
+ * chunks that hold at least one member are stored, each in the smallest of
+ * three container types:
+ * <ul>
+ * <li>a sorted array of row indices, for sparse chunks,</li>
+ * <li>a bitmap of 2^16 bits, for dense chunks,</li>
+ * <li>a list of runs of consecutive row indices, for chunks that consist of
+ * a few intervals, as is typical for (conjunctions of) numeric Conditions on
+ * sorted data.</li>
+ * </ul>
+ * So the memory used by a MemberSet depends on its cardinality and
+ * structure, not on the number of rows in the {@link Table}. A full-data
+ * MemberSet uses a few bytes per chunk, a MemberSet of a thousand members
+ * uses a few KB, for any number of rows.
+ * <p>
+ * MemberSets are created from, and turned back into, <code>BitSet</code>s,
+ * as that is what all evaluation and statistics code uses.
+ * For {@link ExtentFile}s, a MemberSet is written as is, using
+ * {@link #toSnapshot(ByteBuffer)}, so the containers are never expanded.
+ * As MemberSets are immutable they can be shared by multiple Threads.
+ *
+ * @see Subgroup#getMembers()
+ */
+public final class MemberSet
+{
+	// 2^16 rows per chunk, 2^10 longs per bitmap
+	private static final int CHUNK_BITS = 16;
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+	private static final int WORDS_PER_CHUNK = (1 << CHUNK_BITS) / Long.SIZE;
+	// estimated header size of an object or array
+	private static final long OBJECT_BYTES = 16L;
+
+	// itsKeys[i] is the chunk index of itsContainers[i], sorted ascending
+	private final int[] itsKeys;
+	private final Container[] itsContainers;
+	private final int itsCardinality;
+
+	private MemberSet(int[] theKeys, Container[] theContainers, int theCardinality)
+	{
+		itsKeys = theKeys;
+		itsContainers = theContainers;
+		itsCardinality = theCardinality;
+	}
+
+	/**
+	 * Creates a MemberSet holding the set bits of the supplied BitSet.
+	 * The BitSet is not modified, and not referenced by the MemberSet.
+	 *
+	 * @param theBitSet the BitSet to compress.
+	 *
+	 * @return a MemberSet with the same set bits as theBitSet.
+	 */
+	public static MemberSet valueOf(BitSet theBitSet)
+	{
+		final long[] aWords = theBitSet.toLongArray();
+		final int aNrChunks = (aWords.length + WORDS_PER_CHUNK - 1) / WORDS_PER_CHUNK;
+
+		int[] aKeys = new int[aNrChunks];
+		Container[] aContainers = new Container[aNrChunks];
+		int aSize = 0;
+		int aCardinality = 0;
+
+		for (int aKey = 0; aKey < aNrChunks; ++aKey)
+		{
+			int aFrom = aKey * WORDS_PER_CHUNK;
+			int aTo = Math.min(aFrom + WORDS_PER_CHUNK, aWords.length);
+
+			Container aContainer = Container.create(aWords, aFrom, aTo);
+			if (aContainer == null)
+				continue;
+
+			aKeys[aSize] = aKey;
+			aContainers[aSize] = aContainer;
+			aCardinality += aContainer.cardinality();
+			++aSize;
+		}
+
+		return new MemberSet(Arrays.copyOf(aKeys, aSize), Arrays.copyOf(aContainers, aSize), aCardinality);
+	}
+
+	/** Returns the number of members, like <code>BitSet.cardinality()</code>. */
+	public int cardinality()
+	{
+		return itsCardinality;
+	}
+
+	/** Returns whether theIndex is a member, like <code>BitSet.get(int)</code>. */
+	public boolean get(int theIndex)
+	{
+		if (theIndex < 0)
+			throw new IndexOutOfBoundsException("theIndex < 0: " + theIndex);
+
+		int i = Arrays.binarySearch(itsKeys, theIndex >>> CHUNK_BITS);
+		return (i >= 0) && itsContainers[i].contains(theIndex & CHUNK_MASK);
+	}
+
+	/**
+	 * Returns the first member that is equal to or larger than
+	 * theFromIndex, or -1 if there is no such member, like
+	 * <code>BitSet.nextSetBit(int)</code>.
+	 */
+	public int nextSetBit(int theFromIndex)
+	{
+		if (theFromIndex < 0)
+			throw new IndexOutOfBoundsException("theFromIndex < 0: " + theFromIndex);
+
+		int aKey = theFromIndex >>> CHUNK_BITS;
+		int i = Arrays.binarySearch(itsKeys, aKey);
+		if (i >= 0)
+		{
+			int aNext = itsContainers[i].nextSetBit(theFromIndex & CHUNK_MASK);
+			if (aNext >= 0)
+				return (aKey << CHUNK_BITS) | aNext;
+			++i;
+		}
+		else
+			i = -(i + 1);
+
+		// the first member of the next non-empty chunk, if any
+		if (i == itsKeys.length)
+			return -1;
+		return (itsKeys[i] << CHUNK_BITS) | itsContainers[i].nextSetBit(0);
+	}
+
+	/**
+	 * Returns the members in ascending order, for callers that loop over
+	 * all members repeatedly, this is faster than calling
+	 * {@link #nextSetBit(int)} for every member.
+	 *
+	 * @return an array of length {@link #cardinality()}.
+	 */
+	public int[] toArray()
+	{
+		int[] aMembers = new int[itsCardinality];
+		for (int i = 0, j = 0; i < itsKeys.length; ++i)
+			j = itsContainers[i].toArray(aMembers, j, itsKeys[i] << CHUNK_BITS);
+		return aMembers;
+	}
+
+	/**
+	 * Returns an estimate of the number of bytes used by this MemberSet,
+	 * including object headers.
+	 *
+	 * @return the estimated memory use in bytes.
+	 */
+	public long getMemoryUsage()
+	{
+		// this object, plus itsKeys and itsContainers arrays
+		long aSize = OBJECT_BYTES + (2L * OBJECT_BYTES) + (8L * itsKeys.length);
+		for (Container c : itsContainers)
+			aSize += c.getMemoryUsage();
+		return aSize;
+	}
+
+	/**
+	 * Returns a new BitSet with a bit set for every member, changing the
+	 * BitSet has no effect on this MemberSet.
+	 */
+	public BitSet toBitSet()
+	{
+		if (itsKeys.length == 0)
+			return new BitSet();
+
+		int aLast = itsKeys.length - 1;
+		int aLength = (itsKeys[aLast] << CHUNK_BITS) + itsContainers[aLast].last() + 1;
+		int aNrWords = (aLength + Long.SIZE - 1) / Long.SIZE;
+
+		// for sparse sets, setting bits avoids the copy in BitSet.valueOf()
+		if (itsCardinality < aNrWords)
+		{
+			BitSet aBitSet = new BitSet(aLength);
+			for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1))
+				aBitSet.set(i);
+			return aBitSet;
+		}
+
+		long[] aWords = new long[aNrWords];
+		for (int i = 0; i < itsKeys.length; ++i)
+			itsContainers[i].fill(aWords, itsKeys[i] * WORDS_PER_CHUNK);
+
+		return BitSet.valueOf(aWords);
+	}
+
+	/**
+	 * Returns the number of bytes written by {@link #toSnapshot(ByteBuffer)}.
+	 */
+	int getSnapshotSize()
+	{
+		// number of containers and cardinality, then key and type per container
+		int aSize = 2 * Integer.BYTES;
+		for (Container c : itsContainers)
+			aSize += Integer.BYTES + 1 + c.getSnapshotSize();
+		return aSize;
+	}
+
+	/**
+	 * Writes this MemberSet to theSnapshot, in the order of theSnapshot,
+	 * see {@link #valueOf(ByteBuffer)}.
+	 * The containers are written as they are, not as a bitmap of all rows.
+	 *
+	 * @param theSnapshot a ByteBuffer with at least
+	 * {@link #getSnapshotSize()} bytes remaining.
+	 */
+	void toSnapshot(ByteBuffer theSnapshot)
+	{
+		theSnapshot.putInt(itsKeys.length);
+		theSnapshot.putInt(itsCardinality);
+		for (int i = 0; i < itsKeys.length; ++i)
+		{
+			theSnapshot.putInt(itsKeys[i]);
+			itsContainers[i].toSnapshot(theSnapshot);
+		}
+	}
+
+	/**
+	 * Creates a MemberSet from a snapshot written by
+	 * {@link #toSnapshot(ByteBuffer)}. The data is copied, theSnapshot is not
+	 * referenced by the MemberSet.
+	 * On return, the position of theSnapshot is right after the MemberSet.
+	 *
+	 * @param theSnapshot a ByteBuffer, in the order it was written with.
+	 *
+	 * @return the MemberSet.
+	 */
+	static MemberSet valueOf(ByteBuffer theSnapshot)
+	{
+		int aSize = theSnapshot.getInt();
+		int aCardinality = theSnapshot.getInt();
+		int[] aKeys = new int[aSize];
+		Container[] aContainers = new Container[aSize];
+		for (int i = 0; i < aSize; ++i)
+		{
+			aKeys[i] = theSnapshot.getInt();
+			aContainers[i] = Container.valueOf(theSnapshot);
+		}
+
+		return new MemberSet(aKeys, aContainers, aCardinality);
+	}
+
+	/**
+	 * A Container holds the members of a single chunk, as offsets in
+	 * [0, 2^16).
+	 */
+	private static abstract class Container
+	{
+		abstract int cardinality();
+		abstract boolean contains(int theOffset);
+		// returns -1 if there is no member at or after theOffset
+		abstract int nextSetBit(int theOffset);
+		// sets the bits of the members in theWords, starting at theFrom
+		abstract void fill(long[] theWords, int theFrom);
+		// puts theBase + offset in theMembers, starting at theFrom, returns the next position
+		abstract int toArray(int[] theMembers, int theFrom, int theBase);
+		// highest offset
+		abstract int last();
+		// estimated bytes, including headers
+		abstract long getMemoryUsage();
+		// bytes written by toSnapshot(), excluding the type
+		abstract int getSnapshotSize();
+		// writes the type, then the data
+		abstract void toSnapshot(ByteBuffer theSnapshot);
+
+		static Container valueOf(ByteBuffer theSnapshot)
+		{
+			byte aType = theSnapshot.get();
+			switch (aType)
+			{
+				case ArrayContainer.TYPE :
+					return new ArrayContainer(getSnapshotChars(theSnapshot, theSnapshot.getInt()));
+				case BitmapContainer.TYPE :
+				{
+					int aCardinality = theSnapshot.getInt();
+					long[] aWords = new long[theSnapshot.getInt()];
+					theSnapshot.asLongBuffer().get(aWords);
+					theSnapshot.position(theSnapshot.position() + (Long.BYTES * aWords.length));
+					return new BitmapContainer(aWords, aCardinality);
+				}
+				case RunContainer.TYPE :
+				{
+					int aNrRuns = theSnapshot.getInt();
+					char[] aStarts = getSnapshotChars(theSnapshot, aNrRuns);
+					return new RunContainer(aStarts, getSnapshotChars(theSnapshot, aNrRuns));
+				}
+				default :
+					throw new IllegalArgumentException("unknown Container type: " + aType);
+			}
+		}
+
+		static void putSnapshotChars(ByteBuffer theSnapshot, char[] theChars)
+		{
+			theSnapshot.asCharBuffer().put(theChars);
+			theSnapshot.position(theSnapshot.position() + (Character.BYTES * theChars.length));
+		}
+
+		static char[] getSnapshotChars(ByteBuffer theSnapshot, int theLength)
+		{
+			char[] aChars = new char[theLength];
+			theSnapshot.asCharBuffer().get(aChars);
+			theSnapshot.position(theSnapshot.position() + (Character.BYTES * theLength));
+			return aChars;
+		}
+
+		/*
+		 * Creates the smallest Container for theWords[theFrom, theTo),
+		 * returns null when no bit is set.
+		 * Size in bytes: ArrayContainer 2 per member, RunContainer 4 per
+		 * run, BitmapContainer 8 per word.
+		 */
+		static Container create(long[] theWords, int theFrom, int theTo)
+		{
+			int aCardinality = 0;
+			int aNrRuns = 0;
+			long aCarry = 0L;
+			for (int i = theFrom; i < theTo; ++i)
+			{
+				long w = theWords[i];
+				aCardinality += Long.bitCount(w);
+				// a run starts at each set bit whose preceding bit is clear
+				aNrRuns += Long.bitCount(w & ~((w << 1) | aCarry));
+				aCarry = w >>> (Long.SIZE - 1);
+			}
+
+			if (aCardinality == 0)
+				return null;
+
+			long anArraySize = 2L * aCardinality;
+			long aRunSize = 4L * aNrRuns;
+			long aBitmapSize = 8L * (theTo - theFrom);
+
+			if (aRunSize <= anArraySize && aRunSize <= aBitmapSize)
+				return new RunContainer(theWords, theFrom, theTo, aNrRuns);
+			if (anArraySize <= aBitmapSize)
+				return new ArrayContainer(theWords, theFrom, theTo, aCardinality);
+			return new BitmapContainer(theWords, theFrom, theTo, aCardinality);
+		}
+	}
+
+	// sorted offsets, for sparse chunks
+	private static final class ArrayContainer extends Container
+	{
+		private static final byte TYPE = 0;
+		private final char[] itsOffsets;
+
+		ArrayContainer(char[] theOffsets)
+		{
+			itsOffsets = theOffsets;
+		}
+
+		ArrayContainer(long[] theWords, int theFrom, int theTo, int theCardinality)
+		{
+			itsOffsets = new char[theCardinality];
+			int k = 0;
+			for (int i = theFrom; i < theTo; ++i)
+			{
+				int aBase = (i - theFrom) * Long.SIZE;
+				for (long w = theWords[i]; w != 0L; w &= (w - 1))
+					itsOffsets[k++] = (char) (aBase + Long.numberOfTrailingZeros(w));
+			}
+		}
+
+		@Override
+		int cardinality() { return itsOffsets.length; }
+
+		@Override
+		long getMemoryUsage() { return (2L * OBJECT_BYTES) + (2L * itsOffsets.length); }
+
+		@Override
+		int getSnapshotSize() { return Integer.BYTES + (Character.BYTES * itsOffsets.length); }
+
+		@Override
+		void toSnapshot(ByteBuffer theSnapshot)
+		{
+			theSnapshot.put(TYPE);
+			theSnapshot.putInt(itsOffsets.length);
+			putSnapshotChars(theSnapshot, itsOffsets);
+		}
+
+		@Override
+		int last() { return itsOffsets[itsOffsets.length - 1]; }
+
+		@Override
+		boolean contains(int theOffset)
+		{
+			return Arrays.binarySearch(itsOffsets, (char) theOffset) >= 0;
+		}
+
+		@Override
+		int nextSetBit(int theOffset)
+		{
+			int i = Arrays.binarySearch(itsOffsets, (char) theOffset);
+			if (i < 0)
+				i = -(i + 1);
+			return (i == itsOffsets.length) ? -1 : itsOffsets[i];
+		}
+
+		@Override
+		void fill(long[] theWords, int theFrom)
+		{
+			for (char c : itsOffsets)
+				theWords[theFrom + (c >>> 6)] |= (1L << c);
+		}
+
+		@Override
+		int toArray(int[] theMembers, int theFrom, int theBase)
+		{
+			for (char c : itsOffsets)
+				theMembers[theFrom++] = theBase + c;
+			return theFrom;
+		}
+	}
+
+	// plain bitmap, for dense chunks, trailing empty words are not stored
+	private static final class BitmapContainer extends Container
+	{
+		private static final byte TYPE = 1;
+		private final long[] itsWords;
+		private final int itsCardinality;
+
+		BitmapContainer(long[] theWords, int theCardinality)
+		{
+			itsWords = theWords;
+			itsCardinality = theCardinality;
+		}
+
+		BitmapContainer(long[] theWords, int theFrom, int theTo, int theCardinality)
+		{
+			int aTo = theTo;
+			while (theWords[aTo - 1] == 0L)
+				--aTo;
+			itsWords = Arrays.copyOfRange(theWords, theFrom, aTo);
+			itsCardinality = theCardinality;
+		}
+
+		@Override
+		int cardinality() { return itsCardinality; }
+
+		@Override
+		long getMemoryUsage() { return (2L * OBJECT_BYTES) + (8L * itsWords.length); }
+
+		@Override
+		int getSnapshotSize() { return (2 * Integer.BYTES) + (Long.BYTES * itsWords.length); }
+
+		@Override
+		void toSnapshot(ByteBuffer theSnapshot)
+		{
+			theSnapshot.put(TYPE);
+			theSnapshot.putInt(itsCardinality);
+			theSnapshot.putInt(itsWords.length);
+			theSnapshot.asLongBuffer().put(itsWords);
+			theSnapshot.position(theSnapshot.position() + (Long.BYTES * itsWords.length));
+		}
+
+		@Override
+		int last()
+		{
+			int i = itsWords.length - 1;
+			return (i * Long.SIZE) + (Long.SIZE - 1) - Long.numberOfLeadingZeros(itsWords[i]);
+		}
+
+		@Override
+		boolean contains(int theOffset)
+		{
+			int i = theOffset >>> 6;
+			return (i < itsWords.length) && ((itsWords[i] & (1L << theOffset)) != 0L);
+		}
+
+		@Override
+		int nextSetBit(int theOffset)
+		{
+			int i = theOffset >>> 6;
+			if (i >= itsWords.length)
+				return -1;
+
+			long w = itsWords[i] & (-1L << theOffset);
+			while (w == 0L)
+			{
+				if (++i == itsWords.length)
+					return -1;
+				w = itsWords[i];
+			}
+			return (i * Long.SIZE) + Long.numberOfTrailingZeros(w);
+		}
+
+		@Override
+		void fill(long[] theWords, int theFrom)
+		{
+			System.arraycopy(itsWords, 0, theWords, theFrom, itsWords.length);
+		}
+
+		@Override
+		int toArray(int[] theMembers, int theFrom, int theBase)
+		{
+			for (int i = 0; i < itsWords.length; ++i)
+			{
+				int aBase = theBase + (i * Long.SIZE);
+				for (long w = itsWords[i]; w != 0L; w &= (w - 1))
+					theMembers[theFrom++] = aBase + Long.numberOfTrailingZeros(w);
+			}
+			return theFrom;
+		}
+	}
+
+	// runs of consecutive offsets, as (start, length - 1) pairs
+	private static final class RunContainer extends Container
+	{
+		private static final byte TYPE = 2;
+		private final char[] itsStarts;
+		private final char[] itsLengthsMinusOne;
+		private final int itsCardinality;
+
+		RunContainer(char[] theStarts, char[] theLengthsMinusOne)
+		{
+			itsStarts = theStarts;
+			itsLengthsMinusOne = theLengthsMinusOne;
+			int aCardinality = theStarts.length;
+			for (char c : theLengthsMinusOne)
+				aCardinality += c;
+			itsCardinality = aCardinality;
+		}
+
+		RunContainer(long[] theWords, int theFrom, int theTo, int theNrRuns)
+		{
+			itsStarts = new char[theNrRuns];
+			itsLengthsMinusOne = new char[theNrRuns];
+
+			int aCardinality = 0;
+			int k = 0;
+			int aStart = -1;
+			long aCarry = 0L;
+			for (int i = theFrom; i < theTo; ++i)
+			{
+				long w = theWords[i];
+				long aNext = (i + 1 < theTo) ? theWords[i + 1] : 0L;
+				// set bits whose preceding/ following bit is clear
+				long aStarts = w & ~((w << 1) | aCarry);
+				long anEnds = w & ~((w >>> 1) | (aNext << (Long.SIZE - 1)));
+				aCarry = w >>> (Long.SIZE - 1);
+
+				int aBase = (i - theFrom) * Long.SIZE;
+				// a single bit run is both a start and an end
+				for (long m = (aStarts | anEnds); m != 0L; m &= (m - 1))
+				{
+					long aBit = Long.lowestOneBit(m);
+					int anOffset = aBase + Long.numberOfTrailingZeros(m);
+					if ((aStarts & aBit) != 0L)
+						aStart = anOffset;
+					if ((anEnds & aBit) != 0L)
+					{
+						itsStarts[k] = (char) aStart;
+						itsLengthsMinusOne[k++] = (char) (anOffset - aStart);
+						aCardinality += (anOffset - aStart + 1);
+					}
+				}
+			}
+
+			assert (k == theNrRuns);
+			itsCardinality = aCardinality;
+		}
+
+		@Override
+		int cardinality() { return itsCardinality; }
+
+		@Override
+		long getMemoryUsage() { return (3L * OBJECT_BYTES) + (4L * itsStarts.length); }
+
+		@Override
+		int getSnapshotSize() { return Integer.BYTES + (2 * Character.BYTES * itsStarts.length); }
+
+		@Override
+		void toSnapshot(ByteBuffer theSnapshot)
+		{
+			theSnapshot.put(TYPE);
+			theSnapshot.putInt(itsStarts.length);
+			putSnapshotChars(theSnapshot, itsStarts);
+			putSnapshotChars(theSnapshot, itsLengthsMinusOne);
+		}
+
+		@Override
+		int last()
+		{
+			int i = itsStarts.length - 1;
+			return itsStarts[i] + itsLengthsMinusOne[i];
+		}
+
+		@Override
+		boolean contains(int theOffset)
+		{
+			int i = getRun(theOffset);
+			return (i >= 0) && (theOffset <= itsStarts[i] + itsLengthsMinusOne[i]);
+		}
+
+		@Override
+		int nextSetBit(int theOffset)
+		{
+			int i = getRun(theOffset);
+			if (i >= 0 && theOffset <= itsStarts[i] + itsLengthsMinusOne[i])
+				return theOffset;
+			// theOffset is after run i, so the answer is the start of run i+1
+			++i;
+			return (i == itsStarts.length) ? -1 : itsStarts[i];
+		}
+
+		// index of the last run that starts at or before theOffset, or -1
+		private int getRun(int theOffset)
+		{
+			int i = Arrays.binarySearch(itsStarts, (char) theOffset);
+			return (i >= 0) ? i : -(i + 1) - 1;
+		}
+
+		@Override
+		void fill(long[] theWords, int theFrom)
+		{
+			for (int i = 0; i < itsStarts.length; ++i)
+			{
+				int aFromBit = (theFrom * Long.SIZE) + itsStarts[i];
+				int aToBit = aFromBit + itsLengthsMinusOne[i] + 1;
+				setRange(theWords, aFromBit, aToBit);
+			}
+		}
+
+		@Override
+		int toArray(int[] theMembers, int theFrom, int theBase)
+		{
+			for (int i = 0; i < itsStarts.length; ++i)
+				for (int j = theBase + itsStarts[i], k = j + itsLengthsMinusOne[i]; j <= k; ++j)
+					theMembers[theFrom++] = j;
+			return theFrom;
+		}
+
+		// sets bits [theFromBit, theToBit)
+		private static void setRange(long[] theWords, int theFromBit, int theToBit)
+		{
+			int aFirst = theFromBit >>> 6;
+			int aLast = (theToBit - 1) >>> 6;
+			long aFirstMask = (-1L << theFromBit);
+			long aLastMask = (-1L >>> -theToBit);
+			if (aFirst == aLast)
+				theWords[aFirst] |= (aFirstMask & aLastMask);
+			else
+			{
+				theWords[aFirst] |= aFirstMask;
+				for (int i = aFirst + 1; i < aLast; ++i)
+					theWords[i] = -1L;
+				theWords[aLast] |= aLastMask;
+			}
+		}
+	}
+}
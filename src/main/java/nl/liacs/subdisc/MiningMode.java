@@ -0,0 +1,79 @@
+package nl.liacs.subdisc;
+
+/**
+ * MiningMode contains all available ways in which
+ * {@link SubgroupDiscovery#mine(long, int)} distributes its work over the
+ * available Threads.
+ */
+public enum MiningMode implements EnumInterface
+{
+	/*
+	 * one Candidate per Test Runnable, dispatched to a fixed Thread pool
+	 * through a Semaphore, this is the original algorithm
+	 */
+	SEMAPHORE("semaphore"),
+	/*
+	 * one task per Candidate, split into one stealable subtask per
+	 * ColumnConditionBases, run on a ForkJoinPool
+	 * level barriers are only used for beam search strategies
+	 */
+	FORK_JOIN("fork-join");
+
+	/**
+	 * For each MiningMode, this is the text that will be used in the GUI.
+	 * This is also the <code>String</code> that will be returned by the
+	 * {@link #toString()} method.
+	 */
+	public final String GUI_TEXT;
+
+	private MiningMode(String theGuiText)
+	{
+		GUI_TEXT = theGuiText;
+	}
+
+	/**
+	 * Returns the MiningMode corresponding to the <code>String</code>
+	 * parameter. This method is case insensitive.
+	 *
+	 * @param theText the <code>String</code>
+	 * ({@link MiningMode#GUI_TEXT}) corresponding to a MiningMode.
+	 *
+	 * @return the MiningMode corresponding to the <code>String</code>
+	 * parameter, or the default MiningMode
+	 * (as per {@link MiningMode#getDefault()}) if no corresponding
+	 * MiningMode can be found.
+	 */
+	public static MiningMode fromString(String theText)
+	{
+		for (MiningMode m : MiningMode.values())
+			if (m.GUI_TEXT.equalsIgnoreCase(theText))
+				return m;
+
+		/*
+		 * theText cannot be resolved to a MiningMode. Log error and
+		 * return default.
+		 */
+		Log.logCommandLine(
+			String.format("'%s' is not a valid MiningMode. Returning '%s'.",
+					theText,
+					MiningMode.getDefault().GUI_TEXT));
+		return MiningMode.getDefault();
+	}
+
+	/**
+	 * Returns the default MiningMode {@link MiningMode#SEMAPHORE}.
+	 *
+	 * @return the default MiningMode.
+	 */
+	public static MiningMode getDefault()
+	{
+		return MiningMode.SEMAPHORE;
+	}
+
+	// uses Javadoc from EnumInterface
+	@Override
+	public String toString()
+	{
+		return GUI_TEXT;
+	}
+}
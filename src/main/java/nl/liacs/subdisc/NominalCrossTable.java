@@ -4,45 +4,50 @@ import java.util.*;
 
 public class NominalCrossTable
 {
-	private final String[] itsValues;
+	private final Column itsColumn;
+	// the values are indexes in the domain of itsColumn, in String order
+	private final int[] itsValues;
 	private final int[] itsPositiveCounts;
 	private final int[] itsNegativeCounts;
 
 	public NominalCrossTable(Column theColumn, BitSet theSubgroupMembers, BitSet theTarget)
 	{
-		//itsValues = theColumn.getUniqueNominalBinaryDomain(theSubgroupMembers);
-		// FIXME code is changed because Column.getUniqueNumericDomain(BitSet)
-		// will be removed
-		// the new methods is about as fast, even when it also establishes value
-		// counts (which are ignored), and needs to sort the domain
-		// the final version of this method will be implemented in the same way
-		// as ValueInfo, it holds same count + true positive for numeric values
-		// that is required here (RealBaseIntervalCrossTable already uses it)
-		List<String> aDomain = theColumn.itsDistinctValuesU;
-		int aNrMembers = theSubgroupMembers.cardinality();
-		int[] aCounts = theColumn.getUniqueNominalDomainCounts(theSubgroupMembers, aNrMembers);
-
-		itsValues = new String[aCounts[aCounts.length-1]];
-		for (int i = 0, j = -1; i < aCounts.length-1; ++i)
-			if (aCounts[i] > 0)
-				itsValues[++j] = aDomain.get(i);
-		Arrays.sort(itsValues);
-
-		itsPositiveCounts = new int[itsValues.length];
-		itsNegativeCounts = new int[itsValues.length];
-
-		// check only SG.members, combine 2 loops
-		for (int i = theSubgroupMembers.nextSetBit(0); i >= 0; i = theSubgroupMembers.nextSetBit(i + 1))
+		this(theColumn, theSubgroupMembers.toLongArray(), (theSubgroupMembers.length() + 63) >>> 6, theTarget.toLongArray(), new int[theColumn.getCrossTableSize()]);
+	}
+
+	/*
+	 * the values are counted by their index in the domain of theColumn, the
+	 * members and target are the words of their BitSets, as used by the
+	 * SubgroupDiscovery.CountBuffer, theCounts is a buffer of at least
+	 * theColumn.getCrossTableSize() that may be reused after construction
+	 * no String is compared, a value is only looked up through getValue()
+	 */
+	NominalCrossTable(Column theColumn, long[] theMembers, int theNrWords, long[] theTarget, int[] theCounts)
+	{
+		int aNrDistinct = theColumn.countNominalCrossTable(theMembers, theNrWords, theTarget, theCounts);
+
+		itsColumn = theColumn;
+		itsValues = new int[aNrDistinct];
+		itsPositiveCounts = new int[aNrDistinct];
+		itsNegativeCounts = new int[aNrDistinct];
+
+		int[] anOrder = theColumn.getDomainOrder();
+		for (int i = 0, j = 0; j < aNrDistinct; ++i)
 		{
-			int anIndex = Arrays.binarySearch(itsValues, theColumn.getNominal(i));
-			if (theTarget.get(i))
-				++itsPositiveCounts[anIndex];
-			else
-				++itsNegativeCounts[anIndex];
+			int v = anOrder[i];
+			int aPositiveCount = theCounts[v << 1];
+			int aNegativeCount = theCounts[(v << 1) + 1];
+			if ((aPositiveCount + aNegativeCount) == 0)
+				continue;
+
+			itsValues[j] = v;
+			itsPositiveCounts[j] = aPositiveCount;
+			itsNegativeCounts[j] = aNegativeCount;
+			++j;
 		}
 	}
 
-	public String getValue(int index) { return itsValues[index]; }
+	public String getValue(int index) { return itsColumn.getDistinctValue(itsValues[index]); }
 	public int getPositiveCount(int theIndex) { return itsPositiveCounts[theIndex]; }
 	public int getNegativeCount(int theIndex) { return itsNegativeCounts[theIndex]; }
 	public int size() { return itsValues.length; }
@@ -28,6 +28,8 @@ public class ProbabilityDensityFunction_ND
 	// XXX MM - will replace itsGrid
 	// structured as: [ d1[min,max], d2[min,max], ... , dd[min,max] ]
 	private final double[][] itsLimits;
+	// how getDensityDifference2D() computes the kernel density estimates
+	private DensityEstimator itsDensityEstimator = DensityEstimator.getDefault();
 
 	ProbabilityDensityFunction_ND(Column[] theColumns)
 	{
@@ -117,6 +119,9 @@ public class ProbabilityDensityFunction_ND
 
 	public final int getNrDimensions() { return itsGrid.length; }
 
+	public final DensityEstimator getDensityEstimator() { return itsDensityEstimator; }
+	public final void setDensityEstimator(DensityEstimator theDensityEstimator) { itsDensityEstimator = theDensityEstimator; }
+
 	// 2D version
 	public final float[][] getDensity(BitSet theBitSet)
 	{
@@ -925,6 +930,12 @@ double C_kde_integral = 0.0;
 		// Kh = 1/n*sum(1/h*K(x/h)), 1/n*1/sqrt(2*PI)^k*|SIGMA|)
 		double S_f = dxdy / (2.0 * Math.PI * Math.sqrt(det(S_cm)) * S_size);
 		double C_f = dxdy / (2.0 * Math.PI * Math.sqrt(det(C_cm)) * C_size);
+		// kernel sums for all grid points at once, replaces the loop over N
+		double[][] aBinned = (itsDensityEstimator == DensityEstimator.BINNED) ?
+					binnedKDE(theSubgroup, x_min, dx, x_n, y_min, dy, y_n,
+						new double[] { S_xvar_i, S_cov2_i, S_yvar_i },
+						new double[] { C_xvar_i, C_cov2_i, C_yvar_i }) :
+					null;
 
 		for (int i = 0; i < x_n; ++i)
 		{
@@ -946,6 +957,12 @@ double C_kde_integral = 0.0;
 
 				double S_kde = 0.0;
 				double C_kde = 0.0;
+				if (aBinned != null)
+				{
+					S_kde = aBinned[0][(i*y_n)+j];
+					C_kde = aBinned[1][(i*y_n)+j];
+				}
+				else
 				for (int k = 0, m = 0; k < N; ++k, ++m)
 				{
 					double px = x - itsData[  m];
@@ -997,6 +1014,241 @@ System.out.println("C_kde_integral = " + C_kde_integral);
 		return new float[][][] { aPDFSubgroup, aPDFComplement, aPDFDifference };
 	}
 
+	/*
+	 * binned kernel density estimation, for the subgroup and the complement
+	 * returns for both, for each grid point (x_min+(i*dx), y_min+(j*dy)),
+	 * the sum over the records of exp(-0.5*(x'*H^-1*x)), where x is the
+	 * distance between grid point and record, at index (i*y_n)+j
+	 * theSInverse and theCInverse hold { xvar_i, cov2_i, yvar_i } of H^-1
+	 *
+	 * each record is linearly binned onto a grid that is BIN_REFINEMENT
+	 * times finer than the evaluation grid, its weight is divided over the
+	 * four surrounding bins, then the bin counts are convolved with the
+	 * kernel evaluated at the bin offsets, using a 2D FFT
+	 * no kernel cutoff is used, the FFT computes the full sum, as the direct
+	 * computation does
+	 *
+	 * the FFT leaves rounding noise in the order of 1e-16 times the largest
+	 * sum, sums below FFT_FLOOR times the largest sum are not reliable
+	 * for grid points where the complement sum is below FFT_FLOOR, but the
+	 * subgroup sum is above DIRECT_THRESHOLD times its largest sum, the
+	 * ratio of the densities matters (KULLBACK_LEIBLER_2D), so both sums are
+	 * computed directly for these points, other sums are kept >=
+	 * Double.MIN_NORMAL, as a density of 0.0 is an infinite divergence for
+	 * KULLBACK_LEIBLER_2D (see divergence())
+	 */
+	private static final int BIN_REFINEMENT = 2;
+	private static final double FFT_FLOOR = 1e-13;
+	private static final double DIRECT_THRESHOLD = 1e-9;
+	private final double[][] binnedKDE(BitSet theSubgroup, double x_min, double dx, int x_n, double y_min, double dy, int y_n, double[] theSInverse, double[] theCInverse)
+	{
+		int N = itsData.length/2;
+
+		// fine grid of bins
+		int M = BIN_REFINEMENT;
+		double x_d = dx/M;
+		double y_d = dy/M;
+		int x_f = x_n*M;
+		int y_f = y_n*M;
+		// records lie in [#_min, #_min+((#_n+1)*d#)), see grid setup
+		int x_b = x_f+M+1;
+		int y_b = y_f+M+1;
+		// no wrap around for offsets in [-(#_b-1), #_f-1]
+		int x_p = Integer.highestOneBit(x_b+x_f-2) << 1;
+		int y_p = Integer.highestOneBit(y_b+y_f-2) << 1;
+		int size = x_p*y_p;
+
+		// linear binning
+		double[] S_re = new double[size];
+		double[] C_re = new double[size];
+		for (int k = 0, m = 0; k < N; ++k, ++m)
+		{
+			double[] w = theSubgroup.get(k) ? S_re : C_re;
+			double tx = (itsData[  m] - x_min) / x_d;
+			double ty = (itsData[++m] - y_min) / y_d; // NOTE increment
+			int bx = Math.max(0, Math.min(x_b-2, (int) Math.floor(tx)));
+			int by = Math.max(0, Math.min(y_b-2, (int) Math.floor(ty)));
+			double fx = tx - bx;
+			double fy = ty - by;
+			int b = (bx*y_p)+by;
+			w[b]       += (1.0-fx) * (1.0-fy);
+			w[b+1]     += (1.0-fx) * fy;
+			w[b+y_p]   += fx * (1.0-fy);
+			w[b+y_p+1] += fx * fy;
+		}
+
+		convolve(S_re, kernel(theSInverse, x_d, x_f, x_b, x_p, y_d, y_f, y_b, y_p), x_p, y_p);
+		convolve(C_re, kernel(theCInverse, x_d, x_f, x_b, x_p, y_d, y_f, y_b, y_p), x_p, y_p);
+
+		// sample the evaluation grid
+		double[] S_kde = new double[x_n*y_n];
+		double[] C_kde = new double[x_n*y_n];
+		double S_max = 0.0;
+		double C_max = 0.0;
+		for (int i = 0; i < x_n; ++i)
+		{
+			for (int j = 0; j < y_n; ++j)
+			{
+				int f = (i*M*y_p) + (j*M);
+				S_max = Math.max(S_max, S_kde[(i*y_n)+j] = S_re[f]);
+				C_max = Math.max(C_max, C_kde[(i*y_n)+j] = C_re[f]);
+			}
+		}
+
+		double S_relevant = DIRECT_THRESHOLD * S_max;
+		double C_floor = FFT_FLOOR * C_max;
+		double[] aDirect = new double[2];
+		for (int i = 0; i < x_n; ++i)
+		{
+			for (int j = 0; j < y_n; ++j)
+			{
+				int g = (i*y_n)+j;
+				if ((S_kde[g] >= S_relevant) && (C_kde[g] < C_floor))
+				{
+					directKDE(x_min + (i*dx), y_min + (j*dy), theSubgroup, theSInverse, theCInverse, aDirect);
+					S_kde[g] = aDirect[0];
+					C_kde[g] = aDirect[1];
+				}
+				S_kde[g] = Math.max(Double.MIN_NORMAL, S_kde[g]);
+				C_kde[g] = Math.max(Double.MIN_NORMAL, C_kde[g]);
+			}
+		}
+
+		return new double[][] { S_kde, C_kde };
+	}
+
+	// sums for a single grid point, as computed by getDensityDifference2D()
+	private final void directKDE(double x, double y, BitSet theSubgroup, double[] theSInverse, double[] theCInverse, double[] theResult)
+	{
+		int N = itsData.length/2;
+		double S_kde = 0.0;
+		double C_kde = 0.0;
+		for (int k = 0, m = 0; k < N; ++k, ++m)
+		{
+			double px = x - itsData[  m];
+			double py = y - itsData[++m]; // NOTE increment
+
+			if (theSubgroup.get(k))
+				S_kde += Math.exp(-0.5 * ((px*px*theSInverse[0]) + (px*py*theSInverse[1]) + (py*py*theSInverse[2])));
+			else
+				C_kde += Math.exp(-0.5 * ((px*px*theCInverse[0]) + (px*py*theCInverse[1]) + (py*py*theCInverse[2])));
+		}
+		theResult[0] = S_kde;
+		theResult[1] = C_kde;
+	}
+
+	// kernel at offsets [-(#_b-1), #_n-1], negative offsets wrap around
+	private static final double[] kernel(double[] theInverse, double dx, int x_n, int x_b, int x_p, double dy, int y_n, int y_b, int y_p)
+	{
+		double xvar_i = theInverse[0];
+		double cov2_i = theInverse[1];
+		double yvar_i = theInverse[2];
+
+		double[] aKernel = new double[x_p*y_p];
+		for (int u = -(x_b-1); u < x_n; ++u)
+		{
+			double px = u*dx;
+			int row = ((u < 0) ? (u+x_p) : u) * y_p;
+			for (int v = -(y_b-1); v < y_n; ++v)
+			{
+				double py = v*dy;
+				aKernel[row + ((v < 0) ? (v+y_p) : v)] = Math.exp(-0.5 * ((px*px*xvar_i) + (px*py*cov2_i) + (py*py*yvar_i)));
+			}
+		}
+		return aKernel;
+	}
+
+	// linear convolution of real theCounts and theKernel, the result
+	// replaces theCounts, theKernel is modified
+	static final void convolve(double[] theCounts, double[] theKernel, int x_p, int y_p)
+	{
+		int size = x_p*y_p;
+		double[] c_im = new double[size];
+		double[] k_im = new double[size];
+		fft2(theCounts, c_im, x_p, y_p, false);
+		fft2(theKernel, k_im, x_p, y_p, false);
+		for (int i = 0; i < size; ++i)
+		{
+			double re = (theCounts[i]*theKernel[i]) - (c_im[i]*k_im[i]);
+			double im = (theCounts[i]*k_im[i]) + (c_im[i]*theKernel[i]);
+			theCounts[i] = re / size;
+			c_im[i] = im / size;
+		}
+		fft2(theCounts, c_im, x_p, y_p, true);
+	}
+
+	// in-place 2D FFT of a rows*cols matrix, stored row by row
+	// the inverse transform is not scaled by 1/(rows*cols)
+	static final void fft2(double[] re, double[] im, int rows, int cols, boolean isInverse)
+	{
+		double[][] rowTwiddles = twiddles(cols);
+		for (int i = 0; i < rows; ++i)
+			fft(re, im, i*cols, 1, cols, rowTwiddles, isInverse);
+		double[][] colTwiddles = (rows == cols) ? rowTwiddles : twiddles(rows);
+		for (int j = 0; j < cols; ++j)
+			fft(re, im, j, cols, rows, colTwiddles, isInverse);
+	}
+
+	// { cos(2*PI*k/n), sin(2*PI*k/n) } for k < n/2
+	private static final double[][] twiddles(int n)
+	{
+		double[] cos = new double[n/2];
+		double[] sin = new double[n/2];
+		for (int k = 0; k < n/2; ++k)
+		{
+			double a = (2.0 * Math.PI * k) / n;
+			cos[k] = Math.cos(a);
+			sin[k] = Math.sin(a);
+		}
+		return new double[][] { cos, sin };
+	}
+
+	// iterative radix-2 FFT of the n (a power of 2) elements at
+	// offset, offset+stride, ..., offset+((n-1)*stride)
+	private static final void fft(double[] re, double[] im, int offset, int stride, int n, double[][] twiddles, boolean isInverse)
+	{
+		// bit reversal permutation
+		for (int i = 1, j = 0; i < n; ++i)
+		{
+			int bit = n >> 1;
+			for ( ; (j & bit) != 0; bit >>= 1)
+				j ^= bit;
+			j ^= bit;
+			if (i < j)
+			{
+				int a = offset + (i*stride);
+				int b = offset + (j*stride);
+				double t = re[a]; re[a] = re[b]; re[b] = t;
+				t = im[a]; im[a] = im[b]; im[b] = t;
+			}
+		}
+
+		double[] cos = twiddles[0];
+		double[] sin = twiddles[1];
+		double sign = isInverse ? 1.0 : -1.0;
+		for (int len = 2; len <= n; len <<= 1)
+		{
+			int half = len >> 1;
+			int step = n / len;
+			for (int i = 0; i < n; i += len)
+			{
+				for (int j = 0; j < half; ++j)
+				{
+					double wr = cos[j*step];
+					double wi = sign * sin[j*step];
+					int a = offset + ((i+j)*stride);
+					int b = a + (half*stride);
+					double vr = (re[b]*wr) - (im[b]*wi);
+					double vi = (re[b]*wi) + (im[b]*wr);
+					re[b] = re[a] - vr;
+					im[b] = im[a] - vi;
+					re[a] += vr;
+					im[a] += vi;
+				}
+			}
+		}
+	}
+
 	/*
 	 * NOTE this code needs special cases for 0 and Infinity
 	 * for example 0 * Infinity = NaN
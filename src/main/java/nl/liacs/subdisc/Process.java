@@ -11,7 +11,7 @@ public class Process
 {
 	// leave at false in svn head
 	private static final boolean CAUC_LIGHT = false;
-	private static boolean CAUC_HEAVY = false;
+	private static final boolean CAUC_HEAVY = false;
 	private static final boolean CAUC_HEAVY_CONVEX = false; // select subgroups on convex hull if true, select top-1 if false
 	static final boolean ROC_BEAM_TEST = false;
 
@@ -202,91 +202,38 @@ public class Process
 		caucWrite("caucLight", aTarget, statistics);
 	}
 
+	// all thresholds are mined at once, see CAUCMiner
 	private static void caucHeavy(Table theTable, int theFold, BitSet theBitSet, SearchParameters theSearchParameters, boolean showWindows, int theNrThreads)
 	{
-		// set to false, so normal SD is run
-		CAUC_HEAVY = false;
-		// use 'showWindows = false' below to avoid numerous windows
-		final boolean showWindowsSetting = showWindows;
-
-		final Column aBackup = theSearchParameters.getTargetConcept().getPrimaryTarget().copy();
-		final BitSet aMembers = membersCheck(theBitSet, aBackup.size());
-//		final float[] aDomain = aBackup.getUniqueNumericDomain(aMembers);
-		// FIXME code is changed because Column.getUniqueNumericDomain(BitSet)
-		// will be removed (counts are not used, but code is 4x faster still)
-		// but currently this code is not used, so leave it at this for now
-		//
-		// NOTE using aBackup.size() would be faster than aMembers.cardinality()
-		DomainMapNumeric dm = aBackup.getUniqueNumericDomainMap(aMembers, aMembers.cardinality());
-		final float[] aDomain = Arrays.copyOf(dm.itsDomain, dm.itsSize);
-
-		final List<Column> aColumns = theTable.getColumns();
-		final String aName = aBackup.getName();
-		final String aShort = aBackup.getShort();
-		final int anIndex = aBackup.getIndex();
-		final int aNrRows = aBackup.getIndex();
-
-		// column will be binary instead of numeric
-		final TargetConcept tc = theSearchParameters.getTargetConcept();
-		tc.setTargetType(TargetType.SINGLE_NOMINAL.GUI_TEXT);
-		tc.setTargetValue("1");
-		// set an alternative quality measure
-		final QM backupQM = theSearchParameters.getQualityMeasure();
 		// XXX WRACC is used, but there is no motivation for this choice
 		final QM altQM = QM.WRACC;
-		theSearchParameters.setQualityMeasure(altQM);
-		// set an alternative quality measure minimum
-		final float backupMM = theSearchParameters.getQualityMeasureMinimum();
-		//theSearchParameters.setQualityMeasureMinimum(Float.parseFloat(altQM.MEASURE_DEFAULT));
 		// XXX WOUTER uses 0.01 to compare to old results
 		// QualityMeasure.getMeasureMinimum(WRACC) changed from 0.01 to 0.02 in QM in r1282 (no mention in log)
 		// WRACC.MEASURE_DEFAULT changed from 0.01 to 0.02 in QM in r1569 (synch of both implementations)
-		theSearchParameters.setQualityMeasureMinimum(0.01f);
+		final float altMM = 0.01f;
+
+		// the target Column and Table are not changed
+		CAUCMiner aMiner = new CAUCMiner(theTable, theBitSet, theSearchParameters, altQM, altMM);
+		aMiner.mine(theNrThreads);
 
 		Comparator<Subgroup> cmp = new SubgroupConditionListComparator();
 		SubgroupSet aHeavySubgroupSet = new SubgroupSet(cmp);
 
-		// last index is whole dataset
-		for (int i = 0, j = aDomain.length-1; i < j; ++i)
+		for (int i = 0, j = aMiner.getNrThresholds(); i < j; ++i)
 		{
-			BitSet aCAUCSet = (BitSet) aMembers.clone();
-			caucMembers(aBackup, aDomain[i], aCAUCSet);
-
-			// create temporary Column
-			Column aColumn = new Column(aName,
-							aShort,
-							AttributeType.BINARY,
-							anIndex,
-							aNrRows);
-
-			// set Column members
-			for (int k = 0, m = aBackup.size(); k < m; ++k)
-				aColumn.add(aCAUCSet.get(k));
-
-			// use Column in Table
-			aColumns.set(anIndex, aColumn);
-
-			// set the new column as primary target
-			theSearchParameters.getTargetConcept().setPrimaryTarget(aColumn);
-
-			// run SD
-			boolean aCommandlinelogState = Log.COMMANDLINELOG;
-			Log.COMMANDLINELOG = false;
-			SubgroupDiscovery sd =
-				runSubgroupDiscovery(theTable, theFold, aMembers, theSearchParameters, false, theNrThreads, null);
-			Log.COMMANDLINELOG = aCommandlinelogState;
+			SubgroupSet aResult = aMiner.getResult(i);
 
 			// For seeing the intermediate ROC curves, uncomment the next line
-			//new ROCCurveWindow(sd.getResult(), theSearchParameters, sd.getQualityMeasure());
+			//new ROCCurveWindow(aResult, theSearchParameters, aMiner.getQualityMeasure(i));
 
-			Log.logCommandLine("Threshold value : " + aDomain[i]);
+			Log.logCommandLine("Threshold value : " + aMiner.getThreshold(i));
 
 			if (CAUC_HEAVY_CONVEX)
 			{
 				// this seems pointless, but the ROC curve needs to be computed to prevent the next line from NullPointerError'ing
-				ROCCurve aROCCurve = new ROCCurve(sd.getResult(), theSearchParameters, sd.getQualityMeasure());
+				ROCCurve aROCCurve = new ROCCurve(aResult, theSearchParameters, aMiner.getQualityMeasure(i));
 
-				SubgroupSet aROCSubgroups = sd.getResult().getROCListSubgroupSet();
+				SubgroupSet aROCSubgroups = aResult.getROCListSubgroupSet();
 
 				// force update(), should have been in .getROCListSubgroupSet()
 				aROCSubgroups.size();
@@ -297,15 +244,9 @@ public class Process
 
 				//select convex hull subgroups from the resulting subgroup set
 				aHeavySubgroupSet.addAll(aROCSubgroups);
-
-				// compile statistics
-//				statistics.add(compileStatistics(aDomain[i],
-//								aCAUCSet.cardinality(),
-//								sd.getResult()));
 			}
 			else
 			{
-				SubgroupSet aResult = sd.getResult();
 				int aSize = aResult.size();
 				if (aSize>0)
 				{
@@ -317,9 +258,6 @@ public class Process
 			}
 		}
 
-		// dump results
-//		caucWrite("caucHeavy", aBackup, statistics);
-
 		Log.logCommandLine("======================================================");
 		Log.logCommandLine("Diverse Subgroup Set Size : " + aHeavySubgroupSet.size());
 		Log.logCommandLine("Subgroups : ");
@@ -333,18 +271,6 @@ public class Process
 //		Log.logCommandLine("Entropy / Set Size        : " + aHeavySubgroupSet.getJointEntropy()/aHeavySubgroupSet.size());
 		Log.logCommandLine("Joint Entropy             : " + aSubgroupSetWithEntropy.getJointEntropy());
 		Log.logCommandLine("Entropy / Set Size        : " + aSubgroupSetWithEntropy.getJointEntropy()/aHeavySubgroupSet.size());
-
-		// restore original Column
-		aColumns.set(anIndex, aBackup);
-		tc.setPrimaryTarget(aBackup);
-		tc.setTargetType(TargetType.SINGLE_NUMERIC.GUI_TEXT);
-		// restore original SearchParameters
-		theSearchParameters.setQualityMeasure(backupQM);
-		theSearchParameters.setQualityMeasureMinimum(backupMM);
-
-		// back to start
-		CAUC_HEAVY = true;
-		showWindows = showWindowsSetting;
 	}
 
 	private static BitSet membersCheck(BitSet theBitSet, int theSize)
@@ -1,17 +1,19 @@
 package nl.liacs.subdisc;
 
 import java.util.*;
-import weka.core.Instances;
-import weka.classifiers.functions.Logistic;
-import weka.core.Attribute;
-import weka.core.FastVector;
-import weka.core.Instance;
+import java.util.concurrent.*;
+
+import nl.liacs.subdisc.ConditionListBuilder.ConditionList;
 
 /**
  * The propensity score is the column with expected values per point.
  * It is calculated by regressing X on the target, it can either be calculated
  * by Bayes Rule, or with the use of logistic regression.
  * To calculate it we need X and a target vector.
+ * <p>
+ * The logistic regression model only depends on the set of explanatory
+ * variables, so models are cached by that set, see
+ * {@link #PropensityScore(Subgroup, BitSet, LocalKnowledge, GlobalKnowledge, String, ConcurrentMap)}.
  */
 public class PropensityScore
 {
@@ -23,20 +25,37 @@ public class PropensityScore
 	private final LocalKnowledge itsLocalKn;
 	private final GlobalKnowledge itsGlobalKn;
 	private final Subgroup itsSubgroup;
-	private final double[] itsPropensityScore;
+	// for LOGISTIC_REGRESSION computed on demand from itsModel
+	private double[] itsPropensityScore;
 	private final double itsPropensityScoreSum;
+	private LogisticRegression itsModel;
 
 	public PropensityScore(Subgroup theSubgroup, BitSet theTarget, LocalKnowledge theLocalKn, GlobalKnowledge theGlobalKn, String theMethod)
+	{
+		this(theSubgroup, theTarget, theLocalKn, theGlobalKn, theMethod, new ConcurrentHashMap<Set<BitSet>, LogisticRegression>());
+	}
+
+	/**
+	 * As {@link #PropensityScore(Subgroup, BitSet, LocalKnowledge, GlobalKnowledge, String)},
+	 * but for {@link #LOGISTIC_REGRESSION} a model is only fitted if
+	 * theCache does not hold one for the same explanatory variables yet.
+	 * A new model is warm-started from the model of the parent of
+	 * theSubgroup, if theCache holds it, and is added to theCache.
+	 * <p>
+	 * The same cache can be used by multiple Threads, as long as it is
+	 * only used with the same target and knowledge.
+	 */
+	PropensityScore(Subgroup theSubgroup, BitSet theTarget, LocalKnowledge theLocalKn, GlobalKnowledge theGlobalKn, String theMethod, ConcurrentMap<Set<BitSet>, LogisticRegression> theCache)
 	{
 		itsMethod = theMethod;
 		itsTarget = theTarget;
 		itsLocalKn = theLocalKn;
 		itsGlobalKn = theGlobalKn;
 		itsSubgroup = theSubgroup;
-		itsPropensityScore = new double[itsTarget.size()];
 
 		if (BAYES_RULE.equals(itsMethod))
 		{
+			itsPropensityScore = new double[itsTarget.size()];
 			calculateBayesRule();
 //			/*calculate Bayes Rule here */
 //			Set<statisticsBayesRule> aAllStatisticsBayesRule = new HashSet<statisticsBayesRule>();
@@ -84,7 +103,9 @@ public class PropensityScore
 		}
 		else if (LOGISTIC_REGRESSION.equals(itsMethod))
 		{
-			calculateLogisticRegression();
+			itsModel = getLogisticRegression(theCache);
+			itsPropensityScoreSum = itsModel.getProbabilitySum();
+			return;
 //			//System.out.println("LogisticRegression");
 //			itsMethod = theMethod;
 //			itsTarget = theTarget;
@@ -269,126 +290,39 @@ public class PropensityScore
 			itsPropensityScore[i] = aTerm1[i]/(aTerm1[i] + aTerm2[i]);
 	}
 
-	private void calculateLogisticRegression()
+	private LogisticRegression getLogisticRegression(ConcurrentMap<Set<BitSet>, LogisticRegression> theCache)
 	{
-		//System.out.println("LogisticRegression");
-// created/ set already, no need to redo this
-//		itsMethod = theMethod;
-//		itsTarget = theTarget;
-//		itsLocalKn = theLocalKn;
-//		itsGlobalKn = theGlobalKn;
-//		itsPropensityScore = new double[itsTarget.size()];
-		Set<BitSet> explanatoryVariables = new HashSet<BitSet>();
-//		explanatoryVariables.addAll(itsGlobalKn.getBitSets());
-//		explanatoryVariables.addAll(itsLocalKn.getBitSets(itsSubgroup));
-		explanatoryVariables.addAll(itsGlobalKn.getBitSets2());
-		explanatoryVariables.addAll(itsLocalKn.getBitSets(itsSubgroup.getConditions()));
-
-		//java.lang.String name, Fastvector attInfo, int capacity
-		//create attribute list with names
-//		double nameNumber = 1.0;
-//		String s1 = String.valueOf(nameNumber);
-		// NOTE +1 because target attribute will also go in there
-		FastVector attributeList = new FastVector(explanatoryVariables.size() + 1);
-//		for (BitSet v : explanatoryVariables)
-//		{
-//			Attribute at = new Attribute(s1);
-//			attributeList.addElement(at);
-//			nameNumber++;
-//			s1 = String.valueOf(nameNumber);
-//		}
-// XXX safer alternative, avoid String reference trouble
-		for (int i = 0, j = explanatoryVariables.size(); i < j; )
-			attributeList.addElement(new Attribute(Double.toString(++i)));
-
-		FastVector valuesTarget = new FastVector(2);
-		valuesTarget.addElement("0");
-		valuesTarget.addElement("1");
-		Attribute target = new Attribute("target", valuesTarget);
-		attributeList.addElement(target);
-
-		//attribute list contains the information about attributes
-
-		//System.out.println("Fastvector with attributes created");
-		final int aTargetSize = itsTarget.size(); // FIXME MM - this is likely to be incorrect, size is not necessarily equal to Table.size()
-		final int anAttributeListSize = attributeList.size();
-		Instances data = new Instances("explanatoryVariables", attributeList, aTargetSize);
-		//System.out.println("empty instances created");
-		//String st1 = "Size attributeList = " + attributeList.size();
-		//System.out.println(st1);
-
-		for (int i=0; i<aTargetSize; i++)
-		{
-			Instance ins = new Instance(anAttributeListSize);
-			ins.setDataset(data);
-			//System.out.println("empty instance created");
-			//double[] attValues = new double[attributeList.size()];
-			int j=0;
-			for (BitSet v : explanatoryVariables)
-			{
-				// double value = (v.get(i) ? 1 : 0);
-//				if (v.get(i))
-//					value=1;
-//				else
-//					value=0;
-				ins.setValue(j, (v.get(i) ? 1 : 0));
-				++j;
-			}// now fill the last (target) attribute
-
-//			if (itsTarget.get(i))
-//			{
-//				//attValues[attValues.length]=1;
-//				ins.setValue(j, "1");
-//			}
-//			else
-//			{
-//				//attValues[attValues.length]=0;
-//				ins.setValue(j, "0");
-//			}
-			ins.setValue(j, (itsTarget.get(i) ? 1 : 0));
-
-			//System.out.println("single Instance created");
-			data.add(ins);
-		}
-		//System.out.println("instances created");
-
-		data.setClassIndex(data.numAttributes()-1);
-		//String st = "" + (data.numAttributes()-1);
-		//System.out.println(st);
-		//System.out.println("Set Class Index");
-
-		// replace logistic code with this
-		try
-		{
-			logisticClassification(data, itsPropensityScore);
-		}
-		catch (Exception e)
-		{
-			Log.logCommandLine("logistic classification failed");
-			e.printStackTrace();
-		}
-
-		Log.logCommandLine("propensity score filled");
+		Set<BitSet> anExplanatoryVariables = getExplanatoryVariables(itsSubgroup.getConditions());
+		LogisticRegression aModel = theCache.get(anExplanatoryVariables);
+		if (aModel != null)
+			return aModel;
+
+		// the explanatory variables of the parent are a subset of these
+		Subgroup aParent = itsSubgroup.getParent();
+		LogisticRegression aStart = (aParent == null) ? null : theCache.get(getExplanatoryVariables(aParent.getConditions()));
+
+		// FIXME MM - size() is not necessarily equal to Table.size(), but it
+		// is what the original Weka based implementation used
+		aModel = new LogisticRegression(anExplanatoryVariables.toArray(new BitSet[0]), itsTarget, itsTarget.size(), aStart);
+
+		// another Thread may have fitted the same model in the meantime
+		LogisticRegression aPrevious = theCache.putIfAbsent(anExplanatoryVariables, aModel);
+		return (aPrevious == null) ? aModel : aPrevious;
 	}
 
-	// if any of the methods throw an Exception: abort this whole process
-	private static void logisticClassification(Instances theData, double[] thePropensityScores) throws Exception
+	private Set<BitSet> getExplanatoryVariables(ConditionList theConditions)
 	{
-		// build a logistic classifier
-		Logistic aLC = new Logistic();
-		aLC.setRidge(0);
-		aLC.buildClassifier(theData);
-
-		Log.logCommandLine("Logistic Regression model created");
-
-		//now classify instances
-		for (int i=0; i<thePropensityScores.length; i++)
-			thePropensityScores[i] = aLC.distributionForInstance(theData.instance(i))[1];
+		Set<BitSet> anExplanatoryVariables = new HashSet<BitSet>();
+		anExplanatoryVariables.addAll(itsGlobalKn.getBitSets2());
+		anExplanatoryVariables.addAll(itsLocalKn.getBitSets(theConditions));
+		return anExplanatoryVariables;
 	}
 
 	@Deprecated
 	public double[] getPropensityScore()
 	{
+		if ((itsPropensityScore == null) && (itsModel != null))
+			itsPropensityScore = itsModel.getProbabilities(itsTarget.size());
 		return itsPropensityScore;
 	}
 
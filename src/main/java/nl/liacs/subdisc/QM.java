@@ -335,6 +335,30 @@ public enum QM implements EnumInterface
 				requiredStats(qm);
 	}
 
+	private static final Set<QM> OPTIMISTIC_ESTIMATE = Collections.unmodifiableSet(EnumSet.of(
+		// SINGLE_NOMINAL
+		WRACC, ABSWRACC, CHI_SQUARED, BINOMIAL, INFORMATION_GAIN,
+		// SINGLE_NUMERIC
+		Z_SCORE, INVERSE_Z_SCORE, ABS_Z_SCORE, MEAN_TEST, INVERSE_MEAN_TEST, ABS_MEAN_TEST));
+
+	/**
+	 * Indicates whether {@link QualityMeasure} can compute an optimistic
+	 * estimate for the supplied QM parameter, that is, an upper bound on the
+	 * quality of every refinement of a Subgroup.
+	 *
+	 * @param theQM the QM to check.
+	 *
+	 * @return <code>true</code> if an optimistic estimate is available,
+	 * <code>false</code> otherwise.
+	 *
+	 * @see QualityMeasure#computeOptimisticEstimate(int, int)
+	 * @see QualityMeasure#computeOptimisticEstimate(float[], int)
+	 */
+	public static boolean hasOptimisticEstimate(QM theQM)
+	{
+		return OPTIMISTIC_ESTIMATE.contains(theQM);
+	}
+
 	@Override
 	public String toString() { return GUI_TEXT; }
 }
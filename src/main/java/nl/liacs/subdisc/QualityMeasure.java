@@ -238,6 +238,53 @@ public class QualityMeasure
 		return calculate(itsQualityMeasure, itsNrRecords, itsTotalTargetCoverage, theCountHeadBody, theCoverage);
 	}
 
+	/**
+	 * Returns an optimistic estimate for a SINGLE_NOMINAL Subgroup, an upper
+	 * bound on the quality of every Subgroup with a subset of its members,
+	 * so of every refinement of it.
+	 * <p>
+	 * A refinement selects at most theCountHeadBody positives and at most
+	 * (theCoverage - theCountHeadBody) negatives. WRACC, ABSWRACC,
+	 * CHI_SQUARED, BINOMIAL and INFORMATION_GAIN are convex in these two
+	 * counts (BINOMIAL is bounded by its value for the positives only), so
+	 * their maximum is attained at a corner of this rectangle. The corner
+	 * without members has quality 0 for all of them.
+	 *
+	 * @param theCountHeadBody the number of positives of the Subgroup.
+	 * @param theCoverage the coverage of the Subgroup.
+	 *
+	 * @return the optimistic estimate.
+	 *
+	 * @throws IllegalArgumentException if the QM has no optimistic
+	 * estimate for SINGLE_NOMINAL.
+	 *
+	 * @see QM#hasOptimisticEstimate(QM)
+	 */
+	public double computeOptimisticEstimate(int theCountHeadBody, int theCoverage)
+	{
+		switch (itsQualityMeasure)
+		{
+			case WRACC :
+			case ABSWRACC :
+			case CHI_SQUARED :
+			case BINOMIAL :
+			case INFORMATION_GAIN :
+			{
+				int N = itsNrRecords;
+				int H = itsTotalTargetCoverage;
+				int aCountNotHeadBody = theCoverage - theCountHeadBody;
+
+				double aBound = calculate(itsQualityMeasure, N, H, theCountHeadBody, theCoverage);
+				aBound = Math.max(aBound, calculate(itsQualityMeasure, N, H, theCountHeadBody, theCountHeadBody));
+				aBound = Math.max(aBound, calculate(itsQualityMeasure, N, H, 0, aCountNotHeadBody));
+
+				return Math.max(aBound, 0.0);
+			}
+			default :
+				throw new IllegalArgumentException("QualityMeasure: no optimistic estimate for " + itsQualityMeasure);
+		}
+	}
+
 	//SINGLE_NOMINAL =======================================================
 	/*
 	 * int counts are cast to double inside this method. Float should not be used to represent int counts
@@ -1179,6 +1226,87 @@ public class QualityMeasure
 		return aReturn;
 	}
 
+	/**
+	 * Returns an optimistic estimate for a SINGLE_NUMERIC Subgroup, an upper
+	 * bound on the quality of every Subgroup with a subset of its members,
+	 * so of every refinement of it.
+	 * <p>
+	 * For the Z_SCORE and MEAN_TEST families, of all refinements of size
+	 * n, the one with the n highest (or lowest) target values scores best.
+	 * The bound is the best of these for every size n that is at least
+	 * theMinimumCoverage.
+	 *
+	 * @param theSortedValues the target values of the members of the
+	 * Subgroup, in ascending order.
+	 * @param theMinimumCoverage the minimum coverage of a refinement.
+	 *
+	 * @return the optimistic estimate, <code>Double.NEGATIVE_INFINITY</code>
+	 * when no refinement can reach theMinimumCoverage.
+	 *
+	 * @throws IllegalArgumentException if the QM has no optimistic
+	 * estimate for SINGLE_NUMERIC.
+	 *
+	 * @see QM#hasOptimisticEstimate(QM)
+	 */
+	public double computeOptimisticEstimate(float[] theSortedValues, int theMinimumCoverage)
+	{
+		final double aScale;
+		switch (itsQualityMeasure)
+		{
+			case Z_SCORE :
+			case INVERSE_Z_SCORE :
+			case ABS_Z_SCORE :
+			{
+				if (itsNrRecords <= 1)
+					return 0.0;
+				// the quality itself would divide by zero
+				if (itsTotalStandardDeviation == 0.0f)
+					return Double.POSITIVE_INFINITY;
+				aScale = itsTotalStandardDeviation;
+				break;
+			}
+			case MEAN_TEST :
+			case INVERSE_MEAN_TEST :
+			case ABS_MEAN_TEST :
+			{
+				aScale = 1.0;
+				break;
+			}
+			default :
+				throw new IllegalArgumentException("QualityMeasure: no optimistic estimate for " + itsQualityMeasure);
+		}
+
+		boolean isHigh = (itsQualityMeasure != QM.INVERSE_Z_SCORE) && (itsQualityMeasure != QM.INVERSE_MEAN_TEST);
+		boolean isLow  = (itsQualityMeasure != QM.Z_SCORE) && (itsQualityMeasure != QM.MEAN_TEST);
+
+		int aSize = theSortedValues.length;
+		double anAverage = itsTotalAverage;
+		double aHighSum = 0.0;
+		double aLowSum = 0.0;
+		double aBound = Double.NEGATIVE_INFINITY;
+		for (int n = 1; n <= aSize; ++n)
+		{
+			aHighSum += theSortedValues[aSize-n];
+			aLowSum += theSortedValues[n-1];
+			if (n < theMinimumCoverage)
+				continue;
+
+			double aRoot = Math.sqrt(n);
+			if (isHigh)
+				aBound = Math.max(aBound, (aHighSum - (n * anAverage)) / aRoot);
+			if (isLow)
+				aBound = Math.max(aBound, ((n * anAverage) - aLowSum) / aRoot);
+		}
+
+		if (aBound == Double.NEGATIVE_INFINITY)
+			return aBound;
+
+		// calculate(Statistics, ProbabilityDensityFunction) uses float sums,
+		// keep a small margin for their rounding errors
+		aBound /= aScale;
+		return aBound + (1e-5 * (Math.abs(aBound) + 1.0));
+	}
+
 	// FOR FUTURE USE - many calculations above are incorrect for large N
 	//                  see comment on coverage for SingleBinary calculate
 	private final double calculate2(Statistics theStatistics, ProbabilityDensityFunction thePDF)
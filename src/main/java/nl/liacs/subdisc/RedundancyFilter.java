@@ -0,0 +1,446 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The RedundancyFilter post-processes the Subgroups of a {@link SubgroupSet}
+ * using indexes over the result set, rather than by comparing every pair of
+ * Subgroups.
+ * <p>
+ * For {@link SubgroupSet#filterSubgroups(float, int)}, the ConditionLists of
+ * all Subgroups are put, in canonical order, in a prefix trie. The possible
+ * generalisations of a Subgroup are found by walking only those paths of the
+ * trie that consist of Conditions of the Subgroup, or of Conditions that
+ * one of its Conditions strictly specialises, like <code>(a &gt;= 5)</code>
+ * for <code>(a &gt;= 10)</code>. Each of these is then checked using
+ * {@link Subgroup#strictlySpecialises(Subgroup)}, so the result is exactly
+ * that of comparing every pair of Subgroups, but the work per Subgroup
+ * depends on its depth and its generalisations in the result set, not on the
+ * size of the result set.
+ * <p>
+ * For {@link SubgroupSet#markAlternativeDescriptions()}, each run of
+ * Subgroups with the same statistics is split further by a hash of their
+ * members, only Subgroups with the same members are compared.
+ * <p>
+ * Both look up the Subgroups in parallel.
+ */
+final class RedundancyFilter
+{
+	private static final int[] NONE = {};
+	// tasks per Thread, for load balancing
+	private static final int NR_TASKS_PER_THREAD = 4;
+
+	// in the order of the SubgroupSet
+	private final Subgroup[] itsSubgroups;
+	private final int itsNrThreads;
+
+	/**
+	 * Creates a RedundancyFilter for the Subgroups of theSubgroupSet.
+	 *
+	 * @param theSubgroupSet the SubgroupSet to post-process.
+	 * @param theNrThreads the number of Threads to use, use
+	 * <code>theNrThreads <= 0</code> to use all available processors.
+	 */
+	RedundancyFilter(SubgroupSet theSubgroupSet, int theNrThreads)
+	{
+		itsSubgroups = theSubgroupSet.toArray(new Subgroup[0]);
+		itsNrThreads = (theNrThreads <= 0) ? Runtime.getRuntime().availableProcessors() : theNrThreads;
+	}
+
+	/**
+	 * Returns for each Subgroup, in the order of the SubgroupSet, whether it
+	 * should be removed, as it is a specialisation of another Subgroup
+	 * that has a quality of at least its quality minus
+	 * theMinimumImprovement.
+	 * <p>
+	 * The result is that of checking the Subgroups one by one, in order,
+	 * against all Subgroups that have not been removed before, using
+	 * {@link Subgroup#strictlySpecialises(Subgroup)}.
+	 *
+	 * @param theMinimumImprovement the improvement in quality a
+	 * specialisation must have over all of its generalisations.
+	 *
+	 * @return a boolean[] with an element per Subgroup.
+	 */
+	boolean[] getRedundant(final float theMinimumImprovement)
+	{
+		final Dictionary aDictionary = new Dictionary(itsSubgroups);
+		final Node aRoot = new Node();
+		for (int i = 0; i < itsSubgroups.length; ++i)
+			aRoot.insert(aDictionary.itsCodes[i], 0, i);
+
+		// for each Subgroup, the earlier generalisations that may remove it,
+		// or null when a later one removes it, as that is not removed before
+		final int[][] aGeneralisations = new int[itsSubgroups.length][];
+		invokeAll(new Range()
+		{
+			@Override
+			void run(int theIndex)
+			{
+				Lookup aLookup = new Lookup(aDictionary, theIndex, theMinimumImprovement);
+				if (!aLookup.collect(aRoot, 0))
+					aGeneralisations[theIndex] = aLookup.getResult();
+			}
+		});
+
+		// a generalisation removes a Subgroup, unless it was removed earlier
+		boolean[] isRedundant = new boolean[itsSubgroups.length];
+		for (int i = 0; i < itsSubgroups.length; ++i)
+		{
+			if (aGeneralisations[i] == null)
+			{
+				isRedundant[i] = true;
+				continue;
+			}
+
+			for (int j : aGeneralisations[i])
+				if (!isRedundant[j])
+				{
+					isRedundant[i] = true;
+					break;
+				}
+		}
+
+		return isRedundant;
+	}
+
+	/**
+	 * Marks the Subgroups that have the same members and statistics, see
+	 * {@link SubgroupSet#markAlternativeDescriptions()}.
+	 * <p>
+	 * Only runs of consecutive Subgroups with the same statistics are
+	 * compared, the last run of the SubgroupSet is not compared.
+	 */
+	void markAlternativeDescriptions()
+	{
+		final int[] aMembersHashes = new int[itsSubgroups.length];
+		invokeAll(new Range()
+		{
+			@Override
+			void run(int theIndex)
+			{
+				Subgroup s = itsSubgroups[theIndex];
+				// FIXME MM overwrite any value that might be present, abuse p-value
+				s.setPValue(Double.NaN);
+				aMembersHashes[theIndex] = s.getMembers().hashCode();
+			}
+		});
+
+		// groups of possible alternatives, in the order of the SubgroupSet
+		final List<List<Subgroup>> aCandidates = new ArrayList<List<Subgroup>>();
+		Map<Integer, List<Subgroup>> aGroups = new HashMap<Integer, List<Subgroup>>();
+		for (int i = 0, aFirst = 0; i < itsSubgroups.length; ++i)
+		{
+			if (hasSameStatistics(itsSubgroups[aFirst], itsSubgroups[i]))
+				continue;
+
+			// a run [aFirst, i) ends, Subgroups with different members are
+			// never alternatives, so markAlternativeDescriptionsProcess()
+			// gives the same result for each members hash separately
+			aGroups.clear();
+			for (int j = aFirst; j < i; ++j)
+			{
+				List<Subgroup> aGroup = aGroups.get(aMembersHashes[j]);
+				if (aGroup == null)
+					aGroups.put(aMembersHashes[j], aGroup = new ArrayList<Subgroup>(2));
+				else if (aGroup.size() == 1)
+					aCandidates.add(aGroup);
+				aGroup.add(itsSubgroups[j]);
+			}
+			aFirst = i;
+		}
+
+		invokeAll(new Range(aCandidates.size())
+		{
+			@Override
+			void run(int theIndex)
+			{
+				SubgroupSet.markAlternativeDescriptionsProcess(aCandidates.get(theIndex));
+			}
+		});
+	}
+
+	// compares false for NaN statistics, so such a Subgroup is a run by itself
+	private static boolean hasSameStatistics(Subgroup theFirst, Subgroup theSecond)
+	{
+		return (theFirst.getCoverage() == theSecond.getCoverage()) &&
+			(theFirst.getMeasureValue() == theSecond.getMeasureValue()) &&
+			(theFirst.getSecondaryStatistic() == theSecond.getSecondaryStatistic()) &&
+			(theFirst.getTertiaryStatistic() == theSecond.getTertiaryStatistic());
+	}
+
+	/*
+	 * the distinct Conditions of all Subgroups, coded in canonical order, so
+	 * the codes of a Subgroup are ascending, and the bounds on a Column with
+	 * the same Operator have consecutive codes
+	 * the trie compares codes, not Conditions, Condition.compareTo() is only
+	 * used to create the Dictionary
+	 */
+	private static final class Dictionary
+	{
+		private static final byte NOT_NUMERIC = 0;
+		private static final byte LOWER_BOUND = 1; // >=
+		private static final byte UPPER_BOUND = 2; // <=
+		private static final byte OTHER_NUMERIC = 3;
+
+		// per Subgroup
+		private final int[][] itsCodes;
+		// per code, the codes of its Column and Operator are [first, last]
+		private final int[] itsFirst;
+		private final int[] itsLast;
+		private final byte[] itsBounds;
+		private final float[] itsValues;
+
+		Dictionary(Subgroup[] theSubgroups)
+		{
+			Condition[][] aConditions = new Condition[theSubgroups.length][];
+			int aSize = 0;
+			for (int i = 0; i < theSubgroups.length; ++i)
+			{
+				aConditions[i] = ConditionListBuilder.toCanonicalOrder(theSubgroups[i].getConditions());
+				aSize += aConditions[i].length;
+			}
+
+			Condition[] aDistinct = new Condition[aSize];
+			aSize = 0;
+			for (Condition[] ca : aConditions)
+				for (Condition c : ca)
+					aDistinct[aSize++] = c;
+			Arrays.sort(aDistinct);
+			int aNrDistinct = 0;
+			for (Condition c : aDistinct)
+				if (aNrDistinct == 0 || aDistinct[aNrDistinct - 1].compareTo(c) != 0)
+					aDistinct[aNrDistinct++] = c;
+			aDistinct = Arrays.copyOf(aDistinct, aNrDistinct);
+
+			itsCodes = new int[theSubgroups.length][];
+			for (int i = 0; i < theSubgroups.length; ++i)
+			{
+				int[] aCodes = new int[aConditions[i].length];
+				for (int j = 0; j < aCodes.length; ++j)
+					aCodes[j] = Arrays.binarySearch(aDistinct, aConditions[i][j]);
+				itsCodes[i] = aCodes;
+			}
+
+			itsFirst = new int[aNrDistinct];
+			itsLast = new int[aNrDistinct];
+			itsBounds = new byte[aNrDistinct];
+			itsValues = new float[aNrDistinct];
+			for (int i = 0, aFirst = 0; i < aNrDistinct; ++i)
+			{
+				Condition c = aDistinct[i];
+				if (c.getColumn() != aDistinct[aFirst].getColumn() || c.getOperator() != aDistinct[aFirst].getOperator())
+					aFirst = i;
+				itsFirst[i] = aFirst;
+				if (i == aNrDistinct - 1 || c.getColumn() != aDistinct[i + 1].getColumn() || c.getOperator() != aDistinct[i + 1].getOperator())
+					Arrays.fill(itsLast, aFirst, i + 1, i);
+
+				if (c.getColumn().getType() != AttributeType.NUMERIC)
+					itsBounds[i] = NOT_NUMERIC;
+				else if (c.getOperator() == Operator.GREATER_THAN_OR_EQUAL)
+					itsBounds[i] = LOWER_BOUND;
+				else if (c.getOperator() == Operator.LESS_THAN_OR_EQUAL)
+					itsBounds[i] = UPPER_BOUND;
+				else
+					itsBounds[i] = OTHER_NUMERIC;
+				if (itsBounds[i] != NOT_NUMERIC)
+					itsValues[i] = c.getNumericValue();
+			}
+		}
+
+		// as Condition.strictlySpecialises(), for codes of the same Column
+		// and Operator, true for any other numeric Operator
+		boolean strictlySpecialises(int theCode, int theOtherCode)
+		{
+			switch (itsBounds[theCode])
+			{
+				case NOT_NUMERIC : return false;
+				case LOWER_BOUND : return !(itsValues[theCode] <= itsValues[theOtherCode]);
+				case UPPER_BOUND : return !(itsValues[theCode] >= itsValues[theOtherCode]);
+				default : return true;
+			}
+		}
+	}
+
+	/*
+	 * a node of the prefix trie, the path from the root gives the codes of
+	 * a canonical ConditionList, the indexes are those of the Subgroups with
+	 * that ConditionList
+	 */
+	private static final class Node
+	{
+		// of the children, ascending
+		private int[] itsCodes = NONE;
+		private Node[] itsChildren = null;
+		private int itsNrChildren = 0;
+		private int[] itsIndexes = NONE;
+
+		void insert(int[] theCodes, int theDepth, int theIndex)
+		{
+			if (theDepth == theCodes.length)
+			{
+				itsIndexes = Arrays.copyOf(itsIndexes, itsIndexes.length + 1);
+				itsIndexes[itsIndexes.length - 1] = theIndex;
+				return;
+			}
+
+			int aCode = theCodes[theDepth];
+			int i = Arrays.binarySearch(itsCodes, 0, itsNrChildren, aCode);
+			if (i < 0)
+			{
+				i = -i - 1;
+				if (itsNrChildren == itsCodes.length)
+				{
+					int aCapacity = Math.max(2, 2 * itsNrChildren);
+					itsCodes = Arrays.copyOf(itsCodes, aCapacity);
+					itsChildren = (itsChildren == null) ? new Node[aCapacity] : Arrays.copyOf(itsChildren, aCapacity);
+				}
+				System.arraycopy(itsCodes, i, itsCodes, i + 1, itsNrChildren - i);
+				System.arraycopy(itsChildren, i, itsChildren, i + 1, itsNrChildren - i);
+				itsCodes[i] = aCode;
+				itsChildren[i] = new Node();
+				++itsNrChildren;
+			}
+			itsChildren[i].insert(theCodes, theDepth + 1, theIndex);
+		}
+
+		// position of the first child with a code of at least theCode
+		int ceiling(int theCode)
+		{
+			int i = Arrays.binarySearch(itsCodes, 0, itsNrChildren, theCode);
+			return (i < 0) ? (-i - 1) : i;
+		}
+	}
+
+	/*
+	 * looks up the generalisations of a single Subgroup in the trie
+	 * the trie walk finds a superset of the generalisations, the Subgroups
+	 * found are checked using Subgroup.strictlySpecialises(), which is not
+	 * transitive, so all generalisations before itsSelf are collected
+	 */
+	private final class Lookup
+	{
+		private final Dictionary itsDictionary;
+		private final int[] itsCodes;
+		private final int itsSelf;
+		private final Subgroup itsSubgroup;
+		private final float itsMinimumImprovement;
+		private final List<Integer> itsResult = new ArrayList<Integer>();
+
+		Lookup(Dictionary theDictionary, int theSelf, float theMinimumImprovement)
+		{
+			itsDictionary = theDictionary;
+			itsCodes = theDictionary.itsCodes[theSelf];
+			itsSelf = theSelf;
+			itsSubgroup = itsSubgroups[theSelf];
+			itsMinimumImprovement = theMinimumImprovement;
+		}
+
+		/*
+		 * theNode is reached using Conditions that are each equal to, or
+		 * strictly specialised by, one of itsCodes before theFrom
+		 * adds the Subgroups of theNode, and the Nodes below it, that are
+		 * generalisations with a quality of at least that of itsSubgroup
+		 * minus itsMinimumImprovement, and come before itsSelf
+		 * returns true as soon as such a generalisation comes after itsSelf
+		 */
+		boolean collect(Node theNode, int theFrom)
+		{
+			for (int i : theNode.itsIndexes)
+			{
+				if (i == itsSelf)
+					continue;
+				Subgroup s = itsSubgroups[i];
+				if (itsSubgroup.strictlySpecialises(s) && itsSubgroup.getMeasureValue() <= s.getMeasureValue() + itsMinimumImprovement)
+				{
+					if (i > itsSelf)
+						return true;
+					itsResult.add(i);
+				}
+			}
+
+			for (int i = theFrom; i < itsCodes.length && theNode.itsNrChildren > 0; ++i)
+			{
+				int aCode = itsCodes[i];
+				int j = theNode.ceiling(aCode);
+				if (j < theNode.itsNrChildren && theNode.itsCodes[j] == aCode && collect(theNode.itsChildren[j], i + 1))
+					return true;
+
+				// other Conditions on the Column, with the same Operator
+				if (itsDictionary.itsBounds[aCode] == Dictionary.NOT_NUMERIC)
+					continue;
+				int aLast = itsDictionary.itsLast[aCode];
+				for (j = theNode.ceiling(itsDictionary.itsFirst[aCode]); j < theNode.itsNrChildren && theNode.itsCodes[j] <= aLast; ++j)
+					if (theNode.itsCodes[j] != aCode && itsDictionary.strictlySpecialises(aCode, theNode.itsCodes[j]) && collect(theNode.itsChildren[j], i + 1))
+						return true;
+			}
+
+			return false;
+		}
+
+		int[] getResult()
+		{
+			int[] anIndexes = new int[itsResult.size()];
+			for (int i = 0; i < anIndexes.length; ++i)
+				anIndexes[i] = itsResult.get(i);
+			return anIndexes;
+		}
+	}
+
+	// runs run(i) for all i in [0, size), in contiguous ranges per task
+	private abstract class Range
+	{
+		private final int itsSize;
+
+		Range()               { this(itsSubgroups.length); }
+		Range(int theSize)    { itsSize = theSize; }
+
+		abstract void run(int theIndex);
+	}
+
+	private void invokeAll(final Range theRange)
+	{
+		int aSize = theRange.itsSize;
+		if (aSize == 0)
+			return;
+
+		int aNrTasks = Math.min(aSize, itsNrThreads * NR_TASKS_PER_THREAD);
+		List<Callable<Void>> aTasks = new ArrayList<Callable<Void>>(aNrTasks);
+		for (int t = 0; t < aNrTasks; ++t)
+		{
+			final int aFrom = (int) (((long) aSize * t) / aNrTasks);
+			final int aTo = (int) (((long) aSize * (t + 1)) / aNrTasks);
+			aTasks.add(new Callable<Void>()
+			{
+				@Override
+				public Void call()
+				{
+					for (int i = aFrom; i < aTo; ++i)
+						theRange.run(i);
+					return null;
+				}
+			});
+		}
+
+		ExecutorService es = Executors.newFixedThreadPool(Math.min(itsNrThreads, aNrTasks));
+		try
+		{
+			for (Future<Void> f : es.invokeAll(aTasks))
+				f.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			es.shutdownNow();
+		}
+	}
+}
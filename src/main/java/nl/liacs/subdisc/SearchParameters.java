@@ -15,8 +15,10 @@ public class SearchParameters implements XMLNodeInterface
 	public static final float ALPHA_DEFAULT = 0.5f;
 	public static final float BETA_DEFAULT = 1.0f;
 	public static final int POST_PROCESSING_COUNT_DEFAULT = 20;
+	// a quarter of the maximum heap size, see CoverBasedSubgroupSelection
+	public static final long COVER_BASED_MEMORY_BUDGET_DEFAULT = -1L;
 
-	// when adding/removing members be sure to update addNodeTo() and loadData()
+	// when adding/removing members be sure to update addNodeTo(), loadData() and copy()
 	private TargetConcept	itsTargetConcept;
 	private QM		itsQualityMeasure;
 	private float		itsQualityMeasureMinimum;
@@ -37,6 +39,9 @@ public class SearchParameters implements XMLNodeInterface
 	private NumericStrategy	itsNumericStrategy;
 	private int		itsNrBins;
 	private int		itsNrThreads;
+	private MiningMode	itsMiningMode = MiningMode.getDefault();
+	private DensityEstimator itsDensityEstimator = DensityEstimator.getDefault();
+	private long		itsCoverBasedMemoryBudget = COVER_BASED_MEMORY_BUDGET_DEFAULT;
 
 	private float		itsAlpha;
 	private float		itsBeta;
@@ -69,6 +74,46 @@ public class SearchParameters implements XMLNodeInterface
 		itsPostProcessingDoAutoRun = true;
 	}
 
+	/**
+	 * Creates a shallow copy of these SearchParameters, the
+	 * {@link TargetConcept} and beam seed are shared with the original.
+	 *
+	 * @return a copy of these SearchParameters.
+	 */
+	public SearchParameters copy()
+	{
+		SearchParameters aCopy = new SearchParameters();
+		aCopy.itsTargetConcept = itsTargetConcept;
+		aCopy.itsQualityMeasure = itsQualityMeasure;
+		aCopy.itsQualityMeasureMinimum = itsQualityMeasureMinimum;
+		aCopy.itsSearchDepth = itsSearchDepth;
+		aCopy.itsMinimumCoverage = itsMinimumCoverage;
+		aCopy.itsMaximumCoverageFraction = itsMaximumCoverageFraction;
+		aCopy.itsMinimumSupport = itsMinimumSupport;
+		aCopy.itsMaximumSubgroups = itsMaximumSubgroups;
+		aCopy.itsFilterSubgroups = itsFilterSubgroups;
+		aCopy.itsMinimumImprovement = itsMinimumImprovement;
+		aCopy.itsMaximumTime = itsMaximumTime;
+		aCopy.itsSearchStrategy = itsSearchStrategy;
+		aCopy.itsSearchStrategyWidth = itsSearchStrategyWidth;
+		aCopy.itsNominalSets = itsNominalSets;
+		aCopy.itsNumericOperatorSetting = itsNumericOperatorSetting;
+		aCopy.itsNumericStrategy = itsNumericStrategy;
+		aCopy.itsNrBins = itsNrBins;
+		aCopy.itsNrThreads = itsNrThreads;
+		aCopy.itsMiningMode = itsMiningMode;
+		aCopy.itsDensityEstimator = itsDensityEstimator;
+		aCopy.itsCoverBasedMemoryBudget = itsCoverBasedMemoryBudget;
+		aCopy.itsAlpha = itsAlpha;
+		aCopy.itsBeta = itsBeta;
+		aCopy.itsPostProcessingDoAutoRun = itsPostProcessingDoAutoRun;
+		aCopy.itsPostProcessingCount = itsPostProcessingCount;
+		aCopy.itsOverallRankingLoss = itsOverallRankingLoss;
+		aCopy.itsBeamSeed = itsBeamSeed;
+
+		return aCopy;
+	}
+
 	// FIXME MM -> NONE OF THESE METHODS PERFORM INPUT VALIDATION
 	/* QUALITY MEASURE */
 	public TargetConcept getTargetConcept() { return itsTargetConcept; }
@@ -154,6 +199,13 @@ public class SearchParameters implements XMLNodeInterface
 	public void setNrBins(int theNrBins)				{ itsNrBins = theNrBins; }
 	public int getNrThreads()					{ return itsNrThreads; }
 	public void setNrThreads(int theNrThreads)			{ itsNrThreads = theNrThreads; }
+	public MiningMode getMiningMode()				{ return itsMiningMode; }
+	public void setMiningMode(MiningMode theMiningMode)		{ itsMiningMode = theMiningMode; }
+	public DensityEstimator getDensityEstimator()			{ return itsDensityEstimator; }
+	public void setDensityEstimator(DensityEstimator theDensityEstimator)	{ itsDensityEstimator = theDensityEstimator; }
+	// in bytes, < 0 for COVER_BASED_MEMORY_BUDGET_DEFAULT
+	public long getCoverBasedMemoryBudget()				{ return itsCoverBasedMemoryBudget; }
+	public void setCoverBasedMemoryBudget(long theBudget)		{ itsCoverBasedMemoryBudget = theBudget; }
 	public float getAlpha()						{ return itsAlpha; }
 	public void setAlpha(float theAlpha)				{ itsAlpha = theAlpha; }
 	public float getBeta()						{ return itsBeta; }
@@ -197,6 +249,9 @@ public class SearchParameters implements XMLNodeInterface
 		XMLNode.addNodeTo(aNode, "numeric_strategy", getNumericStrategy().GUI_TEXT);
 		XMLNode.addNodeTo(aNode, "nr_bins", getNrBins());
 		XMLNode.addNodeTo(aNode, "nr_threads", getNrThreads());
+		XMLNode.addNodeTo(aNode, "mining_mode", getMiningMode().GUI_TEXT);
+		XMLNode.addNodeTo(aNode, "density_estimator", getDensityEstimator().GUI_TEXT);
+		XMLNode.addNodeTo(aNode, "cover_based_memory_budget", getCoverBasedMemoryBudget());
 		XMLNode.addNodeTo(aNode, "alpha", getAlpha());
 		XMLNode.addNodeTo(aNode, "beta", getBeta());
 		XMLNode.addNodeTo(aNode, "post_processing_do_autorun", getPostProcessingDoAutoRun());
@@ -252,6 +307,12 @@ public class SearchParameters implements XMLNodeInterface
 				itsNrBins = Integer.parseInt(aSetting.getTextContent());
 			else if("nr_threads".equalsIgnoreCase(aNodeName))
 				itsNrThreads = Integer.parseInt(aSetting.getTextContent());
+			else if("mining_mode".equalsIgnoreCase(aNodeName))
+				itsMiningMode = MiningMode.fromString(aSetting.getTextContent());
+			else if("density_estimator".equalsIgnoreCase(aNodeName))
+				itsDensityEstimator = DensityEstimator.fromString(aSetting.getTextContent());
+			else if("cover_based_memory_budget".equalsIgnoreCase(aNodeName))
+				itsCoverBasedMemoryBudget = Long.parseLong(aSetting.getTextContent());
 			else if("alpha".equalsIgnoreCase(aNodeName))
 				itsAlpha = Float.parseFloat(aSetting.getTextContent());
 			else if("beta".equalsIgnoreCase(aNodeName))
@@ -293,6 +354,9 @@ public class SearchParameters implements XMLNodeInterface
 		addLine(sb, "numeric_strategy", getNumericStrategy().GUI_TEXT);
 		addLine(sb, "nr_bins", Integer.toString(getNrBins()));
 		addLine(sb, "nr_threads", Integer.toString(getNrThreads()));
+		addLine(sb, "mining_mode", getMiningMode().GUI_TEXT);
+		addLine(sb, "density_estimator", getDensityEstimator().GUI_TEXT);
+		addLine(sb, "cover_based_memory_budget", Long.toString(getCoverBasedMemoryBudget()));
 		addLine(sb, "alpha", Float.toString(getAlpha()));
 		addLine(sb, "beta", Float.toString(getBeta()));
 		addLine(sb, "post_processing_do_autorun", Boolean.toString(getPostProcessingDoAutoRun()));
@@ -1,5 +1,6 @@
 package nl.liacs.subdisc;
 
+import java.lang.ref.*;
 import java.nio.*;
 import java.util.*;
 import java.util.concurrent.locks.*;
@@ -10,7 +11,7 @@ import nl.liacs.subdisc.ConditionListBuilder.ConditionList;
 /**
  * A Subgroup contains a number of instances from the original data.
  * 
- * Subgroups are formed by, a number of, {@link Condition}s. Its members include : a {@link ConditionList}, a BitSet representing the instances included in
+ * Subgroups are formed by, a number of, {@link Condition}s. Its members include : a {@link ConditionList}, a {@link MemberSet} representing the instances included in
  * this Subgroup, the number of instances in this Subgroup (its coverage), an identifier and a {@link SubgroupSet}. It may also contain a {@link DAG}.
  * 
  * Note this class is not thread safe.
@@ -34,6 +35,10 @@ public class Subgroup implements Comparable<Subgroup>
 
 	// not strictly required - used for itsParentSet.getAllDataBitSetClone()
 	private final SubgroupSet itsParentSet;
+	// not strictly required - the Subgroup this one is a refinement of, its
+	// members are the starting point when re-creating killed members
+	// weak, so results and Candidates do not keep their ancestors alive
+	private final WeakReference<Subgroup> itsParent;
 
 	// added to simplify SubgroupDiscovery.checkAndLog(), currently can not rely on (hasQuality = !isNaN(itsMeasureValue)) as most model classes/quality
 	// measures do not check the validity of their result
@@ -48,9 +53,14 @@ public class Subgroup implements Comparable<Subgroup>
 	private double itsTertiaryStatistic  = 0.0;
 
 	// not strictly required - but easier in current setup, might change one day
-	private BitSet itsMembers;
+	// compressed, so memory use depends on itsCoverage, not on the number of rows
+	private MemberSet itsMembers;
 	// required for members (can be null at any moment, so not a ReadWriteLock)
 	private final Lock itsMembersLock = new ReentrantLock();
+	// set while re-created members are registered with the MemberCache
+	private MemberCache.Entry itsCacheEntry = null;
+	// set on access, cleared by MemberCache, an unsynchronised hint only
+	private boolean isMembersReferenced = false;
 
 	// not strictly required - but easier in current setup, might change one day
 	private int itsID = 0;
@@ -93,6 +103,7 @@ public class Subgroup implements Comparable<Subgroup>
 		// sets itsMembers and itsCoverage
 		constructorMembersInit(theMembers);
 		itsParentSet          = theSubgroupSet;
+		itsParent             = null;
 		hasQuality            = false;
 		itsMeasureValue       = 0.0;
 		// itsSecondaryStatistic
@@ -125,6 +136,7 @@ public class Subgroup implements Comparable<Subgroup>
 		// sets itsMembers and itsCoverage
 		constructorMembersInit(theMembers);
 		itsParentSet          = null;
+		itsParent             = null;
 		hasQuality            = false;
 		// itsMeasureValue
 		// itsSecondaryStatistic
@@ -160,6 +172,7 @@ public class Subgroup implements Comparable<Subgroup>
 		itsConditions         = ConditionListBuilder.createList(theSubgroup.itsConditions, theCondition);
 		// itsCoverage           set through constructorMembersInit below
 		itsParentSet          = theSubgroup.itsParentSet;
+		itsParent             = new WeakReference<Subgroup>(theSubgroup);
 		hasQuality            = false;                             // yes false
 		itsMeasureValue       = theSubgroup.itsMeasureValue;       // see NOTE
 		itsSecondaryStatistic = theSubgroup.itsSecondaryStatistic; // see NOTE
@@ -177,7 +190,7 @@ public class Subgroup implements Comparable<Subgroup>
 		// evaluate() should not modify input, else use getMembers()
 		int check             = theSubgroup.itsCoverage;
 		Column c              = theCondition.getColumn();
-		BitSet aParentBitSet  = theSubgroup.getMembersUnsafe();
+		BitSet aParentBitSet  = theSubgroup.getMembers();
 
 		constructorMembersInit(c.evaluate(aParentBitSet, theCondition));
 
@@ -189,8 +202,8 @@ public class Subgroup implements Comparable<Subgroup>
 		itsMembersLock.lock();
 		try
 		{
-			// TODO MM a copy of theMembers would be safer
-			itsMembers  = theMembers;
+			// MemberSet does not reference theMembers
+			itsMembers  = MemberSet.valueOf(theMembers);
 			itsCoverage = itsMembers.cardinality();
 		}
 		finally
@@ -216,7 +229,7 @@ public class Subgroup implements Comparable<Subgroup>
 		assert (theNewMembers != null);
 		assert (theNewMembers.cardinality() == theCoverage);
 		assert (theCoverage > 0);
-		assert (theCondition.getColumn().evaluate(getMembersUnsafe(), theCondition).cardinality() == theCoverage);
+		assert (theCondition.getColumn().evaluate(getMembers(), theCondition).cardinality() == theCoverage);
 
 		return new Subgroup(this, theCondition, theNewMembers, theCoverage);
 	}
@@ -226,6 +239,7 @@ public class Subgroup implements Comparable<Subgroup>
 		itsConditions = ConditionListBuilder.createList(theSubgroup.itsConditions, theCondition);
 		itsCoverage   = theCoverage;
 		itsParentSet  = theSubgroup.itsParentSet;
+		itsParent     = new WeakReference<Subgroup>(theSubgroup);
 		hasQuality    = false;
 		// itsMeasureValue
 		// itsSecondaryStatistic
@@ -243,7 +257,7 @@ public class Subgroup implements Comparable<Subgroup>
 		// itsMeasureValue, itsSecondaryStatistic, theSecondaryStatistic
 
 		itsMembersLock.lock();
-		try     { itsMembers = theNewSubgroupMembers; }
+		try     { itsMembers = MemberSet.valueOf(theNewSubgroupMembers); }
 		finally { itsMembersLock.unlock(); }
 	}
 
@@ -253,7 +267,7 @@ public class Subgroup implements Comparable<Subgroup>
 		// not a public method, assert is enough
 		assert (theAddedCondition != null);
 		assert (theChildCoverage > 0);
-		assert (theAddedCondition.getColumn().evaluate(getMembersUnsafe(), theAddedCondition).cardinality() == theChildCoverage);
+		assert (theAddedCondition.getColumn().evaluate(getMembers(), theAddedCondition).cardinality() == theChildCoverage);
 
 		return new Subgroup(this, theAddedCondition, theQuality, theSecondaryStatistic, theTertiaryStatistic, theChildCoverage);
 	}
@@ -263,6 +277,7 @@ public class Subgroup implements Comparable<Subgroup>
 		itsConditions         = ConditionListBuilder.createList(theParent.itsConditions, theAddedCondition);
 		itsCoverage           = theChildCoverage;
 		itsParentSet          = theParent.itsParentSet;
+		itsParent             = new WeakReference<Subgroup>(theParent);
 		hasQuality            = true;
 		itsMeasureValue       = theQuality;
 		itsSecondaryStatistic = theSecondaryStatistic;
@@ -281,34 +296,76 @@ public class Subgroup implements Comparable<Subgroup>
 	// does not return a clone, but the actual itsMembers
 	// re-instantiates itsMembers, not in separate method, as it requires
 	// extra Lock logic
-	private final BitSet getMembersUnsafe()
+	private final MemberSet getMembersUnsafe()
 	{
+		MemberSet aMembers;
+		MemberCache.Entry anEntry = null;
+
 		itsMembersLock.lock();
 		try
 		{
-			if (itsMembers == null)
-			{
-				// the default Constructor ensures SubgroupSet
-				BitSet b = itsParentSet.getAllDataBitSetClone();
+			// plain write, a lost update only affects the eviction order
+			if (!isMembersReferenced)
+				isMembersReferenced = true;
 
-				// does nothing when ConditionList is empty
-				for (int i = 0, j = itsConditions.size(); i < j; ++i)
-				{
-					Condition c = itsConditions.get(i);
-					// FIXME MM for now leave 'true' in git, uses original code
-					//       so far, profiling showed not much difference
-//					if (true) {
-					b = c.getColumn().evaluate(b, c);
-//					} else { c.getColumn().doNotUse(b, c, true); }
-				}
+			if (itsMembers != null)
+				// within lock, so no other Thread can null itsMembers
+				return itsMembers;
+
+			// the closest ancestor that has its members, its
+			// Conditions are the first of itsConditions in search order
+			// an ancestor that was garbage collected ends the search
+			Subgroup anAncestor = getParent();
+			MemberSet aStart = null;
+			while ((anAncestor != null) && ((aStart = anAncestor.peekMembers()) == null))
+				anAncestor = anAncestor.getParent();
+
+			assert ((aStart == null) || (anAncestor.getDepth() == 0) || (anAncestor.itsConditions.get(anAncestor.getDepth() - 1) == itsConditions.get(anAncestor.getDepth() - 1)));
+
+			// the default Constructor ensures SubgroupSet
+			BitSet b = (aStart == null) ? itsParentSet.getAllDataBitSetClone() : aStart.toBitSet();
 
-				// only assign to itsMembers when aBitSet is in its final state, avoid intermediate non-null state of itsMembers
-				itsMembers = b;
-				// coverage should not have changed
-				assert (itsCoverage == itsMembers.cardinality());
+			// does nothing when ConditionList is empty
+			for (int i = (aStart == null) ? 0 : anAncestor.getDepth(), j = itsConditions.size(); i < j; ++i)
+			{
+				Condition c = itsConditions.get(i);
+				// FIXME MM for now leave 'true' in git, uses original code
+				//       so far, profiling showed not much difference
+//				if (true) {
+				b = c.getColumn().evaluate(b, c);
+//				} else { c.getColumn().doNotUse(b, c, true); }
 			}
 
-			// within lock, so no other Thread can null itsMembers
+			// only assign to itsMembers when aBitSet is in its final state, avoid intermediate non-null state of itsMembers
+			itsMembers = MemberSet.valueOf(b);
+			// coverage should not have changed
+			assert (itsCoverage == itsMembers.cardinality());
+
+			aMembers = itsMembers;
+			if (itsCacheEntry == null)
+				itsCacheEntry = anEntry = new MemberCache.Entry(this, aMembers.getMemoryUsage());
+		}
+		finally
+		{
+			itsMembersLock.unlock();
+		}
+
+		// outside the lock, MemberCache may evict members of other Subgroups
+		if (anEntry != null)
+			MemberCache.add(anEntry);
+
+		return aMembers;
+	}
+
+	// the current members, or null, does not re-create killed members
+	// NOTE locks are only taken from descendant to ancestor, no deadlock
+	private final MemberSet peekMembers()
+	{
+		itsMembersLock.lock();
+		try
+		{
+			if (itsMembers != null && !isMembersReferenced)
+				isMembersReferenced = true;
 			return itsMembers;
 		}
 		finally
@@ -317,12 +374,41 @@ public class Subgroup implements Comparable<Subgroup>
 		}
 	}
 
+	// called by MemberCache only, theEntry is ignored if the members were
+	// killed, and possibly re-created, after it was evicted
+	void evictMembers(MemberCache.Entry theEntry)
+	{
+		itsMembersLock.lock();
+		try
+		{
+			if (itsCacheEntry == theEntry)
+			{
+				itsMembers = null;
+				itsCacheEntry = null;
+			}
+		}
+		finally
+		{
+			itsMembersLock.unlock();
+		}
+	}
+
+	// called by MemberCache only, returns whether the flag was set
+	boolean clearMembersReferenced()
+	{
+		boolean isReferenced = isMembersReferenced;
+		isMembersReferenced = false;
+		return isReferenced;
+	}
+
 	public ConditionList getConditions() { return itsConditions; }
 	public int getDepth()                 { return itsConditions.size(); }
 	// could be out of sync with itsMembers in between addCondition() update
 	public int getCoverage()              { return itsCoverage; }
 	// used to determine TP/FP
 	public SubgroupSet getParentSet()     { return itsParentSet; }
+	// null if this Subgroup is not a refinement, or its parent is discarded
+	Subgroup getParent()                  { return (itsParent == null) ? null : itsParent.get(); }
 
 	boolean hasQuality()                                            { return hasQuality; }
 	public double getMeasureValue()                                 { return itsMeasureValue; }
@@ -336,8 +422,9 @@ public class Subgroup implements Comparable<Subgroup>
 	 * Returns a {@link BitSet} where each set bits represents a member of
 	 * this Subgroup.
 	 * <p>
-	 * Each returned BitSet is a new clone of the actual members, so
-	 * changing the returned BitSet has no effect on this Subgroup.
+	 * Each returned BitSet is newly created from the compressed
+	 * {@link MemberSet}, so changing the returned BitSet has no effect on
+	 * this Subgroup.
 	 * This is unlikely to be a performance penalty in most situations, but
 	 * some may want to cache the return BitSet.
 	 * Most callers need the returned BitSet for nothing more than looping
@@ -345,7 +432,9 @@ public class Subgroup implements Comparable<Subgroup>
 	 *
 	 * @return a BitSet representing this Subgroups members.
 	 */
-	public BitSet getMembers() { return (BitSet) getMembersUnsafe().clone(); }
+	public BitSet getMembers() { return getMembersUnsafe().toBitSet(); }
+	// for callers that only read the members, avoids creating a BitSet
+	MemberSet getMemberSet()   { return getMembersUnsafe(); }
 	// MM: a lot of code calls this method, but the returned BitSet should never be changed by any as it 'removes' the Subgroup members from the clone
 	//     check callers, as BitSetI purposefully crashes BiSet modifying calls
 	// BinaryTable                 DONE get(i)                (nextSetBit(i) only for new Miki code, which is replaced by Miki.java)
@@ -383,7 +472,24 @@ public class Subgroup implements Comparable<Subgroup>
 	 * Refinements that is evaluated for the Subgroup.
 	 * So the re-evaluation does not substantially impact performance
 	 */
-	void killMembers()                { itsMembersLock.lock(); try { itsMembers = null; } finally { itsMembersLock.unlock(); }}
+	void killMembers()
+	{
+		itsMembersLock.lock();
+		try
+		{
+			itsMembers = null;
+			// registered members no longer count towards the budget
+			if (itsCacheEntry != null)
+			{
+				MemberCache.remove(itsCacheEntry);
+				itsCacheEntry = null;
+			}
+		}
+		finally
+		{
+			itsMembersLock.unlock();
+		}
+	}
 	void reviveMembers()              { getMembersUnsafe(); }
 	public boolean covers(int theRow) { return getMembersUnsafe().get(theRow); }
 
@@ -483,7 +589,7 @@ public class Subgroup implements Comparable<Subgroup>
 
 		itsMembersLock.lock();
 		// throughout countCommon() itsMembers must not be modified
-		try     { return countCommon(getMembersUnsafe(), theBitSet); }
+		try     { return countCommon(getMembers(), theBitSet); }
 		finally { itsMembersLock.unlock(); }
 	}
 
@@ -528,7 +634,7 @@ public class Subgroup implements Comparable<Subgroup>
 			return 0.0;
 
 		// TODO MM - USE countCommon(aTempBitSet, getMembersUnsafe())
-		aTempBitSet.and(getMembersUnsafe());
+		aTempBitSet.and(getMembers());
 		// NOTE now aTempBitSet.cardinality() = aHeadBody
 
 		int aTotalTargetCoverage = itsParentSet.getTotalTargetCoverage();
@@ -553,7 +659,7 @@ public class Subgroup implements Comparable<Subgroup>
 			return 0.0;
 
 		// TODO MM - USE countCommon(aTempBitSet, getMembersUnsafe())
-		aTempBitSet.and(getMembersUnsafe());
+		aTempBitSet.and(getMembers());
 		// NOTE now aTempBitSet.cardinality() = aHeadBody
 
 		int aTotalCoverage = itsParentSet.getTotalCoverage();
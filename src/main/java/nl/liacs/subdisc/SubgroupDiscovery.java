@@ -11,6 +11,7 @@ import javax.swing.*;
 
 import nl.liacs.subdisc.Column.DomainMapNumeric;
 import nl.liacs.subdisc.Column.ValueCount;
+import nl.liacs.subdisc.Column.ValueCountStatistics;
 import nl.liacs.subdisc.Column.ValueCountTP;
 import nl.liacs.subdisc.ColumnConditionBasesBuilder.ColumnConditionBases;
 import nl.liacs.subdisc.ColumnConditionBasesBuilder.ColumnConditionBasesBinary;
@@ -75,6 +76,10 @@ public class SubgroupDiscovery
 	static int     TEMPORARY_CODE_NR_SPLIT_POINTS = -1;
 	static boolean TEMPORARY_CODE_USE_EQUAL_WIDTH = false;
 
+	// maximum number of bytes for the Condition extents of all Columns, see
+	// Column.buildExtents(), use 0 to disable the vertical layout
+	static long EXTENT_CACHE_BYTES = 64L << 20;
+
 	// FIXME remove itsSearchParameters, to not allow changes after construction
 	private final SearchParameters itsSearchParameters;
 	private final Table itsTable;
@@ -90,8 +95,13 @@ public class SubgroupDiscovery
 
 	// target concept type-specific information, including base models
 	private BitSet itsBinaryTarget;                 // SINGLE_NOMINAL
+	private long[] itsBinaryTargetWords;            // SINGLE_NOMINAL, see CountBuffer
 	private Column itsTargetRankings;               // SINGLE_NOMINAL (label ranking)
 	private Column itsNumericTarget;                // SINGLE_NUMERIC
+	private int itsNumericTargetCount;              // SINGLE_NUMERIC, see isDirectSingleNumeric()
+	private double itsNumericTargetSum;             // SINGLE_NUMERIC, see isDirectSingleNumeric()
+	private double itsNumericTargetSquares;         // SINGLE_NUMERIC, see isDirectSingleNumeric()
+	private boolean useValueCountStatistics;        // SINGLE_NUMERIC, see isDirectSingleNumeric()
 	private Column itsPrimaryColumn;                // DOUBLE_CORRELATION / DOUBLE_REGRESSION / DOUBLE_BINARY / SCAPE
 	private Column itsSecondaryColumn;              // DOUBLE_CORRELATION / DOUBLE_REGRESSION / DOUBLE_BINARY / SCAPE
 	private CorrelationMeasure itsBaseCM;           // DOUBLE_CORRELATION
@@ -102,6 +112,9 @@ public class SubgroupDiscovery
 
 	private LocalKnowledge itsLocalKnowledge;       // PROPENSITY SCORE BASED
 	private GlobalKnowledge itsGlobalKnowledge;     // PROPENSITY SCORE BASED
+	// PROPENSITY SCORE BASED, the logistic regression models by their
+	// explanatory variables, shared by all Threads
+	private final ConcurrentMap<Set<BitSet>, LogisticRegression> itsPropensityModels = new ConcurrentHashMap<Set<BitSet>, LogisticRegression>();
 
 	// only use in disabled Cook code
 	private int itsBoundSevenCount;
@@ -119,6 +132,8 @@ public class SubgroupDiscovery
 	private AtomicLong itsCandidateCount = new AtomicLong(0);
 	private CandidateQueue itsCandidateQueue;
 	private final SubgroupSet itsResult;
+	// SINGLE_NOMINAL, see isDirectSingleBinary()
+	private final ThreadLocal<CountBuffer> itsCountBuffer = new ThreadLocal<CountBuffer>();
 
 	// for mining
 	private long itsEndTime = Long.MIN_VALUE;
@@ -171,12 +186,20 @@ public class SubgroupDiscovery
 		BitSet aBitSet = new BitSet(itsTable.getNrRows());
 		aBitSet.set(0, itsTable.getNrRows());
 		itsBinaryTarget = aTC.getPrimaryTarget().evaluate(aBitSet, aCondition);
+		itsBinaryTargetWords = Arrays.copyOf(itsBinaryTarget.toLongArray(), (itsTable.getNrRows() + 63) >>> 6);
 		itsResult = new SubgroupSet(itsSearchParameters.getMaximumSubgroups(), theSelection, itsTable.getNrRows(), itsBinaryTarget);
 	}
 
 	//SINGLE_NUMERIC, float > signature differs from multi-label constructor
 	public SubgroupDiscovery(SearchParameters theSearchParameters, Table theTable, BitSet theSelection, float theAverage, JFrame theMainWindow)
 	{
+		this(theSearchParameters, theTable, theSelection, theAverage, theMainWindow, true);
+	}
+
+	//SINGLE_NUMERIC, false evaluates all Candidates using Column.getStatistics(), see SingleNumericStatisticsTest
+	SubgroupDiscovery(SearchParameters theSearchParameters, Table theTable, BitSet theSelection, float theAverage, JFrame theMainWindow, boolean useValueCountStatistics)
+	{
+		this.useValueCountStatistics = useValueCountStatistics;
 		itsSearchParameters = theSearchParameters;
 		itsTable = theTable;
 		itsSelection = theSelection;
@@ -189,6 +212,18 @@ public class SubgroupDiscovery
 
 		Statistics aStatistics = itsNumericTarget.getStatistics(theSelection, null, false, QM.requiredStats(itsSearchParameters.getQualityMeasure()).contains(Stat.COMPL));
 		aStatistics.print();
+
+		// totals of the selection, for direct computation of complements
+		for (int i = 0, j = itsTable.getNrRows(); i < j; ++i)
+		{
+			float f = itsNumericTarget.getFloat(i);
+			if (((theSelection == null) || theSelection.get(i)) && !Float.isNaN(f))
+			{
+				++itsNumericTargetCount;
+				itsNumericTargetSum += f;
+				itsNumericTargetSquares += ((double) f * f);
+			}
+		}
 		ProbabilityDensityFunction2 aPDF = new ProbabilityDensityFunction2(itsNumericTarget, theSelection);
 		aPDF.smooth();
 
@@ -350,6 +385,7 @@ public class SubgroupDiscovery
 		// compute base model
 		itsTargets = itsSearchParameters.getTargetConcept().getMultiTargets();
 		itsPDF_ND = new ProbabilityDensityFunction_ND(itsTargets.toArray(new Column[0]));
+		itsPDF_ND.setDensityEstimator(itsSearchParameters.getDensityEstimator());
 
 		itsQualityMeasure = null;
 		itsQualityMeasureMinimum = itsSearchParameters.getQualityMeasureMinimum();
@@ -462,6 +498,50 @@ public class SubgroupDiscovery
 
 		if (theNrThreads == 0)
 			theNrThreads = Runtime.getRuntime().availableProcessors();
+
+		if (itsSearchParameters.getMiningMode() == MiningMode.FORK_JOIN)
+			mineForkJoin(theNrThreads, aColumnConditionBasesSet, aFilter);
+		else
+			mineSemaphore(theNrThreads, aColumnConditionBasesSet, aFilter);
+
+		postMining(theBeginTime);
+
+		// statistics - will move to a separate RunTimeStats class of some sort
+		if (DEBUG_PRINTS_FOR_BEST && EnumSet.of(NumericStrategy.NUMERIC_BEST, NumericStrategy.NUMERIC_BEST_BINS).contains(itsSearchParameters.getNumericStrategy()))
+			Log.logCommandLine("TWO DIFFERENT BEST SUBGROUPS: " + itsBestPairsDiffer + "/" + itsBestPairsCount);
+		if (DEBUG_PRINTS_FOR_SKIP)
+			Log.logCommandLine("SKIP COUNT: " + itsSkipCount);
+		// super temporary - no boolean controlling logging output
+
+		if (DEBUG_PRINTS_FOR_BEST_INTERVAL && NumericStrategy.NUMERIC_INTERVALS == itsSearchParameters.getNumericStrategy())
+		{
+			Log.logCommandLine("BEST INTERVAL ERRORS: " + itsBestIntervalsDiffer  + "/" + itsBestIntervalsCount);
+
+			DecimalFormat df = new DecimalFormat("0", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			df.setMaximumFractionDigits(340); // 340 = DecimalFormat.DOUBLE_FRACTION_DIGITS
+
+			String txt = "quality=%s\tcoverage=%d\ttrue_positives=%d\t%s";
+			for (BestSubgroupsForCandidateSetAndResultSet b : itsBestIntervalsErrors)
+			{
+				Subgroup sg = b.itsBestForCandidateSet;
+				String tail = (sg == null) ? "null" : String.format(txt, df.format(sg.getMeasureValue()), sg.getCoverage(), (int) sg.getTertiaryStatistic(), sg);
+				Log.logCommandLine("brute force: " + tail);
+				//
+				sg   = b.itsBestForResultSet;
+				tail = (sg == null) ? "null" : String.format(txt, df.format(sg.getMeasureValue()), sg.getCoverage(), (int) sg.getTertiaryStatistic(), sg);
+				Log.logCommandLine("linear algo: " + tail);
+			}
+		}
+
+		// ease log parsing: always print, also maxDepth=1/non-level-wise search
+		if (DEBUG_PRINTS_NEXT_LEVEL_CANDIDATES)// && !itsCandidateQueueSizes.isEmpty())
+			Log.logCommandLine("NR CANDIDATES FOR NEXT LEVEL: " + itsCandidateQueueSizes);
+		for (int topK : FOR_REAL_PRINTS)
+			itsResult.postProcessGetCoverRedundancyAndJointEntropy(topK, itsSearchParameters.getNrThreads());
+	}
+
+	private final void mineSemaphore(int theNrThreads, List<ColumnConditionBases> theColumnConditionBasesSet, Fltr theFilter)
+	{
 		/*
 		 * essential multi-thread setup
 		 * uses semaphores so only nrThreads can run at the same time
@@ -498,15 +578,19 @@ public class SubgroupDiscovery
 			 * NOTE 2 although individual methods of CandidateQueue
 			 * are thread save, we need a compound action here
 			 * so synchronized is still needed
+			 *
+			 * NOTE 3 size() merges the next level of the beam search
+			 * strategies, so it is only called when the current
+			 * level is depleted
 			 */
 			Candidate aCandidate = null;
 			synchronized (itsCandidateQueue)
 			{
-				int aTotalSize = itsCandidateQueue.size();
 				boolean alone = (s.availablePermits() == theNrThreads-1);
+				int aTotalSize = 0;
 				if (itsCandidateQueue.currentLevelQueueSize() > 0)
 					aCandidate = itsCandidateQueue.removeFirst();
-				else if ((aTotalSize > 0) && alone)
+				else if (((aTotalSize = itsCandidateQueue.size()) > 0) && alone)
 				{
 					aCandidate = itsCandidateQueue.removeFirst();
 					if (DEBUG_PRINTS_NEXT_LEVEL_CANDIDATES)
@@ -528,6 +612,13 @@ public class SubgroupDiscovery
 					break;
 			}
 
+			// the threshold may have risen since aCandidate was queued
+			if ((aCandidate != null) && isBelowThreshold(aCandidate.getOptimisticEstimate()))
+			{
+				s.release();
+				continue;
+			}
+
 			if (aCandidate != null)
 			{
 				Subgroup aSubgroup = aCandidate.getSubgroup();
@@ -536,7 +627,7 @@ public class SubgroupDiscovery
 				assert (aSubgroup.getDepth() < aSearchDepth);
 				assert (aSubgroup.getCoverage() > 1);
 
-				es.execute(new Test(aSubgroup, s, aColumnConditionBasesSet, aFilter));
+				es.execute(new Test(aSubgroup, s, theColumnConditionBasesSet, theFilter));
 			}
 			// queue was empty, but other threads were running, they
 			// may be in the process of adding new Candidates
@@ -562,41 +653,6 @@ public class SubgroupDiscovery
 		es.shutdown();
 		// wait for last active threads to complete
 		while (!es.isTerminated()) {};
-
-		postMining(theBeginTime);
-
-		// statistics - will move to a separate RunTimeStats class of some sort
-		if (DEBUG_PRINTS_FOR_BEST && EnumSet.of(NumericStrategy.NUMERIC_BEST, NumericStrategy.NUMERIC_BEST_BINS).contains(itsSearchParameters.getNumericStrategy()))
-			Log.logCommandLine("TWO DIFFERENT BEST SUBGROUPS: " + itsBestPairsDiffer + "/" + itsBestPairsCount);
-		if (DEBUG_PRINTS_FOR_SKIP)
-			Log.logCommandLine("SKIP COUNT: " + itsSkipCount);
-		// super temporary - no boolean controlling logging output
-
-		if (DEBUG_PRINTS_FOR_BEST_INTERVAL && NumericStrategy.NUMERIC_INTERVALS == itsSearchParameters.getNumericStrategy())
-		{
-			Log.logCommandLine("BEST INTERVAL ERRORS: " + itsBestIntervalsDiffer  + "/" + itsBestIntervalsCount);
-
-			DecimalFormat df = new DecimalFormat("0", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
-			df.setMaximumFractionDigits(340); // 340 = DecimalFormat.DOUBLE_FRACTION_DIGITS
-
-			String txt = "quality=%s\tcoverage=%d\ttrue_positives=%d\t%s";
-			for (BestSubgroupsForCandidateSetAndResultSet b : itsBestIntervalsErrors)
-			{
-				Subgroup sg = b.itsBestForCandidateSet;
-				String tail = (sg == null) ? "null" : String.format(txt, df.format(sg.getMeasureValue()), sg.getCoverage(), (int) sg.getTertiaryStatistic(), sg);
-				Log.logCommandLine("brute force: " + tail);
-				//
-				sg   = b.itsBestForResultSet;
-				tail = (sg == null) ? "null" : String.format(txt, df.format(sg.getMeasureValue()), sg.getCoverage(), (int) sg.getTertiaryStatistic(), sg);
-				Log.logCommandLine("linear algo: " + tail);
-			}
-		}
-
-		// ease log parsing: always print, also maxDepth=1/non-level-wise search
-		if (DEBUG_PRINTS_NEXT_LEVEL_CANDIDATES)// && !itsCandidateQueueSizes.isEmpty())
-			Log.logCommandLine("NR CANDIDATES FOR NEXT LEVEL: " + itsCandidateQueueSizes);
-		for (int topK : FOR_REAL_PRINTS)
-			itsResult.postProcessGetCoverRedundancyAndJointEntropy(topK);
 	}
 
 	private final ConditionBaseSet preMining(long theBeginTime, int theNrThreads)
@@ -658,12 +714,14 @@ public class SubgroupDiscovery
 		Log.logCommandLine(theConditionBaseSet.toString());
 	}
 
-	private static final void prepareData(BitSet theBinaryTarget, List<Column> theColumns)
+	// package-private, also used by CAUCMiner
+	static final void prepareData(BitSet theBinaryTarget, List<Column> theColumns)
 	{
 		//Log.logCommandLine("SubgroupDiscovery.prepareData(): do not change data until mining completes");
 		//Log.logCommandLine("  so no MetaDataWindow enable/disable attribute, attribute type, missing value\n");
 
 		Timer aTotal = new Timer();
+		AtomicLong aBudget = new AtomicLong(EXTENT_CACHE_BYTES);
 
 		for (Column c : theColumns)
 		{
@@ -674,6 +732,8 @@ public class SubgroupDiscovery
 				case NOMINAL :
 				{
 					c.buildSharedDomain();
+					if (c.getIsEnabled())
+						c.buildExtents(aBudget);
 					break;
 				}
 				case NUMERIC :
@@ -682,15 +742,19 @@ public class SubgroupDiscovery
 					Timer t = new Timer();
 					c.buildSorted(theBinaryTarget);
 					//Log.logCommandLine(t.getElapsedTimeString());
+					// after buildSorted(), extents use the sort index
+					if (c.getIsEnabled())
+						c.buildExtents(aBudget);
 					break;
 				}
 				case ORDINAL :
 				{
 					throw new AssertionError("SubgroupDiscovery.prepareData(): " + c.getType());
 				}
-				// nothing for now, but this will change for SINGLE_NOMINAL
+				// for SINGLE_NOMINAL, see CountBuffer
 				case BINARY :
 				{
+					c.buildBinaryWords();
 					break;
 				}
 				default :
@@ -721,10 +785,31 @@ public class SubgroupDiscovery
 				&& (s.getNumericStrategy() != NumericStrategy.NUMERIC_VIKAMINE_CONSECUTIVE_ALL && s.getNumericStrategy() != NumericStrategy.NUMERIC_VIKAMINE_CONSECUTIVE_BEST));
 	}
 
-	private static final void deleteSortData(List<Column> theColumns)
+	// SINGLE_NUMERIC measures that only need the count, sum and sum of
+	// squared deviations of the target, for the Subgroup and its complement,
+	// are computed directly from Column.ValueCountStatistics for all
+	// NumericStrategies handled by evaluateNumericRegular()
+	// the variances are computed in double precision from the sum of
+	// squares, so they may differ slightly from those of
+	// Column.getStatistics(), see SingleNumericStatisticsTest
+	private final boolean isDirectSingleNumeric()
+	{
+		SearchParameters s = itsSearchParameters;
+		if ((s.getTargetType() != TargetType.SINGLE_NUMERIC) || TEMPORARY_CODE || !useValueCountStatistics)
+			return false;
+
+		EnumSet<NumericStrategy> aRegular = EnumSet.of(NumericStrategy.NUMERIC_ALL, NumericStrategy.NUMERIC_BEST, NumericStrategy.NUMERIC_BEST_BINS, NumericStrategy.NUMERIC_BINS);
+		EnumSet<Stat> aSufficient = EnumSet.of(Stat.SUM, Stat.SSD, Stat.COMPL);
+		return aRegular.contains(s.getNumericStrategy()) && aSufficient.containsAll(QM.requiredStats(s.getQualityMeasure()));
+	}
+
+	static final void deleteSortData(List<Column> theColumns)
 	{
 		for (Column c : theColumns)
+		{
 			c.removeSorted();
+			c.removeExtents();
+		}
 	}
 
 	private final CandidateQueue getCandidateQueueFromBeamSeed()
@@ -874,24 +959,7 @@ public class SubgroupDiscovery
 				if (!skipThisCB && DEBUG_PRINTS_FOR_SKIP)
 					Log.logCommandLine(String.format("NO-SKIP\t%s AND %s%n", itsSubgroup, cb));
 
-				// using a TestFactory some of the if-checks could be removed
-				// ValueSets would never occur when !useBestValueSets
-				// for BestInterval the reasoning is the same
-				// TODO assert mutual-exclusivity of:
-				//   ClassLabel+EQUALS                v. ValueSet+ELEMENT_OF
-				//   regular+(EQUALS/BETWEEN,LEQ,GEQ) v. BestInterval+BETWEEN
-				if (ccb instanceof ColumnConditionBasesBinary)
-					evaluateBinary(itsSubgroup, aParentMembers, (ColumnConditionBasesBinary) ccb);
-				else if (ccb instanceof ColumnConditionBasesNominalEquals)
-					evaluateNominalEquals(itsSubgroup, aParentMembers, (ColumnConditionBasesNominalEquals) ccb);
-				else if (ccb instanceof ColumnConditionBasesNominalElementOf)
-					evaluateNominalElementOf(itsSubgroup, aParentMembers, (ColumnConditionBasesNominalElementOf) ccb);
-				else if (ccb instanceof ColumnConditionBasesNumericRegular)
-					evaluateNumericRegular(itsSubgroup, aParentMembers, (ColumnConditionBasesNumericRegular) ccb);
-				else if (ccb instanceof ColumnConditionBasesNumericIntervals)
-					evaluateNumericIntervals(itsSubgroup, aParentMembers, (ColumnConditionBasesNumericIntervals) ccb);
-				else
-					throw new AssertionError("Test.run() unexpected subclass of ColumnConditionBases");
+				evaluateColumnConditionBases(itsSubgroup, aParentMembers, ccb);
 			}
 
 			itsSemaphore.release();
@@ -1185,6 +1253,212 @@ public class SubgroupDiscovery
 		}
 	}
 
+	// using a TestFactory some of the if-checks could be removed
+	// ValueSets would never occur when !useBestValueSets
+	// for BestInterval the reasoning is the same
+	// TODO assert mutual-exclusivity of:
+	//   ClassLabel+EQUALS                v. ValueSet+ELEMENT_OF
+	//   regular+(EQUALS/BETWEEN,LEQ,GEQ) v. BestInterval+BETWEEN
+	private final void evaluateColumnConditionBases(Subgroup theParent, BitSet theParentMembers, ColumnConditionBases theColumnConditionBases)
+	{
+		ColumnConditionBases ccb = theColumnConditionBases;
+
+		if (ccb instanceof ColumnConditionBasesBinary)
+			evaluateBinary(theParent, theParentMembers, (ColumnConditionBasesBinary) ccb);
+		else if (ccb instanceof ColumnConditionBasesNominalEquals)
+			evaluateNominalEquals(theParent, theParentMembers, (ColumnConditionBasesNominalEquals) ccb);
+		else if (ccb instanceof ColumnConditionBasesNominalElementOf)
+			evaluateNominalElementOf(theParent, theParentMembers, (ColumnConditionBasesNominalElementOf) ccb);
+		else if (ccb instanceof ColumnConditionBasesNumericRegular)
+			evaluateNumericRegular(theParent, theParentMembers, (ColumnConditionBasesNumericRegular) ccb);
+		else if (ccb instanceof ColumnConditionBasesNumericIntervals)
+			evaluateNumericIntervals(theParent, theParentMembers, (ColumnConditionBasesNumericIntervals) ccb);
+		else
+			throw new AssertionError("Test.run() unexpected subclass of ColumnConditionBases");
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////
+	///// fork/join alternative for the Semaphore + Test setup above       /////
+	///// selected through SearchParameters.getMiningMode()                /////
+	////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////
+
+	/*
+	 * Only the calling Thread takes Candidates from itsCandidateQueue, so no
+	 * compound action on itsCandidateQueue needs to be synchronized.
+	 * Each Candidate becomes a RefineCandidate task, that forks one stealable
+	 * RefineColumn subtask per ColumnConditionBases, idle workers steal those
+	 * subtasks, so a single expensive Candidate no longer stalls the pool.
+	 *
+	 * For beam search strategies CandidateQueue.removeFirst() moves to the
+	 * next level when the current one is depleted, this may only happen after
+	 * all Candidates of the current level are refined, which is the only
+	 * place a level barrier is used.
+	 * For other strategies the number of Candidates in flight is bounded by
+	 * the number of Threads, such that the Candidate order is (roughly) kept.
+	 *
+	 * Finished RefineCandidates put themselves in a BlockingQueue, the calling
+	 * Thread blocks on it when no Candidate can be taken, no busy waiting.
+	 */
+	private final void mineForkJoin(int theNrThreads, List<ColumnConditionBases> theColumnConditionBasesSet, Fltr theFilter)
+	{
+		ForkJoinPool aPool = new ForkJoinPool(theNrThreads);
+		BlockingQueue<RefineCandidate> aDone = new LinkedBlockingQueue<RefineCandidate>();
+		boolean isBeam = itsSearchParameters.getSearchStrategy().isBeam();
+		int aMaxInFlight = isBeam ? Integer.MAX_VALUE : theNrThreads;
+		int aSearchDepth = itsSearchParameters.getSearchDepth();
+		int anInFlight = 0;
+
+		try
+		{
+			while (!isTimeToStop())
+			{
+				Candidate aCandidate = null;
+				if (anInFlight < aMaxInFlight)
+				{
+					if (itsCandidateQueue.currentLevelQueueSize() > 0)
+						aCandidate = itsCandidateQueue.removeFirst();
+					// level barrier: all previous Candidates are done
+					else if ((anInFlight == 0) && (itsCandidateQueue.size() > 0))
+						aCandidate = itsCandidateQueue.removeFirst();
+				}
+
+				// the threshold may have risen since aCandidate was queued
+				if ((aCandidate != null) && isBelowThreshold(aCandidate.getOptimisticEstimate()))
+					continue;
+
+				if (aCandidate != null)
+				{
+					Subgroup aSubgroup = aCandidate.getSubgroup();
+
+					// Candidate should not be in CandidateQueue
+					assert (aSubgroup.getDepth() < aSearchDepth);
+					assert (aSubgroup.getCoverage() > 1);
+
+					aPool.execute(new RefineCandidate(aSubgroup, theColumnConditionBasesSet, theFilter, aDone));
+					++anInFlight;
+					continue;
+				}
+
+				// nothing in flight, and nothing left to take
+				if (anInFlight == 0)
+					break;
+
+				awaitRefineCandidate(aDone);
+				--anInFlight;
+			}
+
+			// wait for last active tasks to complete, also after time-out
+			for ( ; anInFlight > 0; --anInFlight)
+				awaitRefineCandidate(aDone);
+		}
+		finally
+		{
+			aPool.shutdown();
+		}
+	}
+
+	private static final void awaitRefineCandidate(BlockingQueue<RefineCandidate> theDone)
+	{
+		RefineCandidate aDone;
+		try { aDone = theDone.take(); }
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+
+		// rethrows any Exception that occurred during refinement
+		aDone.join();
+	}
+
+	/*
+	 * Fork/join counterpart of Test, the Filter logic is identical, but it is
+	 * resolved up front, as the RefineColumn subtasks are run in any order.
+	 */
+	private final class RefineCandidate extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Subgroup itsSubgroup;
+		private final List<ColumnConditionBases> itsColumnConditionBasesSet;
+		private final Fltr itsFilter;
+		private final BlockingQueue<RefineCandidate> itsDone;
+
+		RefineCandidate(Subgroup theSubgroup, List<ColumnConditionBases> theColumnConditionBasesSet, Fltr theFilter, BlockingQueue<RefineCandidate> theDone)
+		{
+			itsSubgroup                = theSubgroup;
+			itsColumnConditionBasesSet = theColumnConditionBasesSet;
+			itsFilter                  = theFilter;
+			itsDone                    = theDone;
+		}
+
+		@Override
+		protected void compute()
+		{
+			try
+			{
+				// Subgroup.getMembers() creates expensive clone, reuse
+				// it is only read by all RefineColumn subtasks
+				BitSet aParentMembers = itsSubgroup.getMembers();
+				assert (aParentMembers.cardinality() == itsSubgroup.getCoverage());
+
+				ConditionList aConditionList = itsSubgroup.getConditions();
+				int nextSkipSG = itsFilter.nextSkip(aConditionList, 0);
+				Column toSkip = (nextSkipSG != Fltr.NOTHING_TO_SKIP ?  aConditionList.getCanonical(nextSkipSG).getColumn() : null);
+
+				List<RefineColumn> aSubtasks = new ArrayList<RefineColumn>(itsColumnConditionBasesSet.size());
+				for (ColumnConditionBases ccb : itsColumnConditionBasesSet)
+				{
+					ConditionBase cb = ccb.get(0);
+					if (cb == null) cb = ccb.get(1);
+					if (cb == null) cb = ccb.get(2);
+
+					if (cb.getColumn() == toSkip)
+					{
+						itsSkipCount.incrementAndGet();
+						nextSkipSG = itsFilter.nextSkip(aConditionList, nextSkipSG+1);
+						toSkip = (nextSkipSG != Fltr.NOTHING_TO_SKIP ?  aConditionList.getCanonical(nextSkipSG).getColumn() : null);
+						if (USE_SKIP_FILTER)
+							continue;
+					}
+
+					aSubtasks.add(new RefineColumn(itsSubgroup, aParentMembers, ccb));
+				}
+
+				invokeAll(aSubtasks);
+			}
+			finally
+			{
+				itsDone.add(this);
+			}
+		}
+	}
+
+	private final class RefineColumn extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Subgroup itsSubgroup;
+		private final BitSet itsParentMembers;
+		private final ColumnConditionBases itsColumnConditionBases;
+
+		RefineColumn(Subgroup theSubgroup, BitSet theParentMembers, ColumnConditionBases theColumnConditionBases)
+		{
+			itsSubgroup             = theSubgroup;
+			itsParentMembers        = theParentMembers;
+			itsColumnConditionBases = theColumnConditionBases;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (!isTimeToStop())
+				evaluateColumnConditionBases(itsSubgroup, itsParentMembers, itsColumnConditionBases);
+		}
+	}
+
 	////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////
 	///// when done                                                        /////
@@ -1194,7 +1468,7 @@ public class SubgroupDiscovery
 	private void postMining(long theBeginTime)
 	{
 		if (itsSearchParameters.getFilterSubgroups())
-			itsResult.filterSubgroups(itsSearchParameters.getMinimumImprovement());
+			itsResult.filterSubgroups(itsSearchParameters.getMinimumImprovement(), itsSearchParameters.getNrThreads());
 
 		int aNrSubgroups = getNumberOfSubgroups();
 
@@ -1293,7 +1567,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		assert (itsSearchParameters.getSearchStrategy() == SearchStrategy.COVER_BASED_BEAM_SELECTION);
 
 		// just for cover-based beam search post selection
-		SubgroupSet aSet = itsResult.postProcess(itsSearchParameters.getSearchStrategy());
+		SubgroupSet aSet = itsResult.postProcess(itsSearchParameters.getSearchStrategy(), itsSearchParameters.getNrThreads(), itsSearchParameters.getCoverBasedMemoryBudget());
 
 		// FIXME MM hack to deal with strange postProcess implementation
 		if (itsResult != aSet)
@@ -1344,10 +1618,10 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			// then the post-processing time can be included in the run time
 			Log.logCommandLine("Postprocessing subgroup " + s.getID());
 			double aTotalQuality = 0.0;
-			BinaryTable aSubgroupTable = itsBinaryTable.selectRows(s.getMembers());
+			FamilyScores aSubgroupScores = new FamilyScores(itsBinaryTable, s.getMembers());
 			for (int i = 0; i < aPostProcessingCount; i++)
 			{
-				Bayesian aLocalBayesian = new Bayesian(aSubgroupTable);
+				Bayesian aLocalBayesian = new Bayesian(aSubgroupScores);
 				aLocalBayesian.climb();
 				s.setDAG(aLocalBayesian.getDAG());
 				for (int j = 0; j < aPostProcessingCount; j++)
@@ -1421,6 +1695,12 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 	{
 		assert (theColumnConditionBases.get(0).getOperator() == Operator.EQUALS);
 
+		if (isDirectSingleBinary())
+		{
+			evaluateBinaryDirect(theParent, theParentMembers, theColumnConditionBases);
+			return;
+		}
+
 		int aParentCoverage = theParent.getCoverage();
 		// members-based domain, no empty Subgroups will occur
 		ConditionBase aConditionBase = theColumnConditionBases.get(0);
@@ -1465,6 +1745,167 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		}
 	}
 
+	// as evaluateBinary(), the counts for (c = false) and (c = true) are
+	// obtained in a single word-wise pass over the members, no BitSets are
+	// created, and Subgroups are only created when they will be used
+	private final void evaluateBinaryDirect(Subgroup theParent, BitSet theParentMembers, ColumnConditionBasesBinary theColumnConditionBases)
+	{
+		int aParentCoverage = theParent.getCoverage();
+		ConditionBase aConditionBase = theColumnConditionBases.get(0);
+		Column aColumn = aConditionBase.getColumn();
+
+		CountBuffer aBuffer = getCountBuffer(theParentMembers);
+		int[] aCounts = aBuffer.itsBinaryCounts;
+		aColumn.countBinary(aBuffer.itsWords, aBuffer.itsNrWords, itsBinaryTargetWords, aCounts);
+		int aTrueCoverage = aCounts[0];
+		int aTrueTruePositives = aCounts[1];
+		int aFalseCoverage = aParentCoverage - aTrueCoverage;
+		int aFalseTruePositives = aCounts[2] - aTrueTruePositives;
+
+		// ignore both f and t
+		if ((aFalseCoverage == 0) || (aFalseCoverage == aParentCoverage))
+			return;
+
+		// check for (aColumn = false)
+		if (aFalseCoverage >= itsMinimumCoverage)
+			checkAndLogDirect(theParent, new Condition(aConditionBase, false), aFalseCoverage, aFalseTruePositives);
+
+		if (isTimeToStop())
+			return;
+
+		// check for (aColumn = true)
+		if (aTrueCoverage >= itsMinimumCoverage)
+			checkAndLogDirect(theParent, new Condition(aConditionBase, true), aTrueCoverage, aTrueTruePositives);
+	}
+
+	/*
+	 * Per Thread buffers for the SINGLE_NOMINAL evaluation of BINARY and
+	 * NOMINAL Columns, see isDirectSingleBinary().
+	 * itsWords holds the words of the members of the parent that is refined,
+	 * they are only filled again when another parent is refined by the
+	 * Thread, the counts arrays are reused for all Columns.
+	 */
+	private static final class CountBuffer
+	{
+		private BitSet itsMembers;              // BitSet held by itsWords
+		private long[] itsWords = new long[0];
+		private int itsNrWords = 0;             // valid words in itsWords
+		private final int[] itsBinaryCounts = new int[3];
+		private int[] itsCounts = new int[0];
+		private int[] itsCoverages = new int[0];
+		private int[] itsPositives = new int[0];
+		private int[] itsCrossTable = new int[0];
+
+		private void setMembers(BitSet theMembers)
+		{
+			// the members of a parent are never modified during refinement
+			if (theMembers == itsMembers)
+				return;
+
+			int aNrWords = (theMembers.length() + 63) >>> 6;
+			if (itsWords.length < aNrWords)
+				itsWords = new long[aNrWords];
+			else
+				Arrays.fill(itsWords, 0, itsNrWords, 0L);
+
+			// set runs of members, instead of single bits
+			for (int i = theMembers.nextSetBit(0); i >= 0; )
+			{
+				int j = theMembers.nextClearBit(i);
+				int aFirst = i >>> 6;
+				int aLast = (j - 1) >>> 6;
+				long aFirstMask = (-1L << i);
+				long aLastMask = (-1L >>> -j);
+				if (aFirst == aLast)
+					itsWords[aFirst] |= (aFirstMask & aLastMask);
+				else
+				{
+					itsWords[aFirst] |= aFirstMask;
+					Arrays.fill(itsWords, aFirst + 1, aLast, -1L);
+					itsWords[aLast] |= aLastMask;
+				}
+				i = theMembers.nextSetBit(j);
+			}
+
+			itsMembers = theMembers;
+			itsNrWords = aNrWords;
+		}
+
+		private void setCardinality(int theCardinality)
+		{
+			if (itsCounts.length < theCardinality)
+			{
+				itsCounts = new int[theCardinality];
+				itsCoverages = new int[theCardinality];
+				itsPositives = new int[theCardinality];
+			}
+		}
+
+		// for the NominalCrossTable, positive and negative count per value
+		private int[] getCrossTable(int theSize)
+		{
+			if (itsCrossTable.length < theSize)
+				itsCrossTable = new int[theSize];
+			return itsCrossTable;
+		}
+	}
+
+	private final CountBuffer getCountBuffer(BitSet theParentMembers)
+	{
+		CountBuffer aBuffer = itsCountBuffer.get();
+		if (aBuffer == null)
+		{
+			aBuffer = new CountBuffer();
+			itsCountBuffer.set(aBuffer);
+		}
+		aBuffer.setMembers(theParentMembers);
+
+		return aBuffer;
+	}
+
+	/*
+	 * For the SINGLE_NOMINAL direct computation, the quality of a refinement
+	 * follows from its coverage and number of true positives. The same checks
+	 * as checkAndLog() are performed first, and the Subgroup is only created
+	 * when it could be added to the result set or the candidate set. Either
+	 * way, the refinement is counted as a candidate.
+	 */
+	private final void checkAndLogDirect(Subgroup theParent, Condition theAddedCondition, int theChildCoverage, int theNrTruePositives)
+	{
+		int aParentCoverage = theParent.getCoverage();
+
+		boolean isUsefulForCandidateSet = isUsefulForCandidateSet(theChildCoverage, aParentCoverage, itsMinimumCoverage, theParent.getDepth() + 1, itsSearchParameters.getSearchDepth());
+		boolean isUsefulForResultSet    = isUsefulForResultSet(theChildCoverage, aParentCoverage, itsMinimumCoverage, itsMaximumCoverage);
+
+		if (!isUsefulForCandidateSet && !isUsefulForResultSet)
+		{
+			itsCandidateCount.getAndIncrement();
+			return;
+		}
+
+		// as checkAndLog(), the quality is compared as float
+		double aQualityScore = itsQualityMeasure.calculate(theNrTruePositives, theChildCoverage);
+		float aQuality = (float) aQualityScore;
+		if (theNrTruePositives < itsMinimumSupport)
+		{
+			isUsefulForCandidateSet = false;
+			isUsefulForResultSet = false;
+		}
+		isUsefulForResultSet &= (ignoreQualityMinimum || (aQuality > itsQualityMeasureMinimum));
+		if (isUsefulForResultSet)
+			isUsefulForResultSet &= itsResult.hasPotential(aQuality);
+		if (isUsefulForCandidateSet && isOptimisticEstimatePruning())
+			isUsefulForCandidateSet = !isBelowThreshold(itsQualityMeasure.computeOptimisticEstimate(theNrTruePositives, theChildCoverage));
+
+		if (!isUsefulForCandidateSet && !isUsefulForResultSet)
+		{
+			itsCandidateCount.getAndIncrement();
+			return;
+		}
+
+		checkAndLog(directComputation(theParent, theAddedCondition, aQualityScore, theChildCoverage, theNrTruePositives), aParentCoverage);
+	}
+
 	// return is always INVALID_NR_TRUE_POSITIVES when !isDirectSetting()
 	private static final int INVALID_NR_TRUE_POSITIVES = -1;
 	private final int evaluateBinaryRefinementsHelper(Subgroup theParent, Condition theAddedCondition, BitSet theChildMembers, int theChildCoverage)
@@ -1535,6 +1976,12 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		ConditionList aParentConditions = (isFilterNull ? null : theParent.getConditions());
 		////////////////////////////////////////////////////////////////////////
 
+		if (isDirectSingleBinary())
+		{
+			evaluateNominalEqualsDirect(theParent, theParentMembers, aConditionBase, aParentConditions);
+			return;
+		}
+
 		int[] aCounts = aColumn.getUniqueNominalDomainCounts(theParentMembers, aParentCoverage);
 
 		// avoid entering loop and checking 0-count values, no useful Refinement
@@ -1568,6 +2015,45 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		}
 	}
 
+	// as evaluateNominalEquals(), the coverages and true positives for all values
+	// are obtained in a single word-wise pass over the members, no BitSets are
+	// created, and Subgroups are only created when they will be used
+	private final void evaluateNominalEqualsDirect(Subgroup theParent, BitSet theParentMembers, ConditionBase theConditionBase, ConditionList theParentConditions)
+	{
+		int aParentCoverage = theParent.getCoverage();
+		Column aColumn = theConditionBase.getColumn();
+
+		CountBuffer aBuffer = getCountBuffer(theParentMembers);
+		aBuffer.setCardinality(aColumn.getCardinality());
+		int[] aCounts = aBuffer.itsCounts;
+		int[] aCoverages = aBuffer.itsCoverages;
+		int[] aPositives = aBuffer.itsPositives;
+		int aNrDistinct = aColumn.countUniqueNominalDomain(aBuffer.itsWords, aBuffer.itsNrWords, itsBinaryTargetWords, aCounts, aCoverages, aPositives);
+		if (aNrDistinct <= 1)
+			return;
+
+		List<String> aDomain = aColumn.itsDistinctValuesU;
+		for (int i = 0, j = aNrDistinct; j > 0 && !isTimeToStop(); ++i)
+		{
+			int aCount = aCounts[i];
+			if (aCount == 0)
+				continue;
+
+			j--;
+
+			if (aCount < itsMinimumCoverage)
+				continue;
+
+			Condition aCondition = new Condition(theConditionBase, aDomain.get(i));
+
+			if ((itsFilter != null) && !itsFilter.isUseful(theParentConditions, aCondition))
+				continue;
+
+			// the coverage excludes missing values, as Column.evaluate()
+			checkAndLogDirect(theParent, aCondition, aCoverages[i], aPositives[i]);
+		}
+	}
+
 	////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////
 	///// BestValueSet algorithm                                           /////
@@ -1596,7 +2082,10 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		ConditionBase aConditionBase = theColumnConditionBases.get(0);
 
 		// as for BestIntervals -> use new half-interval code, it is 70x faster
-		NominalCrossTable aNCT = new NominalCrossTable(aConditionBase.getColumn(), theParentMembers, itsBinaryTarget);
+		// values are counted by index, as evaluateNominalEqualsDirect() does
+		Column aColumn = aConditionBase.getColumn();
+		CountBuffer aBuffer = getCountBuffer(theParentMembers);
+		NominalCrossTable aNCT = new NominalCrossTable(aColumn, aBuffer.itsWords, aBuffer.itsNrWords, itsBinaryTargetWords, aBuffer.getCrossTable(aColumn.getCrossTableSize()));
 		SortedSet<String> aDomainBestSubSet = new TreeSet<String>();
 
 		// final: if-else is long, ensure value is set before creating Subgroup
@@ -1885,22 +2374,25 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		}
 		else
 		{
-			ValueCount v = aColumn.getValueCount(theParentMembers);
-			if (doEq_Test) evaluateNumericRegularGeneric(theParent, e, v);
-			if (doLeqTest) evaluateNumericRegularGeneric(theParent, l, v);
-			if (doGeqTest) evaluateNumericRegularGeneric(theParent, g, v);
+			// SINGLE_NUMERIC target statistics are collected in the same pass
+			ValueCountStatistics s = (isDirectSingleNumeric() ? aColumn.getValueCountStatistics(theParentMembers, itsNumericTarget) : null);
+			ValueCount v = ((s == null) ? aColumn.getValueCount(theParentMembers) : s.itsValueCount);
+			if (doEq_Test) evaluateNumericRegularGeneric(theParent, e, v, s);
+			if (doLeqTest) evaluateNumericRegularGeneric(theParent, l, v, s);
+			if (doGeqTest) evaluateNumericRegularGeneric(theParent, g, v, s);
 		}
 	}
 
 	// generic version, use plain ValueCount, no model-specific info
-	private final void evaluateNumericRegularGeneric(Subgroup theParent, ConditionBase theConditionBase, ValueCount theValueInfo)
+	// except for the optional SINGLE_NUMERIC theStatistics
+	private final void evaluateNumericRegularGeneric(Subgroup theParent, ConditionBase theConditionBase, ValueCount theValueInfo, ValueCountStatistics theStatistics)
 	{
 		NumericStrategy ns = itsSearchParameters.getNumericStrategy();
 
 		// split code path - BEST_BINS/BINS use substantially different loop
 		if (ns.isDiscretiser())
 		{
-			evaluateNumericRegularGenericCoarse(theParent, theConditionBase, theValueInfo);
+			evaluateNumericRegularGenericCoarse(theParent, theConditionBase, theValueInfo, theStatistics);
 			return;
 		}
 
@@ -1914,6 +2406,8 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		////////////////////////////////////////////////////////////////////////
 
 		int[] aCounts = theValueInfo.itsCounts;
+		// last sort index selected by >=, missing values (NaN) are last
+		int aLast = getLastNonMissingSortIndex(aColumn, aCounts.length);
 
 		// a lot of code, but keep it together for now, loops differ in subtle
 		// ways, keeping them together for now aids interpretation
@@ -1933,7 +2427,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 					break;
 
 				Condition anAddedCondition = new Condition(theConditionBase, aColumn.getSortedValue(i), i);
-				evaluateCandidate(theParent, anAddedCondition, aCount, isAllStrategy, aBestSubgroups);
+				evaluateCandidate(theParent, anAddedCondition, aCount, theStatistics, i, i, isAllStrategy, aBestSubgroups);
 			}
 		}
 		else if (anOperator == Operator.LESS_THAN_OR_EQUAL)
@@ -1953,7 +2447,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 					continue;
 
 				Condition anAddedCondition = new Condition(theConditionBase, aColumn.getSortedValue(i), i);
-				evaluateCandidate(theParent, anAddedCondition, cover, isAllStrategy, aBestSubgroups);
+				evaluateCandidate(theParent, anAddedCondition, cover, theStatistics, 0, i, isAllStrategy, aBestSubgroups);
 			}
 		}
 		else if (anOperator == Operator.GREATER_THAN_OR_EQUAL)
@@ -1972,7 +2466,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 				if (cover != aParentCoverage && !Float.isNaN(aColumn.getSortedValue(i)))
 				{
 					Condition anAddedCondition = new Condition(theConditionBase, aColumn.getSortedValue(i), i);
-					evaluateCandidate(theParent, anAddedCondition, cover, isAllStrategy, aBestSubgroups);
+					evaluateCandidate(theParent, anAddedCondition, cover, theStatistics, i, aLast, isAllStrategy, aBestSubgroups);
 				}
 
 				// before moving to next, subtract counts related to this value
@@ -1991,7 +2485,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 	}
 
 	// generic version, use plain ValueCount, no model-specific info
-	private final void evaluateNumericRegularGenericCoarse(Subgroup theParent, ConditionBase theConditionBase, ValueCount theValueInfo)
+	private final void evaluateNumericRegularGenericCoarse(Subgroup theParent, ConditionBase theConditionBase, ValueCount theValueInfo, ValueCountStatistics theStatistics)
 	{
 		NumericStrategy ns = itsSearchParameters.getNumericStrategy();
 		assert (ns == NumericStrategy.NUMERIC_BEST_BINS || ns == NumericStrategy.NUMERIC_BINS);
@@ -2009,14 +2503,16 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		long b                = 1L;
 		Column aColumn        = theConditionBase.getColumn();
 		int[] aCounts         = theValueInfo.itsCounts;
+		int aLast             = getLastNonMissingSortIndex(aColumn, aCounts.length);
 		boolean isAllStrategy = (ns == NumericStrategy.NUMERIC_BINS);
 		BestSubgroupsForCandidateSetAndResultSet aBestSubgroups = (isAllStrategy ? null : new BestSubgroupsForCandidateSetAndResultSet());
 
 		// ColumnConditionBasesBuilder replaces Operator.EQUALS for (BEST_)BINS
 		if (anOperator == Operator.BETWEEN)
 		{
-			// last cover used for evaluation, and last lower bound
+			// last cover used for evaluation, and last lower bound (index)
 			int last_cover = 0;
+			int last_i = -1;
 			float f = Float.NEGATIVE_INFINITY;
 			for (int i = 0, next = getNextBinBoundary(aParentCoverage, b, aNrBins), cover = 0; i < aCounts.length && b < aNrBins && !isTimeToStop(); ++i)
 			{
@@ -2034,9 +2530,10 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 
 				float n = aColumn.getSortedValue(i);
 				Condition anAddedCondition = new Condition(theConditionBase, new Interval(f, n));
-				evaluateCandidate(theParent, anAddedCondition, (cover-last_cover), isAllStrategy, aBestSubgroups);
+				evaluateCandidate(theParent, anAddedCondition, (cover-last_cover), theStatistics, last_i+1, i, isAllStrategy, aBestSubgroups);
 
 				last_cover = cover;
+				last_i = i;
 				f = n;
 
 				while ((next = getNextBinBoundary(aParentCoverage, ++b, aNrBins)) <= cover-1)
@@ -2061,7 +2558,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			{
 				Condition anAddedCondition = new Condition(theConditionBase, new Interval(f, Float.POSITIVE_INFINITY));
 				last_cover = (((int) aParentCoverage) - last_cover);
-				evaluateCandidate(theParent, anAddedCondition, last_cover, isAllStrategy, aBestSubgroups);
+				evaluateCandidate(theParent, anAddedCondition, last_cover, theStatistics, last_i+1, aLast, isAllStrategy, aBestSubgroups);
 			}
 		}
 		else if (anOperator == Operator.LESS_THAN_OR_EQUAL)
@@ -2081,7 +2578,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 					break;
 
 				Condition aCondition = new Condition(theConditionBase, aColumn.getSortedValue(i), i);
-				evaluateCandidate(theParent, aCondition, cover, isAllStrategy, aBestSubgroups);
+				evaluateCandidate(theParent, aCondition, cover, theStatistics, 0, i, isAllStrategy, aBestSubgroups);
 
 				while ((next = getNextBinBoundary(aParentCoverage, ++b, aNrBins)) <= cover-1)
 					; // deliberately empty
@@ -2105,7 +2602,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 				if (cover-aCount < next && cover != aParentCoverage && !Float.isNaN(aColumn.getSortedValue(i)))
 				{
 					Condition aCondition = new Condition(theConditionBase, aColumn.getSortedValue(i), i);
-					evaluateCandidate(theParent, aCondition, cover, isAllStrategy, aBestSubgroups);
+					evaluateCandidate(theParent, aCondition, cover, theStatistics, i, aLast, isAllStrategy, aBestSubgroups);
 
 					while ((next = (int) (aParentCoverage - ((++b * aParentCoverage) / aNrBins))) > (cover-aCount))
 						; // deliberately empty
@@ -2124,6 +2621,13 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			// FIXME temporary checks
 			debugBest(theParent, null, aBestSubgroups);
 		}
+	}
+
+	// missing values (NaN) are sorted last, and are never selected by >= or <=
+	private static final int getLastNonMissingSortIndex(Column theColumn, int theNrSortIndexes)
+	{
+		int aLast = theNrSortIndexes - 1;
+		return ((aLast >= 0) && Float.isNaN(theColumn.getSortedValue(aLast))) ? aLast - 1 : aLast;
 	}
 
 	public static final int getNextBinBoundary(long theTotalCoverage, long theCurrentBin, long theNrBins) // public: MiningWidnow
@@ -2486,6 +2990,52 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			checkForBest(aChild, aParentCoverage, theBestSubgroups, false);
 	}
 
+	// this is the version used by evaluateNumericRegularGeneric(Coarse) for
+	// SINGLE_NUMERIC, theStatistics is null when isDirectSingleNumeric() is
+	// false, else the child is evaluated using the target statistics for
+	// sort indexes theFrom up to and including theTo, without a BitSet
+	private final void evaluateCandidate(Subgroup theParent, Condition theAddedCondition, int theChildCoverage, ValueCountStatistics theStatistics, int theFrom, int theTo,
+					     boolean isAllStrategy, BestSubgroupsForCandidateSetAndResultSet theBestSubgroups)
+	{
+		if (theStatistics == null)
+		{
+			evaluateCandidate(theParent, theAddedCondition, theChildCoverage, isAllStrategy, theBestSubgroups);
+			return;
+		}
+
+		assert (isDirectSingleNumeric());
+
+		if ((itsFilter != null) && !itsFilter.isUseful(theParent.getConditions(), theAddedCondition))
+			return;
+
+		// theChildCoverage includes missing values for >=, this one does not
+		int aChildCoverage = theStatistics.getCoverage(theFrom, theTo);
+		if (aChildCoverage == 0)
+			return;
+
+		int aParentCoverage = theParent.getCoverage();
+		assert (aChildCoverage < aParentCoverage);
+
+		Statistics aStatistics;
+		if (QM.requiredStats(itsSearchParameters.getQualityMeasure()).contains(Stat.COMPL))
+			aStatistics = theStatistics.getStatistics(theFrom, theTo, itsNumericTargetCount, itsNumericTargetSum, itsNumericTargetSquares);
+		else
+			aStatistics = theStatistics.getStatistics(theFrom, theTo, 0, 0.0, 0.0);
+
+		// as evaluateCandidateSingleNumeric()
+		float q = itsQualityMeasure.calculate(aStatistics, null);
+		double s = aStatistics.getSubgroupAverage();
+		double t = Math.sqrt(aStatistics.getSubgroupSumSquaredDeviations()/(aChildCoverage-1.0)); // use n-1 like t-statistic
+		Subgroup aChild = theParent.getRefinedSubgroup(theAddedCondition, q, s, t, aChildCoverage);
+
+		// ALL or BINS
+		if (isAllStrategy)
+			checkAndLog(aChild, aParentCoverage);
+		// BEST or BESTBINS
+		else
+			checkForBest(aChild, aParentCoverage, theBestSubgroups, true);
+	}
+
 	// this is the version used by evaluateNumericRegularSingleBinary(Coarse)
 	// FIXME temporarily a separate method, will merge both evaluateCandidates()
 	private final void evaluateCandidate(Subgroup theParent, Condition theAddedCondition, int theChildCoverage, int theNrTruePositives, 
@@ -2500,17 +3050,18 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		int aParentCoverage = theParent.getCoverage();
 		assert (theChildCoverage < aParentCoverage);
 
-		Subgroup aChild = directComputation(theParent, theAddedCondition, itsQualityMeasure, theChildCoverage, theNrTruePositives);
-
 		// ALL or BINS
 		if (isAllStrategy)
 		{
 			//addToBuffer(aChild);
-			checkAndLog(aChild, aParentCoverage);
+			checkAndLogDirect(theParent, theAddedCondition, theChildCoverage, theNrTruePositives);
+			return;
 		}
+
+		Subgroup aChild = directComputation(theParent, theAddedCondition, itsQualityMeasure, theChildCoverage, theNrTruePositives);
+
 		// BEST or BESTBINS
-		else
-			checkForBest(aChild, aParentCoverage, theBestSubgroups, true);
+		checkForBest(aChild, aParentCoverage, theBestSubgroups, true);
 	}
 
 	////////////////////////////////////////////////////////////////////////////
@@ -2993,6 +3544,55 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			theChildCoverage <= theMaximumCoverage);
 	}
 
+	/*
+	 * Optimistic estimate pruning is only used for the non-beam search
+	 * strategies. There it does not change the result, as a Candidate is
+	 * only dropped when none of its refinements can enter the result set.
+	 * For the beam strategies a dropped Candidate would make room for
+	 * another one in the beam, and so change the search.
+	 */
+	private final boolean isOptimisticEstimatePruning()
+	{
+		SearchParameters s = itsSearchParameters;
+		if (s.getSearchStrategy().isBeam() || !QM.hasOptimisticEstimate(s.getQualityMeasure()))
+			return false;
+
+		TargetType aTargetType = s.getTargetType();
+		return (aTargetType == TargetType.SINGLE_NOMINAL) || ((aTargetType == TargetType.SINGLE_NUMERIC) && !TEMPORARY_CODE);
+	}
+
+	// for SINGLE_NOMINAL the tertiary statistic is the number of positives
+	private final double computeOptimisticEstimate(Subgroup theChild)
+	{
+		if (itsSearchParameters.getTargetType() == TargetType.SINGLE_NOMINAL)
+			return itsQualityMeasure.computeOptimisticEstimate((int) theChild.getTertiaryStatistic(), theChild.getCoverage());
+
+		BitSet aMembers = theChild.getMembers();
+		float[] aValues = new float[aMembers.cardinality()];
+		for (int i = aMembers.nextSetBit(0), j = 0; i >= 0; i = aMembers.nextSetBit(i + 1), ++j)
+			aValues[j] = itsNumericTarget.getFloat(i);
+		Arrays.sort(aValues);
+
+		return itsQualityMeasure.computeOptimisticEstimate(aValues, itsMinimumCoverage);
+	}
+
+	/*
+	 * No refinement with a quality of at most theOptimisticEstimate can be
+	 * added to the result set. The SubgroupSet threshold only rises, so this
+	 * remains true once it holds. NaN never prunes.
+	 */
+	private final boolean isBelowThreshold(double theOptimisticEstimate)
+	{
+		// as checkAndLog(), the quality is compared as float
+		float aBound = (float) theOptimisticEstimate;
+		if (Float.isNaN(aBound))
+			return false;
+		if (!ignoreQualityMinimum && !(aBound > itsQualityMeasureMinimum))
+			return true;
+
+		return !itsResult.hasPotential(aBound);
+	}
+
 	// replacement of bestAdd(Subgroup, theParentCoverage) - allows two bests
 	private final void checkAndLogBest(BestSubgroupsForCandidateSetAndResultSet theBestChildSubgroups, int theParentCoverage)
 	{
@@ -3022,7 +3622,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 	////////////////////////////////////////////////////////////////////////////
 
 	/*
-	 * REQUIREMENT 1
+	 * REQUIREMENT 1 (obsolete, see NOTE below)
 	 * additions to itsResult and itsCandidateQueue need to be performed as a logical unit, else their contents would become undefined in the following multi-threaded scenario:
 	 *
 	 * Thread 1 itsResult.add()
@@ -3031,6 +3631,9 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 	 * Thread 1 itsCandidateQueue.add()
 	 *
 	 * both itsResults and itsCandidateQueue are trimmed if they have a max capacity and a candidate may end up in the one, but not in the other
+	 *
+	 * NOTE itsResult and the next level of a beam CandidateQueue are now trimmed to their top-k when they are merged, regardless of the
+	 * order of the additions, and all CandidateQueue.add() calls are thread safe, so checkAndLog() no longer needs a lock
 	 * 
 	 * REQUIREMENT 2
 	 * evaluateCandidate() is expensive for complex models and should not be executed in a synchronized block
@@ -3063,7 +3666,6 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 	 * they do no suffer from this problem anyway
 	 * (NOTE when a search is stopped because of max_time all bets are of)
 	 */
-	private final Object itsCheckLock = new Object();
 	private void checkAndLog(Subgroup theChild, int theParentCoverage)
 	{
 		setTitle(theChild);
@@ -3108,6 +3710,11 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 				// NOTE this path already performed the isValid-coverage check
 				aQuality = (float) theChild.getMeasureValue();
 			}
+			else if (isLastNumeric && theChild.hasQuality() && isDirectSingleNumeric())
+			{
+				// SINGLE_NUMERIC quality is set using ValueCountStatistics
+				aQuality = (float) theChild.getMeasureValue();
+			}
 			else if (isLastNumeric && aNumericBest.contains(itsSearchParameters.getNumericStrategy()))
 			{
 				assert theChild.hasQuality();
@@ -3118,6 +3725,12 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 				// check, and BestInterval does not perform one at all
 				aQuality = (float) theChild.getMeasureValue();
 			}
+			else if ((lastAdded == AttributeType.NOMINAL) && theChild.hasQuality() && isDirectSingleBinary())
+			{
+				// NOTE evaluateNominalEqualsDirect() performed the
+				// isValid-coverage check
+				aQuality = (float) theChild.getMeasureValue();
+			}
 			else if ((lastAdded == AttributeType.NOMINAL) && itsSearchParameters.getNominalSets())
 			{
 				assert theChild.hasQuality();
@@ -3151,22 +3764,26 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			if (isUsefulForResultSet)
 				isUsefulForResultSet &= itsResult.hasPotential(aQuality);
 
+			// no refinement of theChild could enter the result set
+			double anOptimisticEstimate = Double.POSITIVE_INFINITY;
+			if (isUsefulForCandidateSet && isOptimisticEstimatePruning())
+			{
+				anOptimisticEstimate = computeOptimisticEstimate(theChild);
+				isUsefulForCandidateSet = !isBelowThreshold(anOptimisticEstimate);
+			}
+
 			if (isUsefulForCandidateSet || isUsefulForResultSet)
 			{
-				// do not Construct this Object within the synchronized block
-				Candidate aCandidate = (isUsefulForCandidateSet ? new Candidate(theChild) : null);
+				Candidate aCandidate = (isUsefulForCandidateSet ? new Candidate(theChild, anOptimisticEstimate) : null);
 
-				// performed as a logical unit, see REQUIREMENT 1
-				// all logic is performed outside of synchronized block
-				// to keep it as small as possible
-				synchronized (itsCheckLock)
-				{
-					if (isUsefulForResultSet)
-						itsResult.add(theChild);
+				// both add() methods are thread safe, and keep the top-k
+				// regardless of the order of the additions, so no lock
+				// is needed, see REQUIREMENT 1
+				if (isUsefulForResultSet)
+					itsResult.add(theChild);
 
-					if (isUsefulForCandidateSet)
-						itsCandidateQueue.add(aCandidate);
-				}
+				if (isUsefulForCandidateSet)
+					itsCandidateQueue.add(aCandidate);
 			}
 		}
 
@@ -3239,7 +3856,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			aQuality = (float) itsQualityMeasure.calculate(aCountHeadBody, aCoverage);
 		else
 		{
-			PropensityScore aPropensityScore = new PropensityScore(theChild, itsBinaryTarget, itsLocalKnowledge, itsGlobalKnowledge, PropensityScore.LOGISTIC_REGRESSION);
+			PropensityScore aPropensityScore = new PropensityScore(theChild, itsBinaryTarget, itsLocalKnowledge, itsGlobalKnowledge, PropensityScore.LOGISTIC_REGRESSION, itsPropensityModels);
 			double aCountHeadPropensityScore = aPropensityScore.getPropensityScoreSum();
 			aQuality = QualityMeasure.calculatePropensityBased(aMeasure, aCountHeadBody, aCoverage, itsNrRows, aCountHeadPropensityScore);
 		}
@@ -3557,13 +4174,14 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		return aQuality;
 	}
 
-	// FIXME
-	// multiLabelCalculate(Subgroup) uses Subgroup.getMembers() to select a
-	// subset of records from itsBinaryTable, supply BitSet as parameter
+	// the DAG is induced on the members of theChild in itsBinaryTable, the
+	// hill-climb starts from the DAG of its parent, if it has one
 	private final float evaluateCandidateMultiLabel(Subgroup theChild)
 	{
-		BinaryTable aBinaryTable = itsBinaryTable.selectRows(theChild.getMembers());
-		Bayesian aBayesian = new Bayesian(aBinaryTable, itsTargets);
+		FamilyScores aScores = new FamilyScores(itsBinaryTable, theChild.getMembers());
+		Subgroup aParent = theChild.getParent();
+		DAG aStart = (aParent == null) ? null : aParent.getDAG();
+		Bayesian aBayesian = new Bayesian(aScores, itsTargets, aStart);
 		aBayesian.climb();               //induce DAG
 		DAG aDAG = aBayesian.getDAG();
 		theChild.setDAG(aDAG);           //store DAG with subgroup for later use
@@ -3575,16 +4193,16 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		return aQuality;
 	}
 
-	// FIXME
-	// getAverageRankingMatrix(Subgroup) and getAverageRanking(Subgroup)
-	// only use Subgroup.getMembers(), supply BitSet as sole parameter
+	// the members are traversed once, the average ranking and ranking matrix
+	// are computed from the counts of the distinct rankings
 	private final float evaluateCandidateLabelRanking(Subgroup theChild)
 	{
 		int aCoverage = theChild.getCoverage();
-		LabelRankingMatrix aLRM = itsTargetRankings.getAverageRankingMatrix(theChild);
+		int[] aCounts = itsTargetRankings.getRankingCounts(theChild.getMemberSet());
+		LabelRankingMatrix aLRM = itsTargetRankings.getAverageRankingMatrixFromCounts(aCounts);
 
 		float aQuality = itsQualityMeasure.computeLabelRankingDistance(aCoverage, aLRM);
-		theChild.setLabelRanking(itsTargetRankings.getAverageRanking(theChild));
+		theChild.setLabelRanking(itsTargetRankings.getAverageRankingFromCounts(aCounts));
 		theChild.setLabelRankingMatrix(aLRM);
 
 		// TODO make this more sensible
@@ -3677,6 +4295,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 	////////////////////////////////////////////////////////////////////////////
 
 	public int getNumberOfSubgroups() { return itsResult.size(); }
+	public long getNumberOfCandidates() { return itsCandidateCount.get(); }
 	public SubgroupSet getResult() { return itsResult; }
 	public QualityMeasure getQualityMeasure() { return itsQualityMeasure; }
 	public SearchParameters getSearchParameters() { return itsSearchParameters; }
@@ -3,6 +3,7 @@ package nl.liacs.subdisc;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 /**
  * A SubgroupSet is a <code>TreeSet</code> of {@link Subgroup Subgroup}s. If its size is set to <= 0, the SubgroupSet has no maximum size, else the number of Subgroups it can contain is limited by its size. 
@@ -13,6 +14,7 @@ import java.util.concurrent.*;
  * {@link nl.liacs.subdisc.gui.ROCCurveWindow}.
  *
  * Note that only the add method is thread safe with respect to concurrent access, and possible additions. None of the other methods of this class currently are.
+ * Each Thread adds to its own bounded buffer, that is merged into this SubgroupSet periodically and whenever this SubgroupSet is read.
  *
  * @see ROCList
  * @see nl.liacs.subdisc.gui.ROCCurve
@@ -23,10 +25,10 @@ import java.util.concurrent.*;
 public class SubgroupSet extends TreeSet<Subgroup>
 {
 	private static final long serialVersionUID = 1L;
-	// the method is fundamentally flawed (in paper), and the code has a bug
-	private static final boolean USE_OLD_COVER_BASED_SUBGROUP_SELECTION = false;
 	// hard-code top-k, for CBSS maximum_subgroups must be set to 0 (unlimited)
 	private static final int COVER_BASED_SUBGROUP_SELECTION_TOP_K = 100;
+	// rows per block for postProcessGetCoverRedundancyAndJointEntropy()
+	private static final int SIGNATURE_BLOCK_SIZE = 1 << 12;
 
 	// for SubgroupSet in nominal target setting (used for TPR/FPR in ROCList)
 	private final boolean nominalTargetSetting;
@@ -37,15 +39,35 @@ public class SubgroupSet extends TreeSet<Subgroup>
 	private int itsMaximumSize;
 	private ROCList itsROCList;
 	// used as quick check for add(), tests on NaN always return false
-	// could use AtomicLong.doubleBits
-	private double itsLowestScore = Double.NaN;
+	// doubleBits of the lowest score, only increases, except by clear()
+	private final AtomicLong itsLowestScore = new AtomicLong(NO_SCORE);
 	private double itsJointEntropy = Double.NaN; //initially not set
 
 	private BinaryTable itsBinaryTable = null;
 
-	// this is the long way around, new Subgroups are added to QUEUE when QUEUE.size() >= itsMaximumSize all Subgroups in QUEUE are added to this SubgroupSet, much better for concurrency
-	private final int MAX_QUEUE_SIZE = 1; // arbitrarily chosen
-	private final BlockingQueue<Subgroup> QUEUE = new ArrayBlockingQueue<Subgroup>(MAX_QUEUE_SIZE);
+	// new Subgroups are added to the Buffer of the calling Thread, a Buffer
+	// is merged into this SubgroupSet after MERGE_INTERVAL additions, and
+	// all Buffers are merged by update(), so only merges take the lock
+	private static final long NO_SCORE = Double.doubleToLongBits(Double.NaN);
+	private static final int MERGE_INTERVAL = 256; // arbitrarily chosen
+	private final transient ThreadLocal<Buffer> itsBuffer = new ThreadLocal<Buffer>();
+	private final transient Queue<Buffer> itsBuffers = new ConcurrentLinkedQueue<Buffer>();
+	private final transient Object itsMergeLock = new Object();
+
+	/*
+	 * the best Subgroups added by a single Thread, at most itsMaximumSize
+	 * only its owner adds to it, but update() drains it from any Thread
+	 */
+	private static final class Buffer
+	{
+		private final TreeSet<Subgroup> itsSubgroups;
+		private int itsNrAdditions = 0;
+
+		private Buffer(Comparator<? super Subgroup> theComparator)
+		{
+			itsSubgroups = new TreeSet<Subgroup>(theComparator);
+		}
+	}
 
 	/* private, meant to be used within this class only */
 	private SubgroupSet(int theSize, BitSet theSelection, int theNrRows, BitSet theBinaryTarget, boolean theNominalTargetSetting)
@@ -176,48 +198,53 @@ public class SubgroupSet extends TreeSet<Subgroup>
 		if (theSubgroup == null)
 			return false;
 		// avoid log(n) of TreeMap.put() (called by TreeSet.add())
-		// NOTE itsLowestScore is un-synchronized / non-volatile
-		// so some of these tests may succeed erroneously and the else
-		// below is run, this may be faster than synchronized/ volatile
-		else if (theSubgroup.getMeasureValue() < itsLowestScore)
+		// NOTE the lowest score might be raised concurrently, so some
+		// of these tests may succeed erroneously, this is harmless as
+		// such a Subgroup is removed when its Buffer is merged
+		else if (theSubgroup.getMeasureValue() < getLowestScore())
 			return false;
 		else
 		{
 			/*
 			 * using ConcurrentSkipList would be problematic because
-			 * of resetting of itsWorseScore as the add and poll
+			 * of resetting of the lowest score as the add and poll
 			 * operations of concurrent threads might be interleaved
 			 *
-			 * similar problems arise from fixed maxSize (when used)
-			 * a soft maxSize would handle concurrent adds better
-			 *
-			 * NOTE calls to add() and size() need to be a compound
-			 * action to prevent concurrency related problems
-			 * but synchronized(this) would result in concurrent
-			 * threads being blocked from calling this method
-			 * during the lock
-			 * even though they might fail fast (when the score of
-			 * the candidate Subgroup is lower than the lowest
-			 * scoring Subgroup present in this SubgroupSet)
-			 * in the light of concurrent access, a splitting the
-			 * check and add into two methods would be a bad idea
+			 * instead, each Thread keeps the best Subgroups it found
+			 * in its own Buffer, only the owner adds to a Buffer so
+			 * its lock is uncontended, except during a merge
+			 * when a Buffer holds itsMaximumSize Subgroups, no
+			 * Subgroup worse than its last can end up in the result
+			 * so its score is published as the lowest score
 			 */
-			try { QUEUE.put(theSubgroup); }
-			catch (InterruptedException e) { e.printStackTrace(); }
-			/*
-			 * NOTE drainTo/ addAll do not work, as they calls this
-			 * add() method again
-			 *
-			 * NOTE although MAX_QUEUE_SIZE prevents a lock after
-			 * every addition, it may actually be detrimental to
-			 * execution speed, as all threads will have to wait
-			 * till the QUEUE is completely emptied, update() after
-			 * each addition may actually be faster, but there is no
-			 * good way (access to massive concurrent systems) to
-			 * test this
-			 */
-			if (QUEUE.size() >= MAX_QUEUE_SIZE)
-				update();
+			Buffer aBuffer = itsBuffer.get();
+			if (aBuffer == null)
+			{
+				aBuffer = new Buffer(comparator());
+				itsBuffer.set(aBuffer);
+				itsBuffers.add(aBuffer);
+			}
+
+			boolean isMergeNeeded;
+			synchronized (aBuffer)
+			{
+				TreeSet<Subgroup> aSubgroups = aBuffer.itsSubgroups;
+				aSubgroups.add(theSubgroup);
+				if (aSubgroups.size() > itsMaximumSize)
+					aSubgroups.pollLast();
+				if (aSubgroups.size() == itsMaximumSize)
+					raiseLowestScore(aSubgroups.last().getMeasureValue());
+				isMergeNeeded = (++aBuffer.itsNrAdditions >= MERGE_INTERVAL);
+			}
+
+			if (isMergeNeeded)
+			{
+				synchronized (itsMergeLock)
+				{
+					merge(aBuffer);
+					trim();
+				}
+			}
 
 			return true;
 		}
@@ -225,36 +252,74 @@ public class SubgroupSet extends TreeSet<Subgroup>
 
 	// includes equal scores, as new Subgroups with the same score might be
 	// ordered before the old one, pushing the old one out
-	// note that this is an unsynchronised check, might use AtomicDouble one day
-	// isNaN() check is needed as itsLowestScore starts out like that
+	// this is a single volatile read, the lowest score is only raised
+	// isNaN() check is needed as the lowest score starts out like that
 	// FIXME use isEmpty() instead of NaN check
 	boolean hasPotential(float theQuality)
 	{
-		return (Double.isNaN(itsLowestScore) || (theQuality >= itsLowestScore));
+		double aLowestScore = getLowestScore();
+		return (Double.isNaN(aLowestScore) || (theQuality >= aLowestScore));
+	}
+
+	private double getLowestScore()
+	{
+		return Double.longBitsToDouble(itsLowestScore.get());
+	}
+
+	// never lowers the lowest score, as concurrent Threads may publish
+	// the last score of their Buffer in any order
+	private void raiseLowestScore(double theScore)
+	{
+		long aNew = Double.doubleToLongBits(theScore);
+		for (long anOld = itsLowestScore.get(); ; anOld = itsLowestScore.get())
+		{
+			double aLowestScore = Double.longBitsToDouble(anOld);
+			if (!Double.isNaN(aLowestScore) && (aLowestScore >= theScore))
+				return;
+			if (itsLowestScore.compareAndSet(anOld, aNew))
+				return;
+		}
 	}
 
+	// merges the Buffers of all Threads, before this SubgroupSet is read
 	private void update()
 	{
-		// make all put()'s wait until this QUEUE is empty again
-		synchronized (QUEUE)
+		if (itsBuffers.isEmpty())
+			return;
+
+		synchronized (itsMergeLock)
 		{
-			while (QUEUE.size() > 0)
-			{
-				Subgroup s = QUEUE.poll();
-				if (s.getMeasureValue() < itsLowestScore)
-					QUEUE.clear();
-				super.add(s);
-			}
-			// outside synchronized block leads to troubles if
-			// multiple (QUEUE.size() > MAX) call update
-			while (itsMaximumSize < super.size())
-				remove(last());
-			// null safe as itsMaximumSize is always > 0
-			if (itsMaximumSize == super.size())
-				itsLowestScore = last().getMeasureValue();
+			for (Buffer b : itsBuffers)
+				merge(b);
+			trim();
+		}
+	}
+
+	// NOTE must hold itsMergeLock
+	private void merge(Buffer theBuffer)
+	{
+		synchronized (theBuffer)
+		{
+			// NOTE addAll does not work, as it calls add() again
+			double aLowestScore = getLowestScore();
+			for (Subgroup s : theBuffer.itsSubgroups)
+				if (!(s.getMeasureValue() < aLowestScore))
+					super.add(s);
+			theBuffer.itsSubgroups.clear();
+			theBuffer.itsNrAdditions = 0;
 		}
 	}
 
+	// NOTE must hold itsMergeLock
+	private void trim()
+	{
+		while (itsMaximumSize < super.size())
+			super.pollLast();
+		// null safe as itsMaximumSize is always > 0
+		if (itsMaximumSize == super.size())
+			raiseLowestScore(super.last().getMeasureValue());
+	}
+
 	////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////
 	///// general methods to return information about this instance        /////
@@ -307,10 +372,21 @@ public class SubgroupSet extends TreeSet<Subgroup>
 	@Override
 	public void clear()
 	{
+		synchronized (itsMergeLock)
+		{
+			for (Buffer b : itsBuffers)
+			{
+				synchronized (b)
+				{
+					b.itsSubgroups.clear();
+					b.itsNrAdditions = 0;
+				}
+			}
+		}
 		super.clear();
 		if (itsROCList != null)
 			itsROCList.clear();
-		itsLowestScore = Double.NaN;
+		itsLowestScore.set(NO_SCORE);
 		itsJointEntropy = Double.NaN;
 	}
 
@@ -321,6 +397,60 @@ public class SubgroupSet extends TreeSet<Subgroup>
 		return super.size();
 	}
 
+	/*
+	 * the methods below read the TreeSet, so Subgroups that are still in a
+	 * Buffer are merged first, other TreeSet methods that are not used by
+	 * SubDisc are not overridden
+	 */
+	@Override
+	public boolean isEmpty()
+	{
+		update();
+		return super.isEmpty();
+	}
+
+	@Override
+	public Iterator<Subgroup> iterator()
+	{
+		update();
+		return super.iterator();
+	}
+
+	@Override
+	public Iterator<Subgroup> descendingIterator()
+	{
+		update();
+		return super.descendingIterator();
+	}
+
+	@Override
+	public Subgroup first()
+	{
+		update();
+		return super.first();
+	}
+
+	@Override
+	public Subgroup last()
+	{
+		update();
+		return super.last();
+	}
+
+	@Override
+	public boolean contains(Object theObject)
+	{
+		update();
+		return super.contains(theObject);
+	}
+
+	@Override
+	public boolean remove(Object theObject)
+	{
+		update();
+		return super.remove(theObject);
+	}
+
 	////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////
 	///// start of post-processing code                                    /////
@@ -336,73 +466,42 @@ public class SubgroupSet extends TreeSet<Subgroup>
 	 * however, it is broken anyway
 	 * so needs additional updates as well
 	 */
-	/**
-	* Computes the multiplicative weight of a subgroup<br>
-	* See van Leeuwen & Knobbe, ECML PKDD 2011.
-	*/
-	/**
-	* Computes the cover count of a particular example: the number of times
-	* this example is a member of a subgroup<br>
-	* See van Leeuwen & Knobbe, ECML PKDD 2011
-	*/
 	public SubgroupSet postProcess(SearchStrategy theSearchStrategy)
+	{
+		return postProcess(theSearchStrategy, 0, SearchParameters.COVER_BASED_MEMORY_BUDGET_DEFAULT);
+	}
+
+	/**
+	 * Returns the Subgroups selected by cover-based subgroup selection
+	 * when theSearchStrategy is
+	 * {@link SearchStrategy#COVER_BASED_BEAM_SELECTION}, and this
+	 * SubgroupSet otherwise.
+	 *
+	 * @param theSearchStrategy the SearchStrategy used for mining.
+	 * @param theNrThreads the number of Threads to use, use
+	 * <code>theNrThreads <= 0</code> to use all available processors.
+	 * @param theMemoryBudget the maximum number of bytes used for caching
+	 * members during the selection, see
+	 * {@link SearchParameters#getCoverBasedMemoryBudget()}.
+	 *
+	 * @return the selected Subgroups, or this SubgroupSet.
+	 *
+	 * @see CoverBasedSubgroupSelection
+	 */
+	public SubgroupSet postProcess(SearchStrategy theSearchStrategy, int theNrThreads, long theMemoryBudget)
 	{
 		update();
 		if (theSearchStrategy != SearchStrategy.COVER_BASED_BEAM_SELECTION)
 			return this;
 
-		if (!USE_OLD_COVER_BASED_SUBGROUP_SELECTION)
-		{
-			// FIXME MM see constructor comment, it is not truly empty
-			SubgroupSet aCopy = new SubgroupSet(this); //make empty copy
-			for (Candidate c : CoverBasedSubgroupSelection.postProcessResultSet(this, COVER_BASED_SUBGROUP_SELECTION_TOP_K))
-				aCopy.add(c.getSubgroup()); // add not linear, but fine for now
-			aCopy.update();
-			aCopy.itsLowestScore = aCopy.last().getMeasureValue();
-
-			return aCopy;
-		}
-
-		// old code starts here
-		int aSize = 100; //TODO
-		Log.logCommandLine("subgroups found: " + size());
 		// FIXME MM see constructor comment, it is not truly empty
-		SubgroupSet aResult = new SubgroupSet(this); //make empty copy
-		int aLoopSize = Math.min(aSize, size());
-		BitSet aUsed = new BitSet(size());
-		for (int i=0; i<aLoopSize; i++)
-		{
-			Log.logCommandLine("loop " + i);
-			Subgroup aBest = null;
-			double aMaxQuality = Float.NEGATIVE_INFINITY;
-			int aCount = 0;
-			int aChosen = 0;
-			for (Subgroup aSubgroup : this)
-			{
-				if (!aUsed.get(aCount)) //is this one still available
-				{
-					double aQuality = computeMultiplicativeWeight(aResult, aSubgroup) * aSubgroup.getMeasureValue();
-					if (aQuality > aMaxQuality)
-					{
-						aMaxQuality = aQuality;
-						aBest = aSubgroup;
-						aChosen = aCount;
-					}
-				}
-				aCount++;
-			}
-			Log.logCommandLine("best (" + aChosen + "): " + aBest.getMeasureValue() + ", " + computeMultiplicativeWeight(aResult, aBest) + ", " + aMaxQuality + "\n");
-			aUsed.set(aChosen, true);
-			aResult.add(aBest);
-		}
-		aResult.update();
-		aResult.itsLowestScore = aResult.last().getMeasureValue();
+		SubgroupSet aCopy = new SubgroupSet(this); //make empty copy
+		for (Candidate c : CoverBasedSubgroupSelection.postProcessResultSet(this, COVER_BASED_SUBGROUP_SELECTION_TOP_K, theNrThreads, theMemoryBudget))
+			aCopy.add(c.getSubgroup()); // add not linear, but fine for now
+		aCopy.update();
+		aCopy.raiseLowestScore(aCopy.last().getMeasureValue());
 
-		Log.logCommandLine("========================================================");
-		Log.logCommandLine("used: " + aUsed.toString());
-		for (Subgroup aSubgroup : aResult)
-			Log.logCommandLine("result: " + aSubgroup.getMeasureValue());
-		return aResult;
+		return aCopy;
 	}
 
 	public void setIDs()
@@ -416,6 +515,27 @@ public class SubgroupSet extends TreeSet<Subgroup>
 	// obviously should not be called while mining...
 	/** topK must be > 0, only joint entropy is returned (CR is printed) */
 	public double postProcessGetCoverRedundancyAndJointEntropy(int topK)
+	{
+		return postProcessGetCoverRedundancyAndJointEntropy(topK, 0);
+	}
+
+	/**
+	 * topK must be > 0, only joint entropy is returned (CR is printed).
+	 * <p>
+	 * The joint entropy is that of the cover signatures of the rows, the
+	 * set of top-k Subgroups that cover a row. A signature is coded in 128
+	 * bits, exactly for topK <= 128, as a hash of random keys otherwise,
+	 * and rows with the same signature are counted in a hash table. So
+	 * memory use depends on the number of distinct signatures, not on the
+	 * number of rows, and blocks of rows can be processed concurrently.
+	 *
+	 * @param topK the number of Subgroups to use.
+	 * @param theNrThreads the number of Threads to use, use
+	 * <code>theNrThreads <= 0</code> to use all available processors.
+	 *
+	 * @return the joint entropy, in bits.
+	 */
+	public double postProcessGetCoverRedundancyAndJointEntropy(int topK, int theNrThreads)
 	{
 		if (topK <= 0)
 			throw new IllegalArgumentException(getClass().getName() + ".postProcessGetCoverRedundancyAndJointEntropy() invalid topK: " + topK);
@@ -426,11 +546,12 @@ public class SubgroupSet extends TreeSet<Subgroup>
 		if (max == 0) // when size == 0
 			return 0.0;
 
-		BitSet[] aRows      = new BitSet[itsNrRows];
-		int[] aCoverCounts  = new int[itsNrRows];
-		long aCoverCountSum = 0L;
-		for (int i=0; i<itsNrRows; i++)
-			aRows[i] = new BitSet(max);
+		final MemberSet[] aMembers = new MemberSet[max];
+		final long[] aLows         = new long[max];
+		final long[] aHighs        = new long[max];
+		long aCoverCountSum        = 0L;
+		// fixed seed, results do not depend on the run
+		Random aRandom = new Random(max);
 
 		int idx = -1;
 		for (Subgroup s : this)
@@ -438,55 +559,92 @@ public class SubgroupSet extends TreeSet<Subgroup>
 			if (++idx == max)
 				break;
 
-			BitSet b = s.getMembers();
+			aMembers[idx] = s.getMemberSet();
 			// no s.killMembers(); when called from ResultWindow members are set
 			// because a Table modification would make it impossible to evaluate
 			// the Subgroups (due to changed missing value, AttributeType, ...)
+			aCoverCountSum += aMembers[idx].cardinality();
 
-			for (int i = b.nextSetBit(0); i >= 0; i = b.nextSetBit(i+1))
+			if (max > 2 * Long.SIZE)
 			{
-				aRows[i].set(idx);
-				++aCoverCounts[i];
-				++aCoverCountSum;
+				aLows[idx]  = aRandom.nextLong();
+				aHighs[idx] = aRandom.nextLong();
 			}
+			else if (idx < Long.SIZE)
+				aLows[idx]  = (1L << idx);
+			else
+				aHighs[idx] = (1L << (idx - Long.SIZE));
 		}
 
-		double aTotalCount          = itsNrRows;
-		double anExpectedCoverCount = (aCoverCountSum / aTotalCount);
-		double aCoverRedundancy     = 0.0;
-		for (int i : aCoverCounts)
-			aCoverRedundancy += (Math.abs(i - anExpectedCoverCount));
-		aCoverRedundancy = (aCoverRedundancy/anExpectedCoverCount/aTotalCount);
+		final double aTotalCount          = itsNrRows;
+		final double anExpectedCoverCount = (aCoverCountSum / aTotalCount);
 
-		// TODO
-		// when there are many duplicates, a HashSet/TreeSet might be more
-		// efficient, as they allow to prevent duplicate rows permutations
-		// but these Sets (or Map<rowPermutation, count>) use a lot of memory
-		// and are often not faster, because of array data locality
-		// so the current n log n sorting + n count loop might well be faster
-		// than a Hash structure based O(n + n)
-		// a Tree would be O(n log m + n), where m = nrDistinctRowsPermutations
-		// it would need proper profiling to find the trade-off
-		BitSetComperator bc = new BitSetComperator();
-		Arrays.sort(aRows, bc);
-
-		double anEntropy = 0.0;
-		for (int i = 0, j = 0; ; )
+		// each task counts every aNrTasks-th block of rows
+		final int aNrBlocks = (itsNrRows + SIGNATURE_BLOCK_SIZE - 1) / SIGNATURE_BLOCK_SIZE;
+		int aNrThreads      = (theNrThreads <= 0) ? Runtime.getRuntime().availableProcessors() : theNrThreads;
+		final int aNrTasks  = Math.max(1, Math.min(aNrBlocks, aNrThreads));
+		final SignatureCounts[] aCounts = new SignatureCounts[aNrTasks];
+		final double[] aDeviations      = new double[aNrTasks];
+
+		List<Callable<Void>> aTasks = new ArrayList<Callable<Void>>(aNrTasks);
+		for (int t = 0; t < aNrTasks; ++t)
 		{
-			if (bc.compare(aRows[i], aRows[j]) != 0)
+			final int aTask = t;
+			aTasks.add(new Callable<Void>()
 			{
-				double aFraction = (j-i) / aTotalCount;
-				anEntropy += (-aFraction * Math.log(aFraction));
-				i = j;
+				@Override
+				public Void call()
+				{
+					aCounts[aTask] = new SignatureCounts();
+					for (int b = aTask; b < aNrBlocks; b += aNrTasks)
+					{
+						int aFrom = b * SIGNATURE_BLOCK_SIZE;
+						int aTo = Math.min(aFrom + SIGNATURE_BLOCK_SIZE, itsNrRows);
+						aDeviations[aTask] += countSignatures(aMembers, aLows, aHighs, aFrom, aTo, anExpectedCoverCount, aCounts[aTask]);
+					}
+					return null;
+				}
+			});
+		}
+
+		if (aNrTasks == 1)
+		{
+			try { aTasks.get(0).call(); }
+			catch (Exception e) { throw new RuntimeException(e); }
+		}
+		else
+		{
+			ExecutorService es = Executors.newFixedThreadPool(aNrTasks);
+			try
+			{
+				for (Future<Void> f : es.invokeAll(aTasks))
+					f.get();
 			}
-			else if (++j == itsNrRows)
+			catch (InterruptedException e)
 			{
-				double aFraction = (j-i) / aTotalCount;
-				anEntropy += (-aFraction * Math.log(aFraction));
-				break;
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			catch (ExecutionException e)
+			{
+				throw new RuntimeException(e.getCause());
+			}
+			finally
+			{
+				es.shutdownNow();
 			}
 		}
-		anEntropy /= Math.log(2.0);
+
+		double aCoverRedundancy = 0.0;
+		for (int t = 0; t < aNrTasks; ++t)
+		{
+			aCoverRedundancy += aDeviations[t];
+			if (t > 0)
+				aCounts[0].addAll(aCounts[t]);
+		}
+		aCoverRedundancy = (aCoverRedundancy/anExpectedCoverCount/aTotalCount);
+
+		double anEntropy = aCounts[0].getEntropy(aTotalCount) / Math.log(2.0);
 
 		// prints topK (not max), fixed value is easier for log file parsing
 		// the value for max is logged as:
@@ -498,28 +656,111 @@ public class SubgroupSet extends TreeSet<Subgroup>
 		return anEntropy;
 	}
 
-	private static final class BitSetComperator implements Comparator<BitSet>
+	/*
+	 * adds the signatures of rows [theFrom, theTo) to theCounts, returns
+	 * the sum of the absolute deviations of their cover counts from
+	 * theExpectedCoverCount
+	 */
+	private static double countSignatures(MemberSet[] theMembers, long[] theLows, long[] theHighs, int theFrom, int theTo, double theExpectedCoverCount, SignatureCounts theCounts)
 	{
-		@Override
-		public int compare(BitSet a, BitSet b)
+		int aSize = theTo - theFrom;
+		long[] aLows = new long[aSize];
+		long[] aHighs = new long[aSize];
+		int[] aCoverCounts = new int[aSize];
+
+		for (int k = 0; k < theMembers.length; ++k)
+		{
+			MemberSet m = theMembers[k];
+			for (int i = m.nextSetBit(theFrom); i >= 0 && i < theTo; i = m.nextSetBit(i+1))
+			{
+				aLows[i - theFrom]  ^= theLows[k];
+				aHighs[i - theFrom] ^= theHighs[k];
+				++aCoverCounts[i - theFrom];
+			}
+		}
+
+		double aDeviation = 0.0;
+		for (int i = 0; i < aSize; ++i)
 		{
-			if (a == b)
-				return 0;
+			aDeviation += (Math.abs(aCoverCounts[i] - theExpectedCoverCount));
+			theCounts.add(aLows[i], aHighs[i], 1);
+		}
+
+		return aDeviation;
+	}
 
-			int cmp = (a.cardinality() - b.cardinality());
-			if (cmp != 0)
-				return cmp;
+	/*
+	 * the number of rows per 128-bit signature, using open addressing
+	 * a count of 0 marks an empty slot, so all signatures are valid keys,
+	 * including the empty signature of rows that are not covered
+	 */
+	private static final class SignatureCounts
+	{
+		private long[] itsLows = new long[16];
+		private long[] itsHighs = new long[16];
+		private int[] itsCounts = new int[16];
+		private int itsSize = 0;
 
-			// NOTE size could be larger than topK, but BitSets will be replaced
-			for (int i = 0, j = a.size(); i < j; ++i)
+		void add(long theLow, long theHigh, int theCount)
+		{
+			int aMask = itsCounts.length - 1;
+			int i = hash(theLow, theHigh) & aMask;
+			for ( ; itsCounts[i] != 0; i = (i + 1) & aMask)
 			{
-				boolean ai = a.get(i);
-				if (ai ^ b.get(i))
-					return (ai ? -1 : 1);
+				if (itsLows[i] == theLow && itsHighs[i] == theHigh)
+				{
+					itsCounts[i] += theCount;
+					return;
+				}
 			}
 
-			// all bits the same, enforce total ordering not required for array
-			return 0;
+			itsLows[i] = theLow;
+			itsHighs[i] = theHigh;
+			itsCounts[i] = theCount;
+			// keep the load factor <= 0.5
+			if (2 * ++itsSize > itsCounts.length)
+				grow();
+		}
+
+		void addAll(SignatureCounts theOther)
+		{
+			for (int i = 0; i < theOther.itsCounts.length; ++i)
+				if (theOther.itsCounts[i] != 0)
+					add(theOther.itsLows[i], theOther.itsHighs[i], theOther.itsCounts[i]);
+		}
+
+		// in nats
+		double getEntropy(double theTotalCount)
+		{
+			double anEntropy = 0.0;
+			for (int c : itsCounts)
+			{
+				if (c == 0)
+					continue;
+				double aFraction = c / theTotalCount;
+				anEntropy += (-aFraction * Math.log(aFraction));
+			}
+			return anEntropy;
+		}
+
+		private void grow()
+		{
+			long[] aLows = itsLows;
+			long[] aHighs = itsHighs;
+			int[] aCounts = itsCounts;
+			itsLows = new long[2 * aCounts.length];
+			itsHighs = new long[2 * aCounts.length];
+			itsCounts = new int[2 * aCounts.length];
+			itsSize = 0;
+			for (int i = 0; i < aCounts.length; ++i)
+				if (aCounts[i] != 0)
+					add(aLows[i], aHighs[i], aCounts[i]);
+		}
+
+		private static int hash(long theLow, long theHigh)
+		{
+			long h = (theLow * 0x9E3779B97F4A7C15L) ^ (theHigh * 0xC2B2AE3D27D4EB4FL);
+			return (int) (h ^ (h >>> 32));
 		}
 	}
 
@@ -584,40 +825,42 @@ public class SubgroupSet extends TreeSet<Subgroup>
 
 	public double getJointEntropy() { return itsJointEntropy; }
 
-	//Determines for each Subgroup in the result whether it should remain there. If the Subgroup is a specialisation of another Subgroup, and it has lower quality, it will be removed.
-	//This is a quadratic process (in the size of the result), so could be slow for very large result sets.
 	public void filterSubgroups(float theMinimumImprovement)
 	{
+		filterSubgroups(theMinimumImprovement, 0);
+	}
+
+	//Determines for each Subgroup in the result whether it should remain there. If the Subgroup is a specialisation of another Subgroup, and it has lower quality, it will be removed.
+	//Generalisations are looked up in a prefix trie over the result, see RedundancyFilter, use theNrThreads <= 0 to use all available processors.
+	public void filterSubgroups(float theMinimumImprovement, int theNrThreads)
+	{
+		update();
 		int aSize = size();
-		Iterator<Subgroup> anIterator = iterator();
+		boolean[] isRedundant = new RedundancyFilter(this, theNrThreads).getRedundant(theMinimumImprovement);
 
-		while (anIterator.hasNext())
+		// same order as RedundancyFilter
+		int i = 0;
+		for (Iterator<Subgroup> anIterator = iterator(); anIterator.hasNext(); ++i)
 		{
-			Subgroup aFirstSubgroup = anIterator.next();
-			for (Subgroup aSecondSubgroup : this)
-				if (aFirstSubgroup != aSecondSubgroup)
-				{
-					if (aFirstSubgroup.strictlySpecialises(aSecondSubgroup) && aFirstSubgroup.getMeasureValue() <= aSecondSubgroup.getMeasureValue() + theMinimumImprovement)
-					{
-						anIterator.remove();
-						break;
-					}
-				}
+			anIterator.next();
+			if (isRedundant[i])
+				anIterator.remove();
 		}
 		System.out.println("Raw result set size: " + aSize);
 		System.out.println("Filtered result set size: " + size());
 	}
 
+	// text version, writes a row of 0/1 values per record of theTable, see saveExtent(File, Table, BitSet) for large results
 	public void saveExtent(BufferedWriter theWriter, Table theTable, BitSet theSubset, TargetConcept theTargetConcept)
 	{
 		update();
 		Log.logCommandLine("saving extent...");
 		try
 		{
-			// get SubgroupMembers only once
-			List<BitSet> aMembers = new ArrayList<BitSet>(this.size());
+			// get SubgroupMembers only once, compressed, not as BitSets
+			List<MemberSet> aMembers = new ArrayList<MemberSet>(this.size());
 			for (Subgroup s : this)
-				aMembers.add(s.getMembers());
+				aMembers.add(s.getMemberSet());
 
 			// row length = 5 + size()*(,1) + \n
 			int aNrChars = this.size()*2 + 6;
@@ -637,8 +880,8 @@ public class SubgroupSet extends TreeSet<Subgroup>
 				{
 					aRow = new StringBuilder(aNrChars);
 					aRow.append("train");
-					for (BitSet b : aMembers)
-						aRow.append(b.get(k) ? ",1" : ",0");
+					for (MemberSet m : aMembers)
+						aRow.append(m.get(k) ? ",1" : ",0");
 					theWriter.write(aRow.append("\n").toString());
 					++k;
 				}
@@ -652,6 +895,25 @@ public class SubgroupSet extends TreeSet<Subgroup>
 		}
 	}
 
+	/**
+	 * Writes the extents of the Subgroups in this SubgroupSet to theFile,
+	 * as a binary {@link ExtentFile}, with a compressed block per Subgroup.
+	 *
+	 * @param theFile the File to write to, it is overwritten if it exists.
+	 * @param theTable the Table, theSubset refers to its rows.
+	 * @param theSubset the rows that were used for mining, use
+	 * <code>null</code> when all rows were used.
+	 *
+	 * @return <code>true</code> if theFile was written successfully,
+	 * <code>false</code> otherwise.
+	 */
+	public boolean saveExtent(File theFile, Table theTable, BitSet theSubset)
+	{
+		update();
+		Log.logCommandLine("saving extent...");
+		return ExtentFile.write(theFile, this, theTable.getNrRows(), theSubset);
+	}
+
 	/*
 	 * ROCList functions.
 	 * TODO update a single ROCList instance?
@@ -797,59 +1059,18 @@ Log.logCommandLine("\nAUC: " + itsROCList.getAreaUnderCurve());
 		// first select all rows that might be duplicates based on cqst:
 		//   Coverage+Quality+Probability+Positives (nominal)
 		//   Coverage+Quality+Average    +St. Dev.  (numeric)
+		// and a hash of the members, see RedundancyFilter
 		// if unique                               -> write line
 		// else canonicalise these lines
 		//   for all lines that might be duplicates:
 		//     if later lines reduce to an earlier -> write DELETE_SYMBOL + line
 		//     else if later is subsets of earlier -> write DELETE_SYMBOL + line
 		//     else                                -> write line
-		List<Subgroup> aSameCQST = new ArrayList<Subgroup>();
-
-		// fake this one - could pass itsAllDataBitSet, but clone is more safe
-		Subgroup aLast = new Subgroup(ConditionListBuilder.emptyList(), getAllDataBitSetClone(), this);
-		// compares false for first Subgroup, even if its score is NaN
-		aLast.setMeasureValue(Double.NaN);
-
-		for (Subgroup s : this)
-		{
-			// FIXME MM overwrite any value that might be present, abuse p-value
-			s.setPValue(Double.NaN);
-
-			boolean hasSameCQPP =
-				(aLast.getCoverage() == s.getCoverage()) &&
-				(aLast.getMeasureValue() == s.getMeasureValue()) &&
-				(aLast.getSecondaryStatistic() == s.getSecondaryStatistic()) &&
-				(aLast.getTertiaryStatistic() == s.getTertiaryStatistic());
-
-			if (!hasSameCQPP && aSameCQST.isEmpty())
-			{
-				aLast = s;
-				continue;
-			}
-			else if (!hasSameCQPP && !aSameCQST.isEmpty())
-			{
-				// new CQPP found, but all lines in
-				// sameCQPP need to be processed first
-				markAlternativeDescriptionsProcess(aSameCQST);
-				aSameCQST.clear();
-				aLast = s;
-				continue;
-			}
-			else if (hasSameCQPP && aSameCQST.isEmpty())
-			{
-				// first duplicate, so add previous also
-				aSameCQST.add(aLast);
-				aSameCQST.add(s);
-			}
-			else // (hasSameCQPP && !sameCQPP.isEmpty())
-			{
-				// multiple duplicates, add current too
-				aSameCQST.add(s);
-			}
-		}
+		new RedundancyFilter(this, 0).markAlternativeDescriptions();
 	}
 
-	private static final void markAlternativeDescriptionsProcess(List<Subgroup> sameCQST)
+	// Subgroups in sameCQST are in the order of the SubgroupSet
+	static final void markAlternativeDescriptionsProcess(List<Subgroup> sameCQST)
 	{
 		for (int i = 0, j = sameCQST.size(); i < j-1; ++i)
 		{
@@ -904,41 +1125,4 @@ Log.logCommandLine("\nAUC: " + itsROCList.getAreaUnderCurve());
 								s.getCoverage(),
 								s.getMeasureValue()));
 	}
-
-	// see extensive comment on CBSS implementation at bottom of CandidateQueue
-	/**
-	 * Computes the cover count of a particular example: the number of times
-	 * this example is a member of a subgroup.<br>
-	 * See van Leeuwen & Knobbe, ECML PKDD 2011
-	 */
-	@Deprecated
-	private int computeCoverCount(SubgroupSet theSet, int theRow)
-	{
-		int aResult = 0;
-		for (Subgroup aSubgroup : theSet)
-		{
-			if (aSubgroup.covers(theRow))
-				aResult++;
-		}
-		return aResult;
-	}
-
-	/**
-	 * Computes the multiplicative weight of a subgroup.<br>
-	 * See van Leeuwen & Knobbe, ECML PKDD 2011.
-	 */
-	@Deprecated
-	private double computeMultiplicativeWeight(SubgroupSet theSet, Subgroup theSubgroup)
-	{
-		double aResult = 0;
-		double anAlpha = 0.9;
-		BitSet aMember = theSubgroup.getMembers();
-
-		for(int i=aMember.nextSetBit(0); i>=0; i=aMember.nextSetBit(i+1))
-		{
-			int aCoverCount = computeCoverCount(theSet, i);
-			aResult += Math.pow(anAlpha, aCoverCount);
-		}
-		return aResult/theSubgroup.getCoverage();
-	}
 }
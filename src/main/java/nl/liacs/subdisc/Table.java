@@ -1,6 +1,8 @@
 package nl.liacs.subdisc;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
 import java.sql.*;
 import javax.swing.*;
@@ -382,6 +384,12 @@ public class Table implements XMLNodeInterface
 
 	/** Returns a BitSet of size Table.size(), with theNrBitsToSet bits set. */
 	public BitSet getRandomBitSet(int theNrBitsToSet)
+	{
+		return getRandomBitSet(theNrBitsToSet, itsRandomNumber);
+	}
+
+	/** As {@link #getRandomBitSet(int)}, using theRandom instead of this Table's Random. */
+	public BitSet getRandomBitSet(int theNrBitsToSet, Random theRandom)
 	{
 		BitSet aSample = new BitSet(itsNrRows);
 		int m = 0;
@@ -392,7 +400,7 @@ public class Table implements XMLNodeInterface
 			double aThresholdValue1 = theNrBitsToSet - m;
 			double aThresholdValue2 = itsNrRows - t;
 
-			if ((aThresholdValue2 * itsRandomNumber.nextDouble()) < aThresholdValue1)
+			if ((aThresholdValue2 * theRandom.nextDouble()) < aThresholdValue1)
 			{
 				aSample.set(i);
 				m++;
@@ -445,6 +453,94 @@ public class Table implements XMLNodeInterface
 	 * @see Validation#swapRandomization(int)
 	 */
 	public void swapRandomizeTarget(TargetConcept theTC)
+	{
+		final List<Column> aTargets = getSwapRandomizeTargets(theTC);
+
+		int[] aPermutation = getPermutation(getNrRows(), itsRandomNumber);
+
+		//execute permutation on all targets
+		for (Column aColumn : aTargets)
+		{
+			Log.logCommandLine("permuting \"" + aColumn.getName() + "\"");
+			aColumn.permute(aPermutation);
+		}
+	}
+
+	/**
+	 * Non-destructive alternative to
+	 * {@link #swapRandomizeTarget(TargetConcept)}.
+	 * Creates a new Table in which every {@link Column} is a
+	 * {@link Column#copy() copy} that shares its data with the Column of
+	 * this Table, except for the target Columns of the
+	 * {@link TargetConcept} passed in as parameter, which are permuted.
+	 * Neither this Table nor theTC are changed, so multiple views can be
+	 * mined concurrently.
+	 * <p>
+	 * Use {@link TargetConcept#updateToNewTable(Table)} on a
+	 * {@link TargetConcept#copy() copy} of theTC to obtain the
+	 * TargetConcept for the new Table.
+	 *
+	 * @param theTC the TargetConcept to swapRandomize.
+	 * @param theRandom the source of randomness for the permutation.
+	 *
+	 * @return a swap randomised view of this Table.
+	 *
+	 * @see Validation#getQualitiesParallel(String[], int)
+	 */
+	public Table swapRandomizedView(TargetConcept theTC, Random theRandom)
+	{
+		final List<Column> aTargets = getSwapRandomizeTargets(theTC);
+
+		int[] aPermutation = getPermutation(getNrRows(), theRandom);
+
+		Table aResult = new Table(new File(itsSource), itsName, itsNrRows, itsNrColumns);
+		for (Column aColumn : itsColumns)
+		{
+			Column aCopy = aColumn.copy();
+			// Column does not override equals(), contains() uses ==
+			if (aTargets.contains(aColumn))
+				aCopy.permute(aPermutation);
+			aResult.itsColumns.add(aCopy);
+		}
+
+		aResult.itsRandomNumber = new Random(theRandom.nextLong());
+		aResult.itsDomains = itsDomains;
+		aResult.itsDomainIndices = itsDomainIndices;
+
+		return aResult;
+	}
+
+	/**
+	 * Creates a new Table in which every {@link Column} is a
+	 * {@link Column#copy() copy} that shares its data with the Column of
+	 * this Table. The data is not copied, but the Columns of the view hold
+	 * their own mining state, such as their sort data. So multiple views
+	 * can be mined concurrently, each using its own selection
+	 * <code>BitSet</code> to restrict the mining to a subset of the
+	 * records, as an alternative to {@link #select(BitSet)}.
+	 * <p>
+	 * Use {@link TargetConcept#updateToNewTable(Table)} on a
+	 * {@link TargetConcept#copy() copy} of the TargetConcept to obtain the
+	 * TargetConcept for the new Table.
+	 *
+	 * @return a view of this Table.
+	 *
+	 * @see CrossValidationRunner
+	 */
+	public Table sharedView()
+	{
+		Table aResult = new Table(new File(itsSource), itsName, itsNrRows, itsNrColumns);
+		for (Column aColumn : itsColumns)
+			aResult.itsColumns.add(aColumn.copy());
+
+		aResult.itsRandomNumber = itsRandomNumber;
+		aResult.itsDomains = itsDomains;
+		aResult.itsDomainIndices = itsDomainIndices;
+
+		return aResult;
+	}
+
+	private static final List<Column> getSwapRandomizeTargets(TargetConcept theTC)
 	{
 		TargetType aType = theTC.getTargetType();
 
@@ -497,7 +593,12 @@ public class Table implements XMLNodeInterface
 //			}
 //		}
 
-		int n = getNrRows();
+		return aTargets;
+	}
+
+	private static final int[] getPermutation(int theNrRows, Random theRandom)
+	{
+		int n = theNrRows;
 		//start with regular order
 		int[] aPermutation = new int[n];
 		for (int i=0; i<n; i++)
@@ -507,7 +608,7 @@ public class Table implements XMLNodeInterface
 		for (int i=0; i<n-1; i++)
 		{
 			int aFirst = i;
-			int aSecond = i+itsRandomNumber.nextInt(n-i);
+			int aSecond = i+theRandom.nextInt(n-i);
 
 			//swap first and second
 			int aSwap = aPermutation[aFirst];
@@ -515,12 +616,7 @@ public class Table implements XMLNodeInterface
 			aPermutation[aSecond] = aSwap;
 		}
 
-		//execute permutation on all targets
-		for (Column aColumn : aTargets)
-		{
-			Log.logCommandLine("permuting \"" + aColumn.getName() + "\"");
-			aColumn.permute(aPermutation);
-		}
+		return aPermutation;
 	}
 
 	public void print()
@@ -706,6 +802,91 @@ public class Table implements XMLNodeInterface
 		}
 	}
 
+	/**
+	 * Writes this Table to theFile in the columnar binary snapshot format
+	 * that is read by {@link FileLoaderSnapshot}.
+	 * <p>
+	 * The File starts with a header, holding
+	 * {@link FileLoaderSnapshot#MAGIC}, the number of rows and columns, the
+	 * name and source of this Table, and a directory with the offset and
+	 * length of each Column.
+	 * Each Column is written as one contiguous block, see
+	 * {@link Column#toSnapshot()}, such that it can be mapped into memory
+	 * and read using bulk transfers.
+	 * All values are written using ByteOrder.LITTLE_ENDIAN.
+	 *
+	 * @param theFile the File to write to, it is overwritten if it exists.
+	 *
+	 * @return <code>true</code> if the snapshot was written successfully,
+	 * <code>false</code> otherwise.
+	 */
+	public boolean toSnapshot(File theFile)
+	{
+		update();
+
+		byte[] aName = Column.getSnapshotBytes(itsName);
+		byte[] aSource = Column.getSnapshotBytes(itsSource);
+		int aHeaderSize = Long.BYTES + (4 * Integer.BYTES)
+				+ (aName == null ? 0 : aName.length)
+				+ (aSource == null ? 0 : aSource.length)
+				+ (itsNrColumns * (Long.BYTES + Integer.BYTES));
+
+		RandomAccessFile aFile = null;
+		try
+		{
+			aFile = new RandomAccessFile(theFile, "rw");
+			aFile.setLength(0);
+			FileChannel aChannel = aFile.getChannel();
+
+			// Columns are written first, then the header with the directory
+			long[] anOffsets = new long[itsNrColumns];
+			int[] aLengths = new int[itsNrColumns];
+			long anOffset = aHeaderSize;
+			for (int i = 0; i < itsNrColumns; ++i)
+			{
+				ByteBuffer aColumn = itsColumns.get(i).toSnapshot();
+				anOffsets[i] = anOffset;
+				aLengths[i] = aColumn.remaining();
+				while (aColumn.hasRemaining())
+					anOffset += aChannel.write(aColumn, anOffset);
+			}
+
+			ByteBuffer aHeader = ByteBuffer.allocate(aHeaderSize).order(ByteOrder.LITTLE_ENDIAN);
+			aHeader.putLong(FileLoaderSnapshot.MAGIC);
+			aHeader.putInt(itsNrRows);
+			aHeader.putInt(itsNrColumns);
+			Column.putSnapshotBytes(aHeader, aName);
+			Column.putSnapshotBytes(aHeader, aSource);
+			for (int i = 0; i < itsNrColumns; ++i)
+			{
+				aHeader.putLong(anOffsets[i]);
+				aHeader.putInt(aLengths[i]);
+			}
+			aHeader.flip();
+			for (long aPosition = 0; aHeader.hasRemaining(); )
+				aPosition += aChannel.write(aHeader, aPosition);
+
+			return true;
+		}
+		catch (IOException e)
+		{
+			Log.logCommandLine("Error while writing snapshot: " + theFile);
+			return false;
+		}
+		finally
+		{
+			try
+			{
+				if (aFile != null)
+					aFile.close();
+			}
+			catch (IOException e)
+			{
+				Log.logCommandLine("Error while writing snapshot: " + theFile);
+			}
+		}
+	}
+
 	@Override
 	public void addNodeTo(Node theParentNode)
 	{
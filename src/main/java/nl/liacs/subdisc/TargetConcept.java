@@ -118,6 +118,31 @@ public class TargetConcept implements XMLNodeInterface
 		itsInterceptRelevance = theInterceptRelevance;
 	}
 
+	/**
+	 * Creates a shallow copy of this TargetConcept, the {@link Column}s
+	 * are not copied. Use {@link #updateToNewTable(Table)} on the copy to
+	 * make it point to the Columns of another {@link Table}.
+	 *
+	 * @return a copy of this TargetConcept.
+	 */
+	public TargetConcept copy()
+	{
+		TargetConcept aCopy = new TargetConcept();
+		aCopy.itsNrTargetAttributes = itsNrTargetAttributes;
+		aCopy.itsTargetType = itsTargetType;
+		aCopy.itsPrimaryTarget = itsPrimaryTarget;
+		aCopy.itsTargetValue = itsTargetValue;
+		aCopy.itsSecondaryTarget = itsSecondaryTarget;
+		aCopy.itsMultiRegressionTargets = itsMultiRegressionTargets;
+		aCopy.itsMultiTargets = itsMultiTargets;
+		aCopy.itsSecondaryTargets = itsSecondaryTargets;
+		aCopy.itsTertiaryTargets = itsTertiaryTargets;
+		aCopy.itsInterceptRelevance = itsInterceptRelevance;
+		aCopy.itsGlobalRegressionModel = itsGlobalRegressionModel;
+
+		return aCopy;
+	}
+
 	/**
 	 * Updates the TargetConcept to point to a new {@link Table} that is a
 	 * copy of the old <code>Table</code> it was pointing to.
@@ -140,7 +165,7 @@ public class TargetConcept implements XMLNodeInterface
 		}
 		if (itsMultiTargets != null) //replace entire list
 		{
-			List<Column> aList = new ArrayList<Column>(itsMultiTargets);
+			List<Column> aList = new ArrayList<Column>(itsMultiTargets.size());
 			for (Column aColumn : itsMultiTargets)
 			{
 				int aColumnIndex = aColumn.getIndex();
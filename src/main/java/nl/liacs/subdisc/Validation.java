@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 import nl.liacs.subdisc.ConditionListBuilder.ConditionList;
 import nl.liacs.subdisc.gui.*;
@@ -60,6 +61,40 @@ public class Validation
 		return null;
 	}
 
+	/**
+	 * Parallel alternative to {@link #getQualities(String[])}, the
+	 * repetitions are distributed over theNrThreads Threads.
+	 * <p>
+	 * Every repetition uses its own seed, derived from a fixed seed, so the
+	 * result only depends on theSetup, not on theNrThreads or on the order
+	 * in which the repetitions are run. The {@link Table} and
+	 * {@link TargetConcept} are not modified.
+	 *
+	 * @param theSetup see {@link RandomQualitiesWindow}.
+	 * @param theNrThreads the number of Threads to use, use
+	 * <code>theNrThreads <= 0</code> to use all available processors.
+	 *
+	 * @return an array holding the quality of each repetition, or
+	 * <code>null</code> if theSetup is invalid.
+	 */
+	public double[] getQualitiesParallel(String[] theSetup, int theNrThreads)
+	{
+		if (!RandomQualitiesWindow.isValidRandomQualitiesSetup(theSetup))
+			return null;
+
+		String aMethod = theSetup[0];
+		int aNrRepetitions = Integer.parseInt(theSetup[1]);
+
+		if (RandomQualitiesWindow.RANDOM_SUBSETS.equals(aMethod))
+			return getRandomQualitiesParallel(true, aNrRepetitions, theNrThreads);
+		else if (RandomQualitiesWindow.RANDOM_DESCRIPTIONS.equals(aMethod))
+			return getRandomQualitiesParallel(false, aNrRepetitions, theNrThreads);
+		else if (RandomQualitiesWindow.SWAP_RANDOMIZATION.equals(aMethod))
+			return swapRandomizationParallel(aNrRepetitions, theNrThreads);
+
+		return null;
+	}
+
 	// add TargetTypes implemented in getRandomQualitites() to this list
 	public static boolean isValidRandomQualitiesTargetType(TargetType theTargetType)
 	{
@@ -128,6 +163,34 @@ public class Validation
 	// if forSubgroups is true, create Subgroups, else create Conditions
 	// if forSubgroups is true, theDepth is ignored
 	private double[] getSingleNominalQualities(boolean forSubgroups, int theNrRepetitions, int theMinimumCoverage, Random theRandom, int theDepth)
+	{
+		BitSet b = getBinaryTarget();
+
+		final double[] aQualities = new double[theNrRepetitions];
+
+		for (int i = 0; i < theNrRepetitions; ++i)
+		{
+			Subgroup aSubgroup;
+
+			// essential switch between Subgroups/ Conditions
+			if (forSubgroups)
+				aSubgroup = getValidSubgroup(theMinimumCoverage, theRandom);
+			else
+				aSubgroup = getValidSubgroup(theDepth, theMinimumCoverage, theRandom);
+
+			BitSet aMembers = aSubgroup.getMembers();
+			// aMembers is a clone so this is safe
+			aMembers.and(b);
+			int aCountHeadBody = aMembers.cardinality();
+
+			aQualities[i] = itsQualityMeasure.calculate(aCountHeadBody, aSubgroup.getCoverage());
+		}
+
+		return aQualities;
+	}
+
+	// used by SINGLE_NOMINAL getSingleNominalQualities() and getRandomQuality()
+	private BitSet getBinaryTarget()
 	{
 ////////////////////////////////////////////////////////////////////////////////
 ///// FIXME - WHY IS THIS HERE, itsBinaryTarget IS AVAILABLE ALREADY       /////
@@ -163,27 +226,7 @@ public class Validation
 ////////////////////////////////////////////////////////////////////////////////
 ////////////////////////////////////////////////////////////////////////////////
 
-		final double[] aQualities = new double[theNrRepetitions];
-
-		for (int i = 0; i < theNrRepetitions; ++i)
-		{
-			Subgroup aSubgroup;
-
-			// essential switch between Subgroups/ Conditions
-			if (forSubgroups)
-				aSubgroup = getValidSubgroup(theMinimumCoverage, theRandom);
-			else
-				aSubgroup = getValidSubgroup(theDepth, theMinimumCoverage, theRandom);
-
-			BitSet aMembers = aSubgroup.getMembers();
-			// aMembers is a clone so this is safe
-			aMembers.and(b);
-			int aCountHeadBody = aMembers.cardinality();
-
-			aQualities[i] = itsQualityMeasure.calculate(aCountHeadBody, aSubgroup.getCoverage());
-		}
-
-		return aQualities;
+		return b;
 	}
 
 	// if forSubgroups is true, create Subgroups, else create Conditions
@@ -279,7 +322,7 @@ public class Validation
 
 			CorrelationMeasure aCM = new CorrelationMeasure(itsBaseCM);
 
-			for (int k = aMembers.nextSetBit(0); k >= 0; k = aMembers.nextSetBit(k))
+			for (int k = aMembers.nextSetBit(0); k >= 0; k = aMembers.nextSetBit(k + 1))
 				aCM.addObservation(aPrimaryColumn.getFloat(k), aSecondaryColumn.getFloat(k));
 
 			aQualities[i] = aCM.getEvaluationMeasureValue();
@@ -313,7 +356,7 @@ public class Validation
 
             CorrelationMeasure aCM = new CorrelationMeasure(itsBaseCM);
 
-            for (int k = aMembers.nextSetBit(0); k >= 0; k = aMembers.nextSetBit(k))
+            for (int k = aMembers.nextSetBit(0); k >= 0; k = aMembers.nextSetBit(k + 1))
                 aCM.addObservation(aPrimaryColumn.getFloat(k), aSecondaryColumn.getFloat(k));
 
             aQualities[i] = aCM.getEvaluationMeasureValue();
@@ -415,6 +458,17 @@ public class Validation
 
 	// for RANDOM_SUBSETS/Subgroups, always uses an updated Random value
 	private Subgroup getValidSubgroup(int theMinimumCoverage, Random theRandom)
+	{
+		return new Subgroup(itsTable.getRandomBitSet(getValidSubgroupSize(theMinimumCoverage, theRandom)));
+	}
+
+	// as above, but also uses theRandom to select the members
+	private Subgroup getValidRandomSubgroup(int theMinimumCoverage, Random theRandom)
+	{
+		return new Subgroup(itsTable.getRandomBitSet(getValidSubgroupSize(theMinimumCoverage, theRandom), theRandom));
+	}
+
+	private int getValidSubgroupSize(int theMinimumCoverage, Random theRandom)
 	{
 		final int aNrRows = itsTable.getNrRows();
 		int aSubgroupSize;
@@ -423,7 +477,7 @@ public class Validation
 			aSubgroupSize = (int) (theRandom.nextDouble() * aNrRows);
 		while (aSubgroupSize < theMinimumCoverage || aSubgroupSize == aNrRows);
 
-		return new Subgroup(itsTable.getRandomBitSet(aSubgroupSize));
+		return aSubgroupSize;
 	}
 
 	// for RANDOM_DESCRIPTIONS/Conditions, always uses the same Random value
@@ -662,6 +716,358 @@ public class Validation
 		return theRepetition;
 	}
 
+	/*
+	 * Parallel validation.
+	 *
+	 * The methods below are the parallel counterparts of
+	 * getRandomQualities() and swapRandomization(). Each repetition is a
+	 * separate task, that uses its own Random, created from the seed at the
+	 * index of the repetition in getRepetitionSeeds(). Therefore results are
+	 * reproducible, and independent of the number of Threads.
+	 *
+	 * NOTE the QualityMeasure for MULTI_LABEL stores the base model in static
+	 * fields, swapRandomizationParallel() creates one for every repetition.
+	 * This is safe, as all target Columns are permuted using the same
+	 * permutation, so the base model, learned from the target Columns only,
+	 * is the same for each repetition.
+	 */
+
+	// fixed, like the Random in getRandomQualities()
+	private static final long REPETITION_SEED = 10L;
+
+	private static final long[] getRepetitionSeeds(int theNrRepetitions)
+	{
+		final Random aRandom = new Random(REPETITION_SEED);
+		final long[] aSeeds = new long[theNrRepetitions];
+		for (int i = 0; i < theNrRepetitions; ++i)
+			aSeeds[i] = aRandom.nextLong();
+		return aSeeds;
+	}
+
+	private static final double[] invokeAll(List<Callable<Double>> theTasks, int theNrThreads)
+	{
+		if (theNrThreads <= 0)
+			theNrThreads = Runtime.getRuntime().availableProcessors();
+
+		ExecutorService es = Executors.newFixedThreadPool(theNrThreads);
+		try
+		{
+			List<Future<Double>> aFutures = es.invokeAll(theTasks);
+			double[] aQualities = new double[aFutures.size()];
+			for (int i = 0, j = aQualities.length; i < j; ++i)
+				aQualities[i] = aFutures.get(i).get();
+			return aQualities;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			// rethrow the Exception that occurred in the repetition
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			es.shutdownNow();
+		}
+	}
+
+	/**
+	 * Parallel alternative to {@link #getRandomQualities(boolean, int)}.
+	 * For the Random Subsets, the members of each {@link Subgroup} are
+	 * drawn using the Random of the repetition, not that of the
+	 * {@link Table}.
+	 *
+	 * @param forSubgroups use Random Subsets if <code>true</code>, Random
+	 * Descriptions otherwise.
+	 * @param theNrRepetitions the number of random Subgroups.
+	 * @param theNrThreads the number of Threads to use, use
+	 * <code>theNrThreads <= 0</code> to use all available processors.
+	 *
+	 * @return an array holding the quality of each random Subgroup.
+	 */
+	public double[] getRandomQualitiesParallel(final boolean forSubgroups, int theNrRepetitions, int theNrThreads)
+	{
+		final int aMinimumCoverage = itsSearchParameters.getMinimumCoverage();
+		final int aDepth = itsSearchParameters.getSearchDepth();
+		final RandomQuality aRandomQuality = getRandomQuality();
+
+		final long[] aSeeds = getRepetitionSeeds(theNrRepetitions);
+		final List<Callable<Double>> aTasks = new ArrayList<Callable<Double>>(theNrRepetitions);
+		for (final long aSeed : aSeeds)
+		{
+			aTasks.add(new Callable<Double>()
+			{
+				@Override
+				public Double call()
+				{
+					Random aRandom = new Random(aSeed);
+					Subgroup aSubgroup;
+
+					// essential switch between Subgroups/ Conditions
+					if (forSubgroups)
+						aSubgroup = getValidRandomSubgroup(aMinimumCoverage, aRandom);
+					else
+						aSubgroup = getValidSubgroup(aDepth, aMinimumCoverage, aRandom);
+
+					return aRandomQuality.calculate(aSubgroup);
+				}
+			});
+		}
+
+		return invokeAll(aTasks, theNrThreads);
+	}
+
+	/*
+	 * Computes the quality of a single random Subgroup, the per-TargetType
+	 * set up is done once, in getRandomQuality(), and shared by all Threads.
+	 * This follows the getXXXQualities() methods, but without their logging.
+	 */
+	private static abstract class RandomQuality
+	{
+		abstract double calculate(Subgroup theSubgroup);
+	}
+
+	private RandomQuality getRandomQuality()
+	{
+		final TargetType aTargetType = itsTargetConcept.getTargetType();
+		switch (aTargetType)
+		{
+			case SINGLE_NOMINAL :
+			{
+				final BitSet aBinaryTarget = getBinaryTarget();
+				return new RandomQuality()
+				{
+					@Override
+					double calculate(Subgroup theSubgroup)
+					{
+						BitSet aMembers = theSubgroup.getMembers();
+						// aMembers is a clone so this is safe
+						aMembers.and(aBinaryTarget);
+						return itsQualityMeasure.calculate(aMembers.cardinality(), theSubgroup.getCoverage());
+					}
+				};
+			}
+			case SINGLE_NUMERIC :
+			{
+				final Column aTarget = itsTargetConcept.getPrimaryTarget();
+				final QM aQM = itsSearchParameters.getQualityMeasure();
+				return new RandomQuality()
+				{
+					@Override
+					double calculate(Subgroup theSubgroup)
+					{
+						BitSet aMembers = theSubgroup.getMembers();
+						Statistics aStatistics = aTarget.getStatistics(null, aMembers, aQM == QM.MMAD, QM.requiredStats(aQM).contains(Stat.COMPL));
+
+						ProbabilityDensityFunction aPDF = null;
+						if (!ProbabilityDensityFunction.USE_ProbabilityDensityFunction2)
+							aPDF = new ProbabilityDensityFunction(itsQualityMeasure.getProbabilityDensityFunction(), aMembers);
+						else
+							aPDF = new ProbabilityDensityFunction2(itsQualityMeasure.getProbabilityDensityFunction(), aMembers);
+						aPDF.smooth();
+
+						return itsQualityMeasure.calculate(aStatistics, aPDF);
+					}
+				};
+			}
+			case DOUBLE_REGRESSION :
+			{
+				final RegressionMeasure aBaseRM =
+					new RegressionMeasure(itsSearchParameters.getQualityMeasure(), itsTargetConcept.getPrimaryTarget(), itsTargetConcept.getSecondaryTarget());
+				return new RandomQuality()
+				{
+					@Override
+					double calculate(Subgroup theSubgroup)
+					{
+						return new RegressionMeasure(aBaseRM, theSubgroup.getMembers()).getEvaluationMeasureValue();
+					}
+				};
+			}
+			case DOUBLE_CORRELATION :
+			case DOUBLE_BINARY :
+			{
+				final Column aPrimaryColumn = itsTargetConcept.getPrimaryTarget();
+				final Column aSecondaryColumn = itsTargetConcept.getSecondaryTarget();
+				final CorrelationMeasure aBaseCM =
+					new CorrelationMeasure(itsSearchParameters.getQualityMeasure(), aPrimaryColumn, aSecondaryColumn);
+				return new RandomQuality()
+				{
+					@Override
+					double calculate(Subgroup theSubgroup)
+					{
+						BitSet aMembers = theSubgroup.getMembers();
+						CorrelationMeasure aCM = new CorrelationMeasure(aBaseCM);
+
+						for (int k = aMembers.nextSetBit(0); k >= 0; k = aMembers.nextSetBit(k + 1))
+							aCM.addObservation(aPrimaryColumn.getFloat(k), aSecondaryColumn.getFloat(k));
+
+						return aCM.getEvaluationMeasureValue();
+					}
+				};
+			}
+			case MULTI_LABEL :
+			{
+				final BinaryTable aBaseTable = new BinaryTable(itsTable, itsTargetConcept.getMultiTargets());
+				return new RandomQuality()
+				{
+					@Override
+					double calculate(Subgroup theSubgroup)
+					{
+						// build model
+						Bayesian aBayesian = new Bayesian(aBaseTable.selectRows(theSubgroup.getMembers()));
+						aBayesian.climb();
+						theSubgroup.setDAG(aBayesian.getDAG());
+
+						return itsQualityMeasure.calculate(theSubgroup);
+					}
+				};
+			}
+			case LABEL_RANKING :
+			{
+				final Column aTarget = itsTargetConcept.getPrimaryTarget();
+				LabelRanking aLR = aTarget.getAverageRanking(null);
+				LabelRankingMatrix aLRM = aTarget.getAverageRankingMatrix(null);
+				final QualityMeasure aQualityMeasure = new QualityMeasure(itsSearchParameters.getQualityMeasure(), itsTable.getNrRows(), aLR, aLRM);
+				return new RandomQuality()
+				{
+					@Override
+					double calculate(Subgroup theSubgroup)
+					{
+						LabelRankingMatrix aSubgroupLRM = aTarget.getAverageRankingMatrix(theSubgroup);
+						return aQualityMeasure.computeLabelRankingDistance(theSubgroup.getCoverage(), aSubgroupLRM);
+					}
+				};
+			}
+			default :
+			{
+				throw new AssertionError(aTargetType);
+			}
+		}
+	}
+
+	/**
+	 * Parallel alternative to {@link #swapRandomization(int)}.
+	 * Instead of permuting the target {@link Column}s of the original
+	 * {@link Table}, each repetition mines its own
+	 * {@link Table#swapRandomizedView(TargetConcept, Random) view}, in
+	 * which only the target Columns are permuted copies. The original
+	 * Table and {@link TargetConcept} are not modified.
+	 *
+	 * @param theNrRepetitions the number of times to perform a permutation
+	 * of the {@link TargetConcept}.
+	 * @param theNrThreads the number of Threads to use, use
+	 * <code>theNrThreads <= 0</code> to use all available processors.
+	 *
+	 * @return an array holding the qualities of the best scoring
+	 * {@link Subgroup} of each permutation.
+	 */
+	private double[] swapRandomizationParallel(int theNrRepetitions, int theNrThreads)
+	{
+		final TargetType aTargetType = itsTargetConcept.getTargetType();
+		if (!isValidRandomQualitiesTargetType(aTargetType))
+			throw new AssertionError(aTargetType);
+
+		final long[] aSeeds = getRepetitionSeeds(theNrRepetitions);
+		final List<Callable<Double>> aTasks = new ArrayList<Callable<Double>>(theNrRepetitions);
+		// the repetitions do not log, the qualities are logged below
+		for (long aSeed : aSeeds)
+			aTasks.add(new SwapRandomization(aSeed, true));
+
+		double[] aQualities = invokeAll(aTasks, theNrThreads);
+
+		for (int i = 0; i < theNrRepetitions; ++i)
+			Log.logCommandLine((i + 1) + ", " + aQualities[i]);
+
+		return aQualities;
+	}
+
+	// single repetition of swapRandomizationParallel(), see runSRSD()
+	private final class SwapRandomization implements Callable<Double>
+	{
+		private final Random itsRandom;
+		private final boolean isQuiet;
+
+		SwapRandomization(long theSeed, boolean isQuiet)
+		{
+			itsRandom = new Random(theSeed);
+			this.isQuiet = isQuiet;
+		}
+
+		// pooled Threads are reused, so reset the quiet setting afterwards
+		@Override
+		public Double call()
+		{
+			Log.setQuiet(isQuiet);
+			try
+			{
+				return mine();
+			}
+			finally
+			{
+				Log.setQuiet(false);
+			}
+		}
+
+		private double mine()
+		{
+			while (true)
+			{
+				Table aTable = itsTable.swapRandomizedView(itsTargetConcept, itsRandom);
+				TargetConcept aTargetConcept = itsTargetConcept.copy();
+				aTargetConcept.updateToNewTable(aTable);
+				SearchParameters aSearchParameters = itsSearchParameters.copy();
+				aSearchParameters.setTargetConcept(aTargetConcept);
+
+				SubgroupDiscovery anSD = getSubgroupDiscovery(aSearchParameters, aTable);
+				//quality minimum should not be taken into account when computing distribution of random qualities
+				anSD.ignoreQualityMinimum();
+				// the repetitions are run in parallel, so use one Thread each
+				anSD.mine(System.currentTimeMillis(), 1);
+
+				SubgroupSet aSubgroupSet = anSD.getResult();
+				// if no subgroups are found, try again
+				if (aSubgroupSet.size() != 0)
+					return aSubgroupSet.getBestScore();
+			}
+		}
+
+		private SubgroupDiscovery getSubgroupDiscovery(SearchParameters theSearchParameters, Table theTable)
+		{
+			final TargetConcept aTargetConcept = theSearchParameters.getTargetConcept();
+			// SubgroupSet may modify the BitSet, do not share it
+			final BitSet aSelection = (itsSelection == null) ? null : (BitSet) itsSelection.clone();
+
+			final TargetType aTargetType = aTargetConcept.getTargetType();
+			switch (aTargetType)
+			{
+				case SINGLE_NOMINAL :
+				{
+					int aPositiveCount = aTargetConcept.getPrimaryTarget().countValues(aTargetConcept.getTargetValue(), aSelection);
+					return new SubgroupDiscovery(theSearchParameters, theTable, aSelection, aPositiveCount, null);
+				}
+				case SINGLE_NUMERIC :
+				{
+					float aTargetAverage = aTargetConcept.getPrimaryTarget().getAverage(aSelection);
+					return new SubgroupDiscovery(theSearchParameters, theTable, aSelection, aTargetAverage, null);
+				}
+				case DOUBLE_REGRESSION :
+					return new SubgroupDiscovery(theSearchParameters, theTable, aSelection, true, null);
+				case DOUBLE_CORRELATION :
+				case DOUBLE_BINARY :
+					return new SubgroupDiscovery(theSearchParameters, theTable, aSelection, false, null);
+				case MULTI_LABEL :
+					return new SubgroupDiscovery(theSearchParameters, theTable, aSelection, null);
+				case LABEL_RANKING :
+					return new SubgroupDiscovery(theSearchParameters, null, theTable, aSelection);
+				default :
+					throw new AssertionError(aTargetType);
+			}
+		}
+	}
+
 	//private ConditionList getRandomConditionList(int theDepth, Random theRandom)
 	private ConditionList getRandomConditionList(int theDepth, Random theRandom)
 	{
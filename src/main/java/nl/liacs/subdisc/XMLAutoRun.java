@@ -154,8 +154,9 @@ public class XMLAutoRun
 		File aFile = null;
 		boolean showWindows = false;
 		int aNrThreads = Integer.MIN_VALUE;
+		int aThreadBudget = Integer.MIN_VALUE;
 
-		if (!args[0].endsWith(".xml") || args.length > 3)
+		if (!args[0].endsWith(".xml") || args.length > 4)
 			showHelp();
 		else
 			aFile = new File(args[0]);
@@ -163,13 +164,27 @@ public class XMLAutoRun
 		if (args.length >= 2)
 			showWindows = AttributeType.isValidBinaryTrueValue(args[1]);
 
-		if (args.length == 3)
+		if (args.length >= 3)
 		{
 			try { aNrThreads = Integer.parseInt(args[2]); }
 			catch (NumberFormatException e) { showHelp(); }
 		}
 
-		runAllFromFile(aFile, showWindows, aNrThreads);
+		if (args.length == 4)
+		{
+			try { aThreadBudget = Integer.parseInt(args[3]); }
+			catch (NumberFormatException e) { showHelp(); }
+		}
+
+		if (aThreadBudget == Integer.MIN_VALUE)
+			runAllFromFile(aFile, showWindows, aNrThreads);
+		else
+		{
+			// experiments run concurrently, exit status 1 signals a failure
+			int aStatus = BatchRunner.getExitStatus(new BatchRunner(aFile).run(aThreadBudget, aNrThreads, showWindows));
+			if (aStatus != 0)
+				System.exit(aStatus);
+		}
 
 //		// this seems unnecessary, there should be no windows in this case
 //		// though this deals with ErrorDialogs / incorrectly opened windows
@@ -275,7 +290,7 @@ public class XMLAutoRun
 	private static void showHelp()
 	{
 		Log.logCommandLine("");
-		Log.logCommandLine("Usage: java -jar subdisc-gui-2.xxxx.jar /path/to/file.xml [showWindows] [nrThreads]");
+		Log.logCommandLine("Usage: java -jar subdisc-gui-2.xxxx.jar /path/to/file.xml [showWindows] [nrThreads] [threadBudget]");
 		Log.logCommandLine("");
 		Log.logCommandLine("filepath can be relative");
 		Log.logCommandLine("filename must end with '.xml'");
@@ -289,6 +304,11 @@ public class XMLAutoRun
 		Log.logCommandLine("default is " + Runtime.getRuntime().availableProcessors());
 		Log.logCommandLine("(determined through java.lang.Runtime.getRuntime().availableProcessors())");
 		Log.logCommandLine("");
+		Log.logCommandLine("optional threadBudget:");
+		Log.logCommandLine("run experiments concurrently, using at most threadBudget threads in total");
+		Log.logCommandLine("a table that is used by multiple experiments is loaded only once");
+		Log.logCommandLine("use 0 for the number of available processors, see BatchRunner");
+		Log.logCommandLine("");
 		System.exit(0);
 	}
 }
@@ -1984,7 +1984,8 @@ public class MiningWindow extends JFrame implements ActionListener
 	private void jButtonComputeThresholdActionPerformed()
 	{
 		final TargetType aTargetType = itsTargetConcept.getTargetType();
-		String[] aSetup = new RandomQualitiesWindow(aTargetType).getSettings();
+		RandomQualitiesWindow aWindow = new RandomQualitiesWindow(aTargetType);
+		String[] aSetup = aWindow.getSettings();
 		if (!RandomQualitiesWindow.isValidRandomQualitiesSetup(aSetup))
 			return;
 
@@ -2081,7 +2082,7 @@ public class MiningWindow extends JFrame implements ActionListener
 		}
 
 		Validation aValidation = new Validation(itsSearchParameters, itsTable, itsSelection, aQualityMeasure);
-		double[] aQualities = aValidation.getQualities(aSetup);
+		double[] aQualities = aWindow.isParallel() ? aValidation.getQualitiesParallel(aSetup, getNrThreads()) : aValidation.getQualities(aSetup);
 		if (aQualities == null)
 			return;
 
@@ -2132,10 +2133,16 @@ public class MiningWindow extends JFrame implements ActionListener
 
 	private void jButtonCrossValidateActionPerformed()
 	{
-		int aStore = JOptionPane.showConfirmDialog(null,
+		// 0 = text file with all folds, 1 = ExtentFile per fold, 2 = no
+		Object[] anOptions = { "Text", "Binary", "No" };
+		int aStore = JOptionPane.showOptionDialog(null,
 								"Would you like to store binary tables for each fold in a file?",
 								"Store results",
-								JOptionPane.YES_NO_OPTION);
+								JOptionPane.YES_NO_CANCEL_OPTION,
+								JOptionPane.QUESTION_MESSAGE,
+								null,
+								anOptions,
+								anOptions[0]);
 		if (aStore == JOptionPane.CLOSED_OPTION)
 			return;;
 
@@ -2180,6 +2187,8 @@ public class MiningWindow extends JFrame implements ActionListener
 				}
 				aResult.getResult().saveExtent(aWriter, itsTable, aSet, itsTargetConcept);
 			}
+			else if (aStore == 1)
+				aResult.getResult().saveExtent(new File(itsTable.getName() + "_fold_" + (i+1) + "_" + itsTimeStamp + ".sdx"), itsTable, aSet);
 		}
 		itsTargetConcept.updateToNewTable(itsTable); //point it back to the original again
 		if (aStore == 0)
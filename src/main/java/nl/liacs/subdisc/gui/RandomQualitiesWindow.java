@@ -18,7 +18,9 @@ public class RandomQualitiesWindow extends JDialog implements ActionListener
 
 	private ButtonGroup itsMethods;
 	private JTextField itsAmountField;
+	private JCheckBox itsParallelBox;
 	private String[] itsSettings;
+	private boolean isParallel;
 
 	public RandomQualitiesWindow(TargetType theTargetType)
 	{
@@ -73,6 +75,12 @@ public class RandomQualitiesWindow extends JDialog implements ActionListener
 		aNumberPanel.setAlignmentX(LEFT_ALIGNMENT);
 		aMasterPanel.add(aNumberPanel);
 
+		// off by default, the parallel repetitions use other seeds
+		JPanel aParallelPanel = new JPanel();
+		aParallelPanel.add(itsParallelBox = new JCheckBox("Run repetitions in parallel"));
+		aParallelPanel.setAlignmentX(LEFT_ALIGNMENT);
+		aMasterPanel.add(aParallelPanel);
+
 		getContentPane().add(aMasterPanel);
 
 		final JPanel aButtonPanel = new JPanel();
@@ -110,6 +118,7 @@ public class RandomQualitiesWindow extends JDialog implements ActionListener
 				{
 					itsSettings[0] = itsMethods.getSelection().getActionCommand();
 					itsSettings[1] = itsAmountField.getText();
+					isParallel = itsParallelBox.isSelected();
 					dispose();
 				}
 			}
@@ -132,6 +141,21 @@ public class RandomQualitiesWindow extends JDialog implements ActionListener
 		return itsSettings;
 	}
 
+	/**
+	 * Returns whether the user chose to run the repetitions in parallel,
+	 * using {@link Validation#getQualitiesParallel(String[], int)}. This
+	 * gives other results than the default sequential
+	 * {@link Validation#getQualities(String[])}, as each repetition uses
+	 * its own seed.
+	 *
+	 * @return <code>true</code> if the repetitions should be run in
+	 * parallel, <code>false</code> otherwise.
+	 */
+	public boolean isParallel()
+	{
+		return isParallel;
+	}
+
 	public static boolean isValidRandomQualitiesSetup(String[] theSetup)
 	{
 		try
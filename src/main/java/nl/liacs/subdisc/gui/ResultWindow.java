@@ -786,7 +786,8 @@ public class ResultWindow extends JFrame implements ActionListener
 
 	private double[] obtainRandomQualities()
 	{
-		String[] aSetup = new RandomQualitiesWindow(itsSearchParameters.getTargetType()).getSettings();
+		RandomQualitiesWindow aWindow = new RandomQualitiesWindow(itsSearchParameters.getTargetType());
+		String[] aSetup = aWindow.getSettings();
 
 		Log.logCommandLine(aSetup[0] + "=" + aSetup[1]);
 		if (!RandomQualitiesWindow.isValidRandomQualitiesSetup(aSetup))
@@ -794,6 +795,8 @@ public class ResultWindow extends JFrame implements ActionListener
 
 		// Compute qualities
 		Validation aValidation = new Validation(itsSearchParameters, itsTable, itsSelection, itsQualityMeasure);
+		if (aWindow.isParallel())
+			return aValidation.getQualitiesParallel(aSetup, itsSearchParameters.getNrThreads());
 		return aValidation.getQualities(aSetup);
 	}
 
@@ -0,0 +1,117 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.w3c.dom.*;
+
+public class BatchRunnerTest
+{
+	@TempDir
+	File itsDirectory;
+
+	@Test
+	@DisplayName("Check a batch loads each table once, and counts a broken experiment as failed")
+	public void testRun() throws IOException
+	{
+		File aFile = createBatch();
+
+		BatchRunner aBatchRunner = new BatchRunner(aFile);
+		assertEquals(1, aBatchRunner.run(2, 1, false));
+		// four experiments, two distinct tables
+		assertEquals(2, aBatchRunner.getNrTablesLoaded());
+		// a result per experiment that succeeded
+		assertEquals(3, itsDirectory.listFiles(new FilenameFilter()
+		{
+			@Override
+			public boolean accept(File theDirectory, String theName) { return theName.startsWith("batch_"); }
+		}).length);
+	}
+
+	@Test
+	@DisplayName("Check the exit status of a batch")
+	public void testExitStatus() throws IOException
+	{
+		assertEquals(0, BatchRunner.getExitStatus(0));
+		assertEquals(1, BatchRunner.getExitStatus(1));
+		assertEquals(1, BatchRunner.getExitStatus(3));
+
+		assertEquals(2, BatchRunner.execute(new String[0]));
+		assertEquals(2, BatchRunner.execute(new String[] { "batch.txt" }));
+		assertEquals(2, BatchRunner.execute(new String[] { "batch.xml", "all" }));
+		assertEquals(1, BatchRunner.execute(new String[] { createBatch().getPath(), "2", "1" }));
+	}
+
+	/*
+	 * experiments 0, 1 and 2 use the same table, experiment 3 uses a table
+	 * with another name, experiment 2 has a primary target that does not
+	 * exist, so it fails after its table is loaded
+	 */
+	private File createBatch() throws IOException
+	{
+		File aData = new File(itsDirectory, "adult.txt");
+		if (!aData.exists())
+			Files.copy(new File("src/test/resources/adult.txt").toPath(), aData.toPath());
+
+		Table aTable = new DataLoaderTXT(aData).getTable();
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL.GUI_TEXT);
+		aTC.setPrimaryTarget(aTable.getColumn("target"));
+		aTC.setTargetValue("gr50K");
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.WRACC);
+		anSP.setQualityMeasureMinimum(0.0f);
+		anSP.setSearchDepth(1);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1.0f);
+		anSP.setMaximumSubgroups(10);
+		anSP.setMaximumTime(1000);
+		anSP.setSearchStrategy("beam");
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators("<html>&#8804;, &#8805;</html>");
+		anSP.setNumericStrategy("bins");
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(4);
+		anSP.setNrThreads(1);
+
+		File aFile = new File(itsDirectory, "batch.xml");
+		new XMLAutoRun(anSP, aTable, aFile);
+
+		Document aDocument = XMLDocument.parseXMLFile(aFile);
+		Node anAutoRun = aDocument.getLastChild();
+		Node anExperiment = anAutoRun.getFirstChild();
+		for (int i = 1; i < 4; ++i)
+		{
+			Node aCopy = anExperiment.cloneNode(true);
+			((Element) aCopy).setAttribute("id", String.valueOf(i));
+			anAutoRun.appendChild(aCopy);
+		}
+
+		NodeList anExperiments = anAutoRun.getChildNodes();
+		setText(anExperiments.item(2).getChildNodes().item(0), "primary_target", "no such column");
+		setText(anExperiments.item(3).getChildNodes().item(2), "table_name", "adult copy");
+		((Element) anAutoRun).setAttribute("nr_experiments", String.valueOf(anExperiments.getLength()));
+		XMLDocument.saveDocument(aDocument, aFile);
+
+		return aFile;
+	}
+
+	private static void setText(Node theNode, String theName, String theText)
+	{
+		NodeList aChildren = theNode.getChildNodes();
+		for (int i = 0, j = aChildren.getLength(); i < j; ++i)
+			if (theName.equals(aChildren.item(i).getNodeName()))
+				aChildren.item(i).setTextContent(theText);
+	}
+}
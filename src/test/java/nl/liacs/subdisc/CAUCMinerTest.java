@@ -0,0 +1,89 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.io.*;
+import java.util.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CAUCMinerTest
+{
+	private static final int NR_SUBGROUPS = 10;
+
+	@Test
+	@DisplayName("Check all thresholds at once give the qualities of a separate run per threshold")
+	public void testThresholds()
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+		List<Column> aColumns = aTable.getColumns();
+		Column aTarget = aTable.getColumn("age");
+		int anIndex = aTarget.getIndex();
+		int aNrRows = aTable.getNrRows();
+
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NUMERIC.GUI_TEXT);
+		aTC.setPrimaryTarget(aTarget);
+		SearchParameters anSP = getSearchParameters(aTC);
+
+		CAUCMiner aMiner = new CAUCMiner(aTable, null, anSP, QM.WRACC, 0.01f);
+		aMiner.mine(4);
+		assertTrue(aMiner.getNrThresholds() > 1);
+
+		// depth 1, so the searches use the same Conditions
+		for (int i = 0, j = aMiner.getNrThresholds(); i < j; i += 10)
+		{
+			float aThreshold = aMiner.getThreshold(i);
+			Column aBinary = new Column("age", "age", AttributeType.BINARY, anIndex, aNrRows);
+			for (int k = 0; k < aNrRows; ++k)
+				aBinary.add(!(aTarget.getFloat(k) > aThreshold));
+			assertEquals(aMiner.getBinaryTarget(i).cardinality(), aBinary.getBinaries().cardinality());
+
+			aColumns.set(anIndex, aBinary);
+			TargetConcept aBinaryTC = new TargetConcept();
+			aBinaryTC.setTargetType(TargetType.SINGLE_NOMINAL.GUI_TEXT);
+			aBinaryTC.setPrimaryTarget(aBinary);
+			aBinaryTC.setTargetValue("1");
+			SearchParameters aBinarySP = getSearchParameters(aBinaryTC);
+			aBinarySP.setQualityMeasure(QM.WRACC);
+			aBinarySP.setQualityMeasureMinimum(0.01f);
+			SubgroupDiscovery anSD = Process.runSubgroupDiscovery(aTable, 0, null, aBinarySP, false, 1, null);
+			aColumns.set(anIndex, aTarget);
+
+			assertEquals(getQualities(anSD.getResult()), getQualities(aMiner.getResult(i)), "threshold " + aThreshold);
+		}
+	}
+
+	private static SearchParameters getSearchParameters(TargetConcept theTargetConcept)
+	{
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(theTargetConcept);
+		anSP.setQualityMeasure(QM.Z_SCORE);
+		anSP.setQualityMeasureMinimum(0.0f);
+		anSP.setSearchDepth(1);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1.0f);
+		anSP.setMaximumSubgroups(NR_SUBGROUPS);
+		anSP.setMaximumTime(1000);
+		anSP.setSearchStrategy("breadth first");
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators("<html>&#8804;, &#8805;</html>");
+		anSP.setNumericStrategy("all");
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+		return anSP;
+	}
+
+	private static List<Float> getQualities(SubgroupSet theSubgroupSet)
+	{
+		List<Float> aQualities = new ArrayList<Float>();
+		for (Subgroup s : theSubgroupSet)
+			aQualities.add((float) s.getMeasureValue());
+		return aQualities;
+	}
+}
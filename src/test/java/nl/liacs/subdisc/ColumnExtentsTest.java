@@ -0,0 +1,67 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ColumnExtentsTest
+{
+	@Test
+	@DisplayName("Check evaluation using the Condition extents equals evaluation of the members")
+	public void testExtents()
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+		int aNrRows = aTable.getNrRows();
+		Random aRandom = new Random(12345);
+
+		BitSet aMembers = new BitSet(aNrRows);
+		for (int i = 0; i < aNrRows; ++i)
+			if (aRandom.nextInt(3) == 0)
+				aMembers.set(i);
+
+		for (Column c : aTable.getColumns())
+		{
+			List<Condition> aConditions = new ArrayList<Condition>();
+			if (c.getType() == AttributeType.NOMINAL)
+			{
+				ConditionBase aBase = new ConditionBase(c, Operator.EQUALS);
+				for (String aValue : c.getDomain())
+					aConditions.add(new Condition(aBase, aValue));
+			}
+			else if (c.getType() == AttributeType.NUMERIC)
+			{
+				c.buildSorted(null);
+				for (Operator o : EnumSet.of(Operator.EQUALS, Operator.LESS_THAN_OR_EQUAL, Operator.GREATER_THAN_OR_EQUAL))
+				{
+					ConditionBase aBase = new ConditionBase(c, o);
+					for (float aValue : c.getSortedValuesCopy())
+						aConditions.add(new Condition(aBase, aValue, c.getSortedIndex(aValue)));
+				}
+			}
+			else
+				continue;
+
+			List<BitSet> anExpected = new ArrayList<BitSet>();
+			for (Condition aCondition : aConditions)
+				anExpected.add(c.evaluate(aMembers, aCondition));
+
+			// a budget for about half of the numeric extents
+			c.buildExtents(new AtomicLong(100L * aNrRows));
+			for (int i = 0; i < aConditions.size(); ++i)
+				assertEquals(anExpected.get(i), c.evaluate(aMembers, aConditions.get(i)), aConditions.get(i).toString());
+			// again, now from the extents that were built
+			for (int i = 0; i < aConditions.size(); ++i)
+				assertEquals(anExpected.get(i), c.evaluate(aMembers, aConditions.get(i)), aConditions.get(i).toString());
+
+			c.removeExtents();
+			c.removeSorted();
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.io.*;
+import java.util.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoverBasedSubgroupSelectionTest
+{
+	// as SubgroupSet.COVER_BASED_SUBGROUP_SELECTION_TOP_K
+	private static final int TOP_K = 100;
+
+	@Test
+	@DisplayName("Check the lazy greedy selection selects the Subgroups a full greedy scan selects")
+	public void testPostProcess()
+	{
+		SubgroupSet aResult = mine();
+		aResult.setIDs();
+		// enough to use Threads, and including negative qualities
+		assertTrue(aResult.size() >= 1024);
+		assertTrue(aResult.last().getMeasureValue() < 0.0);
+
+		List<Integer> anExpected = select(new ArrayList<Subgroup>(aResult), aResult.getTotalCoverage());
+
+		for (long b : new long[] { SearchParameters.COVER_BASED_MEMORY_BUDGET_DEFAULT, 0L })
+			for (int t : new int[] { 1, 4 })
+				assertEquals(anExpected, getIDs(aResult.postProcess(SearchStrategy.COVER_BASED_BEAM_SELECTION, t, b)), "budget " + b + ", threads " + t);
+	}
+
+	@Test
+	@DisplayName("Check the lazy greedy selection selects Candidates with a negative priority as a full greedy scan does")
+	public void testNegativePriorities()
+	{
+		SubgroupSet aResult = mine();
+		aResult.setIDs();
+
+		// few non-negative qualities, so most selected Subgroups are negative
+		int aNrNonNegative = TOP_K / 4;
+		SortedSet<Subgroup> aSubgroups = new TreeSet<Subgroup>(aResult.comparator());
+		Map<Integer, Subgroup> anIDs = new HashMap<Integer, Subgroup>();
+		for (Subgroup s : aResult)
+		{
+			if ((s.getMeasureValue() < 0.0) || (aNrNonNegative-- > 0))
+			{
+				aSubgroups.add(s);
+				anIDs.put(s.getID(), s);
+			}
+		}
+		assertTrue(aSubgroups.size() >= 1024);
+
+		List<Integer> anExpected = select(new ArrayList<Subgroup>(aSubgroups), aResult.getTotalCoverage());
+		int aNrNegative = 0;
+		for (Integer i : anExpected)
+			if (anIDs.get(i).getMeasureValue() < 0.0)
+				++aNrNegative;
+		assertTrue(aNrNegative >= (TOP_K - (TOP_K / 4)));
+
+		for (long b : new long[] { SearchParameters.COVER_BASED_MEMORY_BUDGET_DEFAULT, 0L })
+		{
+			for (int t : new int[] { 1, 4 })
+			{
+				List<Integer> anActual = new ArrayList<Integer>();
+				for (Candidate c : CoverBasedSubgroupSelection.postProcessResultSet(aSubgroups, TOP_K, t, b))
+					anActual.add(c.getSubgroup().getID());
+				Collections.sort(anActual);
+				assertEquals(anExpected, anActual, "budget " + b + ", threads " + t);
+			}
+		}
+	}
+
+	private static SubgroupSet mine()
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL.GUI_TEXT);
+		aTC.setPrimaryTarget(aTable.getColumn("target"));
+		aTC.setTargetValue("gr50K");
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.WRACC);
+		anSP.setQualityMeasureMinimum(-1.0f);
+		anSP.setSearchDepth(2);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1.0f);
+		anSP.setMaximumSubgroups(0);
+		anSP.setMaximumTime(1000);
+		anSP.setSearchStrategy("breadth first");
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators("<html>&#8804;, &#8805;</html>");
+		anSP.setNumericStrategy("bins");
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(4);
+		anSP.setNrThreads(1);
+
+		return Process.runSubgroupDiscovery(aTable, 0, null, anSP, false, 1, null).getResult();
+	}
+
+	// the score of every remaining Subgroup in every iteration, first best wins
+	private static List<Integer> select(List<Subgroup> theSubgroups, int theNrRows)
+	{
+		int[] aCoverCounts = new int[theNrRows];
+		boolean[] isUsed = new boolean[theSubgroups.size()];
+		List<Integer> anIDs = new ArrayList<Integer>();
+
+		for (int k = 0; k < TOP_K; ++k)
+		{
+			int aBest = -1;
+			double aBestScore = Double.NaN;
+			for (int i = 0; i < theSubgroups.size(); ++i)
+			{
+				if (isUsed[i])
+					continue;
+
+				Subgroup s = theSubgroups.get(i);
+				BitSet b = s.getMembers();
+				double aWeight = 0.0;
+				for (int j = b.nextSetBit(0); j >= 0; j = b.nextSetBit(j + 1))
+					aWeight += Math.pow(0.9, aCoverCounts[j]);
+				aWeight /= s.getCoverage();
+
+				double aScore = s.getMeasureValue() - ((1.0 - aWeight) * s.getMeasureValue());
+				if (aBest == -1 || aScore > aBestScore)
+				{
+					aBest = i;
+					aBestScore = aScore;
+				}
+			}
+
+			isUsed[aBest] = true;
+			Subgroup s = theSubgroups.get(aBest);
+			anIDs.add(s.getID());
+			BitSet b = s.getMembers();
+			for (int j = b.nextSetBit(0); j >= 0; j = b.nextSetBit(j + 1))
+				++aCoverCounts[j];
+		}
+
+		Collections.sort(anIDs);
+		return anIDs;
+	}
+
+	private static List<Integer> getIDs(SubgroupSet theSubgroups)
+	{
+		List<Integer> anIDs = new ArrayList<Integer>();
+		for (Subgroup s : theSubgroups)
+			anIDs.add(s.getID());
+		Collections.sort(anIDs);
+		return anIDs;
+	}
+}
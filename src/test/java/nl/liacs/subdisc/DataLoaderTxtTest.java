@@ -89,4 +89,43 @@ public class DataLoaderTxtTest
 		assertEquals(aColumns.get(17).getCardinality(), 6);
 		assertEquals(aColumns.get(18).getCardinality(), 3); //#veroordelingen_zeden
 	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"src/test/resources/adult.txt",
+		"src/test/resources/adult with missing.txt",
+		"src/test/resources/dataloader no missing.txt",
+		"src/test/resources/long10k.txt",
+		"src/test/resources/commas in fields.txt",
+		"src/test/resources/discretisation.txt",
+		"src/test/resources/long with unique nums.txt",
+		"src/test/resources/missing values.txt"
+	})
+	@DisplayName("Check DataLoaderTXTStreaming yields the same Table as DataLoaderTXT")
+	public void streamingtxt(String filename)
+	{
+		File aFile = new File(filename);
+		Table anExpected = new DataLoaderTXT(aFile).getTable();
+
+		// small chunks force AttributeType changes across chunks
+		for (int aChunkSize : new int[] { 1, 4096, DataLoaderTXTStreaming.CHUNK_SIZE })
+		{
+			Table aTable = new DataLoaderTXTStreaming(aFile, null, aChunkSize, false).getTable();
+
+			assertEquals(anExpected.getNrRows(), aTable.getNrRows());
+			assertEquals(anExpected.getNrColumns(), aTable.getNrColumns());
+			for (int i = 0; i < anExpected.getNrColumns(); ++i)
+			{
+				Column anExpectedColumn = anExpected.getColumn(i);
+				Column aColumn = aTable.getColumn(i);
+				assertEquals(anExpectedColumn.getName(), aColumn.getName());
+				assertEquals(anExpectedColumn.getType(), aColumn.getType());
+				assertEquals(anExpectedColumn.size(), aColumn.size());
+				assertEquals(anExpectedColumn.getCardinality(), aColumn.getCardinality());
+				assertEquals(anExpectedColumn.getMissing(), aColumn.getMissing());
+				for (int j = 0; j < anExpectedColumn.size(); ++j)
+					assertEquals(anExpectedColumn.getString(j), aColumn.getString(j));
+			}
+		}
+	}
 }
@@ -0,0 +1,110 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.util.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DensityEstimatorTest
+{
+	private static final int NR_RECORDS = 2000;
+	// the relative difference BINNED may have from DIRECT
+	private static final double TOLERANCE = 0.01;
+
+	@Test
+	@DisplayName("Check BINNED density differences are within 1% of DIRECT density differences")
+	public void testBinned()
+	{
+		Random aRandom = new Random(12345);
+		Column x = new Column("x", "x", AttributeType.NUMERIC, 0, NR_RECORDS);
+		Column y = new Column("y", "y", AttributeType.NUMERIC, 1, NR_RECORDS);
+		BitSet aSubgroup = new BitSet(NR_RECORDS);
+		for (int i = 0; i < NR_RECORDS; ++i)
+		{
+			// correlated, so the kernel has a covariance term
+			double u = aRandom.nextGaussian();
+			double v = (0.6 * u) + (0.8 * aRandom.nextGaussian());
+			boolean isMember = (u + (0.5 * aRandom.nextGaussian()) > 0.5);
+			x.add((float) (10.0 + u));
+			y.add((float) (isMember ? (5.0 + v) : (4.0 + (1.5 * v))));
+			aSubgroup.set(i, isMember);
+		}
+		assertTrue(aSubgroup.cardinality() > NR_RECORDS / 10);
+
+		ProbabilityDensityFunction_ND aPDF = new ProbabilityDensityFunction_ND(new Column[] { x, y });
+		for (QM aMeasure : EnumSet.of(QM.CWRACC_2D, QM.SQUARED_HELLINGER_2D, QM.KULLBACK_LEIBLER_2D))
+		{
+			aPDF.setDensityEstimator(DensityEstimator.DIRECT);
+			double aDirect = aPDF.getDensityDifference2D(aSubgroup, true, aMeasure)[0][0][0];
+			aPDF.setDensityEstimator(DensityEstimator.BINNED);
+			double aBinned = aPDF.getDensityDifference2D(aSubgroup, true, aMeasure)[0][0][0];
+
+			assertTrue(aDirect > 0.0 && !Double.isInfinite(aDirect), aMeasure + " " + aDirect);
+			assertEquals(aDirect, aBinned, TOLERANCE * aDirect, aMeasure.toString());
+		}
+	}
+
+	@Test
+	@DisplayName("Check the 2D FFT of a delta, and its inverse")
+	public void testFFT2()
+	{
+		int aNrRows = 4;
+		int aNrColumns = 8;
+		double[] re = new double[aNrRows * aNrColumns];
+		double[] im = new double[re.length];
+		re[0] = 1.0;
+		ProbabilityDensityFunction_ND.fft2(re, im, aNrRows, aNrColumns, false);
+		for (int i = 0; i < re.length; ++i)
+		{
+			assertEquals(1.0, re[i], 1e-12);
+			assertEquals(0.0, im[i], 1e-12);
+		}
+
+		Random aRandom = new Random(12345);
+		double[] aValues = new double[re.length];
+		for (int i = 0; i < aValues.length; ++i)
+			re[i] = aValues[i] = aRandom.nextDouble();
+		Arrays.fill(im, 0.0);
+		ProbabilityDensityFunction_ND.fft2(re, im, aNrRows, aNrColumns, false);
+		ProbabilityDensityFunction_ND.fft2(re, im, aNrRows, aNrColumns, true);
+		// the inverse is not scaled
+		for (int i = 0; i < re.length; ++i)
+		{
+			assertEquals(aValues[i], re[i] / re.length, 1e-12);
+			assertEquals(0.0, im[i] / re.length, 1e-12);
+		}
+	}
+
+	@Test
+	@DisplayName("Check convolution with a delta kernel shifts the counts")
+	public void testConvolve()
+	{
+		int aNrRows = 8;
+		int aNrColumns = 16;
+		Random aRandom = new Random(12345);
+		double[] aCounts = new double[aNrRows * aNrColumns];
+		for (int i = 0; i < aCounts.length; ++i)
+			aCounts[i] = aRandom.nextInt(10);
+
+		// { row, column } offsets of the delta, negative offsets wrap around
+		for (int[] anOffset : new int[][] { { 0, 0 }, { 1, 2 }, { -1, -3 } })
+		{
+			double[] aResult = aCounts.clone();
+			double[] aKernel = new double[aCounts.length];
+			aKernel[(((anOffset[0] + aNrRows) % aNrRows) * aNrColumns) + ((anOffset[1] + aNrColumns) % aNrColumns)] = 1.0;
+			ProbabilityDensityFunction_ND.convolve(aResult, aKernel, aNrRows, aNrColumns);
+
+			for (int i = 0; i < aNrRows; ++i)
+				for (int j = 0; j < aNrColumns; ++j)
+				{
+					int aShifted = (((i + anOffset[0] + aNrRows) % aNrRows) * aNrColumns) + ((j + anOffset[1] + aNrColumns) % aNrColumns);
+					assertEquals(aCounts[(i * aNrColumns) + j], aResult[aShifted], 1e-9, Arrays.toString(anOffset));
+				}
+		}
+	}
+}
@@ -2,11 +2,13 @@ package nl.liacs.subdisc;
 
 // Java lib
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 //import java.util.Map.Entry;
 
 import nl.liacs.subdisc.*;
 import nl.liacs.subdisc.ConditionListBuilder.ConditionList;
+import nl.liacs.subdisc.gui.RandomQualitiesWindow;
 
 // Testing lib
 import org.junit.jupiter.api.DisplayName;
@@ -14,9 +16,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 
 public class EndToEndTest 
@@ -739,5 +743,383 @@ public class EndToEndTest
 		SubgroupDiscovery anSDLarge = Process.runSubgroupDiscovery(aTable, 0, aSelection, anSP, false, 1, null);
 	}
 
+	@Test
+	@DisplayName("Check end-to-end run on Adult.txt using SINGLE_NOMINAL, fork/join MiningMode yields the same result as semaphore MiningMode")
+	public void testAdult10()
+	{
+		//SINGLE_NOMINAL
+		//d=2
+		//numeric strategy = best
+
+		System.out.println("\n\n----------- testAdult10 ---------");
+		DataLoaderTXT aLoader = new DataLoaderTXT(new File("src/test/resources/adult.txt"));
+		Table aTable = aLoader.getTable();
+
+		//set target concept
+		Column aTarget = aTable.getColumns().get(14); //get target
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL);
+		aTC.setPrimaryTarget(aTarget);
+		aTC.setTargetValue("gr50K");
+
+		//set search parameters
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.CORTANA_QUALITY);
+		anSP.setQualityMeasureMinimum(0.1f);
+		anSP.setSearchDepth(2);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1f);
+		anSP.setMaximumSubgroups(1000);
+		anSP.setMaximumTime(1000); //1000 seconds
+		anSP.setSearchStrategy(SearchStrategy.BEAM);
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators(NumericOperatorSetting.NORMAL);
+		anSP.setNumericStrategy(NumericStrategy.NUMERIC_BEST);
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+
+		anSP.setMiningMode(MiningMode.SEMAPHORE);
+		SubgroupDiscovery anSDSemaphore = Process.runSubgroupDiscovery(aTable, 0, null, anSP, false, 1, null);
+		anSP.setMiningMode(MiningMode.FORK_JOIN);
+		SubgroupDiscovery anSDForkJoin = Process.runSubgroupDiscovery(aTable, 0, null, anSP, false, 4, null);
+
+		assertEquals(anSDSemaphore.getNumberOfSubgroups(), anSDForkJoin.getNumberOfSubgroups());
+		Iterator<Subgroup> anIteratorSemaphore = anSDSemaphore.getResult().iterator();
+		Iterator<Subgroup> anIteratorForkJoin = anSDForkJoin.getResult().iterator();
+		while (anIteratorSemaphore.hasNext() && anIteratorForkJoin.hasNext())
+		{
+			Subgroup aSubgroupA = anIteratorSemaphore.next();
+			Subgroup aSubgroupB = anIteratorForkJoin.next();
+			// equivalent ConditionLists may be found in a different order
+			assertEquals(aSubgroupA.getCoverage(), aSubgroupB.getCoverage());
+			assertEquals(roundToFive(aSubgroupA.getMeasureValue()), roundToFive(aSubgroupB.getMeasureValue()));
+		}
+	}
+
+	@Test
+	@DisplayName("Check parallel validation on Adult.txt is independent of the number of threads")
+	public void testAdult11()
+	{
+		//SINGLE_NOMINAL
+		//d=1
+		//swap randomization and random subsets
+
+		System.out.println("\n\n----------- testAdult11 ---------");
+		DataLoaderTXT aLoader = new DataLoaderTXT(new File("src/test/resources/adult.txt"));
+		Table aTable = aLoader.getTable();
+
+		//set target concept
+		Column aTarget = aTable.getColumns().get(14); //get target
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL);
+		aTC.setPrimaryTarget(aTarget);
+		String aTargetValue = "gr50K";
+		aTC.setTargetValue(aTargetValue);
+
+		//set search parameters except minimum quality
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.CORTANA_QUALITY);
+		anSP.setSearchDepth(1);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1f);
+		anSP.setMaximumSubgroups(1000);
+		anSP.setMaximumTime(1000); //1000 seconds
+		anSP.setSearchStrategy(SearchStrategy.BEAM);
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators(NumericOperatorSetting.NORMAL);
+		anSP.setNumericStrategy(NumericStrategy.NUMERIC_BEST);
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+
+		int aPositiveCount = aTC.getPrimaryTarget().countValues(aTargetValue, null);
+		QualityMeasure aQualityMeasure = new QualityMeasure(anSP.getQualityMeasure(), aTable.getNrRows(), aPositiveCount);
+		Validation aValidation = new Validation(anSP, aTable, null, aQualityMeasure);
+
+		for (String aMethod : new String[] { RandomQualitiesWindow.SWAP_RANDOMIZATION, RandomQualitiesWindow.RANDOM_SUBSETS })
+		{
+			String[] aSetup = { aMethod, "8" };
+			double[] aQualities1 = aValidation.getQualitiesParallel(aSetup, 1);
+			double[] aQualities4 = aValidation.getQualitiesParallel(aSetup, 4);
+
+			assertEquals(8, aQualities1.length);
+			for (int i = 0; i < aQualities1.length; ++i)
+				assertEquals(aQualities1[i], aQualities4[i]);
+		}
+
+		//the original data is not modified
+		assertSame(aTarget, aTable.getColumns().get(14));
+		assertSame(aTarget, aTC.getPrimaryTarget());
+		assertEquals(aPositiveCount, aTarget.countValues(aTargetValue, null));
+	}
+
+	@Test
+	@DisplayName("Check end-to-end run on Adult.txt loaded from a binary snapshot")
+	public void testAdult12() throws IOException
+	{
+		//SINGLE_NOMINAL
+		//d=2
+		//snapshot written by Table.toSnapshot(), read by FileLoaderSnapshot
+
+		System.out.println("\n\n----------- testAdult12 ---------");
+		DataLoaderTXT aLoader = new DataLoaderTXT(new File("src/test/resources/adult.txt"));
+		Table aTable = aLoader.getTable();
+
+		File aFile = File.createTempFile("adult", ".sds");
+		aFile.deleteOnExit();
+		assertEquals(true, aTable.toSnapshot(aFile));
+		Table aSnapshot = new FileLoaderSnapshot(aFile).getTable();
+		assertNotNull(aSnapshot);
+
+		//same data
+		assertEquals(aTable.getName(), aSnapshot.getName());
+		assertEquals(aTable.getNrRows(), aSnapshot.getNrRows());
+		assertEquals(aTable.getNrColumns(), aSnapshot.getNrColumns());
+		for (int i = 0; i < aTable.getNrColumns(); ++i)
+		{
+			Column aColumn = aTable.getColumn(i);
+			Column aCopy = aSnapshot.getColumn(i);
+			assertEquals(aColumn.getName(), aCopy.getName());
+			assertEquals(aColumn.getType(), aCopy.getType());
+			assertEquals(aColumn.getCardinality(), aCopy.getCardinality());
+			assertEquals(aColumn.getMissing(), aCopy.getMissing());
+			for (int j = 0; j < aTable.getNrRows(); ++j)
+				assertEquals(aColumn.getString(j), aCopy.getString(j));
+		}
+
+		//same result, the second run reuses the sort data
+		String[] anExpected = getAdult12Result(aTable);
+		for (int i = 0; i < 2; ++i)
+			assertEquals(Arrays.asList(anExpected), Arrays.asList(getAdult12Result(aSnapshot)));
+	}
+
+	@Test
+	@DisplayName("Check multi-threaded beam search on Adult.txt yields the single-threaded result")
+	public void testAdult13()
+	{
+		//SINGLE_NOMINAL
+		//d=3
+		//BEAM and COVER_BASED_BEAM_SELECTION, 1 and 4 threads
+
+		System.out.println("\n\n----------- testAdult13 ---------");
+		DataLoaderTXT aLoader = new DataLoaderTXT(new File("src/test/resources/adult.txt"));
+		Table aTable = aLoader.getTable();
+
+		for (SearchStrategy aStrategy : new SearchStrategy[] { SearchStrategy.BEAM, SearchStrategy.COVER_BASED_BEAM_SELECTION })
+		{
+			String[] anExpected = getAdult13Result(aTable, aStrategy, 1);
+			assertEquals(Arrays.asList(anExpected), Arrays.asList(getAdult13Result(aTable, aStrategy, 4)));
+		}
+	}
+
+	@Test
+	@DisplayName("Check concurrent cross-validation folds on Adult.txt yield the sequential result")
+	public void testAdult14() throws IOException
+	{
+		//SINGLE_NOMINAL
+		//d=2
+		//2 repetitions of 5-fold cross-validation, 1 and 3 parallel folds
+
+		System.out.println("\n\n----------- testAdult14 ---------");
+		DataLoaderTXT aLoader = new DataLoaderTXT(new File("src/test/resources/adult.txt"));
+		Table aTable = aLoader.getTable();
+		SearchParameters anSP = getAdult13SearchParameters(aTable, SearchStrategy.BEAM, 1);
+		anSP.setSearchDepth(2);
+
+		File[] aDirectories = new File[2];
+		List<List<CrossValidationRunner.FoldResult>> aResults = new ArrayList<List<CrossValidationRunner.FoldResult>>();
+		for (int i = 0; i < 2; ++i)
+		{
+			aDirectories[i] = Files.createTempDirectory("cv").toFile();
+			aResults.add(new CrossValidationRunner(aTable, anSP, 5, 2, 10L).run((i == 0) ? 1 : 3, 1, aDirectories[i]));
+		}
+
+		assertEquals(10, aResults.get(0).size());
+		int aNrTest = 0;
+		for (int i = 0; i < 10; ++i)
+		{
+			CrossValidationRunner.FoldResult r = aResults.get(0).get(i);
+			CrossValidationRunner.FoldResult s = aResults.get(1).get(i);
+			assertEquals(1000, r.getNrTraining() + r.getNrTest());
+			assertEquals(r.getNrTraining(), s.getNrTraining());
+			assertEquals(r.getNrSubgroups(), s.getNrSubgroups());
+			assertEquals(r.getBestQuality(), s.getBestQuality());
+			assertEquals(r.getAverageQuality(), s.getAverageQuality());
+			if (r.getRepetition() == 0)
+				aNrTest += r.getNrTest();
+		}
+		//the test sets of a repetition partition the data
+		assertEquals(1000, aNrTest);
+
+		//same files, the summary differs in its times only
+		String[] aNames = aDirectories[0].list();
+		Arrays.sort(aNames);
+		assertEquals(11, aNames.length);
+		for (String aName : aNames)
+		{
+			File aFile = new File(aDirectories[1], aName);
+			if (!aName.endsWith("summary.txt"))
+				assertEquals(Files.readAllLines(new File(aDirectories[0], aName).toPath()), Files.readAllLines(aFile.toPath()));
+			aFile.delete();
+			new File(aDirectories[0], aName).delete();
+		}
+		aDirectories[0].delete();
+		aDirectories[1].delete();
+
+		//the original TargetConcept still points to the original Table
+		assertSame(aTable.getColumns().get(14), anSP.getTargetConcept().getPrimaryTarget());
+	}
+
+	@Test
+	@DisplayName("Check cross-validation folds on shared views of Adult.txt equal those on selected Tables")
+	public void testAdult15() throws IOException
+	{
+		//SINGLE_NOMINAL
+		//d=2
+		//5-fold cross-validation, shared views with a selection versus Table.select()
+
+		System.out.println("\n\n----------- testAdult15 ---------");
+		DataLoaderTXT aLoader = new DataLoaderTXT(new File("src/test/resources/adult.txt"));
+		Table aTable = aLoader.getTable();
+		SearchParameters anSP = getAdult13SearchParameters(aTable, SearchStrategy.BEAM, 1);
+		anSP.setSearchDepth(2);
+
+		File aDirectory = Files.createTempDirectory("cv").toFile();
+		List<CrossValidationRunner.FoldResult> aResults = new CrossValidationRunner(aTable, anSP, 5, 1, 10L).run(2, 1, aDirectory);
+		for (File aFile : aDirectory.listFiles())
+			aFile.delete();
+		aDirectory.delete();
+
+		//the training sets of the first repetition, as drawn by the CrossValidationRunner
+		CrossValidation aCV = new CrossValidation(aTable.getNrRows(), 5, new Random(new Random(10L).nextLong()));
+		for (int f = 0; f < 5; ++f)
+		{
+			BitSet aSet = aCV.getSet(f, true);
+			Table aSelection = aTable.select(aSet);
+			Table aView = aTable.sharedView();
+
+			//the Columns of the selection hold the values of the selected records of the view
+			assertEquals(aSet.cardinality(), aSelection.getNrRows());
+			assertEquals(aSelection.getNrColumns(), aView.getNrColumns());
+			for (int c = 0; c < aView.getNrColumns(); ++c)
+			{
+				Column aSelected = aSelection.getColumn(c);
+				Column aShared = aView.getColumn(c);
+				assertEquals(aSelected.getName(), aShared.getName());
+				assertEquals(aSelected.getType(), aShared.getType());
+				for (int i = aSet.nextSetBit(0), j = 0; i >= 0; i = aSet.nextSetBit(i + 1), ++j)
+					assertEquals(aSelected.getString(j), aShared.getString(i), aShared.getName() + " " + i);
+			}
+
+			//the same Subgroups, with the same coverage and quality
+			SubgroupSet aSelectedResult = getFoldResult(aSelection, null, anSP);
+			SubgroupSet aSharedResult = getFoldResult(aView, aSet, anSP);
+			assertArrayEquals(toStrings(aSelectedResult), toStrings(aSharedResult));
+
+			//and the CrossValidationRunner reports them
+			CrossValidationRunner.FoldResult r = aResults.get(f);
+			double aSum = 0.0;
+			for (Subgroup s : aSelectedResult)
+				aSum += s.getMeasureValue();
+			assertEquals(aSet.cardinality(), r.getNrTraining());
+			assertEquals(aSelectedResult.size(), r.getNrSubgroups());
+			assertEquals(aSelectedResult.getBestScore(), r.getBestQuality());
+			assertEquals(aSum / aSelectedResult.size(), r.getAverageQuality());
+		}
+
+		//the original TargetConcept still points to the original Table
+		assertSame(aTable.getColumns().get(14), anSP.getTargetConcept().getPrimaryTarget());
+	}
+
+	//as a fold of the CrossValidationRunner, on a copy of the SearchParameters and TargetConcept
+	private static SubgroupSet getFoldResult(Table theTable, BitSet theSelection, SearchParameters theSearchParameters)
+	{
+		TargetConcept aTC = theSearchParameters.getTargetConcept().copy();
+		aTC.updateToNewTable(theTable);
+		SearchParameters anSP = theSearchParameters.copy();
+		anSP.setTargetConcept(aTC);
+		BitSet aSelection = (theSelection == null) ? null : (BitSet) theSelection.clone();
+		return Process.runSubgroupDiscovery(theTable, 1, aSelection, anSP, false, 1, null).getResult();
+	}
+
+	//the order of the Conditions depends on which Thread added the Subgroup first
+	private static String[] toStrings(SubgroupSet theSubgroupSet)
+	{
+		List<String> aResult = new ArrayList<String>();
+		for (Subgroup s : theSubgroupSet)
+		{
+			String[] aConditions = s.toString().split(" AND ");
+			Arrays.sort(aConditions);
+			aResult.add(String.join(" AND ", aConditions) + " " + s.getCoverage() + " " + s.getMeasureValue());
+		}
+		return aResult.toArray(new String[0]);
+	}
+
+	private String[] getAdult13Result(Table theTable, SearchStrategy theSearchStrategy, int theNrThreads)
+	{
+		SubgroupDiscovery anSD = Process.runSubgroupDiscovery(theTable, 0, null, getAdult13SearchParameters(theTable, theSearchStrategy, theNrThreads), false, theNrThreads, null);
+		return toStrings(anSD.getResult());
+	}
+
+	private SearchParameters getAdult13SearchParameters(Table theTable, SearchStrategy theSearchStrategy, int theNrThreads)
+	{
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL);
+		aTC.setPrimaryTarget(theTable.getColumns().get(14));
+		aTC.setTargetValue("gr50K");
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.CORTANA_QUALITY);
+		anSP.setQualityMeasureMinimum(0.1f);
+		anSP.setSearchDepth(3);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1f);
+		anSP.setMaximumSubgroups(100);
+		anSP.setMaximumTime(1000); //1000 seconds
+		anSP.setSearchStrategy(theSearchStrategy);
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators(NumericOperatorSetting.NORMAL);
+		anSP.setNumericStrategy(NumericStrategy.NUMERIC_BEST);
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(theNrThreads);
+		return anSP;
+	}
+
+	private String[] getAdult12Result(Table theTable)
+	{
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL);
+		aTC.setPrimaryTarget(theTable.getColumns().get(14));
+		aTC.setTargetValue("gr50K");
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.CORTANA_QUALITY);
+		anSP.setQualityMeasureMinimum(0.1f);
+		anSP.setSearchDepth(2);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1f);
+		anSP.setMaximumSubgroups(1000);
+		anSP.setMaximumTime(1000); //1000 seconds
+		anSP.setSearchStrategy(SearchStrategy.BEAM);
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators(NumericOperatorSetting.NORMAL);
+		anSP.setNumericStrategy(NumericStrategy.NUMERIC_BEST);
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+		SubgroupDiscovery anSD = Process.runSubgroupDiscovery(theTable, 0, null, anSP, false, 1, null);
+
+		List<String> aResult = new ArrayList<String>();
+		for (Subgroup s : anSD.getResult())
+			aResult.add(s.toString() + " " + s.getCoverage() + " " + s.getMeasureValue());
+		return aResult.toArray(new String[0]);
+	}
+
 	private float roundToFive(double f) { return (float) Math.round(f*100000)/100000; }
 }
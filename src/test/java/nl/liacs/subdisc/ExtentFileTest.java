@@ -0,0 +1,86 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.io.*;
+import java.util.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ExtentFileTest
+{
+	@Test
+	@DisplayName("Check the binary extents of a fold hold the same values as the text extents")
+	public void testFold() throws IOException
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+		BitSet aSet = new CrossValidation(aTable.getNrRows(), 10, new Random(10)).getSet(0, true);
+		Table aFold = aTable.select(aSet);
+
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL.GUI_TEXT);
+		aTC.setPrimaryTarget(aFold.getColumn("target"));
+		aTC.setTargetValue("gr50K");
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.WRACC);
+		anSP.setQualityMeasureMinimum(0.0f);
+		anSP.setSearchDepth(2);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1.0f);
+		anSP.setMaximumSubgroups(100);
+		anSP.setMaximumTime(1000);
+		anSP.setSearchStrategy("beam");
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators("<html>&#8804;, &#8805;</html>");
+		anSP.setNumericStrategy("best");
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+
+		SubgroupSet aResult = Process.runSubgroupDiscovery(aFold, 1, null, anSP, false, 1, null).getResult();
+		aResult.setIDs();
+
+		StringWriter aText = new StringWriter();
+		BufferedWriter aWriter = new BufferedWriter(aText);
+		aResult.saveExtent(aWriter, aTable, aSet, aTC);
+		aWriter.close();
+		String[] aRows = aText.toString().split("\n");
+
+		File aFile = File.createTempFile("adult", ".sdx");
+		aFile.deleteOnExit();
+		assertEquals(true, aResult.saveExtent(aFile, aTable, aSet));
+
+		ExtentFile anExtentFile = new ExtentFile(aFile);
+		try
+		{
+			assertEquals(aTable.getNrRows(), anExtentFile.getNrRows());
+			assertEquals(aTable.getNrRows(), aRows.length);
+			assertEquals(aResult.size(), anExtentFile.getNrSubgroups());
+			assertEquals(aSet, anExtentFile.getTrainingRows().toBitSet());
+
+			int i = 0;
+			for (Subgroup s : aResult)
+			{
+				assertEquals(s.getID(), anExtentFile.getID(i));
+				assertEquals(s.getCoverage(), anExtentFile.getCoverage(i));
+				assertEquals(s.getMeasureValue(), anExtentFile.getMeasureValue(i));
+				assertEquals(s.getConditions().toString(), anExtentFile.getConditions(i));
+
+				MemberSet anExtent = anExtentFile.getExtent(i);
+				assertEquals(s.getCoverage(), anExtent.cardinality());
+				for (int j = 0; j < aRows.length; ++j)
+					assertEquals(aRows[j].split(",")[i + 1].equals("1"), anExtent.get(j));
+				++i;
+			}
+		}
+		finally
+		{
+			anExtentFile.close();
+		}
+	}
+}
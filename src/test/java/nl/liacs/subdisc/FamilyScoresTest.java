@@ -0,0 +1,87 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.io.*;
+import java.util.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FamilyScoresTest
+{
+	private static final int NR_RECORDS = 500;
+	private static final int NR_FAMILIES = 200;
+
+	@Test
+	@DisplayName("Check family scores equal BDeu computed on the selected rows and columns")
+	public void testScores()
+	{
+		// 20 columns: patterns fit in a long, 70 columns: they do not
+		assertScores(20, new Random(12345));
+		assertScores(70, new Random(54321));
+	}
+
+	private static void assertScores(int theNrColumns, Random theRandom)
+	{
+		Table aTable = new Table(new File("family scores.txt"), NR_RECORDS, theNrColumns);
+		List<Column> aColumns = new ArrayList<Column>(theNrColumns);
+		boolean[] aFirst = new boolean[NR_RECORDS];
+		for (int i = 0; i < theNrColumns; i++)
+		{
+			Column aColumn = new Column("c" + i, "c" + i, AttributeType.BINARY, i, NR_RECORDS);
+			// columns with different densities, dependent on the first
+			double aDensity = (i+1) / (theNrColumns + 1.0);
+			for (int j = 0; j < NR_RECORDS; j++)
+			{
+				boolean aValue = theRandom.nextDouble() < (aFirst[j] ? aDensity/2 : aDensity);
+				if (i == 0)
+					aFirst[j] = aValue;
+				aColumn.add(aValue);
+			}
+			aColumns.add(aColumn);
+		}
+		BinaryTable aBinaryTable = new BinaryTable(aTable, aColumns);
+
+		BitSet aMembers = new BitSet(NR_RECORDS);
+		for (int j = 0; j < NR_RECORDS; j++)
+			if (theRandom.nextBoolean())
+				aMembers.set(j);
+
+		assertScores(aBinaryTable, null, aBinaryTable, theRandom);
+		assertScores(aBinaryTable, aMembers, aBinaryTable.selectRows(aMembers), theRandom);
+		// no members at all
+		BitSet anEmpty = new BitSet(NR_RECORDS);
+		assertScores(aBinaryTable, anEmpty, aBinaryTable.selectRows(anEmpty), theRandom);
+	}
+
+	private static void assertScores(BinaryTable theTable, BitSet theMembers, BinaryTable theRows, Random theRandom)
+	{
+		int aNrColumns = theTable.getNrColumns();
+		FamilyScores aScores = new FamilyScores(theTable, theMembers);
+
+		for (int i = 0; i < NR_FAMILIES; i++)
+		{
+			int aChild = theRandom.nextInt(aNrColumns);
+			// up to 15 parents, beyond the dense counting limit
+			int aNrParents = theRandom.nextInt(16);
+			ItemSet aParents = new ItemSet(aNrColumns);
+			while (aParents.cardinality() < aNrParents)
+			{
+				int aParent = theRandom.nextInt(aNrColumns);
+				if (aParent != aChild)
+					aParents.set(aParent);
+			}
+
+			BinaryTable aFamily = theRows.selectColumns(aParents);
+			aFamily.addColumn(theRows.getColumn(aChild));
+			double anExpected = aFamily.computeBDeuFaster();
+
+			assertEquals(anExpected, aScores.getBDeu(aChild, aParents), 0.0);
+			// cached
+			assertEquals(anExpected, aScores.getBDeu(aChild, aParents), 0.0);
+		}
+	}
+}
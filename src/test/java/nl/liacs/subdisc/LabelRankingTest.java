@@ -0,0 +1,185 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.io.*;
+import java.util.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LabelRankingTest
+{
+	private static final String[] LABELS = { "a", "b", "c", "d" };
+
+	@Test
+	@DisplayName("Check average rankings from counts equal the average rankings of the members")
+	public void testAverageRanking()
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+		Column aRankings = createRankings(aTable);
+		int aNrRows = aTable.getNrRows();
+
+		// the whole table, and a random Subgroup
+		assertSameRanking(aRankings, null, "table");
+		Random aRandom = new Random(12345);
+		BitSet aMembers = new BitSet(aNrRows);
+		for (int i = 0; i < aNrRows; ++i)
+			aMembers.set(i, aRandom.nextInt(3) == 0);
+		assertSameRanking(aRankings, new Subgroup(aMembers), "subgroup");
+	}
+
+	@Test
+	@DisplayName("Check the rankings of mined Subgroups equal the average rankings of their members")
+	public void testMining()
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+		Column aRankings = createRankings(aTable);
+
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.LABEL_RANKING.GUI_TEXT);
+		aTC.setPrimaryTarget(aRankings);
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.LR_NORM);
+		anSP.setQualityMeasureMinimum(0.0f);
+		anSP.setSearchDepth(1);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1.0f);
+		anSP.setMaximumSubgroups(100);
+		anSP.setMaximumTime(1000);
+		anSP.setSearchStrategy("beam");
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators("<html>&#8804;, &#8805;</html>");
+		anSP.setNumericStrategy("bins");
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+
+		SubgroupSet aResult = Process.runSubgroupDiscovery(aTable, 0, null, anSP, false, 1, null).getResult();
+		assertTrue(aResult.size() > 10);
+
+		for (Subgroup s : aResult)
+		{
+			String aMessage = s.getConditions().toString();
+			assertRanking(getAverageRanking(aRankings, s.getMembers()), s.getLabelRanking(), aMessage);
+			assertMatrix(getAverageRankingMatrix(aRankings, s.getMembers()), s.getLabelRankingMatrix(), aMessage);
+		}
+	}
+
+	/*
+	 * replaces the target Column of theTable by a NOMINAL Column of label
+	 * rankings, that depend on age, so some Subgroups rank differently
+	 */
+	private static Column createRankings(Table theTable)
+	{
+		List<Column> aColumns = theTable.getColumns();
+		Column anAge = theTable.getColumn("age");
+		int anIndex = theTable.getColumn("target").getIndex();
+		int aNrRows = theTable.getNrRows();
+
+		Random aRandom = new Random(12345);
+		Column aRankings = new Column("ranking", "ranking", AttributeType.NOMINAL, anIndex, aNrRows);
+		for (int i = 0; i < aNrRows; ++i)
+		{
+			List<String> aLabels = new ArrayList<String>(Arrays.asList(LABELS));
+			if (anAge.getFloat(i) > 40.0f)
+				Collections.reverse(aLabels);
+			if (aRandom.nextBoolean())
+				Collections.swap(aLabels, 0, 1 + aRandom.nextInt(LABELS.length - 1));
+
+			StringBuilder sb = new StringBuilder(aLabels.get(0));
+			for (int j = 1; j < aLabels.size(); ++j)
+				sb.append(">").append(aLabels.get(j));
+			aRankings.add(sb.toString());
+		}
+		aRankings.close();
+		aColumns.set(anIndex, aRankings);
+
+		return aRankings;
+	}
+
+	private static void assertSameRanking(Column theRankings, Subgroup theSubgroup, String theMessage)
+	{
+		BitSet aMembers = (theSubgroup == null) ? null : theSubgroup.getMembers();
+		assertRanking(getAverageRanking(theRankings, aMembers), theRankings.getAverageRanking(theSubgroup), theMessage);
+		assertMatrix(getAverageRankingMatrix(theRankings, aMembers), theRankings.getAverageRankingMatrix(theSubgroup), theMessage);
+	}
+
+	private static void assertRanking(LabelRanking theExpected, LabelRanking theActual, String theMessage)
+	{
+		assertEquals(theExpected.getSize(), theActual.getSize(), theMessage);
+		for (int i = 0; i < theExpected.getSize(); ++i)
+			assertEquals(theExpected.getRank(i), theActual.getRank(i), theMessage);
+	}
+
+	private static void assertMatrix(LabelRankingMatrix theExpected, LabelRankingMatrix theActual, String theMessage)
+	{
+		assertEquals(theExpected.getSize(), theActual.getSize(), theMessage);
+		for (int i = 0; i < theExpected.getSize(); ++i)
+			assertArrayEquals(theExpected.itsMatrix[i], theActual.itsMatrix[i], theMessage);
+	}
+
+	// the per-member average ranking, as Column.getAverageRanking(Subgroup) was
+	private static LabelRanking getAverageRanking(Column theRankings, BitSet theMembers)
+	{
+		LabelRanking aResult = new LabelRanking(theRankings.getString(0));
+		int aSize = aResult.getSize(); //number of labels
+		int[] aTotalRanks = new int[aSize];
+
+		//summation of rankings (not necessary to divide by aSize, when you just look at the order)
+		for (int i=0; i<theRankings.size(); ++i)
+		{
+			if (theMembers == null || theMembers.get(i)) //part of the subgroup?
+			{
+				LabelRanking aRanking = new LabelRanking(theRankings.getString(i));
+				for (int j=0; j<aSize; j++)
+					aTotalRanks[j] += aRanking.getRank(j);
+			}
+		}
+
+		//make copy that can be sorted
+		int[] aRanks = Arrays.copyOf(aTotalRanks, aSize);
+		Arrays.sort(aRanks);
+
+		//translate average ranks to a ranking
+		for (int i=0; i<aSize; i++)
+		{
+			int aLookup = aTotalRanks[i];
+			int aFirst = -1;
+			//look up rank for this average
+			for (int j=0; j<aSize; j++)
+				if (aLookup == aRanks[j])
+					aFirst = j;
+			aResult.setRank(i, aFirst);
+		}
+
+		return aResult;
+	}
+
+	// the per-member average ranking, as Column.getAverageRankingMatrix(Subgroup) was
+	private static LabelRankingMatrix getAverageRankingMatrix(Column theRankings, BitSet theMembers)
+	{
+		LabelRankingMatrix aResult = new LabelRankingMatrix(theRankings.getString(0).replace(">","").length());
+		int aCount = 0;
+
+		//summation of rankings
+		for (int i=0; i<theRankings.size(); ++i)
+		{
+			if (theMembers == null || theMembers.get(i)) //part of the subgroup?
+			{
+				LabelRanking aRanking = new LabelRanking(theRankings.getString(i));
+				aResult.add(new LabelRankingMatrix(aRanking));
+				aCount++;
+			}
+		}
+		aResult.divide(aCount);
+
+		return aResult;
+	}
+}
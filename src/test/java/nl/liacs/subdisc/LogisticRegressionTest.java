@@ -0,0 +1,203 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.util.*;
+
+// Weka, for the reference fit
+import weka.classifiers.functions.Logistic;
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instance;
+import weka.core.Instances;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LogisticRegressionTest
+{
+	private static final int NR_RECORDS = 1000;
+	private static final double DELTA = 1e-9;
+
+	@Test
+	@DisplayName("Check fitted probabilities equal the target rates per value of a single variable")
+	public void testSingleVariable()
+	{
+		// variable set for records [0, 400), target rate 0.25 for those
+		// records, and 0.5 for the others
+		BitSet aVariable = new BitSet(NR_RECORDS);
+		aVariable.set(0, 400);
+		BitSet aTarget = new BitSet(NR_RECORDS);
+		aTarget.set(0, 100);
+		aTarget.set(400, 700);
+
+		LogisticRegression aModel = new LogisticRegression(new BitSet[] { aVariable }, aTarget, NR_RECORDS, null);
+		assertProbabilities(aModel);
+
+		// warm-started from the model above, the complement makes the
+		// variables collinear, the probabilities do not change
+		BitSet aComplement = (BitSet) aVariable.clone();
+		aComplement.flip(0, NR_RECORDS);
+		LogisticRegression aChild = new LogisticRegression(new BitSet[] { aComplement, aVariable }, aTarget, NR_RECORDS, aModel);
+		assertProbabilities(aChild);
+	}
+
+	@Test
+	@DisplayName("Check fitted probabilities of a main effects model equal reference values")
+	public void testReferenceValues()
+	{
+		// records per pattern (x1, x2): (0, 0) 300 with 60 positives,
+		// (1, 0) 200 with 90, (0, 1) 250 with 100, (1, 1) 250 with 200
+		BitSet x1 = new BitSet(NR_RECORDS);
+		BitSet x2 = new BitSet(NR_RECORDS);
+		BitSet aTarget = new BitSet(NR_RECORDS);
+		x1.set(300, 500);
+		x2.set(500, 1000);
+		x1.set(750, 1000);
+		aTarget.set(0, 60);
+		aTarget.set(300, 390);
+		aTarget.set(500, 600);
+		aTarget.set(750, 950);
+
+		// not saturated, there is no closed form, the reference is an
+		// independent Newton-Raphson fit with the coefficients
+		// (-1.5476652163051787, 1.495110687534252, 1.2637391509941087)
+		double[] anExpected = { 0.1754237393174032, 0.4868643910238952, 0.4294915128191162, 0.7705084871808839 };
+		int[] aRecords = { 0, 300, 500, 750 };
+
+		LogisticRegression aModel = new LogisticRegression(new BitSet[] { x1, x2 }, aTarget, NR_RECORDS, null);
+		double[] p = aModel.getProbabilities(NR_RECORDS);
+		for (int i = 0; i < aRecords.length; ++i)
+			assertEquals(anExpected[i], p[aRecords[i]], DELTA, "record " + aRecords[i]);
+		assertEquals(450.0, aModel.getProbabilitySum(), 1e-6);
+
+		// warm-started from the model for x1 only, the result is the same
+		LogisticRegression aParent = new LogisticRegression(new BitSet[] { x1 }, aTarget, NR_RECORDS, null);
+		p = new LogisticRegression(new BitSet[] { x2, x1 }, aTarget, NR_RECORDS, aParent).getProbabilities(NR_RECORDS);
+		for (int i = 0; i < aRecords.length; ++i)
+			assertEquals(anExpected[i], p[aRecords[i]], DELTA, "warm-started, record " + aRecords[i]);
+	}
+
+	@Test
+	@DisplayName("Check fitted probabilities for a target without positives or negatives")
+	public void testDegenerate()
+	{
+		BitSet aVariable = new BitSet(NR_RECORDS);
+		aVariable.set(0, 400);
+
+		// the intercept is -Infinity or +Infinity
+		LogisticRegression aNone = new LogisticRegression(new BitSet[] { aVariable }, new BitSet(NR_RECORDS), NR_RECORDS, null);
+		for (double d : aNone.getProbabilities(NR_RECORDS))
+			assertEquals(0.0, d, 0.0);
+		assertEquals(0.0, aNone.getProbabilitySum(), 0.0);
+
+		BitSet anAll = new BitSet(NR_RECORDS);
+		anAll.set(0, NR_RECORDS);
+		LogisticRegression anAllModel = new LogisticRegression(new BitSet[] { aVariable }, anAll, NR_RECORDS, aNone);
+		for (double d : anAllModel.getProbabilities(NR_RECORDS))
+			assertEquals(1.0, d, 0.0);
+		assertEquals(NR_RECORDS, anAllModel.getProbabilitySum(), 0.0);
+	}
+
+	@Test
+	@DisplayName("Check fitted probabilities approach the targets for (quasi-)separated data")
+	public void testSeparated()
+	{
+		// no maximum likelihood estimate exists, the coefficient of x1
+		// diverges, the fitted probabilities approach the target rates
+		BitSet x1 = new BitSet(NR_RECORDS);
+		x1.set(0, 500);
+		BitSet aTarget = (BitSet) x1.clone();
+		double[] p = new LogisticRegression(new BitSet[] { x1 }, aTarget, NR_RECORDS, null).getProbabilities(NR_RECORDS);
+		for (int i = 0; i < NR_RECORDS; ++i)
+			assertEquals(aTarget.get(i) ? 1.0 : 0.0, p[i], 1e-6, "separated, record " + i);
+
+		// quasi-separated: x1 implies the target, x2 does not, the rate
+		// for records with x1 approaches 1.0, the others are fitted exactly
+		BitSet x2 = new BitSet(NR_RECORDS);
+		x2.set(250, 750);
+		aTarget.set(600, 700);
+		LogisticRegression aModel = new LogisticRegression(new BitSet[] { x1, x2 }, aTarget, NR_RECORDS, null);
+		p = aModel.getProbabilities(NR_RECORDS);
+		assertEquals(1.0, p[0], 1e-6);
+		assertEquals(1.0, p[250], 1e-6);
+		assertEquals(100.0 / 250.0, p[500], 1e-6);
+		assertEquals(0.0 / 250.0, p[750], 1e-6);
+		assertEquals(aTarget.cardinality(), aModel.getProbabilitySum(), 1e-6);
+	}
+
+	@Test
+	@DisplayName("Check fitted probabilities equal those of the Weka Logistic model")
+	public void testWeka() throws Exception
+	{
+		// random variables, the target depends on them, but not completely
+		Random aRandom = new Random(12345);
+		BitSet[] aVariables = new BitSet[3];
+		for (int i = 0; i < aVariables.length; ++i)
+		{
+			aVariables[i] = new BitSet(NR_RECORDS);
+			for (int r = 0; r < NR_RECORDS; ++r)
+				aVariables[i].set(r, aRandom.nextBoolean());
+		}
+		BitSet aTarget = new BitSet(NR_RECORDS);
+		for (int r = 0; r < NR_RECORDS; ++r)
+		{
+			int aCount = 0;
+			for (BitSet v : aVariables)
+				aCount += v.get(r) ? 1 : 0;
+			aTarget.set(r, aRandom.nextInt(4) < aCount);
+		}
+
+		double[] p = new LogisticRegression(aVariables, aTarget, NR_RECORDS, null).getProbabilities(NR_RECORDS);
+		double[] aWeka = getWekaProbabilities(aVariables, aTarget);
+		// Weka uses a quasi-Newton optimiser, that stops earlier
+		for (int r = 0; r < NR_RECORDS; ++r)
+			assertEquals(aWeka[r], p[r], 1e-6, "record " + r);
+	}
+
+	// as PropensityScore did before LogisticRegression, without a ridge
+	private static double[] getWekaProbabilities(BitSet[] theVariables, BitSet theTarget) throws Exception
+	{
+		FastVector anAttributes = new FastVector(theVariables.length + 1);
+		for (int i = 0; i < theVariables.length; ++i)
+			anAttributes.addElement(new Attribute(Integer.toString(i)));
+		FastVector aValues = new FastVector(2);
+		aValues.addElement("0");
+		aValues.addElement("1");
+		anAttributes.addElement(new Attribute("target", aValues));
+
+		Instances aData = new Instances("variables", anAttributes, NR_RECORDS);
+		for (int r = 0; r < NR_RECORDS; ++r)
+		{
+			Instance anInstance = new Instance(anAttributes.size());
+			anInstance.setDataset(aData);
+			for (int i = 0; i < theVariables.length; ++i)
+				anInstance.setValue(i, theVariables[i].get(r) ? 1 : 0);
+			anInstance.setValue(theVariables.length, theTarget.get(r) ? 1 : 0);
+			aData.add(anInstance);
+		}
+		aData.setClassIndex(aData.numAttributes() - 1);
+
+		Logistic aLogistic = new Logistic();
+		aLogistic.setRidge(0);
+		aLogistic.buildClassifier(aData);
+
+		double[] aResult = new double[NR_RECORDS];
+		for (int r = 0; r < NR_RECORDS; ++r)
+			aResult[r] = aLogistic.distributionForInstance(aData.instance(r))[1];
+		return aResult;
+	}
+
+	private static void assertProbabilities(LogisticRegression theModel)
+	{
+		double[] p = theModel.getProbabilities(NR_RECORDS);
+		assertEquals(0.25, p[0], DELTA);
+		assertEquals(0.25, p[399], DELTA);
+		assertEquals(0.5, p[400], DELTA);
+		assertEquals(0.5, p[NR_RECORDS-1], DELTA);
+		// with an intercept the sum equals the number of positives
+		assertEquals(400.0, theModel.getProbabilitySum(), 1e-6);
+	}
+}
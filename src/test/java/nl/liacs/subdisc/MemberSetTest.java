@@ -0,0 +1,144 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.util.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class MemberSetTest
+{
+	@Test
+	@DisplayName("Check MemberSet round trip for sparse, dense and run chunks")
+	public void testRoundTrip()
+	{
+		// 4 chunks of 2^16 rows: sparse, dense, runs, empty, and a last
+		// partial chunk with a single member
+		int aChunk = 1 << 16;
+		BitSet aBitSet = new BitSet();
+		Random aRandom = new Random(10);
+
+		for (int i = 0; i < 100; ++i)
+			aBitSet.set(aRandom.nextInt(aChunk));
+		for (int i = aChunk; i < 2 * aChunk; ++i)
+			if (aRandom.nextBoolean())
+				aBitSet.set(i);
+		aBitSet.set(2 * aChunk, 2 * aChunk + 1000);
+		aBitSet.set(2 * aChunk + 5000, 3 * aChunk);
+		aBitSet.set(4 * aChunk + 63);
+
+		BitSet aCopy = (BitSet) aBitSet.clone();
+		MemberSet aMemberSet = MemberSet.valueOf(aBitSet);
+
+		assertEquals(aCopy, aBitSet);
+		assertEquals(aBitSet.cardinality(), aMemberSet.cardinality());
+		assertEquals(aBitSet, aMemberSet.toBitSet());
+		assertArrayEquals(aBitSet.stream().toArray(), aMemberSet.toArray());
+
+		for (int i = 0; i < 5 * aChunk; ++i)
+		{
+			assertEquals(aBitSet.get(i), aMemberSet.get(i));
+			assertEquals(aBitSet.nextSetBit(i), aMemberSet.nextSetBit(i));
+		}
+	}
+
+	@Test
+	@DisplayName("Check MemberSet for empty and sparse BitSets")
+	public void testSparse()
+	{
+		MemberSet anEmpty = MemberSet.valueOf(new BitSet());
+		assertEquals(0, anEmpty.cardinality());
+		assertEquals(-1, anEmpty.nextSetBit(0));
+		assertEquals(new BitSet(), anEmpty.toBitSet());
+
+		BitSet aBitSet = new BitSet();
+		aBitSet.set(3);
+		aBitSet.set(10000000);
+		MemberSet aMemberSet = MemberSet.valueOf(aBitSet);
+		assertEquals(2, aMemberSet.cardinality());
+		assertEquals(10000000, aMemberSet.nextSetBit(4));
+		assertEquals(aBitSet, aMemberSet.toBitSet());
+	}
+
+	@Test
+	@DisplayName("Check killed members are re-created correctly within the MemberCache budget")
+	public void testMemberCache()
+	{
+		// c0 = i, so (c0 <= k) selects rows 0..k
+		int aNrRows = 100000;
+		Column aColumn = new Column("c0", "c0", AttributeType.NUMERIC, 0, aNrRows);
+		for (int i = 0; i < aNrRows; ++i)
+			aColumn.add((float) i);
+		aColumn.close();
+		aColumn.buildSorted(null);
+		ConditionBase aLessThan = new ConditionBase(aColumn, Operator.LESS_THAN_OR_EQUAL);
+		ConditionBase aGreaterThan = new ConditionBase(aColumn, Operator.GREATER_THAN_OR_EQUAL);
+
+		BitSet anAll = new BitSet(aNrRows);
+		anAll.set(0, aNrRows);
+		SubgroupSet aSet = new SubgroupSet(0, null, aNrRows);
+		Subgroup aRoot = new Subgroup(ConditionListBuilder.emptyList(), anAll, aSet);
+
+		long aBudget = MemberCache.getBudget();
+		try
+		{
+			MemberCache.setBudget(0L);
+
+			// chain (c0 <= 99999-i) AND (c0 >= i), members i..99999-i
+			List<Subgroup> aSubgroups = new ArrayList<Subgroup>();
+			Subgroup aParent = aRoot;
+			for (int i = 1; i <= 4; ++i)
+			{
+				int aTo = aNrRows - 1 - (1000 * i);
+				int aFrom = 1000 * i;
+				Subgroup aChild = aParent.getRefinedSubgroup(new Condition(aLessThan, aColumn.getSortedValue(aTo), aTo));
+				aChild = aChild.getRefinedSubgroup(new Condition(aGreaterThan, aColumn.getSortedValue(aFrom), aFrom));
+				aSubgroups.add(aChild);
+				aParent = aChild;
+			}
+			for (Subgroup s : aSubgroups)
+				s.killMembers();
+
+			// with a budget of 0, only the last re-created members are kept
+			for (int k = 0; k < 2; ++k)
+			{
+				for (int i = aSubgroups.size() - 1; i >= 0; --i)
+				{
+					int aFrom = 1000 * (i + 1);
+					int aTo = aNrRows - 1 - aFrom;
+					BitSet anExpected = new BitSet(aNrRows);
+					anExpected.set(aFrom, aTo + 1);
+					assertEquals(anExpected, aSubgroups.get(i).getMembers());
+					assertTrue(MemberCache.getSize() <= aSubgroups.get(i).getMemberSet().getMemoryUsage());
+				}
+			}
+
+			// killed members are removed, so the size does not drift
+			MemberCache.setBudget(0L);
+			MemberCache.setBudget(Long.MAX_VALUE);
+			long aSize = 0L;
+			for (Subgroup s : aSubgroups)
+				aSize += s.getMemberSet().getMemoryUsage();
+			assertEquals(aSize, MemberCache.getSize());
+			for (int k = 0; k < 2; ++k)
+			{
+				for (Subgroup s : aSubgroups)
+					s.killMembers();
+				assertEquals(0L, MemberCache.getSize());
+				for (Subgroup s : aSubgroups)
+					s.reviveMembers();
+				assertEquals(aSize, MemberCache.getSize());
+			}
+		}
+		finally
+		{
+			MemberCache.setBudget(aBudget);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.io.*;
+import java.util.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NominalCrossTableTest
+{
+	@Test
+	@DisplayName("Check the counts of the NominalCrossTable equal those of the member values")
+	public void testCounts()
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+		int aNrRows = aTable.getNrRows();
+		Random aRandom = new Random(12345);
+
+		BitSet aMembers = new BitSet(aNrRows);
+		BitSet aTarget = new BitSet(aNrRows);
+		for (int i = 0; i < aNrRows; ++i)
+		{
+			if (aRandom.nextInt(3) == 0)
+				aMembers.set(i);
+			if (aRandom.nextBoolean())
+				aTarget.set(i);
+		}
+
+		for (Column c : aTable.getColumns())
+		{
+			if (c.getType() != AttributeType.NOMINAL)
+				continue;
+
+			// values in String order, with their positive and negative counts
+			SortedMap<String, int[]> anExpected = new TreeMap<String, int[]>();
+			for (int i = aMembers.nextSetBit(0); i >= 0; i = aMembers.nextSetBit(i + 1))
+			{
+				int[] aCounts = anExpected.get(c.getNominal(i));
+				if (aCounts == null)
+					anExpected.put(c.getNominal(i), aCounts = new int[2]);
+				++aCounts[aTarget.get(i) ? 0 : 1];
+			}
+
+			NominalCrossTable aNCT = new NominalCrossTable(c, aMembers, aTarget);
+			assertEquals(anExpected.size(), aNCT.size(), c.getName());
+			int i = 0;
+			for (Map.Entry<String, int[]> e : anExpected.entrySet())
+			{
+				assertEquals(e.getKey(), aNCT.getValue(i), c.getName());
+				assertEquals(e.getValue()[0], aNCT.getPositiveCount(i), e.getKey());
+				assertEquals(e.getValue()[1], aNCT.getNegativeCount(i), e.getKey());
+				++i;
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.io.*;
+import java.util.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OptimisticEstimateTest
+{
+	private static final int NR_RECORDS = 60;
+	private static final int NR_SUBSETS = 2000;
+
+	@Test
+	@DisplayName("Check the SINGLE_NOMINAL optimistic estimate bounds the quality of every refinement")
+	public void testSingleNominal()
+	{
+		for (QM aMeasure : EnumSet.of(QM.WRACC, QM.ABSWRACC, QM.CHI_SQUARED, QM.BINOMIAL, QM.INFORMATION_GAIN))
+		{
+			assertTrue(QM.hasOptimisticEstimate(aMeasure));
+			QualityMeasure aQualityMeasure = new QualityMeasure(aMeasure, NR_RECORDS, NR_RECORDS / 3);
+			int aNrNegatives = NR_RECORDS - (NR_RECORDS / 3);
+
+			for (int aCountHeadBody = 0; aCountHeadBody <= NR_RECORDS / 3; ++aCountHeadBody)
+				for (int aCoverage = Math.max(1, aCountHeadBody); aCoverage - aCountHeadBody <= aNrNegatives; ++aCoverage)
+				{
+					double aBound = aQualityMeasure.computeOptimisticEstimate(aCountHeadBody, aCoverage);
+
+					// every refinement, (i, j) positives and negatives
+					for (int i = 0; i <= aCountHeadBody; ++i)
+						for (int j = (i == 0 ? 1 : 0); j <= aCoverage - aCountHeadBody; ++j)
+						{
+							double aQuality = aQualityMeasure.calculate(i, i + j);
+							assertTrue(aQuality <= aBound, aMeasure + " " + aCountHeadBody + "/" + aCoverage + ": " + i + "/" + (i + j));
+						}
+				}
+		}
+	}
+
+	@Test
+	@DisplayName("Check the SINGLE_NUMERIC optimistic estimate bounds the quality of random refinements")
+	public void testSingleNumeric()
+	{
+		Random aRandom = new Random(12345);
+		Column aColumn = new Column("t", "t", AttributeType.NUMERIC, 0, NR_RECORDS);
+		float aSum = 0.0f;
+		for (int i = 0; i < NR_RECORDS; ++i)
+		{
+			float aValue = (float) (10.0 + 3.0 * aRandom.nextGaussian());
+			aColumn.add(aValue);
+			aSum += aValue;
+		}
+		float anSSD = 0.0f;
+		for (int i = 0; i < NR_RECORDS; ++i)
+			anSSD += (aColumn.getFloat(i) - aSum / NR_RECORDS) * (aColumn.getFloat(i) - aSum / NR_RECORDS);
+		ProbabilityDensityFunction aPDF = new ProbabilityDensityFunction(aColumn);
+
+		int aMinimumCoverage = 5;
+		for (QM aMeasure : EnumSet.of(QM.Z_SCORE, QM.INVERSE_Z_SCORE, QM.ABS_Z_SCORE, QM.MEAN_TEST, QM.INVERSE_MEAN_TEST, QM.ABS_MEAN_TEST))
+		{
+			assertTrue(QM.hasOptimisticEstimate(aMeasure));
+			QualityMeasure aQualityMeasure = new QualityMeasure(aMeasure, NR_RECORDS, aSum, anSSD, aPDF);
+
+			// the Subgroup: the first half of the records
+			float[] aValues = new float[NR_RECORDS / 2];
+			for (int i = 0; i < aValues.length; ++i)
+				aValues[i] = aColumn.getFloat(i);
+			Arrays.sort(aValues);
+			double aBound = aQualityMeasure.computeOptimisticEstimate(aValues, aMinimumCoverage);
+
+			for (int k = 0; k < NR_SUBSETS; ++k)
+			{
+				int aCoverage = 0;
+				float aSubgroupSum = 0.0f;
+				for (int i = 0; i < aValues.length; ++i)
+					if (aRandom.nextInt(4) == 0 || (k % 2 == 0 && aColumn.getFloat(i) > 10.0f))
+					{
+						++aCoverage;
+						aSubgroupSum += aColumn.getFloat(i);
+					}
+				if (aCoverage < aMinimumCoverage)
+					continue;
+
+				float aQuality = aQualityMeasure.calculate(new Statistics(aCoverage, aSubgroupSum, 0.0f), null);
+				assertTrue(aQuality <= aBound, aMeasure + " " + aQuality + " > " + aBound);
+			}
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.io.*;
+import java.util.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RedundancyFilterTest
+{
+	private static final float[] MINIMUM_IMPROVEMENTS = { 0.0f, 0.001f };
+
+	@Test
+	@DisplayName("Check the indexed filter removes the Subgroups that pairwise comparisons remove")
+	public void testFilterSubgroups()
+	{
+		for (float m : MINIMUM_IMPROVEMENTS)
+		{
+			SubgroupSet aResult = mine();
+			List<Subgroup> anExpected = filterPairwise(new ArrayList<Subgroup>(aResult), m);
+			assertTrue(anExpected.size() < aResult.size());
+
+			aResult.filterSubgroups(m, 4);
+			assertEquals(anExpected, new ArrayList<Subgroup>(aResult), "minimum improvement " + m);
+		}
+	}
+
+	@Test
+	@DisplayName("Check the indexed alternative descriptions are those of comparing runs of Subgroups")
+	public void testAlternativeDescriptions()
+	{
+		SubgroupSet aResult = mine();
+		aResult.setIDs();
+
+		List<Subgroup> aSubgroups = new ArrayList<Subgroup>(aResult);
+		markPairwise(aResult, aSubgroups);
+		double[] anExpected = new double[aSubgroups.size()];
+		int aNrMarked = 0;
+		for (int i = 0; i < anExpected.length; ++i)
+			if (!Double.isNaN(anExpected[i] = aSubgroups.get(i).getPValue()))
+				++aNrMarked;
+		assertTrue(aNrMarked > 0);
+
+		new RedundancyFilter(aResult, 4).markAlternativeDescriptions();
+		for (int i = 0; i < anExpected.length; ++i)
+			assertEquals(anExpected[i], aSubgroups.get(i).getPValue(), aSubgroups.get(i).toString());
+	}
+
+	private static SubgroupSet mine()
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL.GUI_TEXT);
+		aTC.setPrimaryTarget(aTable.getColumn("target"));
+		aTC.setTargetValue("gr50K");
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.WRACC);
+		anSP.setQualityMeasureMinimum(0.0f);
+		anSP.setSearchDepth(3);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1.0f);
+		anSP.setMaximumSubgroups(2000);
+		anSP.setMaximumTime(1000);
+		anSP.setSearchStrategy("breadth first");
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators("<html>&#8804;, &#8805;</html>");
+		anSP.setNumericStrategy("bins");
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(4);
+		anSP.setNrThreads(1);
+
+		return Process.runSubgroupDiscovery(aTable, 0, null, anSP, false, 1, null).getResult();
+	}
+
+	// the pairwise SubgroupSet.filterSubgroups() the RedundancyFilter replaced
+	private static List<Subgroup> filterPairwise(List<Subgroup> theSubgroups, float theMinimumImprovement)
+	{
+		Iterator<Subgroup> anIterator = theSubgroups.iterator();
+		while (anIterator.hasNext())
+		{
+			Subgroup aFirstSubgroup = anIterator.next();
+			for (Subgroup aSecondSubgroup : theSubgroups)
+				if (aFirstSubgroup != aSecondSubgroup)
+				{
+					if (aFirstSubgroup.strictlySpecialises(aSecondSubgroup) && aFirstSubgroup.getMeasureValue() <= aSecondSubgroup.getMeasureValue() + theMinimumImprovement)
+					{
+						anIterator.remove();
+						break;
+					}
+				}
+		}
+		return theSubgroups;
+	}
+
+	// the SubgroupSet.markAlternativeDescriptions() loop the RedundancyFilter replaced
+	private static void markPairwise(SubgroupSet theSubgroupSet, List<Subgroup> theSubgroups)
+	{
+		List<Subgroup> aSameCQST = new ArrayList<Subgroup>();
+
+		// fake this one - could pass itsAllDataBitSet, but clone is more safe
+		Subgroup aLast = new Subgroup(ConditionListBuilder.emptyList(), theSubgroupSet.getAllDataBitSetClone(), theSubgroupSet);
+		// compares false for first Subgroup, even if its score is NaN
+		aLast.setMeasureValue(Double.NaN);
+
+		for (Subgroup s : theSubgroups)
+		{
+			s.setPValue(Double.NaN);
+
+			boolean hasSameCQPP =
+				(aLast.getCoverage() == s.getCoverage()) &&
+				(aLast.getMeasureValue() == s.getMeasureValue()) &&
+				(aLast.getSecondaryStatistic() == s.getSecondaryStatistic()) &&
+				(aLast.getTertiaryStatistic() == s.getTertiaryStatistic());
+
+			if (!hasSameCQPP && aSameCQST.isEmpty())
+			{
+				aLast = s;
+				continue;
+			}
+			else if (!hasSameCQPP && !aSameCQST.isEmpty())
+			{
+				SubgroupSet.markAlternativeDescriptionsProcess(aSameCQST);
+				aSameCQST.clear();
+				aLast = s;
+				continue;
+			}
+			else if (hasSameCQPP && aSameCQST.isEmpty())
+			{
+				aSameCQST.add(aLast);
+				aSameCQST.add(s);
+			}
+			else
+			{
+				aSameCQST.add(s);
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.io.*;
+import java.util.*;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SingleNumericStatisticsTest
+{
+	// ValueCountStatistics computes the sums of squared deviations in double
+	// precision, as (sum of squares - sum^2/n), Column.getStatistics() uses
+	// two float passes, so qualities may differ in the last float digits,
+	// for adult.txt the largest relative difference is about 3e-6
+	private static final double RELATIVE_DEVIATION = 1e-5;
+	// measures that use the sum, the sum of squared deviations, and the complement
+	private static final Set<QM> MEASURES = EnumSet.of(QM.Z_SCORE, QM.ABS_DEVIATION, QM.EXPLAINED_VARIANCE, QM.T_TEST);
+
+	@Test
+	@DisplayName("Check SINGLE_NUMERIC qualities from ValueCountStatistics equal those from Column.getStatistics()")
+	public void testValueCountStatistics()
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+		Set<Stat> aSufficient = EnumSet.of(Stat.SUM, Stat.SSD, Stat.COMPL);
+
+		for (NumericStrategy aStrategy : EnumSet.of(NumericStrategy.NUMERIC_ALL, NumericStrategy.NUMERIC_BINS, NumericStrategy.NUMERIC_BEST_BINS))
+			for (QM aMeasure : MEASURES)
+			{
+				String aMessage = aStrategy + ", " + aMeasure;
+				assertTrue(aSufficient.containsAll(QM.requiredStats(aMeasure)), aMessage);
+				SubgroupSet aGeneric = mine(aTable, aStrategy, aMeasure, false);
+				SubgroupSet aDirect = mine(aTable, aStrategy, aMeasure, true);
+				assertTrue(aGeneric.size() > 0, aMessage);
+				assertEquals(aGeneric.size(), aDirect.size(), aMessage);
+
+				Map<String, Subgroup> aQualities = new HashMap<String, Subgroup>();
+				for (Subgroup s : aGeneric)
+					aQualities.put(s.toString(), s);
+
+				// Subgroups with (nearly) equal qualities may swap places, so
+				// only those in both results are compared
+				int aNrCompared = 0;
+				for (Subgroup s : aDirect)
+				{
+					Subgroup g = aQualities.get(s.toString());
+					if (g == null)
+						continue;
+
+					++aNrCompared;
+					assertEquals(g.getCoverage(), s.getCoverage(), aMessage + ", " + s);
+					assertEquals(g.getMeasureValue(), s.getMeasureValue(), RELATIVE_DEVIATION * Math.max(1.0, Math.abs(g.getMeasureValue())), aMessage + ", " + s);
+					assertEquals(g.getSecondaryStatistic(), s.getSecondaryStatistic(), RELATIVE_DEVIATION * Math.max(1.0, Math.abs(g.getSecondaryStatistic())), aMessage + ", " + s);
+					assertEquals(g.getTertiaryStatistic(), s.getTertiaryStatistic(), RELATIVE_DEVIATION * Math.max(1.0, Math.abs(g.getTertiaryStatistic())), aMessage + ", " + s);
+				}
+				assertTrue(aNrCompared >= 0.9 * aGeneric.size(), aMessage + ", " + aNrCompared + " of " + aGeneric.size());
+			}
+	}
+
+	private static SubgroupSet mine(Table theTable, NumericStrategy theStrategy, QM theMeasure, boolean useValueCountStatistics)
+	{
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NUMERIC);
+		aTC.setPrimaryTarget(theTable.getColumn("age"));
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(theMeasure);
+		anSP.setQualityMeasureMinimum(Float.NEGATIVE_INFINITY);
+		anSP.setSearchDepth(2);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1.0f);
+		anSP.setMaximumSubgroups(200);
+		anSP.setMaximumTime(1000);
+		anSP.setSearchStrategy(SearchStrategy.BEAM);
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators(NumericOperatorSetting.NORMAL);
+		anSP.setNumericStrategy(theStrategy);
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+
+		SubgroupDiscovery anSD = new SubgroupDiscovery(anSP, theTable, null, aTC.getPrimaryTarget().getAverage(null), null, useValueCountStatistics);
+		anSD.mine(System.currentTimeMillis(), 1);
+		return anSD.getResult();
+	}
+}
@@ -0,0 +1,168 @@
+package nl.liacs.subdisc;
+
+// Java lib
+import java.util.*;
+import java.util.concurrent.*;
+
+import nl.liacs.subdisc.ConditionListBuilder.ConditionList;
+
+// Testing lib
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SubgroupSetTest
+{
+	private static final int NR_SUBGROUPS = 20000;
+	private static final int NR_THREADS = 8;
+	private static final int MAXIMUM_SIZE = 50;
+	// for testJointEntropy()
+	private static final int NR_ROWS = 400;
+	private static final int NR_VALUES = 20;
+	private static final int NR_THRESHOLDS = 12;
+
+	@Test
+	@DisplayName("Check concurrent additions yield the same top-k as sequential additions")
+	public void testConcurrentAdd() throws Exception
+	{
+		final SubgroupSet aSequential = new SubgroupSet(MAXIMUM_SIZE, null, NR_SUBGROUPS + 1);
+		final SubgroupSet aConcurrent = new SubgroupSet(MAXIMUM_SIZE, null, NR_SUBGROUPS + 1);
+		final Subgroup[] aSubgroups = SyntheticSubgroups.createSubgroups(NR_SUBGROUPS, aSequential);
+
+		for (int i = 0; i < NR_SUBGROUPS; ++i)
+			aSequential.add(aSubgroups[i]);
+
+		ExecutorService anExecutor = Executors.newFixedThreadPool(NR_THREADS);
+		List<Future<?>> aFutures = new ArrayList<Future<?>>();
+		for (int i = 0; i < NR_THREADS; ++i)
+		{
+			final int aStart = i;
+			aFutures.add(anExecutor.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for (int j = aStart; j < NR_SUBGROUPS; j += NR_THREADS)
+						aConcurrent.add(aSubgroups[j]);
+				}
+			}));
+		}
+		for (Future<?> f : aFutures)
+			f.get();
+		anExecutor.shutdown();
+
+		assertEquals(MAXIMUM_SIZE, aConcurrent.size());
+		assertEquals(new ArrayList<Subgroup>(aSequential), new ArrayList<Subgroup>(aConcurrent));
+
+		// the lowest score is that of the last Subgroup
+		float aLast = (float) aConcurrent.last().getMeasureValue();
+		assertTrue(aConcurrent.hasPotential(aLast));
+		assertFalse(aConcurrent.hasPotential(Math.nextDown(aLast)));
+
+		aConcurrent.clear();
+		assertTrue(aConcurrent.isEmpty());
+		assertTrue(aConcurrent.hasPotential(Float.NEGATIVE_INFINITY));
+	}
+
+	@Test
+	@DisplayName("Check the joint entropy of the cover signatures, for exact and hashed signatures")
+	public void testJointEntropy()
+	{
+		SubgroupSet aSubgroupSet = new SubgroupSet(0, null, NR_ROWS);
+		for (Subgroup s : createConjunctions(aSubgroupSet))
+			aSubgroupSet.add(s);
+		assertTrue(aSubgroupSet.size() > 2 * Long.SIZE);
+
+		// up to 64 and 128 signature bits are exact, more are hashed
+		for (int k : new int[] { 10, Long.SIZE + 36, aSubgroupSet.size() })
+		{
+			double anExpected = getJointEntropy(new ArrayList<Subgroup>(aSubgroupSet).subList(0, k), NR_ROWS);
+			for (int t : new int[] { 1, 4 })
+				assertEquals(anExpected, aSubgroupSet.postProcessGetCoverRedundancyAndJointEntropy(k, t), 1e-9, "top-k " + k + ", threads " + t);
+		}
+	}
+
+	/*
+	 * Subgroups (x <= a), (y >= b) and (x <= a AND y >= b), for a and b from
+	 * the domains of two random Columns, the members are those of the
+	 * Conditions, as evaluated by the Columns
+	 */
+	private static List<Subgroup> createConjunctions(SubgroupSet theSubgroupSet)
+	{
+		Random aRandom = new Random(10);
+		Column x = createColumn("x", 0, aRandom);
+		Column y = createColumn("y", 1, aRandom);
+		ConditionBase aBaseX = new ConditionBase(x, Operator.LESS_THAN_OR_EQUAL);
+		ConditionBase aBaseY = new ConditionBase(y, Operator.GREATER_THAN_OR_EQUAL);
+
+		BitSet anAll = new BitSet(NR_ROWS);
+		anAll.set(0, NR_ROWS);
+		List<Subgroup> aSubgroups = new ArrayList<Subgroup>();
+		for (int i = 0; i < NR_THRESHOLDS; ++i)
+		{
+			Condition aConditionX = new Condition(aBaseX, x.getSortedValue(i), i);
+			BitSet aMembersX = x.evaluate(anAll, aConditionX);
+			aSubgroups.add(createSubgroup(ConditionListBuilder.createList(aConditionX), aMembersX, theSubgroupSet, aRandom));
+
+			for (int j = 0; j < NR_THRESHOLDS; ++j)
+			{
+				int aSortIndex = NR_VALUES - 1 - j;
+				Condition aConditionY = new Condition(aBaseY, y.getSortedValue(aSortIndex), aSortIndex);
+				if (i == 0)
+					aSubgroups.add(createSubgroup(ConditionListBuilder.createList(aConditionY), y.evaluate(anAll, aConditionY), theSubgroupSet, aRandom));
+				// a conjunction without members is no Subgroup
+				BitSet aMembers = y.evaluate(aMembersX, aConditionY);
+				if (aMembers.isEmpty())
+					continue;
+				ConditionList aConditions = ConditionListBuilder.createList(ConditionListBuilder.createList(aConditionX), aConditionY);
+				aSubgroups.add(createSubgroup(aConditions, aMembers, theSubgroupSet, aRandom));
+			}
+		}
+
+		return aSubgroups;
+	}
+
+	// values 0 up to NR_VALUES, every value occurs at least once
+	private static Column createColumn(String theName, int theIndex, Random theRandom)
+	{
+		Column aColumn = new Column(theName, theName, AttributeType.NUMERIC, theIndex, NR_ROWS);
+		for (int i = 0; i < NR_ROWS; ++i)
+			aColumn.add((float) ((i < NR_VALUES) ? i : theRandom.nextInt(NR_VALUES)));
+		aColumn.close();
+		aColumn.buildSorted(null);
+		return aColumn;
+	}
+
+	private static Subgroup createSubgroup(ConditionList theConditions, BitSet theMembers, SubgroupSet theSubgroupSet, Random theRandom)
+	{
+		Subgroup aSubgroup = new Subgroup(theConditions, theMembers, theSubgroupSet);
+		aSubgroup.setMeasureValue(theRandom.nextFloat());
+		return aSubgroup;
+	}
+
+	// counts the signature of every row, as a BitSet
+	private static double getJointEntropy(List<Subgroup> theSubgroups, int theNrRows)
+	{
+		BitSet[] aSignatures = new BitSet[theNrRows];
+		for (int i = 0; i < theNrRows; ++i)
+			aSignatures[i] = new BitSet();
+		for (int k = 0; k < theSubgroups.size(); ++k)
+		{
+			BitSet b = theSubgroups.get(k).getMembers();
+			for (int i = b.nextSetBit(0); i >= 0; i = b.nextSetBit(i + 1))
+				aSignatures[i].set(k);
+		}
+
+		Map<BitSet, Integer> aCounts = new HashMap<BitSet, Integer>();
+		for (BitSet b : aSignatures)
+			aCounts.put(b, aCounts.containsKey(b) ? (aCounts.get(b) + 1) : 1);
+
+		double anEntropy = 0.0;
+		for (int c : aCounts.values())
+			anEntropy -= ((double) c / theNrRows) * Math.log((double) c / theNrRows);
+		return anEntropy / Math.log(2.0);
+	}
+}
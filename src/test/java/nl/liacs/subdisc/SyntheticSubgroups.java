@@ -0,0 +1,52 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import nl.liacs.subdisc.ConditionListBuilder.ConditionList;
+
+/**
+ * Creates Subgroups with distinct Conditions and random qualities, shared by
+ * the tests and by the result set and candidate set benchmarks in
+ * src/jmh/java, that are compiled together with the tests.
+ */
+final class SyntheticSubgroups
+{
+	static final long SEED = 10L;
+
+	// uninstantiable
+	private SyntheticSubgroups() {}
+
+	/*
+	 * Subgroup i has Condition (c0 <= i) and members 0 up to and including
+	 * i, all Subgroups are in theSubgroupSet, the last element of the
+	 * returned array is the root Subgroup, without Conditions
+	 * the qualities are floats, as SubgroupSet.hasPotential() takes a float
+	 */
+	static Subgroup[] createSubgroups(int theNrSubgroups, SubgroupSet theSubgroupSet)
+	{
+		int aNrRows = theNrSubgroups + 1;
+		Column aColumn = new Column("c0", "c0", AttributeType.NUMERIC, 0, aNrRows);
+		for (int i = 0; i < aNrRows; ++i)
+			aColumn.add((float) i);
+		aColumn.close();
+		aColumn.buildSorted(null);
+
+		ConditionBase aConditionBase = new ConditionBase(aColumn, Operator.LESS_THAN_OR_EQUAL);
+		Random aRandom = new Random(SEED);
+		Subgroup[] aSubgroups = new Subgroup[theNrSubgroups + 1];
+		for (int i = 0; i < theNrSubgroups; ++i)
+		{
+			BitSet aMembers = new BitSet(aNrRows);
+			aMembers.set(0, i + 1);
+			ConditionList aConditions = ConditionListBuilder.createList(new Condition(aConditionBase, aColumn.getSortedValue(i), i));
+			aSubgroups[i] = new Subgroup(aConditions, aMembers, theSubgroupSet);
+			aSubgroups[i].setMeasureValue(aRandom.nextFloat());
+		}
+
+		BitSet anAll = new BitSet(aNrRows);
+		anAll.set(0, aNrRows);
+		aSubgroups[theNrSubgroups] = new Subgroup(ConditionListBuilder.emptyList(), anAll, theSubgroupSet);
+
+		return aSubgroups;
+	}
+}